@@ -16,8 +16,36 @@
 
 package org.killbill.billing.account.api;
 
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+
+import org.killbill.billing.account.dao.AccountDao;
+import org.killbill.billing.platform.api.LifecycleHandlerType;
+import org.killbill.billing.platform.api.LifecycleHandlerType.LifecycleLevel;
+import org.killbill.billing.util.config.definition.AccountConfig;
+import org.killbill.commons.concurrent.Executors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 public class DefaultAccountService implements AccountService {
 
+    private static final int TERMINATION_TIMEOUT_SEC = 5;
+
+    private static final Logger logger = LoggerFactory.getLogger(DefaultAccountService.class);
+
+    private final AccountDao accountDao;
+    private final AccountConfig accountConfig;
+
+    private ScheduledExecutorService searchIndexExecutor;
+
+    @Inject
+    public DefaultAccountService(final AccountDao accountDao, final AccountConfig accountConfig) {
+        this.accountDao = accountDao;
+        this.accountConfig = accountConfig;
+    }
+
     @Override
     public String getName() {
         return KILLBILL_SERVICES.ACCOUNT_SERVICE.getServiceName();
@@ -28,4 +56,54 @@ public class DefaultAccountService implements AccountService {
         return KILLBILL_SERVICES.ACCOUNT_SERVICE.getRegistrationOrdering();
     }
 
+    // Index the accounts created before the search index existed: until then, searches don't return their word matches
+    @LifecycleHandlerType(LifecycleLevel.START_SERVICE)
+    public void start() {
+        if (accountConfig.isLegacySearchEnabled()) {
+            return;
+        }
+
+        searchIndexExecutor = Executors.newSingleThreadScheduledExecutor("AccountSearchIndex");
+        // Don't delay the startup sequence
+        scheduleSearchIndexBackfill(0);
+    }
+
+    // Retried until a run completes (accounts indexed by a failed run are committed and not indexed again)
+    private void scheduleSearchIndexBackfill(final long delayMillis) {
+        searchIndexExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    final int nbIndexedAccounts = accountDao.indexAccountsMissingFromSearchIndex();
+                    if (nbIndexedAccounts > 0) {
+                        logger.info("Indexed {} accounts missing from the search index", nbIndexedAccounts);
+                    }
+                } catch (final RuntimeException e) {
+                    final long retryDelayMillis = accountConfig.getSearchIndexBackfillRetryDelay().getMillis();
+                    logger.warn("Failed to index the accounts missing from the search index, will retry in {} ms", retryDelayMillis, e);
+                    if (!searchIndexExecutor.isShutdown()) {
+                        scheduleSearchIndexBackfill(retryDelayMillis);
+                    }
+                }
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @LifecycleHandlerType(LifecycleLevel.STOP_SERVICE)
+    public void stop() {
+        if (searchIndexExecutor == null) {
+            return;
+        }
+
+        try {
+            searchIndexExecutor.shutdownNow();
+            final boolean success = searchIndexExecutor.awaitTermination(TERMINATION_TIMEOUT_SEC, TimeUnit.SECONDS);
+            if (!success) {
+                logger.warn("AccountSearchIndex failed to complete termination within {} sec", TERMINATION_TIMEOUT_SEC);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("AccountSearchIndex stop sequence got interrupted");
+        }
+    }
 }
@@ -21,11 +21,14 @@ package org.killbill.billing.account.api.user;
 import java.util.List;
 import java.util.UUID;
 
+import javax.annotation.Nullable;
+
 import org.killbill.billing.ErrorCode;
 import org.killbill.billing.account.api.Account;
 import org.killbill.billing.account.api.AccountApiException;
 import org.killbill.billing.account.api.AccountData;
 import org.killbill.billing.account.api.AccountEmail;
+import org.killbill.billing.account.api.AccountPageTokenUserApi;
 import org.killbill.billing.account.api.AccountUserApi;
 import org.killbill.billing.account.api.DefaultAccount;
 import org.killbill.billing.account.api.DefaultAccountEmail;
@@ -53,7 +56,7 @@ import com.google.inject.Inject;
 
 import static org.killbill.billing.util.entity.dao.DefaultPaginationHelper.getEntityPaginationNoException;
 
-public class DefaultAccountUserApi extends DefaultAccountApiBase implements AccountUserApi {
+public class DefaultAccountUserApi extends DefaultAccountApiBase implements AccountUserApi, AccountPageTokenUserApi {
 
     private final ImmutableAccountInternalApi immutableAccountInternalApi;
     private final InternalCallContextFactory internalCallContextFactory;
@@ -149,6 +152,24 @@ public class DefaultAccountUserApi extends DefaultAccountApiBase implements Acco
                                              );
     }
 
+    @Override
+    public Pagination<Account> getAccounts(@Nullable final String pageToken, final Long limit, final boolean withCount, final TenantContext context) {
+        return getEntityPaginationNoException(limit,
+                                              new SourcePaginationBuilder<AccountModelDao, AccountApiException>() {
+                                                  @Override
+                                                  public Pagination<AccountModelDao> build() {
+                                                      return accountDao.getByPageToken(pageToken, limit, withCount, internalCallContextFactory.createInternalTenantContextWithoutAccountRecordId(context));
+                                                  }
+                                              },
+                                              new Function<AccountModelDao, Account>() {
+                                                  @Override
+                                                  public Account apply(final AccountModelDao accountModelDao) {
+                                                      return new DefaultAccount(accountModelDao);
+                                                  }
+                                              }
+                                             );
+    }
+
     @Override
     public UUID getIdFromKey(final String externalKey, final TenantContext context) throws AccountApiException {
         return accountDao.getIdFromKey(externalKey, internalCallContextFactory.createInternalTenantContextWithoutAccountRecordId(context));
@@ -62,4 +62,11 @@ public interface AccountDao extends EntityDao<AccountModelDao, Account, AccountA
     List<AuditLogWithHistory> getAuditLogsWithHistoryForId(UUID accountId, AuditLevel auditLevel, InternalTenantContext context) throws AccountApiException;
 
     List<AuditLogWithHistory> getEmailAuditLogsWithHistoryForId(UUID accountEmailId, AuditLevel auditLevel, InternalTenantContext context) throws AccountApiException;
+
+    /**
+     * Index the accounts of all tenants which are missing from the search index (e.g. created before the index existed)
+     *
+     * @return the number of accounts indexed
+     */
+    int indexAccountsMissingFromSearchIndex();
 }
@@ -67,4 +67,9 @@ public interface AccountSqlDao extends EntitySqlDao<AccountModelDao, Account> {
     public AccountModelDao luckySearch(@Bind("searchKey") final String searchKey,
                                        @SmartBindBean final InternalTenantContext context);
 
+    // Across all tenants
+    @SqlQuery
+    List<AccountModelDao> getAccountsMissingFromSearchIndex(@Bind("lastRecordId") final Long lastRecordId,
+                                                            @Bind("rowCount") final Long rowCount);
+
 }
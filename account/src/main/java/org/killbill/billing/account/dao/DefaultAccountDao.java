@@ -18,6 +18,7 @@
 
 package org.killbill.billing.account.dao;
 
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
@@ -26,6 +27,7 @@ import javax.inject.Named;
 
 import org.killbill.billing.BillingExceptionBase;
 import org.killbill.billing.ErrorCode;
+import org.killbill.billing.ObjectType;
 import org.killbill.billing.account.api.Account;
 import org.killbill.billing.account.api.AccountApiException;
 import org.killbill.billing.account.api.DefaultImmutableAccountData;
@@ -46,6 +48,7 @@ import org.killbill.billing.util.cache.Cachable.CacheType;
 import org.killbill.billing.util.cache.CacheController;
 import org.killbill.billing.util.cache.CacheControllerDispatcher;
 import org.killbill.billing.util.callcontext.InternalCallContextFactory;
+import org.killbill.billing.util.config.definition.AccountConfig;
 import org.killbill.billing.util.dao.NonEntityDao;
 import org.killbill.billing.util.dao.TableName;
 import org.killbill.billing.util.entity.DefaultPagination;
@@ -56,6 +59,7 @@ import org.killbill.billing.util.entity.dao.EntityDaoBase;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionWrapper;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionalJdbiWrapper;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoWrapperFactory;
+import org.killbill.billing.util.search.dao.SearchIndexDao;
 import org.killbill.bus.api.PersistentBus;
 import org.killbill.bus.api.PersistentBus.EventBusException;
 import org.killbill.clock.Clock;
@@ -72,21 +76,29 @@ public class DefaultAccountDao extends EntityDaoBase<AccountModelDao, Account, A
 
     private static final Logger log = LoggerFactory.getLogger(DefaultAccountDao.class);
 
+    // Number of accounts indexed per transaction when backfilling the search index
+    private static final Long SEARCH_INDEX_BACKFILL_BATCH_SIZE = 100L;
+
     private final CacheController<Long, ImmutableAccountData> accountImmutableCacheController;
     private final PersistentBus eventBus;
     private final InternalCallContextFactory internalCallContextFactory;
     private final Clock clock;
     private final AuditDao auditDao;
+    private final AccountConfig accountConfig;
+    private final SearchIndexDao searchIndexDao;
 
     @Inject
     public DefaultAccountDao(final IDBI dbi, @Named(MAIN_RO_IDBI_NAMED) final IDBI roDbi, final PersistentBus eventBus, final Clock clock, final CacheControllerDispatcher cacheControllerDispatcher,
-                             final InternalCallContextFactory internalCallContextFactory, final NonEntityDao nonEntityDao, final AuditDao auditDao) {
+                             final InternalCallContextFactory internalCallContextFactory, final NonEntityDao nonEntityDao, final AuditDao auditDao, final AccountConfig accountConfig,
+                             final SearchIndexDao searchIndexDao) {
         super(new EntitySqlDaoTransactionalJdbiWrapper(dbi, roDbi, clock, cacheControllerDispatcher, nonEntityDao, internalCallContextFactory), AccountSqlDao.class);
         this.accountImmutableCacheController = cacheControllerDispatcher.getCacheController(CacheType.ACCOUNT_IMMUTABLE);
         this.eventBus = eventBus;
         this.internalCallContextFactory = internalCallContextFactory;
         this.clock = clock;
         this.auditDao = auditDao;
+        this.accountConfig = accountConfig;
+        this.searchIndexDao = searchIndexDao;
     }
 
     @Override
@@ -106,6 +118,21 @@ public class DefaultAccountDao extends EntityDaoBase<AccountModelDao, Account, A
         accountImmutableCacheController.putIfAbsent(refreshedEntity.getRecordId(), new DefaultImmutableAccountData(refreshedEntity));
     }
 
+    @Override
+    protected EntitySqlDaoTransactionWrapper<List<AccountModelDao>> getCreateEntitySqlDaoTransactionWrapper(final Iterable<AccountModelDao> entities, final InternalCallContext context) {
+        final EntitySqlDaoTransactionWrapper<List<AccountModelDao>> createEntitiesWrapper = super.getCreateEntitySqlDaoTransactionWrapper(entities, context);
+        return new EntitySqlDaoTransactionWrapper<List<AccountModelDao>>() {
+            @Override
+            public List<AccountModelDao> inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                final List<AccountModelDao> savedAccounts = createEntitiesWrapper.inTransaction(entitySqlDaoWrapperFactory);
+                for (final AccountModelDao savedAccount : savedAccounts) {
+                    indexFromTransaction(savedAccount.getRecordId(), savedAccount.getId(), savedAccount.getExternalKey(), savedAccount, entitySqlDaoWrapperFactory, context);
+                }
+                return savedAccounts;
+            }
+        };
+    }
+
     @Override
     protected AccountApiException generateAlreadyExistsException(final AccountModelDao account, final InternalCallContext context) {
         return new AccountApiException(ErrorCode.ACCOUNT_ALREADY_EXISTS, account.getExternalKey());
@@ -163,7 +190,28 @@ public class DefaultAccountDao extends EntityDaoBase<AccountModelDao, Account, A
                                                           accountModelDao == null ? ImmutableList.<AccountModelDao>of().iterator() : ImmutableList.<AccountModelDao>of(accountModelDao).iterator());
         }
 
-        // Otherwise, we pretty much need to do a full table scan (leading % in the like clause).
+        if (!accountConfig.isLegacySearchEnabled()) {
+            // Exact, prefix and word matches through the search index (see SearchIndexDao)
+            final String normalizedSearchKey = SearchIndexDao.getSearchKey(searchKey);
+            final String prefixSearchKey = SearchIndexDao.getPrefixSearchKey(searchKey);
+            return paginationHelper.getPagination(AccountSqlDao.class,
+                                                  new PaginationIteratorBuilder<AccountModelDao, Account, AccountSqlDao>() {
+                                                      @Override
+                                                      public Long getCount(final AccountSqlDao accountSqlDao, final InternalTenantContext context) {
+                                                          return accountSqlDao.getIndexedSearchCount(ObjectType.ACCOUNT, normalizedSearchKey, prefixSearchKey, context);
+                                                      }
+
+                                                      @Override
+                                                      public Iterator<AccountModelDao> build(final AccountSqlDao accountSqlDao, final Long offset, final Long limit, final Ordering ordering, final InternalTenantContext context) {
+                                                          return accountSqlDao.indexedSearch(ObjectType.ACCOUNT, normalizedSearchKey, prefixSearchKey, offset, limit, ordering.toString(), context);
+                                                      }
+                                                  },
+                                                  offset,
+                                                  limit,
+                                                  context);
+        }
+
+        // Legacy search: we pretty much need to do a full table scan (leading % in the like clause).
         // Note: forcing MySQL to search indexes (like luckySearch above) doesn't always seem to help on large tables, especially with large offsets
         return paginationHelper.getPagination(AccountSqlDao.class,
                                               new PaginationIteratorBuilder<AccountModelDao, Account, AccountSqlDao>() {
@@ -217,6 +265,8 @@ public class DefaultAccountDao extends EntityDaoBase<AccountModelDao, Account, A
                 }
 
                 transactional.update(specifiedAccount, context);
+                // The external key cannot be updated
+                indexFromTransaction(currentAccount.getRecordId(), accountId, currentAccount.getExternalKey(), specifiedAccount, entitySqlDaoWrapperFactory, context);
 
                 final AccountChangeInternalEvent changeEvent = new DefaultAccountChangeEvent(accountId,
                                                                                              currentAccount,
@@ -331,6 +381,58 @@ public class DefaultAccountDao extends EntityDaoBase<AccountModelDao, Account, A
         });
     }
 
+    @Override
+    public int indexAccountsMissingFromSearchIndex() {
+        int nbIndexedAccounts = 0;
+        Long lastRecordId = 0L;
+        while (true) {
+            final List<AccountModelDao> accounts = getAccountsMissingFromSearchIndex(lastRecordId, SEARCH_INDEX_BACKFILL_BATCH_SIZE);
+            if (accounts.isEmpty()) {
+                break;
+            }
+
+            transactionalSqlDao.execute(false, new EntitySqlDaoTransactionWrapper<Void>() {
+                @Override
+                public Void inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                    final AccountSqlDao transactional = entitySqlDaoWrapperFactory.become(AccountSqlDao.class);
+                    for (final AccountModelDao account : accounts) {
+                        final InternalTenantContext context = internalCallContextFactory.createInternalTenantContext(account.getTenantRecordId(), null);
+                        // Re-read the account in the transaction, in case it was updated in the meantime
+                        final AccountModelDao currentAccount = transactional.getByRecordId(account.getRecordId(), context);
+                        indexFromTransaction(currentAccount.getRecordId(), currentAccount.getId(), currentAccount.getExternalKey(), currentAccount, entitySqlDaoWrapperFactory, context);
+                    }
+                    return null;
+                }
+            });
+
+            nbIndexedAccounts += accounts.size();
+            lastRecordId = accounts.get(accounts.size() - 1).getRecordId();
+        }
+
+        // Accounts created since then have been indexed on creation
+        return nbIndexedAccounts;
+    }
+
+    private List<AccountModelDao> getAccountsMissingFromSearchIndex(final Long lastRecordId, final Long rowCount) {
+        return transactionalSqlDao.execute(true, new EntitySqlDaoTransactionWrapper<List<AccountModelDao>>() {
+            @Override
+            public List<AccountModelDao> inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                return entitySqlDaoWrapperFactory.become(AccountSqlDao.class).getAccountsMissingFromSearchIndex(lastRecordId, rowCount);
+            }
+        });
+    }
+
+    private void indexFromTransaction(final Long accountRecordId, final UUID accountId, final String externalKey, final AccountModelDao account,
+                                      final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final InternalTenantContext context) {
+        searchIndexDao.indexFromTransaction(ObjectType.ACCOUNT,
+                                            accountRecordId,
+                                            accountRecordId,
+                                            ImmutableList.<String>of(accountId.toString()),
+                                            Arrays.<String>asList(externalKey, account.getEmail(), account.getName(), account.getCompanyName()),
+                                            entitySqlDaoWrapperFactory,
+                                            context);
+    }
+
     @Override
     public List<AuditLogWithHistory> getAuditLogsWithHistoryForId(final UUID accountId, final AuditLevel auditLevel, final InternalTenantContext context) throws AccountApiException {
         return transactionalSqlDao.execute(true, AccountApiException.class, new EntitySqlDaoTransactionWrapper<List<AuditLogWithHistory>>() {
@@ -19,6 +19,7 @@
 package org.killbill.billing.account.glue;
 
 import org.killbill.billing.account.api.AccountInternalApi;
+import org.killbill.billing.account.api.AccountPageTokenUserApi;
 import org.killbill.billing.account.api.AccountService;
 import org.killbill.billing.account.api.AccountUserApi;
 import org.killbill.billing.account.api.DefaultAccountService;
@@ -32,7 +33,10 @@ import org.killbill.billing.glue.AccountModule;
 import org.killbill.billing.platform.api.KillbillConfigSource;
 import org.killbill.billing.util.audit.dao.AuditDao;
 import org.killbill.billing.util.audit.dao.DefaultAuditDao;
+import org.killbill.billing.util.config.definition.AccountConfig;
 import org.killbill.billing.util.glue.KillBillModule;
+import org.killbill.billing.util.search.dao.SearchIndexDao;
+import org.skife.config.ConfigurationObjectFactory;
 
 public class DefaultAccountModule extends KillBillModule implements AccountModule {
 
@@ -41,15 +45,21 @@ public class DefaultAccountModule extends KillBillModule implements AccountModul
     }
 
     private void installConfig() {
+        final AccountConfig config = new ConfigurationObjectFactory(skifeConfigSource).build(AccountConfig.class);
+        bind(AccountConfig.class).toInstance(config);
     }
 
     protected void installAccountDao() {
+        bind(SearchIndexDao.class).asEagerSingleton();
         bind(AccountDao.class).to(DefaultAccountDao.class).asEagerSingleton();
     }
 
     @Override
     public void installAccountUserApi() {
-        bind(AccountUserApi.class).to(DefaultAccountUserApi.class).asEagerSingleton();
+        // Single instance for both interfaces
+        bind(DefaultAccountUserApi.class).asEagerSingleton();
+        bind(AccountUserApi.class).to(DefaultAccountUserApi.class);
+        bind(AccountPageTokenUserApi.class).to(DefaultAccountUserApi.class);
     }
 
     @Override
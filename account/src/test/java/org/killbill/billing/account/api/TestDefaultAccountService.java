@@ -0,0 +1,65 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.account.api;
+
+import org.killbill.billing.account.AccountTestSuiteNoDB;
+import org.killbill.billing.account.dao.AccountDao;
+import org.killbill.billing.util.config.definition.AccountConfig;
+import org.mockito.Mockito;
+import org.skife.config.TimeSpan;
+import org.testng.annotations.Test;
+
+public class TestDefaultAccountService extends AccountTestSuiteNoDB {
+
+    @Test(groups = "fast", description = "The search index backfill is retried until it completes")
+    public void testSearchIndexBackfillRetries() throws Exception {
+        final AccountDao backfillAccountDao = Mockito.mock(AccountDao.class);
+        Mockito.when(backfillAccountDao.indexAccountsMissingFromSearchIndex()).thenThrow(new RuntimeException("Simulated failure"))
+               .thenThrow(new RuntimeException("Simulated failure"))
+               .thenReturn(10);
+
+        final DefaultAccountService accountService = new DefaultAccountService(backfillAccountDao, createAccountConfig(false));
+        accountService.start();
+        try {
+            Mockito.verify(backfillAccountDao, Mockito.timeout(5000).times(3)).indexAccountsMissingFromSearchIndex();
+            // Not run again once completed
+            Thread.sleep(100);
+            Mockito.verify(backfillAccountDao, Mockito.times(3)).indexAccountsMissingFromSearchIndex();
+        } finally {
+            accountService.stop();
+        }
+    }
+
+    @Test(groups = "fast", description = "No search index backfill in legacy search mode")
+    public void testNoSearchIndexBackfillInLegacyMode() throws Exception {
+        final AccountDao backfillAccountDao = Mockito.mock(AccountDao.class);
+
+        final DefaultAccountService accountService = new DefaultAccountService(backfillAccountDao, createAccountConfig(true));
+        accountService.start();
+        accountService.stop();
+
+        Mockito.verify(backfillAccountDao, Mockito.never()).indexAccountsMissingFromSearchIndex();
+    }
+
+    private AccountConfig createAccountConfig(final boolean isLegacySearchEnabled) {
+        final AccountConfig accountConfig = Mockito.mock(AccountConfig.class);
+        Mockito.when(accountConfig.isLegacySearchEnabled()).thenReturn(isLegacySearchEnabled);
+        Mockito.when(accountConfig.getSearchIndexBackfillRetryDelay()).thenReturn(new TimeSpan("10ms"));
+        return accountConfig;
+    }
+}
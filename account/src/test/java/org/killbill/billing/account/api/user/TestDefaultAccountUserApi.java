@@ -29,6 +29,7 @@ import org.killbill.billing.account.AccountTestSuiteWithEmbeddedDB;
 import org.killbill.billing.account.api.Account;
 import org.killbill.billing.account.api.AccountApiException;
 import org.killbill.billing.account.api.AccountData;
+import org.killbill.billing.account.api.AccountPageTokenUserApi;
 import org.killbill.billing.account.api.DefaultAccount;
 import org.killbill.billing.account.api.DefaultMutableAccountData;
 import org.killbill.billing.account.api.MutableAccountData;
@@ -39,6 +40,7 @@ import org.killbill.billing.events.AccountCreationInternalEvent;
 import org.killbill.billing.tenant.dao.TenantModelDao;
 import org.killbill.billing.tenant.dao.TenantSqlDao;
 import org.killbill.billing.util.callcontext.CallContext;
+import org.killbill.billing.util.entity.DefaultPagination;
 import org.killbill.billing.util.entity.Pagination;
 import org.testng.Assert;
 import org.testng.annotations.Test;
@@ -110,6 +112,34 @@ public class TestDefaultAccountUserApi extends AccountTestSuiteWithEmbeddedDB {
         Assert.assertEquals(ImmutableList.<Account>copyOf(search5.iterator()).size(), 1);
     }
 
+    @Test(groups = "slow", description = "Test Account keyset pagination")
+    public void testGetAccountsByPageToken() throws Exception {
+        final List<UUID> accountIds = new LinkedList<UUID>();
+        for (int i = 0; i < 3; i++) {
+            accountIds.add(createAccount(new DefaultAccount(createTestAccount())).getId());
+        }
+
+        // The user API and the page token API share the same instance
+        Assert.assertTrue(accountUserApi instanceof AccountPageTokenUserApi);
+        final AccountPageTokenUserApi accountPageTokenUserApi = (AccountPageTokenUserApi) accountUserApi;
+
+        final List<UUID> retrievedAccountIds = new LinkedList<UUID>();
+        String pageToken = null;
+        int nbPages = 0;
+        do {
+            final DefaultPagination<Account> page = (DefaultPagination<Account>) accountPageTokenUserApi.getAccounts(pageToken, 2L, nbPages == 0, callContext);
+            Assert.assertEquals(page.getTotalNbRecords(), nbPages == 0 ? (Long) 3L : null);
+            for (final Account account : page) {
+                retrievedAccountIds.add(account.getId());
+            }
+            pageToken = page.getNextPageToken();
+            nbPages++;
+        } while (pageToken != null);
+
+        Assert.assertEquals(nbPages, 2);
+        Assert.assertEquals(retrievedAccountIds, accountIds);
+    }
+
     @Test(groups = "slow", description = "Test Account creation generates an event")
     public void testBusEvents() throws Exception {
         final AccountEventHandler eventHandler = new AccountEventHandler();
@@ -19,6 +19,7 @@
 package org.killbill.billing.account.dao;
 
 import java.sql.SQLException;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.UUID;
 
@@ -44,17 +45,21 @@ import org.killbill.billing.util.audit.ChangeType;
 import org.killbill.billing.util.audit.DefaultAccountAuditLogs;
 import org.killbill.billing.util.customfield.dao.CustomFieldModelDao;
 import org.killbill.billing.util.dao.TableName;
+import org.killbill.billing.util.entity.DefaultPagination;
 import org.killbill.billing.util.entity.Pagination;
 import org.killbill.billing.util.tag.DescriptiveTag;
 import org.killbill.billing.util.tag.Tag;
 import org.killbill.billing.util.tag.dao.TagDefinitionModelDao;
 import org.killbill.billing.util.tag.dao.TagModelDao;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.tweak.HandleCallback;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import com.google.common.collect.ImmutableList;
 
 import static org.killbill.billing.account.AccountTestUtils.checkAccountsEqual;
+import static org.killbill.billing.account.AccountTestUtils.createAccountData;
 import static org.killbill.billing.account.AccountTestUtils.createTestAccount;
 
 public class TestAccountDao extends AccountTestSuiteWithEmbeddedDB {
@@ -107,6 +112,120 @@ public class TestAccountDao extends AccountTestSuiteWithEmbeddedDB {
         Assert.assertEquals(auditLogsForAccount.get(0).getChangeType(), ChangeType.INSERT);
     }
 
+    @Test(groups = "slow", description = "Test Account DAO: keyset pagination")
+    public void testGetByPageToken() throws AccountApiException {
+        final List<UUID> accountIds = new LinkedList<UUID>();
+        for (int i = 0; i < 5; i++) {
+            final AccountModelDao account = createTestAccount();
+            accountDao.create(account, internalCallContext);
+            accountIds.add(account.getId());
+        }
+
+        final List<UUID> retrievedAccountIds = new LinkedList<UUID>();
+        String pageToken = null;
+        int nbPages = 0;
+        do {
+            final DefaultPagination<AccountModelDao> page = (DefaultPagination<AccountModelDao>) accountDao.getByPageToken(pageToken, 2L, nbPages == 0, internalCallContext);
+            // The count is only computed when requested
+            Assert.assertEquals(page.getTotalNbRecords(), nbPages == 0 ? (Long) 5L : null);
+            Assert.assertNull(page.getNextOffset());
+            for (final AccountModelDao account : page) {
+                retrievedAccountIds.add(account.getId());
+            }
+            pageToken = page.getNextPageToken();
+            nbPages++;
+        } while (pageToken != null);
+
+        Assert.assertEquals(nbPages, 3);
+        Assert.assertEquals(retrievedAccountIds, accountIds);
+
+        try {
+            accountDao.getByPageToken("not-a-token", 2L, false, internalCallContext);
+            Assert.fail("Invalid page token");
+        } catch (final IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().startsWith("Invalid page token"));
+        }
+    }
+
+    @Test(groups = "slow", description = "Test Account DAO: indexed search")
+    public void testSearchIndex() throws AccountApiException {
+        final AccountModelDao account1 = createSearchableAccount("Acme", "john@acme.com", "Acme, Inc.");
+        final AccountModelDao account2 = createSearchableAccount("Acme Corporation", "bob@gmail.com", "Globex");
+        final AccountModelDao account3 = createSearchableAccount("Jane Doe", "jane@initech.com", "Initech");
+
+        // Exact match first, then prefix
+        checkSearch("ACME", account1, account2);
+        // Word matches
+        checkSearch("inc.", account1);
+        checkSearch("acme.com", account1);
+        checkSearch("doe", account3);
+        checkSearch(account3.getId().toString(), account3);
+        checkSearch(account2.getExternalKey(), account2);
+        // No infix match
+        checkSearch("cme");
+        // LIKE wildcards are escaped
+        checkSearch("%");
+        checkSearch("_cme");
+
+        // The index is maintained on update
+        final AccountData accountData = new MockAccountBuilder(new DefaultAccount(account3)).name("Jane Smith")
+                                                                                            .build();
+        accountDao.update(new AccountModelDao(account3.getId(), accountData), true, internalCallContext);
+        checkSearch("doe");
+        checkSearch("smith", account3);
+        checkSearch("jane", account3);
+    }
+
+    @Test(groups = "slow", description = "Test Account DAO: search index backfill")
+    public void testIndexAccountsMissingFromSearchIndex() throws AccountApiException {
+        final AccountModelDao account1 = createSearchableAccount("Acme", "john@acme.com", "Acme, Inc.");
+        final AccountModelDao account2 = createSearchableAccount("Jane Doe", "jane@initech.com", "Initech");
+        Assert.assertEquals(accountDao.indexAccountsMissingFromSearchIndex(), 0);
+
+        // Simulate an account created before the search index existed
+        dbi.withHandle(new HandleCallback<Void>() {
+            @Override
+            public Void withHandle(final Handle handle) throws Exception {
+                handle.execute("delete from search_index where target_record_id = ?", account1.getRecordId());
+                return null;
+            }
+        });
+        checkSearch("inc.");
+
+        Assert.assertEquals(accountDao.indexAccountsMissingFromSearchIndex(), 1);
+        checkSearch("acme", account1);
+        checkSearch("inc.", account1);
+        checkSearch("doe", account2);
+        // Still no infix match
+        checkSearch("cme");
+        Assert.assertEquals(accountDao.indexAccountsMissingFromSearchIndex(), 0);
+    }
+
+    private AccountModelDao createSearchableAccount(final String name, final String email, final String companyName) throws AccountApiException {
+        final MutableAccountData accountData = createAccountData();
+        accountData.setName(name);
+        accountData.setEmail(email);
+        accountData.setCompanyName(companyName);
+        final AccountModelDao account = new AccountModelDao(UUID.randomUUID(), accountData);
+        accountDao.create(account, internalCallContext);
+        return account;
+    }
+
+    private void checkSearch(final String searchKey, final AccountModelDao... expectedAccounts) {
+        final Pagination<AccountModelDao> search = accountDao.searchAccounts(searchKey, 0L, 10L, internalCallContext);
+        Assert.assertEquals(search.getTotalNbRecords(), Long.valueOf(expectedAccounts.length));
+
+        final List<UUID> accountIds = new LinkedList<UUID>();
+        for (final AccountModelDao account : search) {
+            accountIds.add(account.getId());
+        }
+        final List<UUID> expectedAccountIds = new LinkedList<UUID>();
+        for (final AccountModelDao expectedAccount : expectedAccounts) {
+            expectedAccountIds.add(expectedAccount.getId());
+        }
+        Assert.assertEquals(accountIds, expectedAccountIds, searchKey);
+    }
+
     @Test(groups = "slow", description = "Test Account: verify audits")
     public void testAudits() throws AccountApiException {
         // Special test to verify audits - they are handled a bit differently due to the account record id (see EntitySqlDaoWrapperInvocationHandler#insertAudits)
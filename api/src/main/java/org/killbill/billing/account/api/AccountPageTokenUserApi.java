@@ -0,0 +1,29 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.account.api;
+
+import org.killbill.billing.util.callcontext.TenantContext;
+import org.killbill.billing.util.entity.Pagination;
+
+// Keyset pagination counterpart of AccountUserApi#getAccounts (AccountUserApi lives in the killbill-api jar): the cost of a page
+// doesn't depend on its depth. pageToken is null for the first page, the token of the next page is available on the returned
+// DefaultPagination (null on the last page). The total number of records is only computed when withCount is set.
+public interface AccountPageTokenUserApi {
+
+    Pagination<Account> getAccounts(String pageToken, Long limit, boolean withCount, TenantContext context);
+}
@@ -23,4 +23,7 @@ public interface CatalogInternalApi {
 
     public Catalog getFullCatalog(boolean useDefaultCatalog, final boolean filterTemplateCatalog, InternalTenantContext context) throws CatalogApiException;
 
+    // Resolves the overridden plans amongst the specified plan names in one pass, so that subsequent lookups don't go to the database one by one
+    public void loadOverriddenPlans(Iterable<String> planNames, InternalTenantContext context);
+
 }
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.invoice.api;
+
+import java.util.UUID;
+
+import org.killbill.billing.util.callcontext.CallContext;
+
+// Repair of the persisted account balance snapshot (InvoiceUserApi lives in the killbill-api jar), see InvoicePageTokenUserApi.
+public interface InvoiceAccountBalanceUserApi {
+
+    /**
+     * Recompute the persisted balance snapshot of the account from its invoices
+     *
+     * @param accountId account id
+     * @param context   the callcontext
+     * @return true if the snapshot was missing or stale
+     */
+    boolean rebuildAccountBalanceSnapshot(UUID accountId, CallContext context);
+}
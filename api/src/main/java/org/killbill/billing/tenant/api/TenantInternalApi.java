@@ -25,6 +25,10 @@ import org.killbill.billing.tenant.api.TenantKV.TenantKey;
 
 public interface TenantInternalApi {
 
+    // Binary snapshot of the per-tenant catalog, maintained by the catalog module. The key shares no prefix with
+    // the TenantKey values (it isn't a system key) and cannot be modified through the user key/value APIs.
+    public static final String CATALOG_SNAPSHOT_KEY = "KB_CATALOG_SNAPSHOT";
+
     public interface CacheInvalidationCallback {
 
         /**
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.usage;
+
+import java.util.Set;
+
+//
+// Usage of a subscription for a given unit type and day, aggregated at ingestion time:
+// getAmount() is the sum of all the amounts recorded for that day (CONSUMABLE usage), getMaxAmount() the highest one (CAPACITY usage).
+// getTrackingId() returns one of the tracking ids, see getTrackingIds() for all of them.
+//
+public interface DailyUsage extends RawUsage {
+
+    Long getMaxAmount();
+
+    Set<String> getTrackingIds();
+}
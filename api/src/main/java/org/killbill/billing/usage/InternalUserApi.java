@@ -17,13 +17,22 @@
 
 package org.killbill.billing.usage;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import org.joda.time.LocalDate;
 import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.usage.api.RolledUpUsage;
 
 public interface InternalUserApi {
 
     public List<RawUsage> getRawUsageForAccount(final LocalDate stateDate, final LocalDate endDate, final InternalTenantContext tenantContext);
+
+    // Same as getRawUsageForAccount, but pre-aggregated per subscription, unit type and day
+    public List<DailyUsage> getDailyUsageForAccount(final LocalDate stateDate, final LocalDate endDate, final InternalTenantContext tenantContext);
+
+    // Same as UsageUserApi#getAllUsageForSubscription for several subscriptions of the same account, in a single query
+    public Map<UUID, List<RolledUpUsage>> getAllUsageForSubscriptions(final Collection<UUID> subscriptionIds, final List<LocalDate> transitionTimes, final InternalTenantContext tenantContext);
 }
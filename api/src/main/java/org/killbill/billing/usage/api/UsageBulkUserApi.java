@@ -0,0 +1,34 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.usage.api;
+
+import org.killbill.billing.util.callcontext.CallContext;
+
+// Bulk recording of usage (UsageUserApi lives in the killbill-api jar), see InvoicePageTokenUserApi.
+public interface UsageBulkUserApi {
+
+    /**
+     * Bulk version of UsageUserApi#recordRolledUpUsage: the records can belong to different subscriptions and accounts of the tenant
+     * and are recorded in a single transaction (all or nothing)
+     *
+     * @param records the usage records
+     * @param context the callcontext
+     * @throws UsageApiException if a tracking id has already been recorded for the subscription
+     */
+    void recordRolledUpUsage(Iterable<SubscriptionUsageRecord> records, CallContext context) throws UsageApiException;
+}
@@ -19,12 +19,15 @@
 package org.killbill.billing.beatrix.extbus;
 
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Named;
 
 import org.killbill.billing.ObjectType;
+import org.killbill.billing.beatrix.extbus.ExtBusEventBatcher.ExtBusEventConverter;
 import org.killbill.billing.callcontext.InternalCallContext;
 import org.killbill.billing.entitlement.EntitlementService;
 import org.killbill.billing.entitlement.api.BlockingStateType;
@@ -69,14 +72,17 @@ import org.killbill.billing.util.callcontext.CallOrigin;
 import org.killbill.billing.util.callcontext.InternalCallContextFactory;
 import org.killbill.billing.util.callcontext.TenantContext;
 import org.killbill.billing.util.callcontext.UserType;
+import org.killbill.billing.util.config.definition.BeatrixConfig;
 import org.killbill.bus.api.BusEvent;
 import org.killbill.bus.api.PersistentBus;
 import org.killbill.bus.api.PersistentBus.EventBusException;
+import org.skife.jdbi.v2.IDBI;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.joda.JodaModule;
 import com.google.common.eventbus.AllowConcurrentEvents;
@@ -88,14 +94,33 @@ public class BeatrixListener {
 
     private final PersistentBus externalBus;
     private final InternalCallContextFactory internalCallContextFactory;
+    // Null unless batching is enabled
+    private final ExtBusEventBatcher extBusEventBatcher;
+    // Writers per metadata class, to avoid looking up the serializers for each event
+    private final ConcurrentMap<Class<?>, ObjectWriter> metadataWriters = new ConcurrentHashMap<Class<?>, ObjectWriter>();
 
     protected ObjectMapper objectMapper;
 
     @Inject
     public BeatrixListener(@Named(BusModule.EXTERNAL_BUS_NAMED) final PersistentBus externalBus,
-                           final InternalCallContextFactory internalCallContextFactory) {
+                           final PersistentBus internalBus,
+                           final InternalCallContextFactory internalCallContextFactory,
+                           final IDBI dbi,
+                           final BeatrixConfig beatrixConfig) {
         this.externalBus = externalBus;
         this.internalCallContextFactory = internalCallContextFactory;
+        this.extBusEventBatcher = beatrixConfig.isExtBusBatchingEnabled() ?
+                                  new ExtBusEventBatcher(externalBus,
+                                                         internalBus,
+                                                         dbi,
+                                                         beatrixConfig.getExtBusBatchingMaxSize(),
+                                                         new ExtBusEventConverter() {
+                                                             @Override
+                                                             public BusEvent convert(final BusInternalEvent event) {
+                                                                 return computeExtBusEventEntryFromBusInternalEvent(event);
+                                                             }
+                                                         }) :
+                                  null;
         this.objectMapper = new ObjectMapper();
         objectMapper.registerModule(new JodaModule());
         objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
@@ -104,12 +129,18 @@ public class BeatrixListener {
     @AllowConcurrentEvents
     @Subscribe
     public void handleAllInternalKillbillEvents(final BusInternalEvent event) {
-        final InternalCallContext internalContext = internalCallContextFactory.createInternalCallContext(event.getSearchKey2(), event.getSearchKey1(), "BeatrixListener", CallOrigin.INTERNAL, UserType.SYSTEM, event.getUserToken());
+        final InternalCallContext internalContext = createInternalCallContext(event);
         try {
             final BusEvent externalEvent = computeExtBusEventEntryFromBusInternalEvent(event, internalContext);
             if (externalEvent != null) {
-                log.info("Sending extBusEvent='{}' from busEvent='{}'", externalEvent, event);
-                externalBus.post(externalEvent);
+                if (extBusEventBatcher == null) {
+                    log.info("Sending extBusEvent='{}' from busEvent='{}'", externalEvent, event);
+                    externalBus.post(externalEvent);
+                } else {
+                    // The batcher logs once per batch
+                    log.debug("Sending extBusEvent='{}' from busEvent='{}'", externalEvent, event);
+                    extBusEventBatcher.post(event, externalEvent);
+                }
             }
         } catch (final EventBusException e) {
             //
@@ -124,6 +155,20 @@ public class BeatrixListener {
         }
     }
 
+    private InternalCallContext createInternalCallContext(final BusInternalEvent event) {
+        return internalCallContextFactory.createInternalCallContext(event.getSearchKey2(), event.getSearchKey1(), "BeatrixListener", CallOrigin.INTERNAL, UserType.SYSTEM, event.getUserToken());
+    }
+
+    // For the internal events which are posted ahead of their dispatch by the batcher
+    private BusEvent computeExtBusEventEntryFromBusInternalEvent(final BusInternalEvent event) {
+        try {
+            return computeExtBusEventEntryFromBusInternalEvent(event, createInternalCallContext(event));
+        } catch (final JsonProcessingException e) {
+            log.warn("Failed to post event {}", event, e);
+            return null;
+        }
+    }
+
     private BusEvent computeExtBusEventEntryFromBusInternalEvent(final BusInternalEvent event, final InternalCallContext context) throws JsonProcessingException {
         ObjectType objectType = null;
         UUID objectId = null;
@@ -167,7 +212,7 @@ public class BeatrixListener {
 
                 SubscriptionMetadata.ActionType actionType = (event instanceof EffectiveSubscriptionInternalEvent) ? ActionType.EFFECTIVE : ActionType.REQUESTED;
                 final SubscriptionMetadata subscriptionMetadataObj = new SubscriptionMetadata(actionType, realEventST.getBundleExternalKey());
-                metaData = objectMapper.writeValueAsString(subscriptionMetadataObj);
+                metaData = writeMetadata(subscriptionMetadataObj);
                 break;
 
             case BLOCKING_STATE:
@@ -197,7 +242,7 @@ public class BeatrixListener {
                     final BlockingStateMetadata blockingStateMetadata = new BlockingStateMetadata(realEventBS.getBlockableId(), realEventBS.getService(), realEventBS.getStateName(), realEventBS.getBlockingType(), realEventBS.getEffectiveDate(),
                                                                                         realEventBS.isTransitionedToBlockedBilling(), realEventBS.isTransitionedToUnblockedBilling(),
                                                                                         realEventBS.isTransitionedToBlockedEntitlement(), realEventBS.isTransitionedToUnblockedEntitlement());
-                    metaData = objectMapper.writeValueAsString(blockingStateMetadata);
+                    metaData = writeMetadata(blockingStateMetadata);
                 }
                 break;
 
@@ -218,7 +263,7 @@ public class BeatrixListener {
                 final InvoiceNotificationMetadata invoiceNotificationMetadata = new InvoiceNotificationMetadata(realEventInvNotification.getTargetDate(),
                                                                                                 realEventInvNotification.getAmountOwed(),
                                                                                                 realEventInvNotification.getCurrency());
-                metaData = objectMapper.writeValueAsString(invoiceNotificationMetadata);
+                metaData = writeMetadata(invoiceNotificationMetadata);
                 break;
 
 
@@ -235,7 +280,7 @@ public class BeatrixListener {
                 objectId = realEventInvPay.getInvoiceId();
                 eventBusType = ExtBusEventType.INVOICE_PAYMENT_SUCCESS;
                 final InvoicePaymentMetadata invoicePaymentInfoMetaDataObj = new InvoicePaymentMetadata(realEventInvPay.getPaymentId(), realEventInvPay.getType(), realEventInvPay.getPaymentDate(), realEventInvPay.getAmount(), realEventInvPay.getCurrency(), realEventInvPay.getLinkedInvoicePaymentId(), realEventInvPay.getPaymentCookieId(), realEventInvPay.getProcessedCurrency());
-                metaData = objectMapper.writeValueAsString(invoicePaymentInfoMetaDataObj);
+                metaData = writeMetadata(invoicePaymentInfoMetaDataObj);
                 break;
 
             case INVOICE_PAYMENT_ERROR:
@@ -244,7 +289,7 @@ public class BeatrixListener {
                 objectId = realEventInvPayErr.getInvoiceId();
                 eventBusType = ExtBusEventType.INVOICE_PAYMENT_FAILED;
                 final InvoicePaymentMetadata invoicePaymentErrorMetaDataObj = new InvoicePaymentMetadata(realEventInvPayErr.getPaymentId(), realEventInvPayErr.getType(), realEventInvPayErr.getPaymentDate(), realEventInvPayErr.getAmount(), realEventInvPayErr.getCurrency(), realEventInvPayErr.getLinkedInvoicePaymentId(), realEventInvPayErr.getPaymentCookieId(), realEventInvPayErr.getProcessedCurrency());
-                metaData = objectMapper.writeValueAsString(invoicePaymentErrorMetaDataObj);
+                metaData = writeMetadata(invoicePaymentErrorMetaDataObj);
                 break;
 
             case PAYMENT_INFO:
@@ -253,7 +298,7 @@ public class BeatrixListener {
                 objectId = realEventPay.getPaymentId();
                 eventBusType = ExtBusEventType.PAYMENT_SUCCESS;
                 final PaymentMetadata paymentInfoMetaDataObj = new PaymentMetadata(realEventPay.getPaymentTransactionId(), realEventPay.getAmount(), realEventPay.getCurrency(), realEventPay.getStatus(), realEventPay.getTransactionType(), realEventPay.getEffectiveDate());
-                metaData = objectMapper.writeValueAsString(paymentInfoMetaDataObj);
+                metaData = writeMetadata(paymentInfoMetaDataObj);
                 break;
 
             case PAYMENT_ERROR:
@@ -263,7 +308,7 @@ public class BeatrixListener {
                 eventBusType = ExtBusEventType.PAYMENT_FAILED;
                 accountId = realEventPayErr.getAccountId();
                 final PaymentMetadata paymentErrorMetaDataObj = new PaymentMetadata(realEventPayErr.getPaymentTransactionId(), realEventPayErr.getAmount(), realEventPayErr.getCurrency(), realEventPayErr.getStatus(), realEventPayErr.getTransactionType(), realEventPayErr.getEffectiveDate());
-                metaData = objectMapper.writeValueAsString(paymentErrorMetaDataObj);
+                metaData = writeMetadata(paymentErrorMetaDataObj);
                 break;
 
             case PAYMENT_PLUGIN_ERROR:
@@ -272,7 +317,7 @@ public class BeatrixListener {
                 objectId = realEventPayPluginErr.getPaymentId();
                 eventBusType = ExtBusEventType.PAYMENT_FAILED;
                 final PaymentMetadata pluginErrorMetaDataObj = new PaymentMetadata(realEventPayPluginErr.getPaymentTransactionId(), realEventPayPluginErr.getAmount(), realEventPayPluginErr.getCurrency(), realEventPayPluginErr.getStatus(), realEventPayPluginErr.getTransactionType(), realEventPayPluginErr.getEffectiveDate());
-                metaData = objectMapper.writeValueAsString(pluginErrorMetaDataObj);
+                metaData = writeMetadata(pluginErrorMetaDataObj);
                 break;
 
             case OVERDUE_CHANGE:
@@ -350,7 +395,7 @@ public class BeatrixListener {
                 objectId = null;
                 eventBusType = ExtBusEventType.BROADCAST_SERVICE;
                 final BroadcastMetadata broadcastMetadata = new BroadcastMetadata(realBroadcastEvent.getServiceName(), realBroadcastEvent.getType(), realBroadcastEvent.getJsonEvent());
-                metaData = objectMapper.writeValueAsString(broadcastMetadata);
+                metaData = writeMetadata(broadcastMetadata);
                 break;
 
             default:
@@ -367,6 +412,18 @@ public class BeatrixListener {
                null;
     }
 
+    private String writeMetadata(final Object metadata) throws JsonProcessingException {
+        ObjectWriter metadataWriter = metadataWriters.get(metadata.getClass());
+        if (metadataWriter == null) {
+            metadataWriter = objectMapper.writerFor(metadata.getClass());
+            final ObjectWriter existingMetadataWriter = metadataWriters.putIfAbsent(metadata.getClass(), metadataWriter);
+            if (existingMetadataWriter != null) {
+                metadataWriter = existingMetadataWriter;
+            }
+        }
+        return metadataWriter.writeValueAsString(metadata);
+    }
+
     private UUID getAccountId(final BusInternalEventType eventType, @Nullable final UUID objectId, final ObjectType objectType, final TenantContext context) {
         // accountRecord_id is not set for ACCOUNT_CREATE event as we are in the transaction and value is known yet
         if (eventType == BusInternalEventType.ACCOUNT_CREATE) {
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.killbill.billing.beatrix.extbus;
+
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import org.killbill.billing.events.BusInternalEvent;
+import org.killbill.bus.api.BusEvent;
+import org.killbill.bus.api.BusEventWithMetadata;
+import org.killbill.bus.api.PersistentBus;
+import org.killbill.bus.api.PersistentBus.EventBusException;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.IDBI;
+import org.skife.jdbi.v2.TransactionCallback;
+import org.skife.jdbi.v2.TransactionStatus;
+import org.skife.jdbi.v2.exceptions.CallbackFailedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Multiset;
+
+//
+// Coalesces the external events of a given originating call (same account, tenant and user token) so that they are posted within a single
+// transaction, without holding the dispatch threads of the internal bus: when an internal event is dispatched, the entries of the same call
+// which are still in the internal bus queue (committed by the originating transactions, and typically claimed by the same dispatcher poll)
+// are converted and posted together. Their external events are then skipped once their own entries are dispatched.
+//
+// post only returns once the external events have been persisted, so failures are still retried by the internal bus (the batch transaction
+// is rolled back, so there are no duplicates). If the node stops before the remaining entries have been dispatched, their external events
+// are posted again when they are re-dispatched (the internal bus delivers at least once anyway).
+//
+public class ExtBusEventBatcher {
+
+    // Conversion of the internal events posted ahead of their dispatch
+    public interface ExtBusEventConverter {
+
+        // Null if there is no external event for that internal event
+        @Nullable
+        BusEvent convert(BusInternalEvent event);
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(ExtBusEventBatcher.class);
+
+    // Entries posted ahead are expected to be dispatched shortly after, unless they have been reaped by another node
+    private static final long POSTED_AHEAD_EXPIRATION_MINUTES = 10;
+
+    private final PersistentBus externalBus;
+    private final PersistentBus internalBus;
+    private final IDBI dbi;
+    private final int maxSize;
+    private final ExtBusEventConverter converter;
+
+    private final Cache<UUID, PostedAhead> postedAheadPerUserToken;
+
+    public ExtBusEventBatcher(final PersistentBus externalBus, final PersistentBus internalBus, final IDBI dbi, final int maxSize, final ExtBusEventConverter converter) {
+        this.externalBus = externalBus;
+        this.internalBus = internalBus;
+        this.dbi = dbi;
+        this.maxSize = maxSize;
+        this.converter = converter;
+        this.postedAheadPerUserToken = CacheBuilder.newBuilder()
+                                                   .expireAfterAccess(POSTED_AHEAD_EXPIRATION_MINUTES, TimeUnit.MINUTES)
+                                                   .build();
+    }
+
+    public void post(final BusInternalEvent event, final BusEvent externalEvent) throws EventBusException {
+        if (event.getUserToken() == null || event.getSearchKey1() == null || event.getSearchKey2() == null || maxSize <= 1) {
+            externalBus.post(externalEvent);
+            return;
+        }
+
+        final PostedAhead postedAhead = getPostedAhead(event.getUserToken());
+        // Serialize the events of a given call, so that concurrent dispatch threads don't post the same entries
+        synchronized (postedAhead) {
+            if (postedAhead.externalEvents.remove(externalEvent)) {
+                log.debug("Skipping extBusEvent='{}', already posted", externalEvent);
+                return;
+            }
+
+            final List<BusEventWithMetadata<BusEvent>> pendingEntries = getPendingEntries(event);
+            if (pendingEntries == null) {
+                externalBus.post(externalEvent);
+                return;
+            }
+
+            final List<BusEvent> batch = new LinkedList<BusEvent>();
+            final Set<Long> batchRecordIds = new HashSet<Long>();
+            final Set<Long> pendingRecordIds = new HashSet<Long>();
+            boolean hasCurrentEvent = false;
+            for (final BusEventWithMetadata<BusEvent> pendingEntry : pendingEntries) {
+                pendingRecordIds.add(pendingEntry.getRecordId());
+                if (!(pendingEntry.getEvent() instanceof BusInternalEvent) ||
+                    !event.getUserToken().equals(pendingEntry.getUserToken()) ||
+                    postedAhead.recordIds.contains(pendingEntry.getRecordId()) ||
+                    (hasCurrentEvent && batch.size() >= maxSize)) {
+                    continue;
+                }
+
+                final BusEvent pendingExternalEvent = converter.convert((BusInternalEvent) pendingEntry.getEvent());
+                batchRecordIds.add(pendingEntry.getRecordId());
+                if (pendingExternalEvent != null) {
+                    batch.add(pendingExternalEvent);
+                    hasCurrentEvent = hasCurrentEvent || pendingExternalEvent.equals(externalEvent);
+                }
+            }
+
+            final Multiset<BusEvent> externalEventsToSkip = HashMultiset.<BusEvent>create(batch);
+            if (!externalEventsToSkip.remove(externalEvent)) {
+                // Not found in the queue (e.g. already completed), post it anyways
+                batch.add(0, externalEvent);
+            }
+
+            flush(batch);
+            log.info("Sent {} extBusEvent(s) for userToken='{}'", batch.size(), event.getUserToken());
+
+            postedAhead.externalEvents.addAll(externalEventsToSkip);
+            // Entries no longer in the queue won't be returned again
+            postedAhead.recordIds.retainAll(pendingRecordIds);
+            postedAhead.recordIds.addAll(batchRecordIds);
+        }
+    }
+
+    private PostedAhead getPostedAhead(final UUID userToken) {
+        try {
+            return postedAheadPerUserToken.get(userToken, new Callable<PostedAhead>() {
+                @Override
+                public PostedAhead call() {
+                    return new PostedAhead();
+                }
+            });
+        } catch (final ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    // Entries of the account which are available or being dispatched, null if the internal bus doesn't expose them (in-memory bus)
+    private List<BusEventWithMetadata<BusEvent>> getPendingEntries(final BusInternalEvent event) {
+        final Iterable<BusEventWithMetadata<BusEvent>> pendingEntries;
+        try {
+            pendingEntries = internalBus.getAvailableOrInProcessingBusEventsForSearchKeys(event.getSearchKey1(), event.getSearchKey2());
+        } catch (final UnsupportedOperationException e) {
+            return null;
+        }
+        return ImmutableList.<BusEventWithMetadata<BusEvent>>copyOf(pendingEntries);
+    }
+
+    private void flush(final List<BusEvent> events) throws EventBusException {
+        if (events.size() == 1) {
+            externalBus.post(events.get(0));
+            return;
+        }
+
+        try {
+            dbi.inTransaction(new TransactionCallback<Void>() {
+                @Override
+                public Void inTransaction(final Handle handle, final TransactionStatus status) throws Exception {
+                    for (final BusEvent event : events) {
+                        externalBus.postFromTransaction(event, handle.getConnection());
+                    }
+                    return null;
+                }
+            });
+        } catch (final CallbackFailedException e) {
+            if (e.getCause() instanceof EventBusException) {
+                throw (EventBusException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static final class PostedAhead {
+
+        // Guarded by the PostedAhead instance
+        private final Multiset<BusEvent> externalEvents = HashMultiset.<BusEvent>create();
+        private final Set<Long> recordIds = new HashSet<Long>();
+    }
+}
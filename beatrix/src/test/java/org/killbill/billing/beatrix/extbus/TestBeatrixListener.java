@@ -18,7 +18,15 @@
 package org.killbill.billing.beatrix.extbus;
 
 import java.math.BigDecimal;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.joda.time.DateTime;
 import org.killbill.billing.ObjectType;
@@ -59,17 +67,28 @@ import org.killbill.billing.util.callcontext.CallOrigin;
 import org.killbill.billing.util.callcontext.InternalCallContextFactory;
 import org.killbill.billing.util.callcontext.TenantContext;
 import org.killbill.billing.util.callcontext.UserType;
+import org.killbill.billing.util.config.definition.BeatrixConfig;
 import org.killbill.billing.util.tag.DefaultTagDefinition;
 import org.killbill.billing.util.tag.TagDefinition;
 import org.killbill.bus.api.BusEvent;
+import org.killbill.bus.api.BusEventWithMetadata;
 import org.killbill.bus.api.PersistentBus;
 import org.killbill.bus.api.PersistentBus.EventBusException;
 import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.IDBI;
+import org.skife.jdbi.v2.TransactionCallback;
+import org.skife.jdbi.v2.exceptions.CallbackFailedException;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
 
 import static org.killbill.billing.util.tag.dao.SystemTags.PARK_TAG_DEFINITION_ID;
 import static org.mockito.Matchers.any;
@@ -82,6 +101,8 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
 public class TestBeatrixListener {
 
@@ -113,14 +134,19 @@ public class TestBeatrixListener {
     private InternalCallContextFactory internalCallContextFactory;
     private TenantContext tenantContext;
     private ObjectMapper objectMapper;
+    private ObjectWriter objectWriter;
 
     @BeforeMethod(groups = "fast")
     public void setUp() throws Exception {
         externalBus = mock(PersistentBus.class);
         internalCallContextFactory = mock(InternalCallContextFactory.class);
-        beatrixListener = new BeatrixListener(externalBus, internalCallContextFactory);
+        final BeatrixConfig beatrixConfig = mock(BeatrixConfig.class);
+        when(beatrixConfig.isExtBusBatchingEnabled()).thenReturn(false);
+        beatrixListener = new BeatrixListener(externalBus, mock(PersistentBus.class), internalCallContextFactory, mock(IDBI.class), beatrixConfig);
 
         objectMapper = mock(ObjectMapper.class);
+        objectWriter = mock(ObjectWriter.class);
+        when(objectMapper.writerFor(any(Class.class))).thenReturn(objectWriter);
         beatrixListener.objectMapper = objectMapper;
 
         InternalCallContext internalContext = new InternalCallContext(
@@ -275,7 +301,7 @@ public class TestBeatrixListener {
         provideCommonInvoicePaymentInfo(event);
 
         ArgumentCaptor<InvoicePaymentMetadata> metadataCaptor = ArgumentCaptor.forClass(InvoicePaymentMetadata.class);
-        when(objectMapper.writeValueAsString(metadataCaptor.capture())).thenReturn(METADATA);
+        when(objectWriter.writeValueAsString(metadataCaptor.capture())).thenReturn(METADATA);
 
         when(internalCallContextFactory.getAccountId(
                 OBJECT_ID,
@@ -309,7 +335,7 @@ public class TestBeatrixListener {
         provideCommonInvoicePaymentInfo(event);
 
         ArgumentCaptor<InvoicePaymentMetadata> metadataCaptor = ArgumentCaptor.forClass(InvoicePaymentMetadata.class);
-        when(objectMapper.writeValueAsString(metadataCaptor.capture())).thenReturn(METADATA);
+        when(objectWriter.writeValueAsString(metadataCaptor.capture())).thenReturn(METADATA);
 
         when(internalCallContextFactory.getAccountId(
                 OBJECT_ID,
@@ -343,7 +369,7 @@ public class TestBeatrixListener {
         provideCommonPaymentInfo(event);
 
         ArgumentCaptor<PaymentMetadata> metadataCaptor = ArgumentCaptor.forClass(PaymentMetadata.class);
-        when(objectMapper.writeValueAsString(metadataCaptor.capture())).thenReturn(METADATA);
+        when(objectWriter.writeValueAsString(metadataCaptor.capture())).thenReturn(METADATA);
 
         when(internalCallContextFactory.getAccountId(
                 OBJECT_ID,
@@ -378,7 +404,7 @@ public class TestBeatrixListener {
         provideCommonPaymentInfo(event);
 
         ArgumentCaptor<PaymentMetadata> metadataCaptor = ArgumentCaptor.forClass(PaymentMetadata.class);
-        when(objectMapper.writeValueAsString(metadataCaptor.capture())).thenReturn(METADATA);
+        when(objectWriter.writeValueAsString(metadataCaptor.capture())).thenReturn(METADATA);
 
         ArgumentCaptor<BusEvent> eventCaptor = ArgumentCaptor.forClass(BusEvent.class);
 
@@ -406,7 +432,7 @@ public class TestBeatrixListener {
         provideCommonPaymentInfo(event);
 
         ArgumentCaptor<PaymentMetadata> metadataCaptor = ArgumentCaptor.forClass(PaymentMetadata.class);
-        when(objectMapper.writeValueAsString(metadataCaptor.capture())).thenReturn(METADATA);
+        when(objectWriter.writeValueAsString(metadataCaptor.capture())).thenReturn(METADATA);
 
         when(internalCallContextFactory.getAccountId(
                 OBJECT_ID,
@@ -677,7 +703,7 @@ public class TestBeatrixListener {
         when(event.getJsonEvent()).thenReturn(BROADCAST_EVENT_JSON);
 
         ArgumentCaptor<BroadcastMetadata> metadataCaptor = ArgumentCaptor.forClass(BroadcastMetadata.class);
-        when(objectMapper.writeValueAsString(metadataCaptor.capture())).thenReturn(METADATA);
+        when(objectWriter.writeValueAsString(metadataCaptor.capture())).thenReturn(METADATA);
 
         ArgumentCaptor<BusEvent> eventCaptor = ArgumentCaptor.forClass(BusEvent.class);
 
@@ -711,7 +737,7 @@ public class TestBeatrixListener {
     public void testJsonProcessingException() throws Exception {
         InvoicePaymentInfoInternalEvent event = mock(InvoicePaymentInfoInternalEvent.class);
         when(event.getBusEventType()).thenReturn(BusInternalEventType.INVOICE_PAYMENT_INFO);
-        when(objectMapper.writeValueAsString(anyObject())).thenThrow(JsonProcessingException.class);
+        when(objectWriter.writeValueAsString(anyObject())).thenThrow(JsonProcessingException.class);
 
         // Just make sure exception gets swallowed.
         beatrixListener.handleAllInternalKillbillEvents(event);
@@ -729,7 +755,167 @@ public class TestBeatrixListener {
         beatrixListener.handleAllInternalKillbillEvents(event);
     }
 
+    @Test(groups = "fast")
+    public void testMetadataWriterIsCached() throws Exception {
+        InvoicePaymentInfoInternalEvent event = mock(InvoicePaymentInfoInternalEvent.class);
+        provideCommonBusEventInfo(event);
+        when(event.getBusEventType()).thenReturn(BusInternalEventType.INVOICE_PAYMENT_INFO);
+        when(event.getInvoiceId()).thenReturn(OBJECT_ID);
+        provideCommonInvoicePaymentInfo(event);
+        when(objectWriter.writeValueAsString(any(InvoicePaymentMetadata.class))).thenReturn(METADATA);
 
+        beatrixListener.handleAllInternalKillbillEvents(event);
+        beatrixListener.handleAllInternalKillbillEvents(event);
+
+        verify(objectMapper, times(1)).writerFor(InvoicePaymentMetadata.class);
+        verify(objectWriter, times(2)).writeValueAsString(any(InvoicePaymentMetadata.class));
+        verify(externalBus, times(2)).post(any(BusEvent.class));
+    }
+
+    @Test(groups = "fast", description = "Single dispatch thread: the entries of the originating call still in the queue are posted together")
+    public void testBatchedEvents() throws Exception {
+        final TestBatchingBus testBatchingBus = new TestBatchingBus(5);
+
+        // First originating transaction, claimed by one dispatcher poll
+        final List<BusInternalEvent> events1 = testBatchingBus.commitEvents(3);
+        testBatchingBus.dispatch(events1);
+
+        verify(testBatchingBus.dbi, times(1)).inTransaction(any(TransactionCallback.class));
+        verify(testBatchingBus.internalBus, times(1)).getAvailableOrInProcessingBusEventsForSearchKeys(SEARCH_KEY_1, SEARCH_KEY_2);
+        checkPostedEvents(events1);
+
+        // Second originating transaction of the same call: the entries of the first one are still being completed by the internal bus
+        final List<BusInternalEvent> events2 = testBatchingBus.commitEvents(2);
+        testBatchingBus.dispatch(events2);
+
+        verify(testBatchingBus.dbi, times(2)).inTransaction(any(TransactionCallback.class));
+        verify(testBatchingBus.internalBus, times(2)).getAvailableOrInProcessingBusEventsForSearchKeys(SEARCH_KEY_1, SEARCH_KEY_2);
+        checkPostedEvents(ImmutableList.<BusInternalEvent>copyOf(Iterables.<BusInternalEvent>concat(events1, events2)));
+        verify(externalBus, never()).post(any(BusEvent.class));
+    }
+
+    @Test(groups = "fast", description = "The batch is rolled back and retried by the internal bus")
+    public void testBatchedEventsWithFailure() throws Exception {
+        final TestBatchingBus testBatchingBus = new TestBatchingBus(5);
+        final List<BusInternalEvent> events = testBatchingBus.commitEvents(3);
+
+        doThrow(new EventBusException("Failed to post")).doNothing().when(externalBus).postFromTransaction(any(BusEvent.class), any(Connection.class));
+        try {
+            testBatchingBus.listener.handleAllInternalKillbillEvents(events.get(0));
+            fail("Expected failure");
+        } catch (final RuntimeException e) {
+            assertTrue(e.getCause() instanceof EventBusException);
+        }
+
+        // Retry of the first entry (nothing was skipped), then dispatch of the other ones
+        testBatchingBus.dispatch(events);
+        verify(testBatchingBus.dbi, times(2)).inTransaction(any(TransactionCallback.class));
+        // First failed attempt, then the whole batch
+        verify(externalBus, times(1 + events.size())).postFromTransaction(any(BusEvent.class), any(Connection.class));
+    }
+
+    @Test(groups = "fast", description = "The batch size is capped")
+    public void testBatchedEventsMaxSize() throws Exception {
+        final TestBatchingBus testBatchingBus = new TestBatchingBus(2);
+        final List<BusInternalEvent> events = testBatchingBus.commitEvents(5);
+        testBatchingBus.dispatch(events);
+
+        // 2 + 2 + 1
+        verify(testBatchingBus.dbi, times(2)).inTransaction(any(TransactionCallback.class));
+        verify(externalBus, times(1)).post(any(BusEvent.class));
+        verify(externalBus, times(4)).postFromTransaction(any(BusEvent.class), any(Connection.class));
+    }
+
+    private void checkPostedEvents(final List<BusInternalEvent> events) throws EventBusException {
+        final ArgumentCaptor<BusEvent> eventCaptor = ArgumentCaptor.forClass(BusEvent.class);
+        verify(externalBus, times(events.size())).postFromTransaction(eventCaptor.capture(), any(Connection.class));
+        final List<UUID> postedObjectIds = new ArrayList<UUID>();
+        for (final BusEvent postedEvent : eventCaptor.getAllValues()) {
+            postedObjectIds.add(((DefaultBusExternalEvent) postedEvent).getObjectId());
+        }
+        final List<UUID> expectedObjectIds = new ArrayList<UUID>();
+        for (final BusInternalEvent event : events) {
+            expectedObjectIds.add(((AccountCreationInternalEvent) event).getId());
+        }
+        assertEquals(postedObjectIds, expectedObjectIds);
+    }
+
+    private BeatrixListener beatrixListenerWithBatching(final TestBatchingBus testBatchingBus) {
+        final BeatrixConfig beatrixConfig = mock(BeatrixConfig.class);
+        when(beatrixConfig.isExtBusBatchingEnabled()).thenReturn(true);
+        when(beatrixConfig.getExtBusBatchingMaxSize()).thenReturn(testBatchingBus.maxSize);
+        return new BeatrixListener(externalBus, testBatchingBus.internalBus, internalCallContextFactory, testBatchingBus.dbi, beatrixConfig);
+    }
+
+    // Internal bus queue, dispatched like a single dispatch thread (nbThreads=1, STICKY_EVENTS) would
+    private final class TestBatchingBus {
+
+        private final int maxSize;
+        private final PersistentBus internalBus = mock(PersistentBus.class);
+        private final IDBI dbi = mock(IDBI.class);
+        // Available or in processing entries: completed entries are only removed asynchronously, so we never remove them
+        private final List<BusEventWithMetadata<BusEvent>> queue = new ArrayList<BusEventWithMetadata<BusEvent>>();
+        private final BeatrixListener listener;
+
+        private TestBatchingBus(final int maxSize) {
+            this.maxSize = maxSize;
+
+            final Handle handle = mock(Handle.class);
+            when(handle.getConnection()).thenReturn(mock(Connection.class));
+            when(dbi.inTransaction(any(TransactionCallback.class))).thenAnswer(new Answer<Object>() {
+                @Override
+                public Object answer(final InvocationOnMock invocation) throws Throwable {
+                    try {
+                        return ((TransactionCallback) invocation.getArguments()[0]).inTransaction(handle, null);
+                    } catch (final Exception e) {
+                        throw new CallbackFailedException(e);
+                    }
+                }
+            });
+            when(internalBus.getAvailableOrInProcessingBusEventsForSearchKeys(SEARCH_KEY_1, SEARCH_KEY_2)).thenAnswer(new Answer<Object>() {
+                @Override
+                public Object answer(final InvocationOnMock invocation) {
+                    return ImmutableList.<BusEventWithMetadata<BusEvent>>copyOf(queue);
+                }
+            });
+
+            this.listener = beatrixListenerWithBatching(this);
+        }
+
+        private List<BusInternalEvent> commitEvents(final int nbEvents) {
+            final List<BusInternalEvent> events = new ArrayList<BusInternalEvent>();
+            for (int i = 0; i < nbEvents; i++) {
+                final AccountCreationInternalEvent event = mock(AccountCreationInternalEvent.class);
+                provideCommonBusEventInfo(event);
+                when(event.getBusEventType()).thenReturn(BusInternalEventType.ACCOUNT_CREATE);
+                when(event.getId()).thenReturn(UUID.randomUUID());
+                events.add(event);
+                queue.add(new BusEventWithMetadata<BusEvent>((long) queue.size() + 1, USER_TOKEN, DateTime.now(), SEARCH_KEY_1, SEARCH_KEY_2, event));
+            }
+            return events;
+        }
+
+        private void dispatch(final List<BusInternalEvent> events) throws Exception {
+            final ExecutorService dispatchExecutor = Executors.newSingleThreadExecutor();
+            try {
+                final List<Future<?>> futures = new ArrayList<Future<?>>();
+                for (final BusInternalEvent event : events) {
+                    futures.add(dispatchExecutor.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() {
+                            listener.handleAllInternalKillbillEvents(event);
+                            return null;
+                        }
+                    }));
+                }
+                for (final Future<?> future : futures) {
+                    future.get(30, TimeUnit.SECONDS);
+                }
+            } finally {
+                dispatchExecutor.shutdownNow();
+            }
+        }
+    }
 
     private void provideCommonBusEventInfo(BusInternalEvent event) {
         when(event.getSearchKey2()).thenReturn(SEARCH_KEY_2);
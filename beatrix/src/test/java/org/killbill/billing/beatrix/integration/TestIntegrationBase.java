@@ -945,6 +945,10 @@ public class TestIntegrationBase extends BeatrixTestSuiteWithEmbeddedDB implemen
             public Void withHandle(final Handle handle) throws Exception {
                 handle.execute("delete from rolled_up_usage where subscription_id = ? and unit_type = ? and record_date = ?",
                                subscriptionId, unitType, recordedDate);
+                handle.execute("delete from rolled_up_usage_daily where subscription_id = ? and unit_type = ? and record_date = ?",
+                               subscriptionId, unitType, recordedDate);
+                handle.execute("delete from rolled_up_usage_daily_tracking_ids where subscription_id = ? and unit_type = ? and record_date = ?",
+                               subscriptionId, unitType, recordedDate);
                 return null;
             }
         });
@@ -1166,5 +1170,15 @@ public class TestIntegrationBase extends BeatrixTestSuiteWithEmbeddedDB implemen
         public void setShouldParkAccountsWithUnknownUsage(final boolean shouldParkAccountsWithUnknownUsage) {
             this.shouldParkAccountsWithUnknownUsage = shouldParkAccountsWithUnknownUsage;
         }
+
+        @Override
+        public boolean isIncrementalInvoiceGenerationEnabled() {
+            return defaultInvoiceConfig.isIncrementalInvoiceGenerationEnabled();
+        }
+
+        @Override
+        public boolean isIncrementalInvoiceGenerationEnabled(final InternalTenantContext tenantContext) {
+            return isIncrementalInvoiceGenerationEnabled();
+        }
     }
 }
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.benchmarks.invoice;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.killbill.billing.invoice.api.InvoiceApiException;
+import org.killbill.billing.invoice.generator.DefaultInvoiceGenerator;
+import org.killbill.billing.invoice.generator.FixedAndRecurringInvoiceItemGenerator;
+import org.killbill.billing.invoice.generator.InvoiceItemGenerator.InvoiceGeneratorResult;
+import org.killbill.billing.invoice.generator.InvoiceWithMetadata;
+import org.killbill.billing.invoice.generator.InvoiceWithMetadata.SubscriptionFutureNotificationDates;
+import org.killbill.billing.invoice.generator.UsageInvoiceItemGenerator;
+import org.killbill.billing.invoice.usage.RawUsageOptimizer;
+import org.killbill.billing.util.config.definition.InvoiceConfig;
+import org.killbill.clock.Clock;
+import org.killbill.clock.DefaultClock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.skife.config.ConfigurationObjectFactory;
+
+/**
+ * Measures a full (fixed, recurring and usage) invoice generation for one account, as done by the InvoiceDispatcher
+ * during the nightly billing run, without any database access.
+ * <p/>
+ * Run with {@code -prof gc} (the default through {@link org.killbill.billing.benchmarks.BenchmarkRunner}) to get the allocation rate,
+ * the SampleTime mode reports the p99 latency.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class InvoiceGenerationBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    public int nbSubscriptions;
+
+    @Param({"1", "12", "60", "200"})
+    public int nbHistoricalInvoices;
+
+    private SyntheticAccount syntheticAccount;
+    private DefaultInvoiceGenerator invoiceGenerator;
+    private FixedAndRecurringInvoiceItemGenerator fixedAndRecurringInvoiceItemGenerator;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final Clock clock = new DefaultClock();
+        final InvoiceConfig invoiceConfig = new ConfigurationObjectFactory(new Properties()).build(InvoiceConfig.class);
+
+        // No usage section in the synthetic catalog: the optimizer (and its DAOs) are never invoked
+        final UsageInvoiceItemGenerator usageInvoiceItemGenerator = new UsageInvoiceItemGenerator(new RawUsageOptimizer(invoiceConfig, null, null), invoiceConfig);
+        fixedAndRecurringInvoiceItemGenerator = new FixedAndRecurringInvoiceItemGenerator(invoiceConfig, clock);
+        invoiceGenerator = new DefaultInvoiceGenerator(clock, invoiceConfig, fixedAndRecurringInvoiceItemGenerator, usageInvoiceItemGenerator);
+
+        syntheticAccount = SyntheticAccount.create(nbSubscriptions, nbHistoricalInvoices, clock.getUTCToday());
+    }
+
+    @Benchmark
+    public InvoiceWithMetadata generateInvoice() throws InvoiceApiException {
+        return invoiceGenerator.generateInvoice(syntheticAccount.getAccount(),
+                                                syntheticAccount.getBillingEvents(),
+                                                syntheticAccount.getExistingInvoices(),
+                                                null,
+                                                syntheticAccount.getTargetDate(),
+                                                syntheticAccount.getAccount().getCurrency(),
+                                                syntheticAccount.getCallContext());
+    }
+
+    @Benchmark
+    public InvoiceGeneratorResult generateFixedAndRecurringItems() throws InvoiceApiException {
+        final Map<UUID, SubscriptionFutureNotificationDates> perSubscriptionFutureNotificationDates = new HashMap<UUID, SubscriptionFutureNotificationDates>();
+        return fixedAndRecurringInvoiceItemGenerator.generateItems(syntheticAccount.getAccount(),
+                                                                   UUID.randomUUID(),
+                                                                   syntheticAccount.getBillingEvents(),
+                                                                   syntheticAccount.getExistingInvoices(),
+                                                                   syntheticAccount.getTargetDate(),
+                                                                   syntheticAccount.getAccount().getCurrency(),
+                                                                   perSubscriptionFutureNotificationDates,
+                                                                   syntheticAccount.getCallContext());
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.benchmarks.invoice;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.killbill.billing.invoice.api.Invoice;
+import org.killbill.billing.invoice.api.InvoiceApiException;
+import org.killbill.billing.invoice.api.InvoiceItem;
+import org.killbill.billing.invoice.generator.FixedAndRecurringInvoiceItemGenerator;
+import org.killbill.billing.invoice.generator.InvoiceWithMetadata.SubscriptionFutureNotificationDates;
+import org.killbill.billing.invoice.tree.AccountItemTree;
+import org.killbill.billing.util.config.definition.InvoiceConfig;
+import org.killbill.clock.DefaultClock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.skife.config.ConfigurationObjectFactory;
+
+/**
+ * Isolates the invoice.tree package (AccountItemTree, SubscriptionItemTree, ItemsNodeInterval): existing items
+ * are inserted, the tree is built and the full list of proposed items since the beginning of time is merged.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class InvoiceItemTreeBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    public int nbSubscriptions;
+
+    @Param({"1", "12", "60", "200"})
+    public int nbHistoricalInvoices;
+
+    private UUID accountId;
+    private List<Invoice> existingInvoices;
+    private List<InvoiceItem> proposedItems;
+
+    @Setup(Level.Trial)
+    public void setUp() throws InvoiceApiException {
+        final DefaultClock clock = new DefaultClock();
+        final InvoiceConfig invoiceConfig = new ConfigurationObjectFactory(new Properties()).build(InvoiceConfig.class);
+        final SyntheticAccount syntheticAccount = SyntheticAccount.create(nbSubscriptions, nbHistoricalInvoices, clock.getUTCToday());
+
+        accountId = syntheticAccount.getAccount().getId();
+        existingInvoices = syntheticAccount.getExistingInvoices();
+
+        // Without any existing invoice, the generator output is exactly the proposed list the tree has to merge
+        proposedItems = new FixedAndRecurringInvoiceItemGenerator(invoiceConfig, clock).generateItems(syntheticAccount.getAccount(),
+                                                                                                       UUID.randomUUID(),
+                                                                                                       syntheticAccount.getBillingEvents(),
+                                                                                                       null,
+                                                                                                       syntheticAccount.getTargetDate(),
+                                                                                                       syntheticAccount.getAccount().getCurrency(),
+                                                                                                       new HashMap<UUID, SubscriptionFutureNotificationDates>(),
+                                                                                                       syntheticAccount.getCallContext())
+                                                                                        .getItems();
+    }
+
+    @Benchmark
+    public List<InvoiceItem> buildAndMerge() {
+        final AccountItemTree accountItemTree = new AccountItemTree(accountId, UUID.randomUUID());
+        for (final Invoice invoice : existingInvoices) {
+            for (final InvoiceItem item : invoice.getInvoiceItems()) {
+                accountItemTree.addExistingItem(item);
+            }
+        }
+        accountItemTree.mergeWithProposedItems(proposedItems);
+        return accountItemTree.getResultingItemList();
+    }
+}
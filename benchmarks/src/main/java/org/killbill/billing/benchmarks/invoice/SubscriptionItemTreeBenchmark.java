@@ -0,0 +1,130 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.benchmarks.invoice;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.LocalDate;
+import org.killbill.billing.catalog.api.Currency;
+import org.killbill.billing.invoice.api.InvoiceItem;
+import org.killbill.billing.invoice.model.RecurringInvoiceItem;
+import org.killbill.billing.invoice.model.RepairAdjInvoiceItem;
+import org.killbill.billing.invoice.tree.SubscriptionItemTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Single subscription with years of monthly history, where the plan changes mid-month once a year (original item,
+ * REPAIR_ADJ and new prorated item). This is the shape which stresses the interval tree the most: one root child per month,
+ * inserted in chronological order, with a few nested repairs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class SubscriptionItemTreeBenchmark {
+
+    private static final Currency CURRENCY = Currency.USD;
+    private static final BigDecimal RATE = new BigDecimal("9.99");
+    private static final BigDecimal NEW_RATE = new BigDecimal("19.99");
+
+    @Param({"5", "10", "20", "50"})
+    public int nbYears;
+
+    private UUID subscriptionId;
+    private List<InvoiceItem> existingItems;
+    private List<InvoiceItem> proposedItems;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final UUID accountId = UUID.randomUUID();
+        final UUID bundleId = UUID.randomUUID();
+        subscriptionId = UUID.randomUUID();
+
+        existingItems = new ArrayList<InvoiceItem>();
+        final LocalDate startDate = new LocalDate(2000, 1, 1);
+        for (int m = 0; m < nbYears * 12; m++) {
+            final UUID invoiceId = UUID.randomUUID();
+            final LocalDate periodStart = startDate.plusMonths(m);
+            final LocalDate periodEnd = periodStart.plusMonths(1);
+            final InvoiceItem recurringItem = new RecurringInvoiceItem(invoiceId, accountId, bundleId, subscriptionId, "product", "plan", "plan-evergreen",
+                                                                       periodStart, periodEnd, RATE, RATE, CURRENCY);
+            existingItems.add(recurringItem);
+
+            if (m % 12 == 6) {
+                // Mid-month upgrade: repair the end of the period and bill the new plan for it
+                final LocalDate changeDate = periodStart.plusDays(14);
+                existingItems.add(new RepairAdjInvoiceItem(invoiceId, accountId, changeDate, periodEnd, new BigDecimal("-5.00"), CURRENCY, recurringItem.getId()));
+                existingItems.add(new RecurringInvoiceItem(invoiceId, accountId, bundleId, subscriptionId, "product", "new-plan", "new-plan-evergreen",
+                                                           changeDate, periodEnd, new BigDecimal("10.00"), NEW_RATE, CURRENCY));
+            }
+        }
+
+        // Propose the current state of the subscription, as the generator would on the next run (i.e. nothing to repair)
+        final SubscriptionItemTree tree = newTreeWithExistingItems();
+        tree.build();
+        proposedItems = new ArrayList<InvoiceItem>();
+        for (final InvoiceItem item : tree.getView()) {
+            proposedItems.add(new RecurringInvoiceItem(item.getInvoiceId(), accountId, bundleId, subscriptionId, item.getProductName(), item.getPlanName(), item.getPhaseName(),
+                                                       item.getStartDate(), item.getEndDate(), item.getAmount(), item.getRate(), CURRENCY));
+        }
+    }
+
+    @Benchmark
+    public List<InvoiceItem> build() {
+        final SubscriptionItemTree tree = newTreeWithExistingItems();
+        tree.build();
+        return tree.getView();
+    }
+
+    @Benchmark
+    public List<InvoiceItem> buildAndMerge() {
+        final SubscriptionItemTree tree = newTreeWithExistingItems();
+        tree.build();
+        tree.flatten(true);
+        for (final InvoiceItem proposedItem : proposedItems) {
+            tree.mergeProposedItem(proposedItem);
+        }
+        tree.buildForMerge();
+        return tree.getView();
+    }
+
+    private SubscriptionItemTree newTreeWithExistingItems() {
+        final SubscriptionItemTree tree = new SubscriptionItemTree(subscriptionId, UUID.randomUUID());
+        for (final InvoiceItem existingItem : existingItems) {
+            tree.addItem(existingItem);
+        }
+        return tree;
+    }
+}
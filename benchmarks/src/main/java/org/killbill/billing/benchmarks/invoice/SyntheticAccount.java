@@ -0,0 +1,139 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.benchmarks.invoice;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.LocalDate;
+import org.killbill.billing.account.api.Account;
+import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.catalog.DefaultPrice;
+import org.killbill.billing.catalog.MockInternationalPrice;
+import org.killbill.billing.catalog.MockPlan;
+import org.killbill.billing.catalog.MockPlanPhase;
+import org.killbill.billing.catalog.api.BillingPeriod;
+import org.killbill.billing.catalog.api.Currency;
+import org.killbill.billing.catalog.api.Plan;
+import org.killbill.billing.invoice.api.Invoice;
+import org.killbill.billing.invoice.api.InvoiceItem;
+import org.killbill.billing.invoice.api.InvoiceStatus;
+import org.killbill.billing.invoice.model.DefaultInvoice;
+import org.killbill.billing.invoice.model.RecurringInvoiceItem;
+import org.killbill.billing.junction.BillingEventSet;
+import org.killbill.billing.mock.MockAccountBuilder;
+import org.killbill.billing.subscription.api.SubscriptionBaseTransitionType;
+import org.killbill.billing.util.callcontext.CallOrigin;
+import org.killbill.billing.util.callcontext.UserType;
+
+/**
+ * Synthetic account shape used by the invoice benchmarks: N monthly IN_ADVANCE subscriptions (BCD 1, spread over
+ * a few bundles) which have already been invoiced for M consecutive months, one invoice per month.
+ * The next invoice run at {@link #getTargetDate()} therefore has to walk the full history to produce one new item per subscription.
+ */
+public class SyntheticAccount {
+
+    private static final int SUBSCRIPTIONS_PER_BUNDLE = 10;
+    private static final BigDecimal RATE = new BigDecimal("9.99");
+    private static final Currency CURRENCY = Currency.USD;
+
+    private final Account account;
+    private final BillingEventSet billingEvents;
+    private final List<Invoice> existingInvoices;
+    private final LocalDate targetDate;
+    private final InternalCallContext callContext;
+
+    public static SyntheticAccount create(final int nbSubscriptions, final int nbHistoricalInvoices, final LocalDate today) {
+        return new SyntheticAccount(nbSubscriptions, nbHistoricalInvoices, today);
+    }
+
+    private SyntheticAccount(final int nbSubscriptions, final int nbHistoricalInvoices, final LocalDate today) {
+        this.account = new MockAccountBuilder().name("benchmark")
+                                               .externalKey(UUID.randomUUID().toString())
+                                               .billingCycleDayLocal(1)
+                                               .currency(CURRENCY)
+                                               .timeZone(DateTimeZone.UTC)
+                                               .build();
+
+        final LocalDate startDate = today.withDayOfMonth(1).minusMonths(nbHistoricalInvoices);
+        this.targetDate = today;
+
+        final DateTime now = today.toDateTimeAtStartOfDay(DateTimeZone.UTC);
+        this.callContext = new InternalCallContext(1L, 1L, DateTimeZone.UTC, startDate.toDateTimeAtStartOfDay(DateTimeZone.UTC),
+                                                   UUID.randomUUID(), "benchmark", CallOrigin.INTERNAL, UserType.SYSTEM,
+                                                   null, null, now, now);
+
+        final MockPlanPhase phase = new MockPlanPhase(new MockInternationalPrice(new DefaultPrice(RATE, CURRENCY)), null, BillingPeriod.MONTHLY);
+        final Plan plan = new MockPlan(phase);
+
+        this.billingEvents = new SyntheticBillingEventSet();
+        final List<UUID> subscriptionIds = new ArrayList<UUID>(nbSubscriptions);
+        final List<UUID> bundleIds = new ArrayList<UUID>(nbSubscriptions);
+        UUID bundleId = null;
+        for (int i = 0; i < nbSubscriptions; i++) {
+            if (i % SUBSCRIPTIONS_PER_BUNDLE == 0) {
+                bundleId = UUID.randomUUID();
+            }
+            final UUID subscriptionId = UUID.randomUUID();
+            subscriptionIds.add(subscriptionId);
+            bundleIds.add(bundleId);
+            billingEvents.add(new SyntheticBillingEvent(subscriptionId, bundleId, startDate.toDateTimeAtStartOfDay(DateTimeZone.UTC),
+                                                        plan, phase, RATE, CURRENCY, 1, i, SubscriptionBaseTransitionType.CREATE));
+        }
+
+        this.existingInvoices = new ArrayList<Invoice>(nbHistoricalInvoices);
+        for (int m = 0; m < nbHistoricalInvoices; m++) {
+            final LocalDate periodStart = startDate.plusMonths(m);
+            final LocalDate periodEnd = periodStart.plusMonths(1);
+            final DateTime createdDate = periodStart.toDateTimeAtStartOfDay(DateTimeZone.UTC);
+            final DefaultInvoice invoice = new DefaultInvoice(account.getId(), periodStart, periodStart, CURRENCY, InvoiceStatus.COMMITTED);
+            for (int i = 0; i < nbSubscriptions; i++) {
+                final InvoiceItem item = new RecurringInvoiceItem(UUID.randomUUID(), createdDate, invoice.getId(), account.getId(),
+                                                                  bundleIds.get(i), subscriptionIds.get(i),
+                                                                  plan.getProduct().getName(), plan.getName(), phase.getName(),
+                                                                  periodStart, periodEnd, RATE, RATE, CURRENCY);
+                invoice.addInvoiceItem(item);
+            }
+            existingInvoices.add(invoice);
+        }
+    }
+
+    public Account getAccount() {
+        return account;
+    }
+
+    public BillingEventSet getBillingEvents() {
+        return billingEvents;
+    }
+
+    public List<Invoice> getExistingInvoices() {
+        return existingInvoices;
+    }
+
+    public LocalDate getTargetDate() {
+        return targetDate;
+    }
+
+    public InternalCallContext getCallContext() {
+        return callContext;
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.benchmarks.invoice;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+import org.joda.time.DateTime;
+import org.killbill.billing.catalog.api.BillingAlignment;
+import org.killbill.billing.catalog.api.BillingPeriod;
+import org.killbill.billing.catalog.api.Currency;
+import org.killbill.billing.catalog.api.Plan;
+import org.killbill.billing.catalog.api.PlanPhase;
+import org.killbill.billing.catalog.api.Usage;
+import org.killbill.billing.junction.BillingEvent;
+import org.killbill.billing.subscription.api.SubscriptionBaseTransitionType;
+
+import com.google.common.collect.ImmutableList;
+
+// Minimal immutable BillingEvent, mirroring the ordering of DefaultBillingEvent
+public class SyntheticBillingEvent implements BillingEvent {
+
+    private final UUID subscriptionId;
+    private final UUID bundleId;
+    private final DateTime effectiveDate;
+    private final Plan plan;
+    private final PlanPhase planPhase;
+    private final BigDecimal recurringPrice;
+    private final Currency currency;
+    private final int billCycleDayLocal;
+    private final long totalOrdering;
+    private final SubscriptionBaseTransitionType transitionType;
+
+    public SyntheticBillingEvent(final UUID subscriptionId,
+                                 final UUID bundleId,
+                                 final DateTime effectiveDate,
+                                 final Plan plan,
+                                 final PlanPhase planPhase,
+                                 final BigDecimal recurringPrice,
+                                 final Currency currency,
+                                 final int billCycleDayLocal,
+                                 final long totalOrdering,
+                                 final SubscriptionBaseTransitionType transitionType) {
+        this.subscriptionId = subscriptionId;
+        this.bundleId = bundleId;
+        this.effectiveDate = effectiveDate;
+        this.plan = plan;
+        this.planPhase = planPhase;
+        this.recurringPrice = recurringPrice;
+        this.currency = currency;
+        this.billCycleDayLocal = billCycleDayLocal;
+        this.totalOrdering = totalOrdering;
+        this.transitionType = transitionType;
+    }
+
+    @Override
+    public UUID getSubscriptionId() {
+        return subscriptionId;
+    }
+
+    @Override
+    public UUID getBundleId() {
+        return bundleId;
+    }
+
+    @Override
+    public int getBillCycleDayLocal() {
+        return billCycleDayLocal;
+    }
+
+    @Override
+    public BillingAlignment getBillingAlignment() {
+        return BillingAlignment.ACCOUNT;
+    }
+
+    @Override
+    public DateTime getEffectiveDate() {
+        return effectiveDate;
+    }
+
+    @Override
+    public PlanPhase getPlanPhase() {
+        return planPhase;
+    }
+
+    @Override
+    public Plan getPlan() {
+        return plan;
+    }
+
+    @Override
+    public BillingPeriod getBillingPeriod() {
+        return planPhase.getRecurring().getBillingPeriod();
+    }
+
+    @Override
+    public String getDescription() {
+        return transitionType.toString();
+    }
+
+    @Override
+    public BigDecimal getFixedPrice() {
+        return null;
+    }
+
+    @Override
+    public BigDecimal getRecurringPrice(final DateTime requestedDate) {
+        return recurringPrice;
+    }
+
+    @Override
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    @Override
+    public DateTime getLastChangePlanDate() {
+        return effectiveDate;
+    }
+
+    @Override
+    public SubscriptionBaseTransitionType getTransitionType() {
+        return transitionType;
+    }
+
+    @Override
+    public Long getTotalOrdering() {
+        return totalOrdering;
+    }
+
+    @Override
+    public List<Usage> getUsages() {
+        return ImmutableList.<Usage>of();
+    }
+
+    @Override
+    public DateTime getCatalogEffectiveDate() {
+        return null;
+    }
+
+    @Override
+    public int compareTo(final BillingEvent e1) {
+        if (!getSubscriptionId().equals(e1.getSubscriptionId())) {
+            return getSubscriptionId().compareTo(e1.getSubscriptionId());
+        } else if (!getEffectiveDate().equals(e1.getEffectiveDate())) {
+            return getEffectiveDate().compareTo(e1.getEffectiveDate());
+        } else {
+            return getTotalOrdering().compareTo(e1.getTotalOrdering());
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.benchmarks.subscription;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.killbill.billing.catalog.api.ProductCategory;
+import org.killbill.billing.subscription.api.user.DefaultSubscriptionBase;
+import org.killbill.billing.subscription.engine.dao.SubscriptionDaoUtils;
+import org.killbill.billing.subscription.engine.dao.model.SubscriptionBundleModelDao;
+import org.killbill.billing.subscription.engine.dao.model.SubscriptionModelDao;
+import org.killbill.billing.subscription.events.SubscriptionBaseEvent;
+import org.killbill.billing.subscription.events.phase.PhaseEventBuilder;
+import org.killbill.billing.subscription.events.phase.PhaseEventData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.base.Function;
+import com.google.common.base.Predicate;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Collections2;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Multimap;
+
+/**
+ * Grouping of the rows loaded by DefaultSubscriptionDao#getSubscriptionsForAccount for a large account: nbBundles bundles with
+ * nbSubscriptionsPerBundle subscriptions each (one BASE, the rest ADD_ON) and nbEventsPerSubscription events per subscription.
+ * <p/>
+ * The legacy approach scans all the bundles and all the account events for each subscription, the indexed one
+ * (SubscriptionDaoUtils) does a single pass over each list. The per-subscription rebuild, which is linear in both cases, isn't measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class AccountSubscriptionsBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    public int nbBundles;
+
+    @Param({"2"})
+    public int nbSubscriptionsPerBundle;
+
+    @Param({"15"})
+    public int nbEventsPerSubscription;
+
+    private List<SubscriptionBundleModelDao> bundleModels;
+    private List<SubscriptionModelDao> subscriptionModels;
+    private List<SubscriptionBaseEvent> eventsForAccount;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final DateTime startDate = new DateTime(2010, 1, 1, 0, 0, DateTimeZone.UTC);
+        final UUID accountId = UUID.randomUUID();
+
+        bundleModels = new ArrayList<SubscriptionBundleModelDao>(nbBundles);
+        subscriptionModels = new ArrayList<SubscriptionModelDao>(nbBundles * nbSubscriptionsPerBundle);
+        for (int i = 0; i < nbBundles; i++) {
+            final SubscriptionBundleModelDao bundleModel = new SubscriptionBundleModelDao(UUID.randomUUID(), "bundle-" + i, accountId, startDate, startDate, startDate, startDate);
+            bundleModels.add(bundleModel);
+            for (int j = 0; j < nbSubscriptionsPerBundle; j++) {
+                final ProductCategory category = j == 0 ? ProductCategory.BASE : ProductCategory.ADD_ON;
+                subscriptionModels.add(new SubscriptionModelDao(UUID.randomUUID(), bundleModel.getId(), category, startDate, startDate, null, false, startDate, startDate));
+            }
+        }
+
+        // Events are returned ordered by effective date across the account, i.e. interleaved between subscriptions
+        eventsForAccount = new ArrayList<SubscriptionBaseEvent>(subscriptionModels.size() * nbEventsPerSubscription);
+        long totalOrdering = 0;
+        for (int k = 0; k < nbEventsPerSubscription; k++) {
+            final DateTime effectiveDate = startDate.plusMonths(k);
+            for (final SubscriptionModelDao subscriptionModel : subscriptionModels) {
+                eventsForAccount.add(new PhaseEventData(new PhaseEventBuilder().setPhaseName("phase-" + k)
+                                                                               .setSubscriptionId(subscriptionModel.getId())
+                                                                               .setTotalOrdering(++totalOrdering)
+                                                                               .setEffectiveDate(effectiveDate)
+                                                                               .setCreatedDate(startDate)
+                                                                               .setUpdatedDate(startDate)));
+            }
+        }
+    }
+
+    @Benchmark
+    public Map<UUID, Multimap<UUID, SubscriptionBaseEvent>> legacy() {
+        final List<DefaultSubscriptionBase> allSubscriptions = new ArrayList<DefaultSubscriptionBase>(Collections2.transform(subscriptionModels, new Function<SubscriptionModelDao, DefaultSubscriptionBase>() {
+            @Override
+            public DefaultSubscriptionBase apply(final SubscriptionModelDao input) {
+                final SubscriptionBundleModelDao bundleModel = Iterables.find(bundleModels, new Predicate<SubscriptionBundleModelDao>() {
+                    @Override
+                    public boolean apply(final SubscriptionBundleModelDao bundleInput) {
+                        return bundleInput.getId().equals(input.getBundleId());
+                    }
+                });
+                return SubscriptionModelDao.toSubscription(input, bundleModel.getExternalKey());
+            }
+        }));
+
+        final Map<UUID, List<DefaultSubscriptionBase>> subscriptionsFromAccountId = new HashMap<UUID, List<DefaultSubscriptionBase>>();
+        for (final DefaultSubscriptionBase subscriptionBase : allSubscriptions) {
+            if (subscriptionsFromAccountId.get(subscriptionBase.getBundleId()) == null) {
+                subscriptionsFromAccountId.put(subscriptionBase.getBundleId(), new LinkedList<DefaultSubscriptionBase>());
+            }
+            subscriptionsFromAccountId.get(subscriptionBase.getBundleId()).add(subscriptionBase);
+        }
+
+        final Map<UUID, Multimap<UUID, SubscriptionBaseEvent>> result = new HashMap<UUID, Multimap<UUID, SubscriptionBaseEvent>>();
+        for (final UUID bundleId : subscriptionsFromAccountId.keySet()) {
+            final Multimap<UUID, SubscriptionBaseEvent> eventsForSubscriptions = ArrayListMultimap.create();
+            for (final DefaultSubscriptionBase cur : subscriptionsFromAccountId.get(bundleId)) {
+                final Collection<SubscriptionBaseEvent> events = Collections2.filter(eventsForAccount, new Predicate<SubscriptionBaseEvent>() {
+                    @Override
+                    public boolean apply(final SubscriptionBaseEvent input) {
+                        return input.getSubscriptionId().equals(cur.getId());
+                    }
+                });
+                eventsForSubscriptions.putAll(cur.getId(), ImmutableList.copyOf(events));
+            }
+            result.put(bundleId, eventsForSubscriptions);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public Map<UUID, Multimap<UUID, SubscriptionBaseEvent>> indexed() {
+        final Map<UUID, List<DefaultSubscriptionBase>> subscriptionsFromAccountId = SubscriptionDaoUtils.groupSubscriptionsByBundleId(subscriptionModels, bundleModels);
+        final Multimap<UUID, SubscriptionBaseEvent> eventsForSubscriptions = SubscriptionDaoUtils.indexEventsBySubscriptionId(eventsForAccount);
+
+        final Map<UUID, Multimap<UUID, SubscriptionBaseEvent>> result = new HashMap<UUID, Multimap<UUID, SubscriptionBaseEvent>>();
+        for (final UUID bundleId : subscriptionsFromAccountId.keySet()) {
+            result.put(bundleId, eventsForSubscriptions);
+        }
+        return result;
+    }
+}
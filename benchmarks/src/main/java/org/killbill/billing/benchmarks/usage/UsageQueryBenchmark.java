@@ -0,0 +1,229 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.benchmarks.usage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.LocalDate;
+import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.usage.api.RolledUpUsage;
+import org.killbill.billing.usage.api.svcs.DefaultInternalUserApi;
+import org.killbill.billing.usage.api.user.RolledUpUsageUtils;
+import org.killbill.billing.usage.dao.RolledUpUsageDailyModelDao;
+import org.killbill.billing.usage.dao.RolledUpUsageDailyTrackingIdModelDao;
+import org.killbill.billing.usage.dao.RolledUpUsageDao;
+import org.killbill.billing.usage.dao.RolledUpUsageModelDao;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.SetMultimap;
+
+/**
+ * Usage retrieval for one invoice run: N subscriptions with daily usage, billed over M monthly intervals.
+ * <p/>
+ * The DAO is stubbed: each query burns {@code queryCost} tokens to stand for the database round trip, and the number of
+ * queries is reported through the {@code queries} auxiliary counter. The legacy approach issues one query per subscription
+ * and interval, {@code perSubscription} one range query per subscription and {@code allSubscriptions} a single query for the run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class UsageQueryBenchmark {
+
+    private static final List<String> UNIT_TYPES = ImmutableList.<String>of("cpu", "memory", "bandwidth");
+
+    @Param({"10", "100", "1000"})
+    public int nbSubscriptions;
+
+    @Param({"1", "12"})
+    public int nbIntervals;
+
+    @Param({"10000"})
+    public long queryCost;
+
+    private List<UUID> subscriptionIds;
+    private List<LocalDate> transitionTimes;
+    private InternalTenantContext context;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class QueryCounter {
+
+        public long queries;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            queries = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        subscriptionIds = new ArrayList<UUID>(nbSubscriptions);
+        for (int i = 0; i < nbSubscriptions; i++) {
+            subscriptionIds.add(UUID.randomUUID());
+        }
+
+        final LocalDate startDate = new LocalDate(2019, 1, 1);
+        final ImmutableList.Builder<LocalDate> transitionTimesBuilder = ImmutableList.<LocalDate>builder();
+        for (int m = 0; m <= nbIntervals; m++) {
+            transitionTimesBuilder.add(startDate.plusMonths(m));
+        }
+        transitionTimes = transitionTimesBuilder.build();
+
+        context = new InternalTenantContext(1L);
+    }
+
+    @Benchmark
+    public void legacy(final QueryCounter counter, final Blackhole blackhole) {
+        final RolledUpUsageDao dao = new StubRolledUpUsageDao(counter);
+        for (final UUID subscriptionId : subscriptionIds) {
+            final List<RolledUpUsage> result = new ArrayList<RolledUpUsage>(nbIntervals);
+            for (int i = 0; i < transitionTimes.size() - 1; i++) {
+                final List<LocalDate> interval = transitionTimes.subList(i, i + 2);
+                final List<RolledUpUsageDailyModelDao> dailyUsage = dao.getDailyUsageForSubscription(subscriptionId, interval.get(0), interval.get(1), context);
+                result.addAll(RolledUpUsageUtils.getRolledUpUsage(subscriptionId, interval, dailyUsage));
+            }
+            blackhole.consume(result);
+        }
+    }
+
+    @Benchmark
+    public void perSubscription(final QueryCounter counter, final Blackhole blackhole) {
+        final DefaultInternalUserApi internalUserApi = new DefaultInternalUserApi(new StubRolledUpUsageDao(counter));
+        for (final UUID subscriptionId : subscriptionIds) {
+            blackhole.consume(internalUserApi.getAllUsageForSubscriptions(ImmutableSet.<UUID>of(subscriptionId), transitionTimes, context));
+        }
+    }
+
+    @Benchmark
+    public Map<UUID, List<RolledUpUsage>> allSubscriptions(final QueryCounter counter) {
+        final DefaultInternalUserApi internalUserApi = new DefaultInternalUserApi(new StubRolledUpUsageDao(counter));
+        return internalUserApi.getAllUsageForSubscriptions(subscriptionIds, transitionTimes, context);
+    }
+
+    // One row per subscription, unit type and day, as the daily aggregates table would return
+    private final class StubRolledUpUsageDao implements RolledUpUsageDao {
+
+        private final QueryCounter counter;
+
+        private StubRolledUpUsageDao(final QueryCounter counter) {
+            this.counter = counter;
+        }
+
+        private void query() {
+            counter.queries++;
+            Blackhole.consumeCPU(queryCost);
+        }
+
+        private void addDailyUsage(final List<RolledUpUsageDailyModelDao> result, final UUID subscriptionId, final LocalDate startDate, final LocalDate endDate) {
+            for (LocalDate day = startDate; day.isBefore(endDate); day = day.plusDays(1)) {
+                for (final String unitType : UNIT_TYPES) {
+                    result.add(new RolledUpUsageDailyModelDao(subscriptionId, unitType, day, 10L, 10L));
+                }
+            }
+        }
+
+        @Override
+        public List<RolledUpUsageDailyModelDao> getDailyUsageForSubscription(final UUID subscriptionId, final LocalDate startDate, final LocalDate endDate, final InternalTenantContext context) {
+            query();
+            final List<RolledUpUsageDailyModelDao> result = new ArrayList<RolledUpUsageDailyModelDao>();
+            addDailyUsage(result, subscriptionId, startDate, endDate);
+            return result;
+        }
+
+        @Override
+        public List<RolledUpUsageDailyModelDao> getDailyUsageForSubscriptions(final Collection<UUID> subscriptionIds, final LocalDate startDate, final LocalDate endDate, final InternalTenantContext context) {
+            query();
+            final List<RolledUpUsageDailyModelDao> result = new ArrayList<RolledUpUsageDailyModelDao>();
+            for (final UUID subscriptionId : subscriptionIds) {
+                addDailyUsage(result, subscriptionId, startDate, endDate);
+            }
+            return result;
+        }
+
+        @Override
+        public void record(final Iterable<RolledUpUsageModelDao> usages, final InternalCallContext context) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void record(final ListMultimap<InternalCallContext, RolledUpUsageModelDao> usagesByContext) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Boolean recordsWithTrackingIdExist(final UUID subscriptionId, final String trackingId, final InternalTenantContext context) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public SetMultimap<UUID, String> getTrackingIdsBySubscriptionId(final Collection<String> trackingIds, final InternalTenantContext context) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<RolledUpUsageModelDao> getUsageForSubscription(final UUID subscriptionId, final LocalDate startDate, final LocalDate endDate, final String unitType, final InternalTenantContext context) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<RolledUpUsageModelDao> getAllUsageForSubscription(final UUID subscriptionId, final LocalDate startDate, final LocalDate endDate, final InternalTenantContext context) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<RolledUpUsageModelDao> getRawUsageForAccount(final LocalDate startDate, final LocalDate endDate, final InternalTenantContext context) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<RolledUpUsageDailyModelDao> getDailyUsageForAccount(final LocalDate startDate, final LocalDate endDate, final InternalTenantContext context) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<RolledUpUsageDailyTrackingIdModelDao> getTrackingIdsForAccount(final LocalDate startDate, final LocalDate endDate, final InternalTenantContext context) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
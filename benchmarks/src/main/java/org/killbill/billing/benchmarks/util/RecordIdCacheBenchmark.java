@@ -0,0 +1,125 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.benchmarks.util;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.configuration.MutableConfiguration;
+
+import org.killbill.billing.ObjectType;
+import org.killbill.billing.util.cache.BaseCacheLoader;
+import org.killbill.billing.util.cache.Cachable.CacheType;
+import org.killbill.billing.util.cache.CacheLoaderArgument;
+import org.killbill.billing.util.cache.KillBillCacheController;
+import org.killbill.billing.util.cache.PrimitiveKeyedCacheController;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cache hits on the record-id cache, as done by NonEntityDao for every internal context: String key and
+ * CacheLoaderArgument built for each lookup against Ehcache (JCache), vs the UUID bits against the in-process tier.
+ * Run with -prof gc to compare the allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(4)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class RecordIdCacheBenchmark {
+
+    @Param({"1000", "100000"})
+    public int nbEntries;
+
+    private CacheManager cacheManager;
+    private KillBillCacheController<String, Long> jcacheController;
+    private PrimitiveKeyedCacheController<Long> primitiveKeyedController;
+    private UUID[] objectIds;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int next;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        cacheManager = Caching.getCachingProvider("org.ehcache.jsr107.EhcacheCachingProvider").getCacheManager();
+        final Cache<String, Long> cache = cacheManager.createCache("record-id-benchmark-" + nbEntries,
+                                                                   new MutableConfiguration<String, Long>().setTypes(String.class, Long.class)
+                                                                                                           .setStoreByValue(false));
+        final BaseCacheLoader<String, Long> cacheLoader = new BaseCacheLoader<String, Long>() {
+            @Override
+            public CacheType getCacheType() {
+                return CacheType.RECORD_ID;
+            }
+
+            @Override
+            public Long compute(final String key, final CacheLoaderArgument cacheLoaderArgument) {
+                throw new IllegalStateException("All keys should be cached");
+            }
+        };
+        jcacheController = new KillBillCacheController<String, Long>(cache, cacheLoader);
+        primitiveKeyedController = new PrimitiveKeyedCacheController<Long>(new KillBillCacheController<String, Long>(cache, cacheLoader), 2 * nbEntries);
+
+        objectIds = new UUID[nbEntries];
+        for (int i = 0; i < nbEntries; i++) {
+            objectIds[i] = UUID.randomUUID();
+            primitiveKeyedController.putIfAbsent(objectIds[i], (long) i + 1);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        cacheManager.close();
+    }
+
+    @Benchmark
+    public Long jcacheLookup(final Cursor cursor) {
+        final UUID objectId = nextObjectId(cursor);
+        return jcacheController.get(objectId.toString(), new CacheLoaderArgument(ObjectType.ACCOUNT));
+    }
+
+    @Benchmark
+    public Long primitiveKeyedLookup(final Cursor cursor) {
+        return primitiveKeyedController.get(nextObjectId(cursor), ObjectType.ACCOUNT);
+    }
+
+    private UUID nextObjectId(final Cursor cursor) {
+        final UUID objectId = objectIds[cursor.next];
+        cursor.next = cursor.next + 1 == objectIds.length ? 0 : cursor.next + 1;
+        return objectId;
+    }
+}
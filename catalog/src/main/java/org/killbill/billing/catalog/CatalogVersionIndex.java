@@ -0,0 +1,164 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.catalog;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import org.joda.time.DateTime;
+import org.killbill.billing.catalog.api.Plan;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+//
+// Immutable lookup structures over the (sorted) versions of a DefaultVersionedCatalog, built once when the catalog is loaded:
+// the effective dates can be binary searched and, for each plan name, we know upfront which versions define it (no need to probe
+// each version and rely on CatalogApiException when the plan has been retired).
+//
+class CatalogVersionIndex {
+
+    private final List<StandaloneCatalog> versions;
+    private final long[] effectiveDates;
+    private final DateTime[] utcEffectiveDates;
+    private final Map<String, PlanVersions> planVersionsByName;
+
+    CatalogVersionIndex(final List<StandaloneCatalog> versions) {
+        this.versions = ImmutableList.<StandaloneCatalog>copyOf(versions);
+        this.effectiveDates = new long[versions.size()];
+        this.utcEffectiveDates = new DateTime[versions.size()];
+
+        final Map<String, List<Integer>> versionIndexesByPlanName = new HashMap<String, List<Integer>>();
+        for (int i = 0; i < versions.size(); i++) {
+            final StandaloneCatalog version = versions.get(i);
+            effectiveDates[i] = version.getEffectiveDate().getTime();
+            utcEffectiveDates[i] = CatalogDateHelper.toUTCDateTime(version.getEffectiveDate());
+
+            if (version.getCurrentPlans() == null) {
+                continue;
+            }
+            for (final Plan plan : version.getCurrentPlans()) {
+                List<Integer> versionIndexes = versionIndexesByPlanName.get(plan.getName());
+                if (versionIndexes == null) {
+                    versionIndexes = new ArrayList<Integer>();
+                    versionIndexesByPlanName.put(plan.getName(), versionIndexes);
+                }
+                versionIndexes.add(i);
+            }
+        }
+
+        final ImmutableMap.Builder<String, PlanVersions> builder = ImmutableMap.<String, PlanVersions>builder();
+        for (final Map.Entry<String, List<Integer>> entry : versionIndexesByPlanName.entrySet()) {
+            builder.put(entry.getKey(), new PlanVersions(entry.getKey(), entry.getValue()));
+        }
+        this.planVersionsByName = builder.build();
+    }
+
+    int size() {
+        return versions.size();
+    }
+
+    StandaloneCatalog getVersion(final int versionIndex) {
+        return versions.get(versionIndex);
+    }
+
+    DateTime getUTCEffectiveDate(final int versionIndex) {
+        return utcEffectiveDates[versionIndex];
+    }
+
+    // Index of the latest version effective on or before the date (the first version if they are all after it), -1 if there is no version
+    int indexOfVersionForDate(final long date) {
+        if (effectiveDates.length == 0) {
+            return -1;
+        }
+
+        int low = 0;
+        int high = effectiveDates.length - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (effectiveDates[mid] <= date) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return Math.max(high, 0);
+    }
+
+    @Nullable
+    PlanVersions getPlanVersions(final String planName) {
+        return planVersionsByName.get(planName);
+    }
+
+    // All the versions which define a given plan, in effective date order
+    class PlanVersions {
+
+        private final int[] versionIndexes;
+        private final Plan[] plans;
+        private final DateTime[] effectiveDatesForExistingSubscriptions;
+
+        private PlanVersions(final String planName, final List<Integer> versionIndexes) {
+            this.versionIndexes = new int[versionIndexes.size()];
+            this.plans = new Plan[versionIndexes.size()];
+            this.effectiveDatesForExistingSubscriptions = new DateTime[versionIndexes.size()];
+            for (int i = 0; i < versionIndexes.size(); i++) {
+                this.versionIndexes[i] = versionIndexes.get(i);
+                this.plans[i] = versions.get(this.versionIndexes[i]).getCatalogEntityCollectionPlan().findByName(planName);
+                this.effectiveDatesForExistingSubscriptions[i] = plans[i].getEffectiveDateForExistingSubscriptions() != null ?
+                                                                CatalogDateHelper.toUTCDateTime(plans[i].getEffectiveDateForExistingSubscriptions()) :
+                                                                null;
+            }
+        }
+
+        int size() {
+            return versionIndexes.length;
+        }
+
+        // Position of the latest entry whose version index is lower or equal than the specified one, -1 if there is none
+        int lastPositionAtOrBefore(final int versionIndex) {
+            int low = 0;
+            int high = versionIndexes.length - 1;
+            while (low <= high) {
+                final int mid = (low + high) >>> 1;
+                if (versionIndexes[mid] <= versionIndex) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return high;
+        }
+
+        int getVersionIndex(final int position) {
+            return versionIndexes[position];
+        }
+
+        Plan getPlan(final int position) {
+            return plans[position];
+        }
+
+        @Nullable
+        DateTime getEffectiveDateForExistingSubscriptions(final int position) {
+            return effectiveDatesForExistingSubscriptions[position];
+        }
+    }
+}
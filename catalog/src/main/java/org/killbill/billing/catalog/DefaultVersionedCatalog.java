@@ -58,6 +58,7 @@ import org.killbill.billing.catalog.api.Product;
 import org.killbill.billing.catalog.api.StaticCatalog;
 import org.killbill.billing.catalog.api.Unit;
 import org.killbill.billing.catalog.api.VersionedCatalog;
+import org.killbill.billing.catalog.override.DefaultPriceOverride;
 import org.killbill.clock.Clock;
 import org.killbill.xmlloader.ValidatingConfig;
 import org.killbill.xmlloader.ValidationError;
@@ -78,6 +79,9 @@ public class DefaultVersionedCatalog extends ValidatingConfig<DefaultVersionedCa
     @XmlElement(required = true)
     private String catalogName;
 
+    // Built when the catalog is loaded (and lazily rebuilt if versions are added afterwards)
+    private volatile CatalogVersionIndex versionIndex;
+
     // Required for JAXB deserialization
     public DefaultVersionedCatalog() {
         this.clock = null;
@@ -92,47 +96,99 @@ public class DefaultVersionedCatalog extends ValidatingConfig<DefaultVersionedCa
     //
     // Private methods
     //
-    private StandaloneCatalog versionForDate(final DateTime date) throws CatalogApiException {
-        return versions.get(indexOfVersionForDate(date.toDate()));
-    }
-
-    private List<StandaloneCatalog> versionsBeforeDate(final Date date) throws CatalogApiException {
-        final List<StandaloneCatalog> result = new ArrayList<StandaloneCatalog>();
-        final int index = indexOfVersionForDate(date);
-        for (int i = 0; i <= index; i++) {
-            result.add(versions.get(i));
+    private CatalogVersionIndex getVersionIndex() {
+        CatalogVersionIndex result = versionIndex;
+        if (result == null || result.size() != versions.size()) {
+            result = new CatalogVersionIndex(versions);
+            versionIndex = result;
         }
         return result;
     }
 
-    private int indexOfVersionForDate(final Date date) throws CatalogApiException {
-        for (int i = versions.size() - 1; i >= 0; i--) {
-            final StandaloneCatalog c = versions.get(i);
-            if (c.getEffectiveDate().getTime() <= date.getTime()) {
-                return i;
-            }
-        }
+    private StandaloneCatalog versionForDate(final DateTime date) throws CatalogApiException {
+        final CatalogVersionIndex index = getVersionIndex();
+        return index.getVersion(indexOfVersionForDate(index, date.toDate()));
+    }
+
+    private int indexOfVersionForDate(final CatalogVersionIndex index, final Date date) throws CatalogApiException {
         // If the only version we have are after the input date, we return the first version
         // This is not strictly correct from an api point of view, but there is no real good use case
         // where the system would ask for the catalog for a date prior any catalog was uploaded and
         // yet time manipulation could end of inn that state -- see https://github.com/killbill/killbill/issues/760
-        if (!versions.isEmpty()) {
-            return 0;
+        final int result = index.indexOfVersionForDate(date.getTime());
+        if (result < 0) {
+            throw new CatalogApiException(ErrorCode.CAT_NO_CATALOG_FOR_GIVEN_DATE, date.toString());
         }
-        throw new CatalogApiException(ErrorCode.CAT_NO_CATALOG_FOR_GIVEN_DATE, date.toString());
+        return result;
     }
 
     private CatalogPlanEntry findCatalogPlanEntry(final PlanRequestWrapper wrapper,
                                                   final DateTime requestedDate,
                                                   final DateTime subscriptionChangePlanDate) throws CatalogApiException {
-        final List<StandaloneCatalog> catalogs = versionsBeforeDate(requestedDate.toDate());
-        if (catalogs.isEmpty()) {
-            throw new CatalogApiException(ErrorCode.CAT_NO_CATALOG_FOR_GIVEN_DATE, requestedDate.toDate().toString());
+        final CatalogVersionIndex index = getVersionIndex();
+        final int lastVersionIndex = indexOfVersionForDate(index, requestedDate.toDate());
+
+        final String indexedPlanName = wrapper.getIndexedPlanName();
+        final CatalogPlanEntry entry = indexedPlanName != null ?
+                                       findIndexedCatalogPlanEntry(index, index.getPlanVersions(indexedPlanName), lastVersionIndex, requestedDate, subscriptionChangePlanDate) :
+                                       findCatalogPlanEntry(index, wrapper, lastVersionIndex, requestedDate, subscriptionChangePlanDate);
+        if (entry != null) {
+            return entry;
+        }
+
+        final PlanSpecifier spec = wrapper.getSpec();
+        throw new CatalogApiException(ErrorCode.CAT_PLAN_NOT_FOUND,
+                                      spec.getPlanName() != null ? spec.getPlanName() : "undefined",
+                                      spec.getProductName() != null ? spec.getProductName() : "undefined",
+                                      spec.getBillingPeriod() != null ? spec.getBillingPeriod() : "undefined",
+                                      spec.getPriceListName() != null ? spec.getPriceListName() : "undefined");
+    }
+
+    // Plan looked up by name: only the versions defining it are visited
+    private CatalogPlanEntry findIndexedCatalogPlanEntry(final CatalogVersionIndex index,
+                                                         @Nullable final CatalogVersionIndex.PlanVersions planVersions,
+                                                         final int lastVersionIndex,
+                                                         final DateTime requestedDate,
+                                                         final DateTime subscriptionChangePlanDate) {
+        if (planVersions == null) {
+            return null;
         }
 
         CatalogPlanEntry candidateInSubsequentCatalog = null;
-        for (int i = catalogs.size() - 1; i >= 0; i--) { // Working backwards to find the latest applicable plan
-            final StandaloneCatalog c = catalogs.get(i);
+        for (int i = planVersions.lastPositionAtOrBefore(lastVersionIndex); i >= 0; i--) { // Working backwards to find the latest applicable plan
+            final int versionIndex = planVersions.getVersionIndex(i);
+            final StandaloneCatalog c = index.getVersion(versionIndex);
+            final Plan plan = planVersions.getPlan(i);
+
+            final boolean oldestCatalog = (versionIndex == 0);
+            final boolean catalogOlderThanSubscriptionChangePlanDate = !subscriptionChangePlanDate.isBefore(index.getUTCEffectiveDate(versionIndex));
+            if (oldestCatalog || // Prevent issue with time granularity -- see #760
+                catalogOlderThanSubscriptionChangePlanDate) { // It's a new subscription, this plan always applies
+                return new CatalogPlanEntry(c, plan);
+            } else { // It's an existing subscription
+                final DateTime existingSubscriptionDate = planVersions.getEffectiveDateForExistingSubscriptions(i);
+                if (existingSubscriptionDate != null) { // If it is null, any change to this catalog does not apply to existing subscriptions
+                    if (requestedDate.compareTo(existingSubscriptionDate) >= 0) { // This plan is now applicable to existing subs
+                        return new CatalogPlanEntry(c, plan);
+                    }
+                } else if (candidateInSubsequentCatalog == null) {
+                    // Keep the most recent one
+                    candidateInSubsequentCatalog = new CatalogPlanEntry(c, plan);
+                }
+            }
+        }
+        return candidateInSubsequentCatalog;
+    }
+
+    // Plan looked up by product, billing period and price list, or overridden plan: each version needs to be probed
+    private CatalogPlanEntry findCatalogPlanEntry(final CatalogVersionIndex index,
+                                                  final PlanRequestWrapper wrapper,
+                                                  final int lastVersionIndex,
+                                                  final DateTime requestedDate,
+                                                  final DateTime subscriptionChangePlanDate) throws CatalogApiException {
+        CatalogPlanEntry candidateInSubsequentCatalog = null;
+        for (int i = lastVersionIndex; i >= 0; i--) { // Working backwards to find the latest applicable plan
+            final StandaloneCatalog c = index.getVersion(i);
 
             final Plan plan;
             try {
@@ -148,8 +204,7 @@ public class DefaultVersionedCatalog extends ValidatingConfig<DefaultVersionedCa
             }
 
             final boolean oldestCatalog = (i == 0);
-            final DateTime catalogEffectiveDate = CatalogDateHelper.toUTCDateTime(c.getEffectiveDate());
-            final boolean catalogOlderThanSubscriptionChangePlanDate = !subscriptionChangePlanDate.isBefore(catalogEffectiveDate);
+            final boolean catalogOlderThanSubscriptionChangePlanDate = !subscriptionChangePlanDate.isBefore(index.getUTCEffectiveDate(i));
             if (oldestCatalog || // Prevent issue with time granularity -- see #760
                 catalogOlderThanSubscriptionChangePlanDate) { // It's a new subscription, this plan always applies
                 return new CatalogPlanEntry(c, plan);
@@ -165,17 +220,7 @@ public class DefaultVersionedCatalog extends ValidatingConfig<DefaultVersionedCa
                 }
             }
         }
-
-        if (candidateInSubsequentCatalog != null) {
-            return candidateInSubsequentCatalog;
-        }
-
-        final PlanSpecifier spec = wrapper.getSpec();
-        throw new CatalogApiException(ErrorCode.CAT_PLAN_NOT_FOUND,
-                                      spec.getPlanName() != null ? spec.getPlanName() : "undefined",
-                                      spec.getProductName() != null ? spec.getProductName() : "undefined",
-                                      spec.getBillingPeriod() != null ? spec.getBillingPeriod() : "undefined",
-                                      spec.getPriceListName() != null ? spec.getPriceListName() : "undefined");
+        return candidateInSubsequentCatalog;
     }
 
     public Clock getClock() {
@@ -198,6 +243,7 @@ public class DefaultVersionedCatalog extends ValidatingConfig<DefaultVersionedCa
                 return c1.getEffectiveDate().compareTo(c2.getEffectiveDate());
             }
         });
+        versionIndex = null;
     }
 
     @Override
@@ -338,6 +384,8 @@ public class DefaultVersionedCatalog extends ValidatingConfig<DefaultVersionedCa
         //
         super.initialize(catalog);
         CatalogSafetyInitializer.initializeNonRequiredNullFieldsWithDefaultValue(this);
+        // Cached catalogs are re-initialized on each access, so the index is only built when missing
+        getVersionIndex();
     }
 
     @Override
@@ -457,6 +505,7 @@ public class DefaultVersionedCatalog extends ValidatingConfig<DefaultVersionedCa
     public void readExternal(final ObjectInput in) throws IOException, ClassNotFoundException {
         this.catalogName = in.readBoolean() ? in.readUTF() : null;
         this.versions.addAll((Collection<? extends StandaloneCatalog>) in.readObject());
+        this.versionIndex = null;
     }
 
     @Override
@@ -543,5 +592,15 @@ public class DefaultVersionedCatalog extends ValidatingConfig<DefaultVersionedCa
         public PlanSpecifier getSpec() {
             return spec;
         }
+
+        // Plan name to use for the index lookup, null if the plan is resolved from product, billing period and price list or may be an overridden plan
+        public String getIndexedPlanName() {
+            if (spec.getPlanName() == null ||
+                (overrides != null && overrides.getOverrides() != null && !overrides.getOverrides().isEmpty()) ||
+                DefaultPriceOverride.CUSTOM_PLAN_NAME_PATTERN.matcher(spec.getPlanName()).matches()) {
+                return null;
+            }
+            return spec.getPlanName();
+        }
     }
 }
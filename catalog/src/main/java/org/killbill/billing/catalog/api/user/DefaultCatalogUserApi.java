@@ -19,6 +19,7 @@ package org.killbill.billing.catalog.api.user;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.List;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
@@ -39,12 +40,16 @@ import org.killbill.billing.catalog.api.SimplePlanDescriptor;
 import org.killbill.billing.catalog.api.StaticCatalog;
 import org.killbill.billing.catalog.api.VersionedCatalog;
 import org.killbill.billing.catalog.caching.CatalogCache;
+import org.killbill.billing.catalog.io.CatalogSnapshot;
+import org.killbill.billing.catalog.io.VersionedCatalogLoader;
 import org.killbill.billing.tenant.api.TenantApiException;
+import org.killbill.billing.tenant.api.TenantInternalApi;
 import org.killbill.billing.tenant.api.TenantKV.TenantKey;
 import org.killbill.billing.tenant.api.TenantUserApi;
 import org.killbill.billing.util.callcontext.CallContext;
 import org.killbill.billing.util.callcontext.InternalCallContextFactory;
 import org.killbill.billing.util.callcontext.TenantContext;
+import org.killbill.billing.util.config.definition.CatalogConfig;
 import org.killbill.clock.Clock;
 import org.killbill.xmlloader.ValidationErrors;
 import org.killbill.xmlloader.ValidationException;
@@ -62,17 +67,23 @@ public class DefaultCatalogUserApi implements CatalogUserApi {
     private final TenantUserApi tenantApi;
     private final CatalogCache catalogCache;
     private final Clock clock;
+    private final VersionedCatalogLoader loader;
+    private final CatalogConfig catalogConfig;
 
     @Inject
     public DefaultCatalogUserApi(final CatalogService catalogService,
                                  final TenantUserApi tenantApi,
                                  final CatalogCache catalogCache,
                                  final Clock clock,
+                                 final VersionedCatalogLoader loader,
+                                 final CatalogConfig catalogConfig,
                                  final InternalCallContextFactory internalCallContextFactory) {
         this.catalogService = catalogService;
         this.tenantApi = tenantApi;
         this.catalogCache = catalogCache;
         this.clock = clock;
+        this.loader = loader;
+        this.catalogConfig = catalogConfig;
         this.internalCallContextFactory = internalCallContextFactory;
     }
 
@@ -151,6 +162,7 @@ public class DefaultCatalogUserApi implements CatalogUserApi {
             }
 
             tenantApi.addTenantKeyValue(TenantKey.CATALOG.toString(), catalogXML, callContext);
+            updateCatalogSnapshot(internalTenantContext, callContext);
             catalogCache.clearCatalog(internalTenantContext);
         } catch (final TenantApiException e) {
             throw new CatalogApiException(e);
@@ -178,6 +190,7 @@ public class DefaultCatalogUserApi implements CatalogUserApi {
                                                   new CatalogUpdater(getSafeFirstCatalogEffectiveDate(effectiveDate, callContext), null);
 
             tenantApi.updateTenantKeyValue(TenantKey.CATALOG.toString(), catalogUpdater.getCatalogXML(), callContext);
+            updateCatalogSnapshot(internalTenantContext, callContext);
             catalogCache.clearCatalog(internalTenantContext);
         } catch (TenantApiException e) {
             throw new CatalogApiException(e);
@@ -196,6 +209,7 @@ public class DefaultCatalogUserApi implements CatalogUserApi {
             catalogUpdater.addSimplePlanDescriptor(descriptor);
 
             tenantApi.updateTenantKeyValue(TenantKey.CATALOG.toString(), catalogUpdater.getCatalogXML(), callContext);
+            updateCatalogSnapshot(internalTenantContext, callContext);
             catalogCache.clearCatalog(internalTenantContext);
         } catch (TenantApiException e) {
             throw new CatalogApiException(e);
@@ -215,6 +229,26 @@ public class DefaultCatalogUserApi implements CatalogUserApi {
         }
     }
 
+    // Best effort: if the snapshot is missing or stale, the catalog is simply loaded from the XML versions
+    private void updateCatalogSnapshot(final InternalTenantContext internalTenantContext, final CallContext callContext) {
+        if (!CatalogSnapshot.isEnabled(catalogConfig)) {
+            return;
+        }
+
+        try {
+            final List<String> catalogXMLs = tenantApi.getTenantValuesForKey(TenantKey.CATALOG.toString(), callContext);
+            // Validate the full versioned catalog once, the snapshot is then trusted as-is when loading the catalog
+            final DefaultVersionedCatalog versionedCatalog = loader.load(catalogXMLs, false, internalTenantContext.getTenantRecordId());
+            tenantApi.updateTenantKeyValue(TenantInternalApi.CATALOG_SNAPSHOT_KEY, CatalogSnapshot.write(catalogConfig.getCatalogSnapshotSecret(), catalogXMLs, versionedCatalog.getVersions()), callContext);
+        } catch (final CatalogApiException e) {
+            logger.warn("Failed to build catalog snapshot for tenantRecordId='{}'", internalTenantContext.getTenantRecordId(), e);
+        } catch (final TenantApiException e) {
+            logger.warn("Failed to store catalog snapshot for tenantRecordId='{}'", internalTenantContext.getTenantRecordId(), e);
+        } catch (final IOException e) {
+            logger.warn("Failed to build catalog snapshot for tenantRecordId='{}'", internalTenantContext.getTenantRecordId(), e);
+        }
+    }
+
     private DateTime getSafeFirstCatalogEffectiveDate(@Nullable final DateTime input, final CallContext callContext) {
         // The effectiveDate for the initial version does not matter too much
         // Because of #760, we want to make that client passing a approximate date (e.g today.toDateTimeAtStartOfDay()) will find the version
@@ -31,6 +31,7 @@ import org.killbill.billing.catalog.StandaloneCatalog;
 import org.killbill.billing.catalog.StandaloneCatalogWithPriceOverride;
 import org.killbill.billing.catalog.api.Catalog;
 import org.killbill.billing.catalog.api.CatalogApiException;
+import org.killbill.billing.catalog.io.CatalogSnapshot;
 import org.killbill.billing.catalog.io.VersionedCatalogLoader;
 import org.killbill.billing.catalog.override.PriceOverride;
 import org.killbill.billing.catalog.plugin.VersionedCatalogMapper;
@@ -38,6 +39,7 @@ import org.killbill.billing.catalog.plugin.api.CatalogPluginApi;
 import org.killbill.billing.catalog.plugin.api.VersionedPluginCatalog;
 import org.killbill.billing.osgi.api.OSGIServiceRegistration;
 import org.killbill.billing.payment.api.PluginProperty;
+import org.killbill.billing.tenant.api.TenantInternalApi;
 import org.killbill.billing.util.cache.Cachable.CacheType;
 import org.killbill.billing.util.cache.CacheController;
 import org.killbill.billing.util.cache.CacheControllerDispatcher;
@@ -45,6 +47,7 @@ import org.killbill.billing.util.cache.CacheLoaderArgument;
 import org.killbill.billing.util.cache.TenantCatalogCacheLoader.LoaderCallback;
 import org.killbill.billing.util.callcontext.InternalCallContextFactory;
 import org.killbill.billing.util.callcontext.TenantContext;
+import org.killbill.billing.util.config.definition.CatalogConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -64,6 +67,8 @@ public class DefaultCatalogCache implements CatalogCache {
     private final VersionedCatalogMapper versionedCatalogMapper;
     private final PriceOverride priceOverride;
     private final InternalCallContextFactory internalCallContextFactory;
+    private final TenantInternalApi tenantInternalApi;
+    private final CatalogConfig catalogConfig;
 
     private DefaultVersionedCatalog defaultCatalog;
 
@@ -73,12 +78,16 @@ public class DefaultCatalogCache implements CatalogCache {
                                final CacheControllerDispatcher cacheControllerDispatcher,
                                final VersionedCatalogLoader loader,
                                final PriceOverride priceOverride,
+                               final TenantInternalApi tenantInternalApi,
+                               final CatalogConfig catalogConfig,
                                final InternalCallContextFactory internalCallContextFactory) {
         this.pluginRegistry = pluginRegistry;
         this.versionedCatalogMapper = versionedCatalogMapper;
         this.cacheController = cacheControllerDispatcher.getCacheController(CacheType.TENANT_CATALOG);
         this.loader = loader;
         this.priceOverride = priceOverride;
+        this.tenantInternalApi = tenantInternalApi;
+        this.catalogConfig = catalogConfig;
         this.internalCallContextFactory = internalCallContextFactory;
         this.cacheLoaderArgumentWithTemplateFiltering = initializeCacheLoaderArgument(true);
         this.cacheLoaderArgument = initializeCacheLoaderArgument(false);
@@ -215,7 +224,7 @@ public class DefaultCatalogCache implements CatalogCache {
         final LoaderCallback loaderCallback = new LoaderCallback() {
             @Override
             public Catalog loadCatalog(final List<String> catalogXMLs, final Long tenantRecordId) throws CatalogApiException {
-                return loader.load(catalogXMLs, filterTemplateCatalog, tenantRecordId);
+                return loader.load(catalogXMLs, getCatalogSnapshot(catalogXMLs, tenantRecordId), filterTemplateCatalog, tenantRecordId);
             }
         };
         final Object[] args = new Object[1];
@@ -225,6 +234,22 @@ public class DefaultCatalogCache implements CatalogCache {
         return new CacheLoaderArgument(irrelevant, args, notUsed);
     }
 
+    private List<StandaloneCatalog> getCatalogSnapshot(final List<String> catalogXMLs, final Long tenantRecordId) {
+        if (!CatalogSnapshot.isEnabled(catalogConfig)) {
+            return null;
+        }
+        final List<String> catalogSnapshots = tenantInternalApi.getTenantValuesForKey(TenantInternalApi.CATALOG_SNAPSHOT_KEY, new InternalTenantContext(tenantRecordId));
+        if (catalogSnapshots.isEmpty()) {
+            return null;
+        }
+
+        final List<StandaloneCatalog> versions = CatalogSnapshot.read(catalogConfig.getCatalogSnapshotSecret(), catalogSnapshots.get(catalogSnapshots.size() - 1), catalogXMLs);
+        if (versions == null) {
+            logger.info("Ignoring stale catalog snapshot for tenantRecordId='{}'", tenantRecordId);
+        }
+        return versions;
+    }
+
     @VisibleForTesting
     void setDefaultCatalog() {
         try {
@@ -18,7 +18,10 @@
 package org.killbill.billing.catalog.caching;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 
 import javax.inject.Inject;
@@ -46,6 +49,7 @@ import org.killbill.billing.catalog.api.Usage;
 import org.killbill.billing.catalog.api.UsagePriceOverride;
 import org.killbill.billing.catalog.dao.CatalogOverrideBlockDefinitionModelDao;
 import org.killbill.billing.catalog.dao.CatalogOverrideDao;
+import org.killbill.billing.catalog.dao.CatalogOverrideDefinitions;
 import org.killbill.billing.catalog.dao.CatalogOverridePhaseDefinitionModelDao;
 import org.killbill.billing.catalog.dao.CatalogOverrideTierDefinitionModelDao;
 import org.killbill.billing.catalog.dao.CatalogOverrideUsageDefinitionModelDao;
@@ -56,19 +60,43 @@ import org.killbill.billing.util.cache.CacheControllerDispatcher;
 import org.killbill.billing.util.cache.CacheLoaderArgument;
 import org.killbill.billing.util.cache.OverriddenPlanCacheLoader.LoaderCallback;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.base.Predicate;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 
 public class DefaultOverriddenPlanCache implements OverriddenPlanCache {
 
+    private static final String METRIC_PREFIX = "catalog.overriddenPlan.cache";
+
+    // Bounds the definitions loaded by batches but never looked up (e.g. failed account load)
+    private static final int MAX_PRELOADED_PLANS = 10000;
+    private static final int PRELOADED_PLANS_TTL_MINUTES = 5;
+
     private final CacheController<String, Plan> cacheController;
     private final LoaderCallback loaderCallback;
     private final CatalogOverrideDao overrideDao;
+    // Definitions loaded by loadOverriddenPlans, consumed when the plan is first looked up: the plan is always built by the
+    // cache loader, against the catalog version it is looked up from, whether or not its definitions were loaded by a batch
+    private final Cache<String, CatalogOverrideDefinitions> preloadedDefinitions = CacheBuilder.newBuilder()
+                                                                                             .maximumSize(MAX_PRELOADED_PLANS)
+                                                                                             .expireAfterWrite(PRELOADED_PLANS_TTL_MINUTES, TimeUnit.MINUTES)
+                                                                                             .build();
+    private final Counter misses;
+    private final Histogram missesPerBatch;
 
     @Inject
-    public DefaultOverriddenPlanCache(final CatalogOverrideDao overrideDao, final CacheControllerDispatcher cacheControllerDispatcher) {
+    public DefaultOverriddenPlanCache(final CatalogOverrideDao overrideDao, final CacheControllerDispatcher cacheControllerDispatcher, final MetricRegistry metricRegistry) {
         this.overrideDao = overrideDao;
         this.cacheController = cacheControllerDispatcher.getCacheController(CacheType.OVERRIDDEN_PLAN);
+        // Plans whose definitions are loaded one by one (i.e. not loaded by a batch beforehand)
+        this.misses = metricRegistry.counter(MetricRegistry.name(METRIC_PREFIX, "misses"));
+        // Plans missing from the cache, per batch (one batch per account subscriptions load, e.g. invoice run)
+        this.missesPerBatch = metricRegistry.histogram(MetricRegistry.name(METRIC_PREFIX, "missesPerBatch"));
         this.loaderCallback = new LoaderCallback() {
             @Override
             public Plan loadPlan(final String planName, final StaticCatalog catalog, final InternalTenantContext context) throws CatalogApiException {
@@ -90,6 +118,26 @@ public class DefaultOverriddenPlanCache implements OverriddenPlanCache {
         return defaultPlan;
     }
 
+    @Override
+    public void loadOverriddenPlans(final Iterable<String> planNames, final InternalTenantContext context) {
+        final Map<Long, String> missingPlanNames = new LinkedHashMap<Long, String>();
+        for (final String planName : planNames) {
+            final Matcher m = DefaultPriceOverride.CUSTOM_PLAN_NAME_PATTERN.matcher(planName);
+            if (m.matches() && !cacheController.isKeyInCache(planName)) {
+                missingPlanNames.put(Long.parseLong(m.group(2)), planName);
+            }
+        }
+        missesPerBatch.update(missingPlanNames.size());
+        if (missingPlanNames.isEmpty()) {
+            return;
+        }
+
+        final CatalogOverrideDefinitions definitions = overrideDao.getOverriddenPlanDefinitions(missingPlanNames.keySet(), context);
+        for (final String planName : missingPlanNames.values()) {
+            preloadedDefinitions.put(planName, definitions);
+        }
+    }
+
     @Override
     public void addDryRunPlan(final String planName, final Plan plan) {
         cacheController.putIfAbsent(planName, plan);
@@ -103,15 +151,23 @@ public class DefaultOverriddenPlanCache implements OverriddenPlanCache {
         final String parentPlanName = m.group(1);
         final Long planDefRecordId = Long.parseLong(m.group(2));
 
-        final List<CatalogOverridePhaseDefinitionModelDao> phaseDefs = overrideDao.getOverriddenPlanPhases(planDefRecordId, context);
+        CatalogOverrideDefinitions definitions = preloadedDefinitions.asMap().remove(planName);
+        if (definitions == null) {
+            misses.inc();
+            definitions = overrideDao.getOverriddenPlanDefinitions(ImmutableList.<Long>of(planDefRecordId), context);
+        }
+        return buildOverriddenPlan(planName, planDefRecordId, parentPlanName, definitions, catalog);
+    }
+
+    private DefaultPlan buildOverriddenPlan(final String planName, final Long planDefRecordId, final String parentPlanName, final CatalogOverrideDefinitions definitions, final StandaloneCatalog catalog) throws CatalogApiException {
         final DefaultPlan defaultPlan = catalog.findCurrentPlan(parentPlanName);
-        final PlanPhasePriceOverride[] overrides = createOverrides(defaultPlan, phaseDefs, context);
+        final PlanPhasePriceOverride[] overrides = createOverrides(defaultPlan, definitions.getOverriddenPlanPhases(planDefRecordId), definitions);
         final DefaultPlan result = new DefaultPlan(catalog, planName, defaultPlan, overrides);
         result.initialize(catalog);
         return result;
     }
 
-    private PlanPhasePriceOverride[] createOverrides(final Plan defaultPlan, final List<CatalogOverridePhaseDefinitionModelDao> phaseDefs, final InternalTenantContext context) {
+    private PlanPhasePriceOverride[] createOverrides(final Plan defaultPlan, final List<CatalogOverridePhaseDefinitionModelDao> phaseDefs, final CatalogOverrideDefinitions definitions) {
 
         final PlanPhasePriceOverride[] result = new PlanPhasePriceOverride[defaultPlan.getAllPhases().length];
 
@@ -125,7 +181,7 @@ public class DefaultOverriddenPlanCache implements OverriddenPlanCache {
             }).orNull();
 
             if (overriddenPhase != null) {
-                List<UsagePriceOverride> usagePriceOverrides = getUsagePriceOverrides(curPhase, overriddenPhase, context);
+                List<UsagePriceOverride> usagePriceOverrides = getUsagePriceOverrides(curPhase, overriddenPhase, definitions);
                 result[i] = new DefaultPlanPhasePriceOverride(curPhase.getName(), Currency.valueOf(overriddenPhase.getCurrency()), overriddenPhase.getFixedPrice(), overriddenPhase.getRecurringPrice(), usagePriceOverrides);
             } else {
                 result[i] = null;
@@ -134,10 +190,10 @@ public class DefaultOverriddenPlanCache implements OverriddenPlanCache {
         return result;
     }
 
-    List<UsagePriceOverride> getUsagePriceOverrides(PlanPhase curPhase, CatalogOverridePhaseDefinitionModelDao overriddenPhase, final InternalTenantContext context) {
+    List<UsagePriceOverride> getUsagePriceOverrides(PlanPhase curPhase, CatalogOverridePhaseDefinitionModelDao overriddenPhase, final CatalogOverrideDefinitions definitions) {
 
         final List<UsagePriceOverride> usagePriceOverrides = new ArrayList<UsagePriceOverride>();
-        final List<CatalogOverrideUsageDefinitionModelDao> usageDefs = overrideDao.getOverriddenPhaseUsages(overriddenPhase.getRecordId(), context);
+        final List<CatalogOverrideUsageDefinitionModelDao> usageDefs = definitions.getOverriddenPhaseUsages(overriddenPhase.getRecordId());
 
         for (int i = 0; i < curPhase.getUsages().length; i++) {
             final Usage curUsage = curPhase.getUsages()[i];
@@ -149,18 +205,18 @@ public class DefaultOverriddenPlanCache implements OverriddenPlanCache {
             }).orNull();
 
             if (overriddenUsage != null) {
-                List<TierPriceOverride> tierPriceOverrides = getTierPriceOverrides(curUsage, overriddenUsage, context);
+                List<TierPriceOverride> tierPriceOverrides = getTierPriceOverrides(curUsage, overriddenUsage, definitions);
                 usagePriceOverrides.add(new DefaultUsagePriceOverride(overriddenUsage.getParentUsageName(), curUsage.getUsageType(), tierPriceOverrides));
             }
         }
         return usagePriceOverrides;
     }
 
-    List<TierPriceOverride> getTierPriceOverrides(Usage curUsage, CatalogOverrideUsageDefinitionModelDao overriddenUsage, final InternalTenantContext context) {
+    List<TierPriceOverride> getTierPriceOverrides(Usage curUsage, CatalogOverrideUsageDefinitionModelDao overriddenUsage, final CatalogOverrideDefinitions definitions) {
 
         final List<TierPriceOverride> tierPriceOverrides = new ArrayList<TierPriceOverride>();
 
-        final List<CatalogOverrideTierDefinitionModelDao> tierDefs = overrideDao.getOverriddenUsageTiers(overriddenUsage.getRecordId(), context);
+        final List<CatalogOverrideTierDefinitionModelDao> tierDefs = definitions.getOverriddenUsageTiers(overriddenUsage.getRecordId());
         for (int i = 0; i < curUsage.getTiers().length; i++) {
             final Tier curTier = curUsage.getTiers()[i];
             final TieredBlock[] curTieredBlocks = curTier.getTieredBlocks();
@@ -168,7 +224,7 @@ public class DefaultOverriddenPlanCache implements OverriddenPlanCache {
             final CatalogOverrideTierDefinitionModelDao overriddenTier = Iterables.tryFind(tierDefs, new Predicate<CatalogOverrideTierDefinitionModelDao>() {
                 @Override
                 public boolean apply(final CatalogOverrideTierDefinitionModelDao input) {
-                    final List<CatalogOverrideBlockDefinitionModelDao> blockDefs = overrideDao.getOverriddenTierBlocks(input.getRecordId(), context);
+                    final List<CatalogOverrideBlockDefinitionModelDao> blockDefs = definitions.getOverriddenTierBlocks(input.getRecordId());
                     for (CatalogOverrideBlockDefinitionModelDao blockDef : blockDefs) {
                         String unitName = blockDef.getParentUnitName();
                         Double max = blockDef.getMax();
@@ -188,17 +244,17 @@ public class DefaultOverriddenPlanCache implements OverriddenPlanCache {
             }).orNull();
 
             if (overriddenTier != null) {
-                List<TieredBlockPriceOverride> tieredBlockPriceOverrides = getTieredBlockPriceOverrides(curTier, overriddenTier, context);
+                List<TieredBlockPriceOverride> tieredBlockPriceOverrides = getTieredBlockPriceOverrides(curTier, overriddenTier, definitions);
                 tierPriceOverrides.add(new DefaultTierPriceOverride(tieredBlockPriceOverrides));
             }
         }
         return tierPriceOverrides;
     }
 
-    List<TieredBlockPriceOverride> getTieredBlockPriceOverrides(Tier curTier, CatalogOverrideTierDefinitionModelDao overriddenTier, final InternalTenantContext context) {
+    List<TieredBlockPriceOverride> getTieredBlockPriceOverrides(Tier curTier, CatalogOverrideTierDefinitionModelDao overriddenTier, final CatalogOverrideDefinitions definitions) {
 
         final List<TieredBlockPriceOverride> blockPriceOverrides = new ArrayList<TieredBlockPriceOverride>();
-        final List<CatalogOverrideBlockDefinitionModelDao> blockDefs = overrideDao.getOverriddenTierBlocks(overriddenTier.getRecordId(), context);
+        final List<CatalogOverrideBlockDefinitionModelDao> blockDefs = definitions.getOverriddenTierBlocks(overriddenTier.getRecordId());
 
         for (int i = 0; i < curTier.getTieredBlocks().length; i++) {
             final TieredBlock curTieredBlock = curTier.getTieredBlocks()[i];
@@ -27,5 +27,9 @@ public interface OverriddenPlanCache {
 
     DefaultPlan getOverriddenPlan(final String planName, final StandaloneCatalog catalog, final InternalTenantContext context) throws CatalogApiException;
 
+    // Loads the definitions of the overridden plans (amongst the specified plan names) which aren't cached yet, in a single pass:
+    // the plans are then built on lookup, against the catalog version they are looked up from (same as getOverriddenPlan)
+    void loadOverriddenPlans(final Iterable<String> planNames, final InternalTenantContext context);
+
     void addDryRunPlan(final String planName, final Plan plan);
 }
@@ -34,6 +34,8 @@ public class CatalogOverrideBlockDefinitionModelDao {
     private DateTime createdDate;
     private String createdBy;
     private Long tenantRecordId;
+    // Only populated by the batch queries (definitions are shared across tier definitions)
+    private Long targetTierDefRecordId;
 
     public Long getRecordId() {
         return recordId;
@@ -123,6 +125,14 @@ public class CatalogOverrideBlockDefinitionModelDao {
         this.tenantRecordId = tenantRecordId;
     }
 
+    public Long getTargetTierDefRecordId() {
+        return targetTierDefRecordId;
+    }
+
+    public void setTargetTierDefRecordId(Long targetTierDefRecordId) {
+        this.targetTierDefRecordId = targetTierDefRecordId;
+    }
+
     public CatalogOverrideBlockDefinitionModelDao() {
     }
 
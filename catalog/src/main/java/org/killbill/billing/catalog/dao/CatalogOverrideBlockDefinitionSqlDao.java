@@ -18,6 +18,7 @@
 package org.killbill.billing.catalog.dao;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 
 import org.killbill.billing.callcontext.InternalCallContext;
@@ -29,6 +30,7 @@ import org.skife.jdbi.v2.sqlobject.SqlQuery;
 import org.skife.jdbi.v2.sqlobject.SqlUpdate;
 import org.skife.jdbi.v2.sqlobject.mixins.CloseMe;
 import org.skife.jdbi.v2.sqlobject.mixins.Transactional;
+import org.skife.jdbi.v2.unstable.BindIn;
 
 @KillBillSqlDaoStringTemplate
 public interface CatalogOverrideBlockDefinitionSqlDao extends Transactional<CatalogOverrideBlockDefinitionSqlDao>, CloseMe {
@@ -53,6 +55,10 @@ public interface CatalogOverrideBlockDefinitionSqlDao extends Transactional<Cata
     public List<CatalogOverrideBlockDefinitionModelDao> getOverriddenTierBlocks(@Bind("targetTierDefRecordId") Long targetTierDefRecordId,
                                                                                 @SmartBindBean final InternalTenantContext context);
 
+    @SqlQuery
+    public List<CatalogOverrideBlockDefinitionModelDao> getOverriddenTierBlocksForTierDefs(@BindIn("targetTierDefRecordIds") final Collection<Long> targetTierDefRecordIds,
+                                                                                           @SmartBindBean final InternalTenantContext context);
+
     @SqlQuery
     public Long getLastInsertId();
 }
@@ -17,6 +17,7 @@
 
 package org.killbill.billing.catalog.dao;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.joda.time.DateTime;
@@ -37,4 +38,7 @@ public interface CatalogOverrideDao {
 
     public List<CatalogOverrideBlockDefinitionModelDao> getOverriddenTierBlocks(final Long tierDefRecordId, final InternalTenantContext context);
 
+    // All definitions of the specified plan definitions, with a single query per level (plan, phase, usage, tier and block)
+    public CatalogOverrideDefinitions getOverriddenPlanDefinitions(final Collection<Long> planDefRecordIds, final InternalTenantContext context);
+
 }
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.catalog.dao;
+
+import java.util.List;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+
+//
+// Override definitions of a set of plan definitions, loaded level by level (see CatalogOverrideDao#getOverriddenPlanDefinitions).
+// Each list is keyed by the record id of the parent definition and ordered as the single definition lookups.
+//
+public class CatalogOverrideDefinitions {
+
+    private final ListMultimap<Long, CatalogOverridePhaseDefinitionModelDao> phaseDefinitions = ArrayListMultimap.<Long, CatalogOverridePhaseDefinitionModelDao>create();
+    private final ListMultimap<Long, CatalogOverrideUsageDefinitionModelDao> usageDefinitions = ArrayListMultimap.<Long, CatalogOverrideUsageDefinitionModelDao>create();
+    private final ListMultimap<Long, CatalogOverrideTierDefinitionModelDao> tierDefinitions = ArrayListMultimap.<Long, CatalogOverrideTierDefinitionModelDao>create();
+    private final ListMultimap<Long, CatalogOverrideBlockDefinitionModelDao> blockDefinitions = ArrayListMultimap.<Long, CatalogOverrideBlockDefinitionModelDao>create();
+
+    public CatalogOverrideDefinitions(final Iterable<CatalogOverridePhaseDefinitionModelDao> phaseDefs,
+                                      final Iterable<CatalogOverrideUsageDefinitionModelDao> usageDefs,
+                                      final Iterable<CatalogOverrideTierDefinitionModelDao> tierDefs,
+                                      final Iterable<CatalogOverrideBlockDefinitionModelDao> blockDefs) {
+        for (final CatalogOverridePhaseDefinitionModelDao phaseDef : phaseDefs) {
+            phaseDefinitions.put(phaseDef.getTargetPlanDefRecordId(), phaseDef);
+        }
+        for (final CatalogOverrideUsageDefinitionModelDao usageDef : usageDefs) {
+            usageDefinitions.put(usageDef.getTargetPhaseDefRecordId(), usageDef);
+        }
+        for (final CatalogOverrideTierDefinitionModelDao tierDef : tierDefs) {
+            tierDefinitions.put(tierDef.getTargetUsageDefRecordId(), tierDef);
+        }
+        for (final CatalogOverrideBlockDefinitionModelDao blockDef : blockDefs) {
+            blockDefinitions.put(blockDef.getTargetTierDefRecordId(), blockDef);
+        }
+    }
+
+    public List<CatalogOverridePhaseDefinitionModelDao> getOverriddenPlanPhases(final Long planDefRecordId) {
+        return phaseDefinitions.get(planDefRecordId);
+    }
+
+    public List<CatalogOverrideUsageDefinitionModelDao> getOverriddenPhaseUsages(final Long phaseDefRecordId) {
+        return usageDefinitions.get(phaseDefRecordId);
+    }
+
+    public List<CatalogOverrideTierDefinitionModelDao> getOverriddenUsageTiers(final Long usageDefRecordId) {
+        return tierDefinitions.get(usageDefRecordId);
+    }
+
+    public List<CatalogOverrideBlockDefinitionModelDao> getOverriddenTierBlocks(final Long tierDefRecordId) {
+        return blockDefinitions.get(tierDefRecordId);
+    }
+}
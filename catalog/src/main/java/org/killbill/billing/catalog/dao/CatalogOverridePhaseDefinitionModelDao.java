@@ -32,6 +32,8 @@ public class CatalogOverridePhaseDefinitionModelDao {
     private DateTime createdDate;
     private String createdBy;
     private Long tenantRecordId;
+    // Only populated by the batch queries (definitions are shared across plan definitions)
+    private Long targetPlanDefRecordId;
 
     public CatalogOverridePhaseDefinitionModelDao() {
     }
@@ -115,4 +117,12 @@ public class CatalogOverridePhaseDefinitionModelDao {
     public void setTenantRecordId(final Long tenantRecordId) {
         this.tenantRecordId = tenantRecordId;
     }
+
+    public Long getTargetPlanDefRecordId() {
+        return targetPlanDefRecordId;
+    }
+
+    public void setTargetPlanDefRecordId(final Long targetPlanDefRecordId) {
+        this.targetPlanDefRecordId = targetPlanDefRecordId;
+    }
 }
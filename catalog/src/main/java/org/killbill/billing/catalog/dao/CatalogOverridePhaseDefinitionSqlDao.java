@@ -18,6 +18,7 @@
 package org.killbill.billing.catalog.dao;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 
 import org.killbill.billing.callcontext.InternalCallContext;
@@ -29,6 +30,7 @@ import org.skife.jdbi.v2.sqlobject.SqlQuery;
 import org.skife.jdbi.v2.sqlobject.SqlUpdate;
 import org.skife.jdbi.v2.sqlobject.mixins.CloseMe;
 import org.skife.jdbi.v2.sqlobject.mixins.Transactional;
+import org.skife.jdbi.v2.unstable.BindIn;
 
 @KillBillSqlDaoStringTemplate
 public interface CatalogOverridePhaseDefinitionSqlDao extends Transactional<CatalogOverridePhaseDefinitionSqlDao>, CloseMe {
@@ -52,6 +54,10 @@ public interface CatalogOverridePhaseDefinitionSqlDao extends Transactional<Cata
     public List<CatalogOverridePhaseDefinitionModelDao> getOverriddenPlanPhases(@Bind("targetPlanDefRecordId") Long targetPlanDefRecordId,
                                                                                 @SmartBindBean final InternalTenantContext context);
 
+    @SqlQuery
+    public List<CatalogOverridePhaseDefinitionModelDao> getOverriddenPlanPhasesForPlanDefs(@BindIn("targetPlanDefRecordIds") final Collection<Long> targetPlanDefRecordIds,
+                                                                                           @SmartBindBean final InternalTenantContext context);
+
     @SqlQuery
     public Long getLastInsertId();
 }
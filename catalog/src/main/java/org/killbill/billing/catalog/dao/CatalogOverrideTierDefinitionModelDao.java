@@ -31,6 +31,8 @@ public class CatalogOverrideTierDefinitionModelDao {
     private DateTime createdDate;
     private String createdBy;
     private Long tenantRecordId;
+    // Only populated by the batch queries (definitions are shared across usage definitions)
+    private Long targetUsageDefRecordId;
 
     public CatalogOverrideTierDefinitionModelDao() {
     }
@@ -105,4 +107,12 @@ public class CatalogOverrideTierDefinitionModelDao {
     public void setTenantRecordId(Long tenantRecordId) {
         this.tenantRecordId = tenantRecordId;
     }
+
+    public Long getTargetUsageDefRecordId() {
+        return targetUsageDefRecordId;
+    }
+
+    public void setTargetUsageDefRecordId(Long targetUsageDefRecordId) {
+        this.targetUsageDefRecordId = targetUsageDefRecordId;
+    }
 }
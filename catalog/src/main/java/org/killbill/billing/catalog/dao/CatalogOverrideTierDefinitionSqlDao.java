@@ -17,6 +17,7 @@
 
 package org.killbill.billing.catalog.dao;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.killbill.billing.callcontext.InternalCallContext;
@@ -28,6 +29,7 @@ import org.skife.jdbi.v2.sqlobject.SqlQuery;
 import org.skife.jdbi.v2.sqlobject.SqlUpdate;
 import org.skife.jdbi.v2.sqlobject.mixins.CloseMe;
 import org.skife.jdbi.v2.sqlobject.mixins.Transactional;
+import org.skife.jdbi.v2.unstable.BindIn;
 
 @KillBillSqlDaoStringTemplate
 public interface CatalogOverrideTierDefinitionSqlDao extends Transactional<CatalogOverrideTierDefinitionSqlDao>, CloseMe {
@@ -44,6 +46,10 @@ public interface CatalogOverrideTierDefinitionSqlDao extends Transactional<Catal
     public List<CatalogOverrideTierDefinitionModelDao> getOverriddenUsageTiers(@Bind("targetUsageDefRecordId") Long targetUsageDefRecordId,
                                                                                @SmartBindBean final InternalTenantContext context);
 
+    @SqlQuery
+    public List<CatalogOverrideTierDefinitionModelDao> getOverriddenUsageTiersForUsageDefs(@BindIn("targetUsageDefRecordIds") final Collection<Long> targetUsageDefRecordIds,
+                                                                                           @SmartBindBean final InternalTenantContext context);
+
     @SqlQuery
     public Long getLastInsertId();
 }
@@ -33,6 +33,8 @@ public class CatalogOverrideUsageDefinitionModelDao {
     private DateTime createdDate;
     private String createdBy;
     private Long tenantRecordId;
+    // Only populated by the batch queries (definitions are shared across phase definitions)
+    private Long targetPhaseDefRecordId;
 
     public CatalogOverrideUsageDefinitionModelDao() {
     }
@@ -91,6 +93,14 @@ public class CatalogOverrideUsageDefinitionModelDao {
         this.tenantRecordId = tenantRecordId;
     }
 
+    public Long getTargetPhaseDefRecordId() {
+        return targetPhaseDefRecordId;
+    }
+
+    public void setTargetPhaseDefRecordId(Long targetPhaseDefRecordId) {
+        this.targetPhaseDefRecordId = targetPhaseDefRecordId;
+    }
+
     public String getParentUsageName() {
         return parentUsageName;
     }
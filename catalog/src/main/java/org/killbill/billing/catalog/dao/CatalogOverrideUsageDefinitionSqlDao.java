@@ -17,6 +17,7 @@
 
 package org.killbill.billing.catalog.dao;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.killbill.billing.callcontext.InternalCallContext;
@@ -28,6 +29,7 @@ import org.skife.jdbi.v2.sqlobject.SqlQuery;
 import org.skife.jdbi.v2.sqlobject.SqlUpdate;
 import org.skife.jdbi.v2.sqlobject.mixins.CloseMe;
 import org.skife.jdbi.v2.sqlobject.mixins.Transactional;
+import org.skife.jdbi.v2.unstable.BindIn;
 
 @KillBillSqlDaoStringTemplate
 public interface CatalogOverrideUsageDefinitionSqlDao extends Transactional<CatalogOverrideUsageDefinitionSqlDao>, CloseMe {
@@ -44,6 +46,10 @@ public interface CatalogOverrideUsageDefinitionSqlDao extends Transactional<Cata
     public List<CatalogOverrideUsageDefinitionModelDao> getOverriddenPhaseUsages(@Bind("targetPhaseDefRecordId") Long targetPhaseDefRecordId,
                                                                                 @SmartBindBean final InternalTenantContext context);
 
+    @SqlQuery
+    public List<CatalogOverrideUsageDefinitionModelDao> getOverriddenPhaseUsagesForPhaseDefs(@BindIn("targetPhaseDefRecordIds") final Collection<Long> targetPhaseDefRecordIds,
+                                                                                             @SmartBindBean final InternalTenantContext context);
+
     @SqlQuery
     public List<CatalogOverrideUsageDefinitionModelDao> getByAttributes(@Bind("parentUsageName") String parentUsageName,
                                                                         @SmartBindBean final InternalTenantContext context);
@@ -18,7 +18,10 @@
 package org.killbill.billing.catalog.dao;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.joda.time.DateTime;
 import org.killbill.billing.callcontext.InternalCallContext;
@@ -40,6 +43,7 @@ import org.skife.jdbi.v2.IDBI;
 import org.skife.jdbi.v2.TransactionCallback;
 import org.skife.jdbi.v2.TransactionStatus;
 
+import com.google.common.collect.ImmutableList;
 import com.google.inject.Inject;
 
 public class DefaultCatalogOverrideDao implements CatalogOverrideDao {
@@ -370,6 +374,44 @@ public class DefaultCatalogOverrideDao implements CatalogOverrideDao {
         });
     }
 
+    @Override
+    public CatalogOverrideDefinitions getOverriddenPlanDefinitions(final Collection<Long> planDefRecordIds, final InternalTenantContext context) {
+        return dbi.inTransaction(new TransactionCallback<CatalogOverrideDefinitions>() {
+            @Override
+            public CatalogOverrideDefinitions inTransaction(final Handle handle, final TransactionStatus status) throws Exception {
+                final List<CatalogOverridePhaseDefinitionModelDao> phaseDefs = planDefRecordIds.isEmpty() ?
+                                                                               ImmutableList.<CatalogOverridePhaseDefinitionModelDao>of() :
+                                                                               handle.attach(CatalogOverridePhaseDefinitionSqlDao.class).getOverriddenPlanPhasesForPlanDefs(planDefRecordIds, context);
+
+                final Set<Long> phaseDefRecordIds = new HashSet<Long>();
+                for (final CatalogOverridePhaseDefinitionModelDao phaseDef : phaseDefs) {
+                    phaseDefRecordIds.add(phaseDef.getRecordId());
+                }
+                final List<CatalogOverrideUsageDefinitionModelDao> usageDefs = phaseDefRecordIds.isEmpty() ?
+                                                                               ImmutableList.<CatalogOverrideUsageDefinitionModelDao>of() :
+                                                                               handle.attach(CatalogOverrideUsageDefinitionSqlDao.class).getOverriddenPhaseUsagesForPhaseDefs(phaseDefRecordIds, context);
+
+                final Set<Long> usageDefRecordIds = new HashSet<Long>();
+                for (final CatalogOverrideUsageDefinitionModelDao usageDef : usageDefs) {
+                    usageDefRecordIds.add(usageDef.getRecordId());
+                }
+                final List<CatalogOverrideTierDefinitionModelDao> tierDefs = usageDefRecordIds.isEmpty() ?
+                                                                             ImmutableList.<CatalogOverrideTierDefinitionModelDao>of() :
+                                                                             handle.attach(CatalogOverrideTierDefinitionSqlDao.class).getOverriddenUsageTiersForUsageDefs(usageDefRecordIds, context);
+
+                final Set<Long> tierDefRecordIds = new HashSet<Long>();
+                for (final CatalogOverrideTierDefinitionModelDao tierDef : tierDefs) {
+                    tierDefRecordIds.add(tierDef.getRecordId());
+                }
+                final List<CatalogOverrideBlockDefinitionModelDao> blockDefs = tierDefRecordIds.isEmpty() ?
+                                                                               ImmutableList.<CatalogOverrideBlockDefinitionModelDao>of() :
+                                                                               handle.attach(CatalogOverrideBlockDefinitionSqlDao.class).getOverriddenTierBlocksForTierDefs(tierDefRecordIds, context);
+
+                return new CatalogOverrideDefinitions(phaseDefs, usageDefs, tierDefs, blockDefs);
+            }
+        });
+    }
+
 
     private boolean isUsageOverrideListHasOnlyNull(List<UsagePriceOverride> usagePriceOverrides) {
         for (UsagePriceOverride override : usagePriceOverrides) {
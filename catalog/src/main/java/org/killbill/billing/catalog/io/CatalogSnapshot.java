@@ -0,0 +1,236 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.catalog.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.Nullable;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.killbill.billing.catalog.StandaloneCatalog;
+import org.killbill.billing.util.config.definition.CatalogConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+
+//
+// Binary form of the catalog versions of a tenant, built at upload time and stored in the tenant_kvs table (TenantInternalApi.CATALOG_SNAPSHOT_KEY)
+// alongside the XML versions so that loading the catalog doesn't require to parse (JAXB) and validate each version again.
+//
+// Format (Base64 encoded as tenant values are text): HMAC-SHA256 of the payload, keyed by the server side secret
+// (org.killbill.catalog.snapshot.secret), followed by the gzipped payload: magic number, format version, SHA-256 of the XML versions
+// the snapshot was built from and the (Externalizable) StandaloneCatalog versions.
+//
+// The snapshot is trusted as-is (no validation) when loading the catalog: the HMAC is verified before anything is deserialized
+// and only the catalog classes can be deserialized. A snapshot whose signature, format version or checksum doesn't match is ignored
+// and the catalog is loaded from the XML as usual.
+//
+public abstract class CatalogSnapshot {
+
+    static final int FORMAT_VERSION = 2;
+
+    private static final int MAGIC = 0x4B424353;
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private static final String CATALOG_PACKAGE_PREFIX = "org.killbill.billing.catalog.";
+
+    // JDK and Guava classes referenced by the serialized form of the catalog classes
+    private static final Set<String> ALLOWED_CLASSES = ImmutableSet.<String>of("java.lang.Enum",
+                                                                               "java.lang.Number",
+                                                                               "java.math.BigDecimal",
+                                                                               "java.math.BigInteger",
+                                                                               "java.util.Date",
+                                                                               "java.util.TreeMap",
+                                                                               "com.google.common.collect.NaturalOrdering",
+                                                                               "com.google.common.collect.Ordering");
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogSnapshot.class);
+
+    public static boolean isEnabled(final CatalogConfig catalogConfig) {
+        return catalogConfig.isCatalogSnapshotEnabled() && !Strings.isNullOrEmpty(catalogConfig.getCatalogSnapshotSecret());
+    }
+
+    public static String write(final String secret, final List<String> catalogXMLs, final Iterable<StandaloneCatalog> versions) throws IOException {
+        final List<StandaloneCatalog> versionsToWrite = new ArrayList<StandaloneCatalog>();
+        for (final StandaloneCatalog version : versions) {
+            versionsToWrite.add(version);
+        }
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream(new GZIPOutputStream(bytes));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            final byte[] checksum = checksum(catalogXMLs);
+            out.writeInt(checksum.length);
+            out.write(checksum);
+            out.writeInt(versionsToWrite.size());
+            for (final StandaloneCatalog version : versionsToWrite) {
+                out.writeObject(version);
+            }
+        } finally {
+            out.close();
+        }
+
+        final byte[] payload = bytes.toByteArray();
+        final byte[] signature = sign(secret, payload);
+        final byte[] snapshot = new byte[signature.length + payload.length];
+        System.arraycopy(signature, 0, snapshot, 0, signature.length);
+        System.arraycopy(payload, 0, snapshot, signature.length, payload.length);
+        return BaseEncoding.base64().encode(snapshot);
+    }
+
+    // Returns null if the snapshot can't be used for these XML versions (stale, incompatible format, not signed with this secret, ...)
+    @Nullable
+    public static List<StandaloneCatalog> read(final String secret, final String catalogSnapshot, final List<String> catalogXMLs) {
+        try {
+            final byte[] snapshot = BaseEncoding.base64().decode(catalogSnapshot);
+            final int signatureLength = Mac.getInstance(HMAC_ALGORITHM).getMacLength();
+            if (snapshot.length <= signatureLength) {
+                return null;
+            }
+            final byte[] signature = Arrays.copyOfRange(snapshot, 0, signatureLength);
+            final byte[] payload = Arrays.copyOfRange(snapshot, signatureLength, snapshot.length);
+            if (!MessageDigest.isEqual(signature, sign(secret, payload))) {
+                logger.warn("Ignoring catalog snapshot with an invalid signature");
+                return null;
+            }
+
+            final ObjectInputStream in = new CatalogObjectInputStream(new GZIPInputStream(new ByteArrayInputStream(payload)));
+            try {
+                if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                    return null;
+                }
+                final byte[] checksum = new byte[in.readInt()];
+                in.readFully(checksum);
+                if (!Arrays.equals(checksum, checksum(catalogXMLs))) {
+                    return null;
+                }
+
+                final int nbVersions = in.readInt();
+                final List<StandaloneCatalog> versions = new ArrayList<StandaloneCatalog>(nbVersions);
+                for (int i = 0; i < nbVersions; i++) {
+                    final StandaloneCatalog version = (StandaloneCatalog) in.readObject();
+                    version.initialize(version);
+                    versions.add(version);
+                }
+                return versions;
+            } finally {
+                in.close();
+            }
+        } catch (final IOException e) {
+            logger.warn("Unable to read catalog snapshot", e);
+            return null;
+        } catch (final ClassNotFoundException e) {
+            logger.warn("Unable to read catalog snapshot", e);
+            return null;
+        } catch (final GeneralSecurityException e) {
+            logger.warn("Unable to read catalog snapshot", e);
+            return null;
+        } catch (final RuntimeException e) {
+            // E.g. invalid Base64 or ClassCastException
+            logger.warn("Unable to read catalog snapshot", e);
+            return null;
+        }
+    }
+
+    private static byte[] sign(final String secret, final byte[] payload) throws IOException {
+        try {
+            final Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM));
+            return mac.doFinal(payload);
+        } catch (final GeneralSecurityException e) {
+            throw new IOException("Unable to sign catalog snapshot", e);
+        }
+    }
+
+    private static byte[] checksum(final List<String> catalogXMLs) {
+        final Hasher hasher = Hashing.sha256().newHasher();
+        for (final String catalogXML : catalogXMLs) {
+            final byte[] bytes = catalogXML.getBytes(StandardCharsets.UTF_8);
+            hasher.putInt(bytes.length);
+            hasher.putBytes(bytes);
+        }
+        return hasher.hash().asBytes();
+    }
+
+    @VisibleForTesting
+    static final class CatalogObjectInputStream extends ObjectInputStream {
+
+        CatalogObjectInputStream(final InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(final ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            if (!isAllowed(desc.getName())) {
+                throw new InvalidClassException(desc.getName(), "Class not allowed in a catalog snapshot");
+            }
+            return super.resolveClass(desc);
+        }
+
+        @Override
+        protected Class<?> resolveProxyClass(final String[] interfaces) throws IOException, ClassNotFoundException {
+            throw new InvalidClassException("Proxy classes not allowed in a catalog snapshot");
+        }
+
+        private static boolean isAllowed(final String className) {
+            // Arrays, e.g. [Lorg.killbill.billing.catalog.DefaultPlan; or [I
+            int i = 0;
+            while (i < className.length() && className.charAt(i) == '[') {
+                i++;
+            }
+            final String componentName;
+            if (i == 0) {
+                componentName = className;
+            } else if (className.length() == i + 1) {
+                // Array of primitives
+                return true;
+            } else if (className.charAt(i) == 'L' && className.endsWith(";")) {
+                componentName = className.substring(i + 1, className.length() - 1);
+            } else {
+                return false;
+            }
+            return componentName.startsWith(CATALOG_PACKAGE_PREFIX) || ALLOWED_CLASSES.contains(componentName);
+        }
+    }
+}
@@ -28,6 +28,7 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.annotation.Nullable;
 import javax.xml.bind.JAXBException;
 import javax.xml.transform.TransformerException;
 
@@ -114,6 +115,23 @@ public class VersionedCatalogLoader implements CatalogLoader {
         return Resources.getResource(urlString);
     }
 
+    // catalogSnapshot are the versions read from a valid CatalogSnapshot of these XML versions, if any
+    public DefaultVersionedCatalog load(final List<String> catalogXMLs, @Nullable final List<StandaloneCatalog> catalogSnapshot, final boolean filterTemplateCatalog, final Long tenantRecordId) throws CatalogApiException {
+        if (catalogSnapshot == null) {
+            return load(catalogXMLs, filterTemplateCatalog, tenantRecordId);
+        }
+
+        final DefaultVersionedCatalog result = new DefaultVersionedCatalog(clock);
+        for (final StandaloneCatalog catalog : catalogSnapshot) {
+            if (!filterTemplateCatalog || !catalog.isTemplateCatalog()) {
+                result.add(new StandaloneCatalogWithPriceOverride(catalog, priceOverride, tenantRecordId, internalCallContextFactory));
+            }
+        }
+        // Validation was performed when the snapshot was built
+        result.initialize(result);
+        return result;
+    }
+
     public DefaultVersionedCatalog load(final Iterable<String> catalogXMLs, final boolean filterTemplateCatalog, final Long tenantRecordId) throws CatalogApiException {
         final DefaultVersionedCatalog result = new DefaultVersionedCatalog(clock);
         final URI uri;
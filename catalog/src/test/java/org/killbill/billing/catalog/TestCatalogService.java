@@ -34,6 +34,16 @@ public class TestCatalogService extends CatalogTestSuiteNoDB {
                 return "versionedCatalog";
             }
 
+            @Override
+            public boolean isCatalogSnapshotEnabled() {
+                return false;
+            }
+
+            @Override
+            public String getCatalogSnapshotSecret() {
+                return "";
+            }
+
         }, tenantInternalApi, catalogCache, cacheInvalidationCallback);
         service.loadCatalog();
         Assert.assertNotNull(service.getFullCatalog(true, true, internalCallContext));
@@ -48,6 +58,16 @@ public class TestCatalogService extends CatalogTestSuiteNoDB {
                 return "WeaponsHire.xml";
             }
 
+            @Override
+            public boolean isCatalogSnapshotEnabled() {
+                return false;
+            }
+
+            @Override
+            public String getCatalogSnapshotSecret() {
+                return "";
+            }
+
         },  tenantInternalApi, catalogCache, cacheInvalidationCallback);
         service.loadCatalog();
         Assert.assertNotNull(service.getFullCatalog(true, true, internalCallContext));
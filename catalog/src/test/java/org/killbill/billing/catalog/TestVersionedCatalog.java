@@ -190,6 +190,42 @@ public class TestVersionedCatalog extends CatalogTestSuiteNoDB {
         vc.findPlan("shotgun-quarterly", dt3, dt1);
     }
 
+    @Test(groups = "fast")
+    public void testVersionIndex() throws CatalogApiException {
+        final CatalogVersionIndex index = new CatalogVersionIndex(vc.getVersions());
+        Assert.assertEquals(index.size(), 4);
+
+        // Default to the first version when the date is too early
+        Assert.assertEquals(index.indexOfVersionForDate(dt1.minusYears(1).getMillis()), 0);
+        Assert.assertEquals(index.indexOfVersionForDate(dt1.getMillis()), 0);
+        Assert.assertEquals(index.indexOfVersionForDate(dt2.minusMillis(1).getMillis()), 0);
+        Assert.assertEquals(index.indexOfVersionForDate(dt2.getMillis()), 1);
+        Assert.assertEquals(index.indexOfVersionForDate(dt2a.getMillis()), 2);
+        Assert.assertEquals(index.indexOfVersionForDate(dt3.getMillis()), 3);
+        Assert.assertEquals(index.indexOfVersionForDate(dt3.plusYears(1).getMillis()), 3);
+        Assert.assertEquals(new CatalogVersionIndex(new DefaultVersionedCatalog(clock).getVersions()).indexOfVersionForDate(dt1.getMillis()), -1);
+
+        // shotgun-quarterly is only available in v2 and v2a
+        final CatalogVersionIndex.PlanVersions planVersions = index.getPlanVersions("shotgun-quarterly");
+        Assert.assertEquals(planVersions.size(), 2);
+        Assert.assertEquals(planVersions.getVersionIndex(0), 1);
+        Assert.assertEquals(planVersions.getVersionIndex(1), 2);
+        Assert.assertEquals(planVersions.lastPositionAtOrBefore(0), -1);
+        Assert.assertEquals(planVersions.lastPositionAtOrBefore(1), 0);
+        Assert.assertEquals(planVersions.lastPositionAtOrBefore(3), 1);
+        Assert.assertEquals(planVersions.getPlan(1), vc.getVersions().get(2).findCurrentPlan("shotgun-quarterly"));
+        Assert.assertNull(planVersions.getEffectiveDateForExistingSubscriptions(1));
+        Assert.assertEquals(index.getPlanVersions("pistol-monthly").getEffectiveDateForExistingSubscriptions(2).getMillis(), new DateTime("2011-02-14T00:00:00+00:00").getMillis());
+
+        Assert.assertNull(index.getPlanVersions("unknown-monthly"));
+        try {
+            vc.findPlan("unknown-monthly", dt3, dt1);
+            Assert.fail("Plan doesn't exist");
+        } catch (final CatalogApiException e) {
+            Assert.assertEquals(e.getCode(), ErrorCode.CAT_PLAN_NOT_FOUND.getCode());
+        }
+    }
+
     @Test(groups = "fast")
     public void testDefaultPlanRulesExternalizable() throws IOException {
         final Codec codec = new SerializationCodec();
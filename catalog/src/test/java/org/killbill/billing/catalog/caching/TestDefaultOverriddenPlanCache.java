@@ -0,0 +1,94 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.catalog.caching;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.joda.time.DateTime;
+import org.killbill.billing.catalog.CatalogTestSuiteWithEmbeddedDB;
+import org.killbill.billing.catalog.DefaultPlan;
+import org.killbill.billing.catalog.DefaultPlanPhasePriceOverride;
+import org.killbill.billing.catalog.DefaultVersionedCatalog;
+import org.killbill.billing.catalog.StandaloneCatalog;
+import org.killbill.billing.catalog.api.Currency;
+import org.killbill.billing.catalog.api.Plan;
+import org.killbill.billing.catalog.api.PlanPhasePriceOverride;
+import org.killbill.billing.catalog.io.VersionedCatalogLoader;
+import org.killbill.billing.util.cache.Cachable.CacheType;
+import org.killbill.billing.util.cache.CacheController;
+import org.killbill.billing.util.cache.CacheControllerDispatcher;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Resources;
+import com.google.inject.Inject;
+
+public class TestDefaultOverriddenPlanCache extends CatalogTestSuiteWithEmbeddedDB {
+
+    @Inject
+    private VersionedCatalogLoader loader;
+
+    @Inject
+    private OverriddenPlanCache overriddenPlanCache;
+
+    @Inject
+    private CacheControllerDispatcher cacheControllerDispatcher;
+
+    @Test(groups = "slow")
+    public void testLoadOverriddenPlansMatchesOnDemandLookup() throws Exception {
+        final DefaultVersionedCatalog catalog = loader.load(getCatalogXMLs(), false, internalCallContext.getTenantRecordId());
+        final StandaloneCatalog firstVersion = catalog.getVersions().get(0);
+        final StandaloneCatalog lastVersion = catalog.getVersions().get(catalog.getVersions().size() - 1);
+
+        // Only the USD price is overridden: the other prices come from the parent plan, which changes across versions (29.95 then 49.95)
+        final Plan parentPlan = firstVersion.findCurrentPlan("pistol-monthly");
+        final PlanPhasePriceOverride override = new DefaultPlanPhasePriceOverride(parentPlan.getFinalPhase().getName(), Currency.USD, null, new BigDecimal("19.95"), null);
+        final DefaultPlan overriddenPlanCreated = priceOverride.getOrCreateOverriddenPlan(firstVersion, parentPlan, new DateTime(firstVersion.getEffectiveDate()), ImmutableList.<PlanPhasePriceOverride>of(override), internalCallContext);
+        final String planName = overriddenPlanCreated.getName();
+
+        final CacheController<String, Plan> cacheController = cacheControllerDispatcher.getCacheController(CacheType.OVERRIDDEN_PLAN);
+        cacheController.remove(planName);
+
+        // Plan looked up one by one
+        final Plan onDemandPlan = overriddenPlanCache.getOverriddenPlan(planName, lastVersion, internalCallContext);
+        final BigDecimal onDemandUSDPrice = onDemandPlan.getFinalPhase().getRecurring().getRecurringPrice().getPrice(Currency.USD);
+        final BigDecimal onDemandEURPrice = onDemandPlan.getFinalPhase().getRecurring().getRecurringPrice().getPrice(Currency.EUR);
+        Assert.assertEquals(onDemandUSDPrice.compareTo(new BigDecimal("19.95")), 0);
+        Assert.assertEquals(onDemandEURPrice.compareTo(new BigDecimal("49.95")), 0);
+
+        // Same plan, loaded by a batch first
+        cacheController.remove(planName);
+        overriddenPlanCache.loadOverriddenPlans(ImmutableList.<String>of(planName), internalCallContext);
+        final Plan batchPlan = overriddenPlanCache.getOverriddenPlan(planName, lastVersion, internalCallContext);
+        Assert.assertEquals(batchPlan.getFinalPhase().getName(), onDemandPlan.getFinalPhase().getName());
+        Assert.assertEquals(batchPlan.getFinalPhase().getRecurring().getRecurringPrice().getPrice(Currency.USD).compareTo(onDemandUSDPrice), 0);
+        Assert.assertEquals(batchPlan.getFinalPhase().getRecurring().getRecurringPrice().getPrice(Currency.EUR).compareTo(onDemandEURPrice), 0);
+        Assert.assertEquals(batchPlan.getAllPhases().length, onDemandPlan.getAllPhases().length);
+    }
+
+    private List<String> getCatalogXMLs() throws Exception {
+        final ImmutableList.Builder<String> builder = ImmutableList.<String>builder();
+        for (final String version : ImmutableList.<String>of("1", "2", "2a", "3")) {
+            builder.add(Resources.toString(Resources.getResource("versionedCatalog/WeaponsHireSmall-" + version + ".xml"), Charsets.UTF_8));
+        }
+        return builder.build();
+    }
+}
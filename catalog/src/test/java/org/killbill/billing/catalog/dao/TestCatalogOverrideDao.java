@@ -39,6 +39,7 @@ import org.killbill.xmlloader.XMLLoader;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.io.Resources;
 
 import static org.testng.Assert.assertEquals;
@@ -211,5 +212,51 @@ public class TestCatalogOverrideDao extends CatalogTestSuiteWithEmbeddedDB {
         assertEquals(curTieredBlock.getMax(),tieredBlockPriceOverride.getMax());
     }
 
-}
+    @Test(groups = "slow")
+    public void testGetOverriddenPlanDefinitions() throws Exception {
+
+        final StandaloneCatalog catalog = XMLLoader.getObjectFromString(Resources.getResource("SpyCarAdvanced.xml").toExternalForm(), StandaloneCatalog.class);
+
+        final Plan plan = catalog.findCurrentPlan("discount-standard-monthly");
+        final PlanPhasePriceOverride[] resolvedOverrides = new PlanPhasePriceOverride[plan.getAllPhases().length];
+        resolvedOverrides[0] = new DefaultPlanPhasePriceOverride(plan.getAllPhases()[0].getName(), Currency.USD, BigDecimal.TEN, null, null);
+        resolvedOverrides[2] = new DefaultPlanPhasePriceOverride(plan.getFinalPhase().getName(), Currency.USD, null, new BigDecimal("348.64"), null);
+        final CatalogOverridePlanDefinitionModelDao newPlan = catalogOverrideDao.getOrCreateOverridePlanDefinition(plan, new DateTime(catalog.getEffectiveDate()), resolvedOverrides, internalCallContext);
 
+        final Plan usagePlan = catalog.findCurrentPlan("gas-monthly");
+        final List<TieredBlockPriceOverride> tieredBlockPriceOverrides = new ArrayList<TieredBlockPriceOverride>();
+        tieredBlockPriceOverrides.add(new DefaultTieredBlockPriceOverride("gallons", new Double("1"), new BigDecimal(4), Currency.USD, new Double("100")));
+        final List<TierPriceOverride> tierPriceOverrides = new ArrayList<TierPriceOverride>();
+        tierPriceOverrides.add(new DefaultTierPriceOverride(tieredBlockPriceOverrides));
+        final List<UsagePriceOverride> usagePriceOverrides = new ArrayList<UsagePriceOverride>();
+        usagePriceOverrides.add(new DefaultUsagePriceOverride("gas-monthly-in-arrear", UsageType.CONSUMABLE, tierPriceOverrides));
+        final PlanPhasePriceOverride[] resolvedUsageOverrides = new PlanPhasePriceOverride[usagePlan.getAllPhases().length];
+        resolvedUsageOverrides[0] = new DefaultPlanPhasePriceOverride(usagePlan.getFinalPhase().getName(), Currency.USD, BigDecimal.ZERO, new BigDecimal("348.64"), usagePriceOverrides);
+        final CatalogOverridePlanDefinitionModelDao newUsagePlan = catalogOverrideDao.getOrCreateOverridePlanDefinition(usagePlan, new DateTime(catalog.getEffectiveDate()), resolvedUsageOverrides, internalCallContext);
+
+        final CatalogOverrideDefinitions definitions = catalogOverrideDao.getOverriddenPlanDefinitions(ImmutableList.<Long>of(newPlan.getRecordId(), newUsagePlan.getRecordId(), 123456789L), internalCallContext);
+        assertTrue(definitions.getOverriddenPlanPhases(123456789L).isEmpty());
+
+        // Same definitions (and ordering) as the lookups level by level
+        final List<CatalogOverridePhaseDefinitionModelDao> phases = definitions.getOverriddenPlanPhases(newPlan.getRecordId());
+        final List<CatalogOverridePhaseDefinitionModelDao> expectedPhases = catalogOverrideDao.getOverriddenPlanPhases(newPlan.getRecordId(), internalCallContext);
+        assertEquals(phases.size(), 2);
+        for (int i = 0; i < phases.size(); i++) {
+            assertEquals(phases.get(i).getRecordId(), expectedPhases.get(i).getRecordId());
+            assertEquals(phases.get(i).getParentPhaseName(), expectedPhases.get(i).getParentPhaseName());
+        }
+        assertTrue(definitions.getOverriddenPhaseUsages(phases.get(0).getRecordId()).isEmpty());
+
+        final List<CatalogOverridePhaseDefinitionModelDao> usagePhases = definitions.getOverriddenPlanPhases(newUsagePlan.getRecordId());
+        assertEquals(usagePhases.size(), 1);
+        final List<CatalogOverrideUsageDefinitionModelDao> usages = definitions.getOverriddenPhaseUsages(usagePhases.get(0).getRecordId());
+        assertEquals(usages.size(), 1);
+        assertEquals(usages.get(0).getParentUsageName(), "gas-monthly-in-arrear");
+        final List<CatalogOverrideTierDefinitionModelDao> tiers = definitions.getOverriddenUsageTiers(usages.get(0).getRecordId());
+        assertEquals(tiers.size(), 1);
+        final List<CatalogOverrideBlockDefinitionModelDao> tierBlocks = definitions.getOverriddenTierBlocks(tiers.get(0).getRecordId());
+        assertEquals(tierBlocks.size(), 1);
+        assertEquals(tierBlocks.get(0).getParentUnitName(), "gallons");
+        assertEquals(tierBlocks.get(0).getPrice().compareTo(new BigDecimal(4)), 0);
+    }
+}
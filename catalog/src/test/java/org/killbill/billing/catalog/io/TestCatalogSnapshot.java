@@ -0,0 +1,156 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.catalog.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.zip.GZIPOutputStream;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.killbill.billing.catalog.CatalogTestSuiteNoDB;
+import org.killbill.billing.catalog.DefaultVersionedCatalog;
+import org.killbill.billing.catalog.StandaloneCatalog;
+import org.killbill.billing.catalog.api.Currency;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Ordering;
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+import com.google.common.io.Resources;
+import com.google.common.primitives.Bytes;
+
+public class TestCatalogSnapshot extends CatalogTestSuiteNoDB {
+
+    private static final Long TENANT_RECORD_ID = 42L;
+
+    private static final String SECRET = "catalog-snapshot-secret";
+
+    @Test(groups = "fast")
+    public void testSnapshotRoundTrip() throws Exception {
+        final List<String> catalogXMLs = getCatalogXMLs();
+        final DefaultVersionedCatalog catalogFromXML = loader.load(catalogXMLs, false, TENANT_RECORD_ID);
+
+        final String catalogSnapshot = CatalogSnapshot.write(SECRET, catalogXMLs, catalogFromXML.getVersions());
+        final List<StandaloneCatalog> versions = CatalogSnapshot.read(SECRET, catalogSnapshot, catalogXMLs);
+        Assert.assertNotNull(versions);
+        Assert.assertEquals(versions.size(), 4);
+        for (int i = 0; i < versions.size(); i++) {
+            Assert.assertEquals(versions.get(i), catalogFromXML.getVersions().get(i));
+        }
+
+        final DefaultVersionedCatalog catalogFromSnapshot = loader.load(catalogXMLs, versions, false, TENANT_RECORD_ID);
+        Assert.assertEquals(catalogFromSnapshot, catalogFromXML);
+        Assert.assertEquals(catalogFromSnapshot.findPlan("pistol-monthly", clock.getUTCNow()).getName(), "pistol-monthly");
+    }
+
+    @Test(groups = "fast")
+    public void testStaleOrInvalidSnapshot() throws Exception {
+        final List<String> catalogXMLs = getCatalogXMLs();
+        final DefaultVersionedCatalog catalogFromXML = loader.load(catalogXMLs, false, TENANT_RECORD_ID);
+        final String catalogSnapshot = CatalogSnapshot.write(SECRET, catalogXMLs, catalogFromXML.getVersions());
+
+        // A new version was uploaded since the snapshot was built
+        final List<String> newCatalogXMLs = ImmutableList.<String>builder().addAll(catalogXMLs).add(catalogXMLs.get(0).replace("<effectiveDate>2011-01-01", "<effectiveDate>2012-01-01")).build();
+        Assert.assertNull(CatalogSnapshot.read(SECRET, catalogSnapshot, newCatalogXMLs));
+        Assert.assertEquals(loader.load(newCatalogXMLs, CatalogSnapshot.read(SECRET, catalogSnapshot, newCatalogXMLs), false, TENANT_RECORD_ID).getVersions().size(), 5);
+
+        Assert.assertNull(CatalogSnapshot.read(SECRET, "not a snapshot", catalogXMLs));
+        Assert.assertNull(CatalogSnapshot.read(SECRET, "", catalogXMLs));
+    }
+
+    @Test(groups = "fast")
+    public void testTamperedSnapshot() throws Exception {
+        final List<String> catalogXMLs = getCatalogXMLs();
+        final DefaultVersionedCatalog catalogFromXML = loader.load(catalogXMLs, false, TENANT_RECORD_ID);
+        final String catalogSnapshot = CatalogSnapshot.write(SECRET, catalogXMLs, catalogFromXML.getVersions());
+
+        // Signed with another secret
+        Assert.assertNull(CatalogSnapshot.read("another-secret", catalogSnapshot, catalogXMLs));
+
+        // Modified payload
+        final byte[] bytes = BaseEncoding.base64().decode(catalogSnapshot);
+        bytes[bytes.length - 1] ^= 1;
+        Assert.assertNull(CatalogSnapshot.read(SECRET, BaseEncoding.base64().encode(bytes), catalogXMLs));
+    }
+
+    @Test(groups = "fast")
+    public void testSnapshotWithDisallowedClass() throws Exception {
+        final List<String> catalogXMLs = getCatalogXMLs();
+
+        // Correctly signed (e.g. leaked secret) but not a catalog: nothing outside of the catalog classes is deserialized
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream(new GZIPOutputStream(bytes));
+        out.writeInt(0x4B424353);
+        out.writeInt(CatalogSnapshot.FORMAT_VERSION);
+        final byte[] checksum = Hashing.sha256().hashString("", Charsets.UTF_8).asBytes();
+        out.writeInt(checksum.length);
+        out.write(checksum);
+        out.writeInt(1);
+        out.writeObject(new HashMap<String, String>());
+        out.close();
+        final byte[] payload = bytes.toByteArray();
+
+        final Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(SECRET.getBytes(Charsets.UTF_8), "HmacSHA256"));
+        final String catalogSnapshot = BaseEncoding.base64().encode(Bytes.concat(mac.doFinal(payload), payload));
+
+        Assert.assertNull(CatalogSnapshot.read(SECRET, catalogSnapshot, ImmutableList.<String>of()));
+        Assert.assertNull(CatalogSnapshot.read(SECRET, catalogSnapshot, catalogXMLs));
+
+        final ObjectInputStream in = new CatalogSnapshot.CatalogObjectInputStream(new ByteArrayInputStream(serialize(new HashMap<String, String>())));
+        try {
+            in.readObject();
+            Assert.fail("HashMap shouldn't be deserialized");
+        } catch (final InvalidClassException e) {
+            Assert.assertEquals(e.classname, HashMap.class.getName());
+        }
+
+        final TreeMap<String, BigDecimal> allowed = new TreeMap<String, BigDecimal>(Ordering.<String>natural());
+        allowed.put("price", new BigDecimal("9.99"));
+        Assert.assertEquals(new CatalogSnapshot.CatalogObjectInputStream(new ByteArrayInputStream(serialize(allowed))).readObject(), allowed);
+        Assert.assertEquals(new CatalogSnapshot.CatalogObjectInputStream(new ByteArrayInputStream(serialize(new Currency[]{Currency.USD}))).readObject(), new Currency[]{Currency.USD});
+    }
+
+    private byte[] serialize(final Object object) throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(object);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private List<String> getCatalogXMLs() throws Exception {
+        final ImmutableList.Builder<String> builder = ImmutableList.<String>builder();
+        for (final String version : ImmutableList.<String>of("1", "2", "2a", "3")) {
+            builder.add(Resources.toString(Resources.getResource("versionedCatalog/WeaponsHireSmall-" + version + ".xml"), Charsets.UTF_8));
+        }
+        return builder.build();
+    }
+}
@@ -214,6 +214,11 @@ public class ProxyBlockingStateDao implements BlockingStateDao {
         return delegate.get(offset, limit, context);
     }
 
+    @Override
+    public Pagination<BlockingStateModelDao> getByPageToken(final String pageToken, final Long limit, final boolean withCount, final InternalTenantContext context) {
+        return delegate.getByPageToken(pageToken, limit, withCount, context);
+    }
+
     @Override
     public Long getCount(final InternalTenantContext context) {
         return delegate.getCount(context);
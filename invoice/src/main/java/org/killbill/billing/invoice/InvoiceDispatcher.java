@@ -231,15 +231,17 @@ public class InvoiceDispatcher {
                                                         final InternalCallContext context) throws InvoiceApiException {
         final UUID subscriptionId = transition.getSubscriptionId();
         final LocalDate targetDate = context.toLocalDate(transition.getEffectiveTransitionTime());
-        processSubscriptionForInvoiceGeneration(subscriptionId, targetDate, false, context);
+        // Only this subscription changed: in incremental mode, don't reload the items and billing events of the other ones
+        final Set<UUID> changedSubscriptionIds = invoiceConfig.isIncrementalInvoiceGenerationEnabled(context) ? ImmutableSet.<UUID>of(subscriptionId) : null;
+        processSubscriptionInternal(subscriptionId, targetDate, false, false, changedSubscriptionIds, context);
     }
 
     public void processSubscriptionForInvoiceGeneration(final UUID subscriptionId, final LocalDate targetDate, final boolean isRescheduled, final InternalCallContext context) throws InvoiceApiException {
-        processSubscriptionInternal(subscriptionId, targetDate, false, isRescheduled, context);
+        processSubscriptionInternal(subscriptionId, targetDate, false, isRescheduled, null, context);
     }
 
     public void processSubscriptionForInvoiceNotification(final UUID subscriptionId, final LocalDate targetDate, final InternalCallContext context) throws InvoiceApiException {
-        final Invoice dryRunInvoice = processSubscriptionInternal(subscriptionId, targetDate, true, false, context);
+        final Invoice dryRunInvoice = processSubscriptionInternal(subscriptionId, targetDate, true, false, null, context);
         if (dryRunInvoice != null && dryRunInvoice.getBalance().compareTo(BigDecimal.ZERO) > 0) {
             final InvoiceNotificationInternalEvent event = new DefaultInvoiceNotificationInternalEvent(dryRunInvoice.getAccountId(), dryRunInvoice.getBalance(), dryRunInvoice.getCurrency(),
                                                                                                        context.toUTCDateTime(targetDate), context.getAccountRecordId(), context.getTenantRecordId(), context.getUserToken());
@@ -251,7 +253,12 @@ public class InvoiceDispatcher {
         }
     }
 
-    private Invoice processSubscriptionInternal(final UUID subscriptionId, final LocalDate targetDate, final boolean dryRunForNotification, final boolean isRescheduled, final InternalCallContext context) throws InvoiceApiException {
+    private Invoice processSubscriptionInternal(final UUID subscriptionId,
+                                                final LocalDate targetDate,
+                                                final boolean dryRunForNotification,
+                                                final boolean isRescheduled,
+                                                @Nullable final Set<UUID> changedSubscriptionIds,
+                                                final InternalCallContext context) throws InvoiceApiException {
         try {
             if (subscriptionId == null) {
                 log.warn("Failed handling SubscriptionBase change.", new InvoiceApiException(ErrorCode.INVOICE_INVALID_TRANSITION));
@@ -260,7 +267,7 @@ public class InvoiceDispatcher {
             final UUID accountId = subscriptionApi.getAccountIdFromSubscriptionId(subscriptionId, context);
             final DryRunArguments dryRunArguments = dryRunForNotification ? TARGET_DATE_DRY_RUN_ARGUMENTS : null;
 
-            return processAccountFromNotificationOrBusEvent(accountId, targetDate, dryRunArguments, isRescheduled, context);
+            return processAccountFromNotificationOrBusEvent(accountId, targetDate, dryRunArguments, isRescheduled, changedSubscriptionIds, context);
         } catch (final SubscriptionBaseApiException e) {
             log.warn("Failed handling SubscriptionBase change.",
                      new InvoiceApiException(ErrorCode.INVOICE_NO_ACCOUNT_ID_FOR_SUBSCRIPTION_ID, subscriptionId.toString()));
@@ -273,13 +280,22 @@ public class InvoiceDispatcher {
                                                             @Nullable final DryRunArguments dryRunArguments,
                                                             final boolean isRescheduled,
                                                             final InternalCallContext context) throws InvoiceApiException {
+        return processAccountFromNotificationOrBusEvent(accountId, targetDate, dryRunArguments, isRescheduled, null, context);
+    }
+
+    private Invoice processAccountFromNotificationOrBusEvent(final UUID accountId,
+                                                             @Nullable final LocalDate targetDate,
+                                                             @Nullable final DryRunArguments dryRunArguments,
+                                                             final boolean isRescheduled,
+                                                             @Nullable final Set<UUID> changedSubscriptionIds,
+                                                             final InternalCallContext context) throws InvoiceApiException {
         if (!invoiceConfig.isInvoicingSystemEnabled(context)) {
             log.warn("Invoicing system is off, parking accountId='{}'", accountId);
             parkAccount(accountId, context);
             return null;
         }
 
-        return processAccount(false, accountId, targetDate, dryRunArguments, isRescheduled, context);
+        return processAccount(false, accountId, targetDate, dryRunArguments, isRescheduled, changedSubscriptionIds, context);
     }
 
     public Invoice processAccount(final boolean isApiCall,
@@ -288,6 +304,16 @@ public class InvoiceDispatcher {
                                   @Nullable final DryRunArguments dryRunArguments,
                                   final boolean isRescheduled,
                                   final InternalCallContext context) throws InvoiceApiException {
+        return processAccount(isApiCall, accountId, targetDate, dryRunArguments, isRescheduled, null, context);
+    }
+
+    private Invoice processAccount(final boolean isApiCall,
+                                   final UUID accountId,
+                                   @Nullable final LocalDate targetDate,
+                                   @Nullable final DryRunArguments dryRunArguments,
+                                   final boolean isRescheduled,
+                                   @Nullable final Set<UUID> changedSubscriptionIds,
+                                   final InternalCallContext context) throws InvoiceApiException {
         boolean parkedAccount = false;
         try {
             parkedAccount = parkedAccountsManager.isParked(context);
@@ -303,7 +329,7 @@ public class InvoiceDispatcher {
         try {
             lock = locker.lockWithNumberOfTries(LockerType.ACCNT_INV_PAY.toString(), accountId.toString(), invoiceConfig.getMaxGlobalLockRetries());
 
-            return processAccountWithLock(parkedAccount, accountId, targetDate, dryRunArguments, isRescheduled, context);
+            return processAccountWithLock(parkedAccount, accountId, targetDate, dryRunArguments, isRescheduled, changedSubscriptionIds, context);
         } catch (final LockFailedException e) {
             log.warn("Failed to process invoice for accountId='{}', targetDate='{}'", accountId.toString(), targetDate, e);
         } finally {
@@ -319,6 +345,7 @@ public class InvoiceDispatcher {
                                            @Nullable final LocalDate inputTargetDateMaybeNull,
                                            @Nullable final DryRunArguments dryRunArguments,
                                            final boolean isRescheduled,
+                                           @Nullable final Set<UUID> changedSubscriptionIds,
                                            final InternalCallContext context) throws InvoiceApiException {
         final boolean isDryRun = dryRunArguments != null;
         final boolean upcomingInvoiceDryRun = isDryRun && DryRunType.UPCOMING_INVOICE.equals(dryRunArguments.getDryRunType());
@@ -331,17 +358,27 @@ public class InvoiceDispatcher {
         Preconditions.checkArgument(inputTargetDate != null || upcomingInvoiceDryRun, "inputTargetDate is required in non dryRun mode");
 
         try {
+            // Account state prior the billing events computation, to detect BCD updates in incremental mode
+            final Account accountBeforeBillingEvents = changedSubscriptionIds != null && !isDryRun ? accountApi.getAccountById(accountId, context) : null;
+
             // Make sure to first set the BCD if needed then get the account object (to have the BCD set)
-            final BillingEventSet billingEvents = billingApi.getBillingEventsForAccountAndUpdateAccountBCD(accountId, dryRunArguments, context);
-            if (billingEvents.isAccountAutoInvoiceOff()) {
+            final BillingEventSet accountBillingEvents = billingApi.getBillingEventsForAccountAndUpdateAccountBCD(accountId, dryRunArguments, context);
+            if (accountBillingEvents.isAccountAutoInvoiceOff()) {
                 return null;
             }
 
+            final List<InvoiceModelDao> invoicesForChangedSubscriptions = accountBeforeBillingEvents != null ?
+                                                                          getInvoicesForIncrementalGeneration(accountBeforeBillingEvents, changedSubscriptionIds, inputTargetDate, accountBillingEvents, context) :
+                                                                          null;
+            final BillingEventSet billingEvents = invoicesForChangedSubscriptions != null ?
+                                                  new SubscriptionsBillingEventSet(accountBillingEvents, changedSubscriptionIds) :
+                                                  accountBillingEvents;
+
             // Avoid pulling all invoices when AUTO_INVOICING_OFF is set since we will disable invoicing later
             // (Note that we can't return right away as we send a NullInvoice event)
             final List<Invoice> existingInvoices = billingEvents.isAccountAutoInvoiceOff() ?
                                                    ImmutableList.<Invoice>of() :
-                                                   ImmutableList.<Invoice>copyOf(Collections2.transform(invoiceDao.getInvoicesByAccount(false, context),
+                                                   ImmutableList.<Invoice>copyOf(Collections2.transform(invoicesForChangedSubscriptions != null ? invoicesForChangedSubscriptions : invoiceDao.getInvoicesByAccount(false, context),
                                                                                                         new Function<InvoiceModelDao, Invoice>() {
                                                                                                             @Override
                                                                                                             public Invoice apply(final InvoiceModelDao input) {
@@ -420,6 +457,51 @@ public class InvoiceDispatcher {
         }
     }
 
+    //
+    // Incremental generation: only the items of the changed subscriptions (and their adjustments) are loaded. CBA is computed from the
+    // account balance in the DAO and notifications are merged per subscription, so the other subscriptions are left untouched.
+    // Returns null when account level state requires a full run:
+    // - the BCD was set (or changed) while computing the billing events
+    // - the account is a child account, or has parent invoices
+    // - draft invoices are reused, or invoice plugins are registered (they see the existing invoices)
+    // - some invoices were generated for a later target date (it would be used as the target date)
+    // - CBA or account level items (credits, account level charges) were recorded since these subscriptions were last invoiced
+    //
+    @Nullable
+    private List<InvoiceModelDao> getInvoicesForIncrementalGeneration(final Account accountBeforeBillingEvents,
+                                                                      final Set<UUID> changedSubscriptionIds,
+                                                                      final LocalDate targetDate,
+                                                                      final BillingEventSet accountBillingEvents,
+                                                                      final InternalCallContext context) throws AccountApiException {
+        if (accountBeforeBillingEvents.getParentAccountId() != null ||
+            accountBillingEvents.isAccountAutoInvoiceReuseDraft() ||
+            !invoicePluginDispatcher.getInvoicePlugins(context).isEmpty()) {
+            return null;
+        }
+
+        final Integer bcdBeforeBillingEvents = accountBeforeBillingEvents.getBillCycleDayLocal();
+        if (bcdBeforeBillingEvents == null || bcdBeforeBillingEvents == 0 || bcdBeforeBillingEvents != accountApi.getBCD(context)) {
+            return null;
+        }
+
+        final List<InvoiceModelDao> invoices = invoiceDao.getInvoicesWithItemsForSubscriptions(changedSubscriptionIds, context);
+        DateTime lastInvoiceCreatedDateForSubscriptions = null;
+        for (final InvoiceModelDao invoice : invoices) {
+            if (invoice.isParentInvoice() || invoice.getTargetDate().compareTo(targetDate) > 0) {
+                return null;
+            }
+            if (!invoice.getInvoiceItems().isEmpty() &&
+                (lastInvoiceCreatedDateForSubscriptions == null || invoice.getCreatedDate().compareTo(lastInvoiceCreatedDateForSubscriptions) > 0)) {
+                lastInvoiceCreatedDateForSubscriptions = invoice.getCreatedDate();
+            }
+        }
+        if (invoiceDao.hasAccountLevelItemsCreatedAfter(lastInvoiceCreatedDateForSubscriptions, context)) {
+            return null;
+        }
+        log.debug("Incremental invoice generation for accountId='{}', subscriptionIds='{}'", accountBeforeBillingEvents.getId(), changedSubscriptionIds);
+        return invoices;
+    }
+
     // Return a map of subscriptionId / localDate identifying what is the next upcoming billing transition (PHASE, PAUSE, ..)
     private Map<UUID, DateTime> getNextTransitionsForSubscriptions(final BillingEventSet billingEvents) {
 
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.invoice;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+
+import org.killbill.billing.catalog.api.Usage;
+import org.killbill.billing.junction.BillingEvent;
+import org.killbill.billing.junction.BillingEventSet;
+
+//
+// View of the account billing events restricted to a set of subscriptions, used for incremental invoice generation.
+// Account level flags and usages are the ones of the full set.
+//
+public class SubscriptionsBillingEventSet extends TreeSet<BillingEvent> implements BillingEventSet {
+
+    private static final long serialVersionUID = 1L;
+
+    private final BillingEventSet accountBillingEvents;
+
+    public SubscriptionsBillingEventSet(final BillingEventSet accountBillingEvents, final Set<UUID> subscriptionIds) {
+        super();
+        this.accountBillingEvents = accountBillingEvents;
+        for (final BillingEvent billingEvent : accountBillingEvents) {
+            if (subscriptionIds.contains(billingEvent.getSubscriptionId())) {
+                add(billingEvent);
+            }
+        }
+    }
+
+    @Override
+    public boolean isAccountAutoInvoiceOff() {
+        return accountBillingEvents.isAccountAutoInvoiceOff();
+    }
+
+    @Override
+    public boolean isAccountAutoInvoiceDraft() {
+        return accountBillingEvents.isAccountAutoInvoiceDraft();
+    }
+
+    @Override
+    public boolean isAccountAutoInvoiceReuseDraft() {
+        return accountBillingEvents.isAccountAutoInvoiceReuseDraft();
+    }
+
+    @Override
+    public List<UUID> getSubscriptionIdsWithAutoInvoiceOff() {
+        return accountBillingEvents.getSubscriptionIdsWithAutoInvoiceOff();
+    }
+
+    @Override
+    public Map<String, Usage> getUsages() {
+        return accountBillingEvents.getUsages();
+    }
+}
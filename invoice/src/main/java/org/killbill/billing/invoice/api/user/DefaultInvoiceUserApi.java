@@ -44,10 +44,12 @@ import org.killbill.billing.catalog.api.Currency;
 import org.killbill.billing.invoice.InvoiceDispatcher;
 import org.killbill.billing.invoice.api.DryRunArguments;
 import org.killbill.billing.invoice.api.Invoice;
+import org.killbill.billing.invoice.api.InvoiceAccountBalanceUserApi;
 import org.killbill.billing.invoice.api.InvoiceApiException;
 import org.killbill.billing.invoice.api.InvoiceApiHelper;
 import org.killbill.billing.invoice.api.InvoiceItem;
 import org.killbill.billing.invoice.api.InvoiceItemType;
+import org.killbill.billing.invoice.api.InvoicePageTokenUserApi;
 import org.killbill.billing.invoice.api.InvoicePayment;
 import org.killbill.billing.invoice.api.InvoiceStatus;
 import org.killbill.billing.invoice.api.InvoiceUserApi;
@@ -91,7 +93,7 @@ import com.google.inject.Inject;
 
 import static org.killbill.billing.util.entity.dao.DefaultPaginationHelper.getEntityPaginationNoException;
 
-public class DefaultInvoiceUserApi implements InvoiceUserApi {
+public class DefaultInvoiceUserApi implements InvoiceUserApi, InvoicePageTokenUserApi, InvoiceAccountBalanceUserApi {
 
     private static final Logger log = LoggerFactory.getLogger(DefaultInvoiceUserApi.class);
 
@@ -175,6 +177,30 @@ public class DefaultInvoiceUserApi implements InvoiceUserApi {
                                              );
     }
 
+    @Override
+    public Pagination<Invoice> getInvoices(@Nullable final String pageToken, final Long limit, final boolean withCount, final TenantContext context) {
+        return getEntityPaginationNoException(limit,
+                                              new SourcePaginationBuilder<InvoiceModelDao, InvoiceApiException>() {
+                                                  @Override
+                                                  public Pagination<InvoiceModelDao> build() {
+                                                      // Invoices will be shallow, i.e. won't contain items nor payments
+                                                      return dao.getByPageToken(pageToken, limit, withCount, internalCallContextFactory.createInternalTenantContextWithoutAccountRecordId(context));
+                                                  }
+                                              },
+                                              new Function<InvoiceModelDao, Invoice>() {
+                                                  @Override
+                                                  public Invoice apply(final InvoiceModelDao invoiceModelDao) {
+                                                      return new DefaultInvoice(invoiceModelDao);
+                                                  }
+                                              }
+                                             );
+    }
+
+    @Override
+    public boolean rebuildAccountBalanceSnapshot(final UUID accountId, final CallContext context) {
+        return dao.rebuildAccountBalance(internalCallContextFactory.createInternalCallContext(accountId, context));
+    }
+
     @Override
     public Pagination<Invoice> searchInvoices(final String searchKey, final Long offset, final Long limit, final TenantContext context) {
         return getEntityPaginationNoException(limit,
@@ -272,6 +298,8 @@ public class DefaultInvoiceUserApi implements InvoiceUserApi {
         // Note: the tagApi is audited
         final InternalCallContext internalContext = internalCallContextFactory.createInternalCallContext(invoiceId, ObjectType.INVOICE, context);
         tagApi.addTag(invoiceId, ObjectType.INVOICE, ControlTagType.WRITTEN_OFF.getId(), internalContext);
+        // Refresh the account balance snapshot, which would otherwise be ignored until the next write (see InvoiceAccountBalanceDao)
+        dao.rebuildAccountBalance(internalContext);
 
         // Retrieve the invoice for the account id
         final Invoice invoice = new DefaultInvoice(dao.getById(invoiceId, internalContext));
@@ -284,6 +312,8 @@ public class DefaultInvoiceUserApi implements InvoiceUserApi {
         // Note: the tagApi is audited
         final InternalCallContext internalContext = internalCallContextFactory.createInternalCallContext(invoiceId, ObjectType.INVOICE, context);
         tagApi.removeTag(invoiceId, ObjectType.INVOICE, ControlTagType.WRITTEN_OFF.getId(), internalContext);
+        // Refresh the account balance snapshot, which would otherwise be ignored until the next write (see InvoiceAccountBalanceDao)
+        dao.rebuildAccountBalance(internalContext);
 
         // Retrieve the invoice for the account id
         final Invoice invoice = new DefaultInvoice(dao.getById(invoiceId, internalContext));
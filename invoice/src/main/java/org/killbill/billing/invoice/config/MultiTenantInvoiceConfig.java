@@ -202,6 +202,20 @@ public class MultiTenantInvoiceConfig extends MultiTenantConfigBase implements I
         return shouldParkAccountsWithUnknownUsage();
     }
 
+    @Override
+    public boolean isIncrementalInvoiceGenerationEnabled() {
+        return staticConfig.isIncrementalInvoiceGenerationEnabled();
+    }
+
+    @Override
+    public boolean isIncrementalInvoiceGenerationEnabled(final InternalTenantContext tenantContext) {
+        final String result = getStringTenantConfig("isIncrementalInvoiceGenerationEnabled", tenantContext);
+        if (result != null) {
+            return Boolean.parseBoolean(result);
+        }
+        return isIncrementalInvoiceGenerationEnabled();
+    }
+
     @Override
     protected Class<? extends KillbillConfig> getConfigClass() {
         return InvoiceConfig.class;
@@ -20,6 +20,7 @@ package org.killbill.billing.invoice.dao;
 
 import java.math.BigDecimal;
 import java.util.Collection;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -54,6 +55,7 @@ import org.killbill.billing.invoice.api.InvoicePaymentType;
 import org.killbill.billing.invoice.api.InvoiceStatus;
 import org.killbill.billing.invoice.api.user.DefaultInvoiceAdjustmentEvent;
 import org.killbill.billing.invoice.api.user.DefaultInvoiceCreationEvent;
+import org.killbill.billing.invoice.dao.InvoiceAccountBalanceDao.BalanceContributions;
 import org.killbill.billing.invoice.model.CreditAdjInvoiceItem;
 import org.killbill.billing.invoice.model.DefaultInvoice;
 import org.killbill.billing.invoice.model.ExternalChargeInvoiceItem;
@@ -61,6 +63,7 @@ import org.killbill.billing.invoice.notification.NextBillingDatePoster;
 import org.killbill.billing.invoice.notification.ParentInvoiceCommitmentPoster;
 import org.killbill.billing.tag.TagInternalApi;
 import org.killbill.billing.util.UUIDs;
+import org.killbill.billing.util.audit.dao.AuditLogJournal;
 import org.killbill.billing.util.cache.Cachable.CacheType;
 import org.killbill.billing.util.cache.CacheController;
 import org.killbill.billing.util.cache.CacheControllerDispatcher;
@@ -71,6 +74,7 @@ import org.killbill.billing.util.entity.Pagination;
 import org.killbill.billing.util.entity.dao.DefaultPaginationSqlDaoHelper;
 import org.killbill.billing.util.entity.dao.DefaultPaginationSqlDaoHelper.PaginationIteratorBuilder;
 import org.killbill.billing.util.entity.dao.EntityDaoBase;
+import org.killbill.billing.util.entity.dao.EntitySqlDao;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionWrapper;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionalJdbiWrapper;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoWrapperFactory;
@@ -118,6 +122,7 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
     private final InternalCallContextFactory internalCallContextFactory;
     private final InvoiceDaoHelper invoiceDaoHelper;
     private final CBADao cbaDao;
+    private final InvoiceAccountBalanceDao invoiceAccountBalanceDao;
     private final InvoiceConfig invoiceConfig;
     private final Clock clock;
     private final CacheController<String, UUID> objectIdCacheController;
@@ -137,9 +142,11 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
                              final InvoiceConfig invoiceConfig,
                              final InvoiceDaoHelper invoiceDaoHelper,
                              final CBADao cbaDao,
+                             final InvoiceAccountBalanceDao invoiceAccountBalanceDao,
                              final ParentInvoiceCommitmentPoster parentInvoiceCommitmentPoster,
-                             final InternalCallContextFactory internalCallContextFactory) {
-        super(new EntitySqlDaoTransactionalJdbiWrapper(dbi, roDbi, clock, cacheControllerDispatcher, nonEntityDao, internalCallContextFactory), InvoiceSqlDao.class);
+                             final InternalCallContextFactory internalCallContextFactory,
+                             final AuditLogJournal auditLogJournal) {
+        super(new EntitySqlDaoTransactionalJdbiWrapper(dbi, roDbi, clock, cacheControllerDispatcher, nonEntityDao, internalCallContextFactory, auditLogJournal), InvoiceSqlDao.class);
         this.tagInternalApi = tagInternalApi;
         this.nextBillingDatePoster = nextBillingDatePoster;
         this.eventBus = eventBus;
@@ -147,6 +154,7 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
         this.internalCallContextFactory = internalCallContextFactory;
         this.invoiceDaoHelper = invoiceDaoHelper;
         this.cbaDao = cbaDao;
+        this.invoiceAccountBalanceDao = invoiceAccountBalanceDao;
         this.clock = clock;
         this.objectIdCacheController = cacheControllerDispatcher.getCacheController(CacheType.OBJECT_ID);
         this.nonEntityDao = nonEntityDao;
@@ -210,12 +218,13 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
         });
     }
 
-    private List<InvoiceModelDao> getAllNonMigratedInvoicesByAccountAfterDate(final Boolean includeVoidedInvoices, final InvoiceSqlDao invoiceSqlDao, final LocalDate fromDate, final InternalTenantContext context) {
+    private List<InvoiceModelDao> getAllNonMigratedInvoicesByAccountAfterDate(final Boolean includeVoidedInvoices, final InvoiceSqlDao invoiceSqlDao, @Nullable final LocalDate fromDate, final InternalTenantContext context) {
         return ImmutableList.<InvoiceModelDao>copyOf(INVOICE_MODEL_DAO_ORDERING.sortedCopy(Iterables.<InvoiceModelDao>filter(invoiceSqlDao.getByAccountRecordId(context),
                                                                                                                              new Predicate<InvoiceModelDao>() {
                                                                                                                                  @Override
                                                                                                                                  public boolean apply(final InvoiceModelDao invoice) {
-                                                                                                                                     return !invoice.isMigrated() && invoice.getTargetDate().compareTo(fromDate) >= 0 &&
+                                                                                                                                     return !invoice.isMigrated() &&
+                                                                                                                                            (fromDate == null || invoice.getTargetDate().compareTo(fromDate) >= 0) &&
                                                                                                                                             (includeVoidedInvoices ? true : !InvoiceStatus.VOID.equals(invoice.getStatus()));
                                                                                                                                  }
                                                                                                                              })));
@@ -345,10 +354,18 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
 
         final List<Tag> invoicesTags = getInvoicesTags(context);
 
+        // Invoices whose balance may change
+        final Set<UUID> modifiedInvoiceIds = new HashSet<UUID>(invoiceIdsReferencedFromItems);
+        for (final InvoiceModelDao invoiceModelDao : invoices) {
+            modifiedInvoiceIds.add(invoiceModelDao.getId());
+        }
+
         final Map<UUID, InvoiceModelDao> invoiceByInvoiceId = new HashMap<UUID, InvoiceModelDao>();
         return transactionalSqlDao.execute(false, new EntitySqlDaoTransactionWrapper<List<InvoiceItemModelDao>>() {
             @Override
             public List<InvoiceItemModelDao> inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                final BalanceContributions contributionsBefore = invoiceAccountBalanceDao.getContributionsFromTransaction(modifiedInvoiceIds, invoicesTags, entitySqlDaoWrapperFactory, context);
+
                 final InvoiceSqlDao invoiceSqlDao = entitySqlDaoWrapperFactory.become(InvoiceSqlDao.class);
                 final InvoiceItemSqlDao transInvoiceItemSqlDao = entitySqlDaoWrapperFactory.become(InvoiceItemSqlDao.class);
 
@@ -370,12 +387,21 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
                     }
 
                     // Create the invoice items if needed (note: they may not necessarily belong to that invoice)
+                    final Map<UUID, InvoiceItemModelDao> existingInvoiceItems = getInvoiceItemsByIds(transInvoiceItemSqlDao, invoiceModelDao.getInvoiceItems(), context);
+                    final List<InvoiceItemModelDao> invoiceItemsToCreate = new LinkedList<InvoiceItemModelDao>();
                     for (final InvoiceItemModelDao invoiceItemModelDao : invoiceModelDao.getInvoiceItems()) {
-                        final InvoiceItemModelDao existingInvoiceItem = transInvoiceItemSqlDao.getById(invoiceItemModelDao.getId().toString(), context);
+                        final InvoiceItemModelDao existingInvoiceItem = existingInvoiceItems.get(invoiceItemModelDao.getId());
                         // Because of AUTO_INVOICING_REUSE_DRAFT we expect an invoice were items might already exist.
                         // Also for ALLOWED_INVOICE_ITEM_TYPES, we expect plugins to potentially modify the amount
                         if (existingInvoiceItem == null) {
-                            createdInvoiceItems.add(createInvoiceItemFromTransaction(transInvoiceItemSqlDao, invoiceItemModelDao, context));
+                            if (InvoiceItemType.ITEM_ADJ.equals(invoiceItemModelDao.getType())) {
+                                // The adjusted item may be part of the pending batch
+                                createdInvoiceItems.addAll(createInvoiceItemsFromTransaction(transInvoiceItemSqlDao, invoiceItemsToCreate, context));
+                                invoiceItemsToCreate.clear();
+                                createdInvoiceItems.add(createInvoiceItemFromTransaction(transInvoiceItemSqlDao, invoiceItemModelDao, context));
+                            } else {
+                                invoiceItemsToCreate.add(invoiceItemModelDao);
+                            }
                             allInvoiceIds.add(invoiceItemModelDao.getInvoiceId());
                         } else if (InvoicePluginDispatcher.ALLOWED_INVOICE_ITEM_TYPES.contains(invoiceItemModelDao.getType()) &&
                                    // The restriction on the amount is to deal with https://github.com/killbill/killbill/issues/993 - and esnure that duplicate
@@ -386,6 +412,7 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
                             }
                         }
                     }
+                    createdInvoiceItems.addAll(createInvoiceItemsFromTransaction(transInvoiceItemSqlDao, invoiceItemsToCreate, context));
 
                     final boolean wasInvoiceCreatedOrCommitted = createdInvoiceIds.contains(invoiceModelDao.getId()) ||
                                                                  committedReusedInvoiceId.contains(invoiceModelDao.getId());
@@ -428,6 +455,8 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
                     trackingIdsSqlDao.create(trackingIds, context);
                 }
 
+                invoiceAccountBalanceDao.updateFromTransaction(contributionsBefore, modifiedInvoiceIds, invoicesTags, entitySqlDaoWrapperFactory, context);
+
                 return createdInvoiceItems;
             }
         });
@@ -450,6 +479,51 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
         });
     }
 
+    @Override
+    public List<InvoiceModelDao> getInvoicesWithItemsForSubscriptions(final Set<UUID> subscriptionIds, final InternalTenantContext context) {
+        return transactionalSqlDao.execute(true, new EntitySqlDaoTransactionWrapper<List<InvoiceModelDao>>() {
+            @Override
+            public List<InvoiceModelDao> inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                final InvoiceSqlDao invoiceSqlDao = entitySqlDaoWrapperFactory.become(InvoiceSqlDao.class);
+                final List<InvoiceModelDao> invoices = getAllNonMigratedInvoicesByAccountAfterDate(false, invoiceSqlDao, null, context);
+                if (invoices.isEmpty() || subscriptionIds.isEmpty()) {
+                    return invoices;
+                }
+
+                final Collection<String> subscriptionIdsAsStrings = new HashSet<String>();
+                for (final UUID subscriptionId : subscriptionIds) {
+                    subscriptionIdsAsStrings.add(subscriptionId.toString());
+                }
+                final List<InvoiceItemModelDao> items = entitySqlDaoWrapperFactory.become(InvoiceItemSqlDao.class).getInvoiceItemsBySubscriptionIds(subscriptionIdsAsStrings, context);
+
+                final Map<UUID, List<InvoiceItemModelDao>> itemsPerInvoiceId = new HashMap<UUID, List<InvoiceItemModelDao>>();
+                for (final InvoiceItemModelDao item : items) {
+                    if (itemsPerInvoiceId.get(item.getInvoiceId()) == null) {
+                        itemsPerInvoiceId.put(item.getInvoiceId(), new LinkedList<InvoiceItemModelDao>());
+                    }
+                    itemsPerInvoiceId.get(item.getInvoiceId()).add(item);
+                }
+                for (final InvoiceModelDao invoice : invoices) {
+                    final List<InvoiceItemModelDao> itemsForInvoice = itemsPerInvoiceId.get(invoice.getId());
+                    invoice.addInvoiceItems(itemsForInvoice == null ? ImmutableList.<InvoiceItemModelDao>of() : itemsForInvoice);
+                }
+
+                return invoices;
+            }
+        });
+    }
+
+    @Override
+    public boolean hasAccountLevelItemsCreatedAfter(@Nullable final DateTime createdDate, final InternalTenantContext context) {
+        return transactionalSqlDao.execute(true, new EntitySqlDaoTransactionWrapper<Boolean>() {
+            @Override
+            public Boolean inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                final Date createdAfter = createdDate == null ? new Date(0) : createdDate.toDate();
+                return entitySqlDaoWrapperFactory.become(InvoiceItemSqlDao.class).getNbAccountLevelItemsCreatedAfter(createdAfter, context) > 0;
+            }
+        });
+    }
+
     @Override
     public Pagination<InvoiceModelDao> searchInvoices(final String searchKey, final Long offset, final Long limit, final InternalTenantContext context) {
         Integer invoiceNumberParsed = null;
@@ -490,29 +564,13 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
         return transactionalSqlDao.execute(true, new EntitySqlDaoTransactionWrapper<BigDecimal>() {
             @Override
             public BigDecimal inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
-                BigDecimal cba = BigDecimal.ZERO;
+                final InvoiceAccountBalanceModelDao snapshot = invoiceAccountBalanceDao.getBalanceSnapshotFromTransaction(invoicesTags, entitySqlDaoWrapperFactory, context);
+                if (snapshot != null) {
+                    return snapshot.getBalance();
+                }
 
-                BigDecimal accountBalance = BigDecimal.ZERO;
                 final List<InvoiceModelDao> invoices = invoiceDaoHelper.getAllInvoicesByAccountFromTransaction(false, invoicesTags, entitySqlDaoWrapperFactory, context);
-                for (final InvoiceModelDao cur : invoices) {
-
-                    // Skip DRAFT OR VOID invoices
-                    if (cur.getStatus().equals(InvoiceStatus.DRAFT) || cur.getStatus().equals(InvoiceStatus.VOID)) {
-                        continue;
-                    }
-
-                    final boolean hasZeroParentBalance =
-                            cur.getParentInvoice() != null &&
-                            (cur.getParentInvoice().isWrittenOff() ||
-                             cur.getParentInvoice().getStatus() == InvoiceStatus.DRAFT ||
-                             cur.getParentInvoice().getStatus() == InvoiceStatus.VOID ||
-                             InvoiceModelDaoHelper.getRawBalanceForRegularInvoice(cur.getParentInvoice()).compareTo(BigDecimal.ZERO) == 0);
-
-                    // invoices that are WRITTEN_OFF or paid children invoices are excluded from balance computation but the cba summation needs to be included
-                    accountBalance = cur.isWrittenOff() || hasZeroParentBalance ? BigDecimal.ZERO : accountBalance.add(InvoiceModelDaoHelper.getRawBalanceForRegularInvoice(cur));
-                    cba = cba.add(InvoiceModelDaoHelper.getCBAAmount(cur));
-                }
-                return accountBalance.subtract(cba);
+                return invoiceAccountBalanceDao.computeAccountBalance(invoices);
             }
         });
     }
@@ -522,11 +580,33 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
         return transactionalSqlDao.execute(true, new EntitySqlDaoTransactionWrapper<BigDecimal>() {
             @Override
             public BigDecimal inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                final InvoiceAccountBalanceModelDao snapshot = invoiceAccountBalanceDao.getCBASnapshotFromTransaction(entitySqlDaoWrapperFactory, context);
+                if (snapshot != null) {
+                    return snapshot.getCba();
+                }
                 return cbaDao.getAccountCBAFromTransaction(entitySqlDaoWrapperFactory, context);
             }
         });
     }
 
+    @Override
+    public boolean rebuildAccountBalance(final InternalCallContext context) {
+        final List<Tag> invoicesTags = getInvoicesTags(context);
+
+        return transactionalSqlDao.execute(false, new EntitySqlDaoTransactionWrapper<Boolean>() {
+            @Override
+            public Boolean inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                final InvoiceAccountBalanceModelDao previousSnapshot = invoiceAccountBalanceDao.getSnapshotFromTransaction(entitySqlDaoWrapperFactory, context);
+                final InvoiceAccountBalanceModelDao snapshot = invoiceAccountBalanceDao.rebuildFromTransaction(invoicesTags, entitySqlDaoWrapperFactory, context);
+                if (previousSnapshot == null) {
+                    return snapshot != null;
+                } else {
+                    return !previousSnapshot.hasSameState(snapshot);
+                }
+            }
+        });
+    }
+
     @Override
     public List<InvoiceModelDao> getUnpaidInvoicesByAccountId(final UUID accountId, @Nullable final LocalDate upToDate, final InternalTenantContext context) {
         final List<Tag> invoicesTags = getInvoicesTags(context);
@@ -635,6 +715,9 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
                     return existingRefund;
                 }
 
+                final Set<UUID> modifiedInvoiceIds = ImmutableSet.<UUID>of(payment.getInvoiceId());
+                final BalanceContributions contributionsBefore = invoiceAccountBalanceDao.getContributionsFromTransaction(modifiedInvoiceIds, invoicesTags, entitySqlDaoWrapperFactory, context);
+
                 final InvoicePaymentModelDao refund = new InvoicePaymentModelDao(UUIDs.randomUUID(), context.getCreatedDate(), InvoicePaymentType.REFUND,
                                                                                  payment.getInvoiceId(), paymentId,
                                                                                  context.getCreatedDate(), requestedPositiveAmount.negate(),
@@ -666,6 +749,7 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
 
                 // The invoice object has been kept up-to-date
                 cbaDao.doCBAComplexityFromTransaction(invoice, invoicesTags, entitySqlDaoWrapperFactory, context);
+                invoiceAccountBalanceDao.updateFromTransaction(contributionsBefore, modifiedInvoiceIds, invoicesTags, entitySqlDaoWrapperFactory, context);
 
                 if (isInvoiceAdjusted) {
                     notifyBusOfInvoiceAdjustment(entitySqlDaoWrapperFactory, invoice.getId(), invoice.getAccountId(), context.getUserToken(), context);
@@ -714,6 +798,10 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
                 if (payment == null) {
                     throw new InvoiceApiException(ErrorCode.INVOICE_PAYMENT_NOT_FOUND, invoicePaymentId.toString());
                 }
+
+                final Set<UUID> modifiedInvoiceIds = ImmutableSet.<UUID>of(payment.getInvoiceId());
+                final BalanceContributions contributionsBefore = invoiceAccountBalanceDao.getContributionsFromTransaction(modifiedInvoiceIds, invoicesTags, entitySqlDaoWrapperFactory, context);
+
                 final InvoicePaymentModelDao chargeBack = new InvoicePaymentModelDao(UUIDs.randomUUID(), context.getCreatedDate(), InvoicePaymentType.CHARGED_BACK,
                                                                                      payment.getInvoiceId(), payment.getPaymentId(), context.getCreatedDate(),
                                                                                      requestedChargedBackAmount.negate(), payment.getCurrency(), payment.getProcessedCurrency(),
@@ -724,6 +812,7 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
                 final UUID accountId = transactional.getAccountIdFromInvoicePaymentId(chargeBack.getId().toString(), context);
 
                 cbaDao.doCBAComplexityFromTransaction(payment.getInvoiceId(), invoicesTags, entitySqlDaoWrapperFactory, context);
+                invoiceAccountBalanceDao.updateFromTransaction(contributionsBefore, modifiedInvoiceIds, invoicesTags, entitySqlDaoWrapperFactory, context);
 
                 notifyBusOfInvoicePayment(entitySqlDaoWrapperFactory, chargeBack, accountId, context.getUserToken(), context);
 
@@ -746,6 +835,9 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
                     throw new InvoiceApiException(ErrorCode.PAYMENT_NO_SUCH_PAYMENT, paymentId);
                 }
 
+                final Set<UUID> modifiedInvoiceIds = ImmutableSet.<UUID>of(invoicePayment.getInvoiceId());
+                final BalanceContributions contributionsBefore = invoiceAccountBalanceDao.getContributionsFromTransaction(modifiedInvoiceIds, invoicesTags, entitySqlDaoWrapperFactory, context);
+
                 transactional.updateAttempt(invoicePayment.getRecordId(),
                                             invoicePayment.getPaymentId().toString(),
                                             invoicePayment.getPaymentDate().toDate(),
@@ -762,6 +854,7 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
                 final UUID accountId = transactional.getAccountIdFromInvoicePaymentId(chargebackReversed.getId().toString(), context);
 
                 cbaDao.doCBAComplexityFromTransaction(chargebackReversed.getInvoiceId(), invoicesTags, entitySqlDaoWrapperFactory, context);
+                invoiceAccountBalanceDao.updateFromTransaction(contributionsBefore, modifiedInvoiceIds, invoicesTags, entitySqlDaoWrapperFactory, context);
 
                 notifyBusOfInvoicePayment(entitySqlDaoWrapperFactory, chargebackReversed, accountId, context.getUserToken(), context);
 
@@ -879,9 +972,15 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
     }
 
     private void notifyOfPaymentCompletionInternal(final InvoicePaymentModelDao invoicePayment, final boolean completion, final InternalCallContext context) {
+        // The init row (success = false) doesn't impact the account balance
+        final List<Tag> invoicesTags = completion ? getInvoicesTags(context) : null;
+
         transactionalSqlDao.execute(false, new EntitySqlDaoTransactionWrapper<Void>() {
             @Override
             public Void inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                final Set<UUID> modifiedInvoiceIds = ImmutableSet.<UUID>of(invoicePayment.getInvoiceId());
+                final BalanceContributions contributionsBefore = completion ? invoiceAccountBalanceDao.getContributionsFromTransaction(modifiedInvoiceIds, invoicesTags, entitySqlDaoWrapperFactory, context) : null;
+
                 final InvoicePaymentSqlDao transactional = entitySqlDaoWrapperFactory.become(InvoicePaymentSqlDao.class);
                 //
                 // In case of notifyOfPaymentInit we always want to record the row with success = false
@@ -919,6 +1018,8 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
                 }
 
                 if (completion) {
+                    invoiceAccountBalanceDao.updateFromTransaction(contributionsBefore, modifiedInvoiceIds, invoicesTags, entitySqlDaoWrapperFactory, context);
+
                     final UUID accountId = nonEntityDao.retrieveIdFromObjectInTransaction(context.getAccountRecordId(), ObjectType.ACCOUNT, objectIdCacheController, entitySqlDaoWrapperFactory.getHandle());
                     notifyBusOfInvoicePayment(entitySqlDaoWrapperFactory, invoicePayment, accountId, context.getUserToken(), context);
                 }
@@ -951,6 +1052,9 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
             public Void inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
                 final InvoiceSqlDao transactional = entitySqlDaoWrapperFactory.become(InvoiceSqlDao.class);
 
+                // Only CBA items are created, which don't impact the account balance
+                final BalanceContributions contributionsBefore = invoiceAccountBalanceDao.getContributionsFromTransaction(ImmutableSet.<UUID>of(), invoicesTags, entitySqlDaoWrapperFactory, context);
+
                 // Retrieve the invoice and make sure it belongs to the right account
                 final InvoiceModelDao invoice = transactional.getById(invoiceId.toString(), context);
                 if (invoice == null ||
@@ -1035,6 +1139,8 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
                     }
                 }
 
+                invoiceAccountBalanceDao.updateFromTransaction(contributionsBefore, ImmutableSet.<UUID>of(), invoicesTags, entitySqlDaoWrapperFactory, context);
+
                 return null;
             }
         });
@@ -1047,7 +1153,10 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
         transactionalSqlDao.execute(false, new EntitySqlDaoTransactionWrapper<Void>() {
             @Override
             public Void inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                // Only CBA items are created, which don't impact the account balance
+                final BalanceContributions contributionsBefore = invoiceAccountBalanceDao.getContributionsFromTransaction(ImmutableSet.<UUID>of(), invoicesTags, entitySqlDaoWrapperFactory, context);
                 cbaDao.doCBAComplexityFromTransaction(invoicesTags, entitySqlDaoWrapperFactory, context);
+                invoiceAccountBalanceDao.updateFromTransaction(contributionsBefore, ImmutableSet.<UUID>of(), invoicesTags, entitySqlDaoWrapperFactory, context);
                 return null;
             }
         });
@@ -1135,6 +1244,35 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
         return createAndRefresh(invoiceItemSqlDao, invoiceItemModelDao, context);
     }
 
+    // Items (other than ITEM_ADJ) created with a single batch, history and audit rows included
+    private List<InvoiceItemModelDao> createInvoiceItemsFromTransaction(final InvoiceItemSqlDao invoiceItemSqlDao, final List<InvoiceItemModelDao> invoiceItemModelDaos, final InternalCallContext context) throws EntityPersistenceException, InvoiceApiException {
+        if (invoiceItemModelDaos.isEmpty()) {
+            return ImmutableList.<InvoiceItemModelDao>of();
+        } else if (invoiceItemModelDaos.size() == 1) {
+            return ImmutableList.<InvoiceItemModelDao>of(createInvoiceItemFromTransaction(invoiceItemSqlDao, invoiceItemModelDaos.get(0), context));
+        } else {
+            return createAndRefresh(invoiceItemSqlDao, ImmutableList.<InvoiceItemModelDao>copyOf(invoiceItemModelDaos), context);
+        }
+    }
+
+    private Map<UUID, InvoiceItemModelDao> getInvoiceItemsByIds(final InvoiceItemSqlDao invoiceItemSqlDao, final Iterable<InvoiceItemModelDao> invoiceItemModelDaos, final InternalTenantContext context) {
+        final List<String> invoiceItemIds = new LinkedList<String>();
+        for (final InvoiceItemModelDao invoiceItemModelDao : invoiceItemModelDaos) {
+            invoiceItemIds.add(invoiceItemModelDao.getId().toString());
+        }
+
+        final Map<UUID, InvoiceItemModelDao> result = new HashMap<UUID, InvoiceItemModelDao>();
+        if (invoiceItemIds.isEmpty()) {
+            return result;
+        }
+        for (final List<String> chunk : Iterables.partition(invoiceItemIds, EntitySqlDao.MAX_IDS_PER_QUERY)) {
+            for (final InvoiceItemModelDao invoiceItemModelDao : invoiceItemSqlDao.getByIds(chunk, context)) {
+                result.put(invoiceItemModelDao.getId(), invoiceItemModelDao);
+            }
+        }
+        return result;
+    }
+
     private void validateInvoiceItemToBeAdjusted(final InvoiceItemSqlDao invoiceItemSqlDao, final InvoiceItemModelDao invoiceItemModelDao, final InternalCallContext context) throws InvoiceApiException {
         Preconditions.checkNotNull(invoiceItemModelDao.getLinkedItemId(), "LinkedItemId cannot be null for ITEM_ADJ item: " + invoiceItemModelDao);
         // Note: this assumes the linked item has already been created in or prior to the transaction, which should almost always be the case
@@ -1166,9 +1304,13 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
                     throw new InvoiceApiException(ErrorCode.INVOICE_INVALID_STATUS, newStatus, invoiceId, invoice.getStatus());
                 }
 
+                final Set<UUID> modifiedInvoiceIds = ImmutableSet.<UUID>of(invoiceId);
+                final BalanceContributions contributionsBefore = invoiceAccountBalanceDao.getContributionsFromTransaction(modifiedInvoiceIds, invoicesTags, entitySqlDaoWrapperFactory, context);
+
                 transactional.updateStatus(invoiceId.toString(), newStatus.toString(), context);
 
                 cbaDao.doCBAComplexityFromTransaction(invoicesTags, entitySqlDaoWrapperFactory, context);
+                invoiceAccountBalanceDao.updateFromTransaction(contributionsBefore, modifiedInvoiceIds, invoicesTags, entitySqlDaoWrapperFactory, context);
 
                 // Invoice creation event sent on COMMITTED
                 if (InvoiceStatus.COMMITTED.equals(newStatus)) {
@@ -1212,11 +1354,18 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
 
     @Override
     public void createParentChildInvoiceRelation(final InvoiceParentChildModelDao invoiceRelation, final InternalCallContext context) throws InvoiceApiException {
+        // The context is the one of the parent account
+        final InternalTenantContext childAccountContext = internalCallContextFactory.createInternalTenantContext(invoiceRelation.getChildAccountId(), context);
+
         transactionalSqlDao.execute(false, new EntitySqlDaoTransactionWrapper<Void>() {
             @Override
             public Void inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
                 final InvoiceParentChildrenSqlDao transactional = entitySqlDaoWrapperFactory.become(InvoiceParentChildrenSqlDao.class);
                 createAndRefresh(transactional, invoiceRelation, context);
+
+                // Balances of accounts part of a hierarchy are always computed from the invoices
+                invoiceAccountBalanceDao.deleteFromTransaction(entitySqlDaoWrapperFactory, context);
+                invoiceAccountBalanceDao.deleteFromTransaction(entitySqlDaoWrapperFactory, childAccountContext);
                 return null;
             }
         });
@@ -1354,6 +1503,10 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
                 cbaDao.doCBAComplexityFromTransaction(parentInvoice, parentInvoicesTags, entitySqlDaoWrapperFactory, parentAccountContext);
                 notifyBusOfInvoiceCreation(entitySqlDaoWrapperFactory, parentInvoice, parentAccountContext);
 
+                // Balances of accounts part of a hierarchy are always computed from the invoices
+                invoiceAccountBalanceDao.deleteFromTransaction(entitySqlDaoWrapperFactory, childAccountContext);
+                invoiceAccountBalanceDao.deleteFromTransaction(entitySqlDaoWrapperFactory, parentAccountContext);
+
                 return null;
             }
         });
@@ -0,0 +1,370 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.invoice.dao;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.invoice.api.InvoiceStatus;
+import org.killbill.billing.util.dao.SQLExceptionUtils;
+import org.killbill.billing.util.entity.dao.EntitySqlDaoWrapperFactory;
+import org.killbill.billing.util.tag.ControlTagType;
+import org.killbill.billing.util.tag.Tag;
+import org.killbill.commons.jdbi.mapper.LowerToCamelBeanMapperFactory;
+import org.skife.jdbi.v2.DBI;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.IDBI;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.Ordering;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import static org.killbill.billing.util.glue.IDBISetup.MAIN_RO_IDBI_NAMED;
+
+//
+// Maintains the invoice_account_balances snapshot (account balance and CBA), so that balance reads don't have to rebuild all invoices
+// of the account. The snapshot is updated in the same transaction as the writes impacting it.
+//
+// Without WRITTEN_OFF invoices, the balance is the sum of the contributions (raw balance minus CBA) of the COMMITTED invoices, and CBA
+// moves are balance neutral: writes capture the contribution of the invoices they modify and the account CBA beforehand
+// (getContributionsFromTransaction), and only these invoices are reloaded to compute the deltas applied to the snapshot
+// (updateFromTransaction). The snapshot row is updated relatively (balance = balance + delta), so that concurrent writes on the
+// same account don't overwrite each other's changes.
+//
+// The snapshot is only recomputed from all invoices once (rebuildFromTransaction): by the first write on an account without a
+// snapshot (e.g. accounts created before the snapshots were introduced), after WRITTEN_OFF tags changed behind our back
+// (see below) or through the admin repair API.
+//
+// Other accounts keep the balance computed from all invoices at read time:
+// - accounts with WRITTEN_OFF invoices (which reset the running balance) don't have a snapshot
+// - accounts part of a parent/child hierarchy (their balance depends on invoices of another account) have their snapshot
+//   flagged, so that their writes don't rebuild it each time
+// WRITTEN_OFF tags can be managed through the generic tag APIs (outside of any invoice transaction): the set of tags the balance
+// was computed with is recorded as a fingerprint, and the snapshot balance is ignored if the current tags don't match.
+//
+public class InvoiceAccountBalanceDao {
+
+    private static final String CREATE_SNAPSHOT_CHECKPOINT = "create_invoice_account_balance";
+
+    private final InvoiceDaoHelper invoiceDaoHelper;
+
+    @Inject
+    public InvoiceAccountBalanceDao(final IDBI dbi, @Named(MAIN_RO_IDBI_NAMED) final IDBI roDbi, final InvoiceDaoHelper invoiceDaoHelper) {
+        this.invoiceDaoHelper = invoiceDaoHelper;
+        // The sqlDao is NOT an EntitySqlDao, see DefaultCatalogOverrideDao
+        ((DBI) dbi).registerMapper(new LowerToCamelBeanMapperFactory(InvoiceAccountBalanceModelDao.class));
+        if (roDbi != dbi) {
+            ((DBI) roDbi).registerMapper(new LowerToCamelBeanMapperFactory(InvoiceAccountBalanceModelDao.class));
+        }
+    }
+
+    // Null if the account doesn't have a snapshot (no invoice, WRITTEN_OFF invoices or snapshot not built yet). The snapshot
+    // amounts of accounts part of a hierarchy aren't maintained.
+    @Nullable
+    public InvoiceAccountBalanceModelDao getSnapshotFromTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final InternalTenantContext context) {
+        return getSqlDao(entitySqlDaoWrapperFactory).getByAccountRecordId(context);
+    }
+
+    // Null if the CBA has to be computed from the invoices
+    @Nullable
+    public InvoiceAccountBalanceModelDao getCBASnapshotFromTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final InternalTenantContext context) {
+        final InvoiceAccountBalanceModelDao snapshot = getSnapshotFromTransaction(entitySqlDaoWrapperFactory, context);
+        if (snapshot == null || snapshot.isAccountHierarchy()) {
+            return null;
+        }
+        return snapshot;
+    }
+
+    // Null if the balance has to be computed from the invoices (see above), or if WRITTEN_OFF tags changed since it was computed
+    @Nullable
+    public InvoiceAccountBalanceModelDao getBalanceSnapshotFromTransaction(final List<Tag> invoicesTags, final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final InternalTenantContext context) {
+        final InvoiceAccountBalanceModelDao snapshot = getCBASnapshotFromTransaction(entitySqlDaoWrapperFactory, context);
+        if (snapshot == null || !snapshot.getWrittenOffFingerprint().equals(computeWrittenOffFingerprint(invoicesTags))) {
+            return null;
+        }
+        return snapshot;
+    }
+
+    // Contribution of each of these invoices to the balance and account CBA, to be captured before a write modifying them
+    // (see updateFromTransaction). Null if the snapshot can't be updated incrementally.
+    @Nullable
+    public BalanceContributions getContributionsFromTransaction(final Collection<UUID> invoiceIds, final List<Tag> invoicesTags, final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final InternalTenantContext context) {
+        if (hasWrittenOffInvoices(invoicesTags)) {
+            return null;
+        }
+        return getCurrentContributionsFromTransaction(invoiceIds, entitySqlDaoWrapperFactory, context);
+    }
+
+    // Update the snapshot at the end of a write transaction: invoiceIds are the invoices the write modified (CBA only moves excepted),
+    // contributionsBefore their contributions captured before the write
+    public void updateFromTransaction(@Nullable final BalanceContributions contributionsBefore,
+                                      final Collection<UUID> invoiceIds,
+                                      final List<Tag> invoicesTags,
+                                      final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory,
+                                      final InternalCallContext context) {
+        final InvoiceAccountBalanceSqlDao sqlDao = getSqlDao(entitySqlDaoWrapperFactory);
+        if (hasWrittenOffInvoices(invoicesTags)) {
+            sqlDao.deleteByAccountRecordId(context);
+            return;
+        }
+
+        final BalanceContributions contributionsAfter = contributionsBefore == null ? null : getCurrentContributionsFromTransaction(invoiceIds, entitySqlDaoWrapperFactory, context);
+        if (contributionsAfter != null &&
+            applyDeltasFromTransaction(contributionsBefore, contributionsAfter, invoiceIds, invoicesTags, sqlDao, context)) {
+            return;
+        }
+
+        final InvoiceAccountBalanceModelDao previousSnapshot = sqlDao.getByAccountRecordId(context);
+        if (previousSnapshot != null && previousSnapshot.isAccountHierarchy()) {
+            // Nothing to maintain, see rebuildFromTransaction
+            return;
+        }
+
+        // One-time repair: no snapshot yet, stale WRITTEN_OFF fingerprint or the account just became part of a hierarchy
+        final InvoiceAccountBalanceModelDao snapshot = computeSnapshotFromTransaction(invoicesTags, entitySqlDaoWrapperFactory, context);
+        if (snapshot == null) {
+            sqlDao.deleteByAccountRecordId(context);
+        } else if (previousSnapshot != null) {
+            sqlDao.update(snapshot.getBalance(), snapshot.getCba(), snapshot.getWrittenOffFingerprint(), snapshot.isAccountHierarchy(), context);
+        } else if (!createFromTransaction(snapshot, entitySqlDaoWrapperFactory, context)) {
+            // Created by a concurrent write, from invoices which don't include our (uncommitted) changes: apply them on top of it
+            if (contributionsAfter == null ||
+                !applyDeltasFromTransaction(contributionsBefore, contributionsAfter, invoiceIds, invoicesTags, sqlDao, context)) {
+                // Let the next write repair it, balance reads will compute it from the invoices in the meantime
+                sqlDao.deleteByAccountRecordId(context);
+            }
+        }
+    }
+
+    // Recompute the snapshot from all invoices of the account (repair path)
+    @Nullable
+    public InvoiceAccountBalanceModelDao rebuildFromTransaction(final List<Tag> invoicesTags, final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final InternalCallContext context) {
+        final InvoiceAccountBalanceSqlDao sqlDao = getSqlDao(entitySqlDaoWrapperFactory);
+
+        final InvoiceAccountBalanceModelDao snapshot = computeSnapshotFromTransaction(invoicesTags, entitySqlDaoWrapperFactory, context);
+        if (snapshot == null) {
+            sqlDao.deleteByAccountRecordId(context);
+            return null;
+        }
+
+        if (sqlDao.update(snapshot.getBalance(), snapshot.getCba(), snapshot.getWrittenOffFingerprint(), snapshot.isAccountHierarchy(), context) == 0 &&
+            !createFromTransaction(snapshot, entitySqlDaoWrapperFactory, context)) {
+            // Created concurrently in the meantime
+            sqlDao.update(snapshot.getBalance(), snapshot.getCba(), snapshot.getWrittenOffFingerprint(), snapshot.isAccountHierarchy(), context);
+        }
+        return snapshot;
+    }
+
+    // For writes impacting another account of the hierarchy
+    public void deleteFromTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final InternalTenantContext context) {
+        getSqlDao(entitySqlDaoWrapperFactory).deleteByAccountRecordId(context);
+    }
+
+    // Account balance computed from all invoices of the account (see InvoiceDaoHelper#getAllInvoicesByAccountFromTransaction)
+    public BigDecimal computeAccountBalance(final Iterable<InvoiceModelDao> invoices) {
+        BigDecimal cba = BigDecimal.ZERO;
+
+        BigDecimal accountBalance = BigDecimal.ZERO;
+        for (final InvoiceModelDao cur : invoices) {
+
+            // Skip DRAFT OR VOID invoices
+            if (cur.getStatus().equals(InvoiceStatus.DRAFT) || cur.getStatus().equals(InvoiceStatus.VOID)) {
+                continue;
+            }
+
+            final boolean hasZeroParentBalance =
+                    cur.getParentInvoice() != null &&
+                    (cur.getParentInvoice().isWrittenOff() ||
+                     cur.getParentInvoice().getStatus() == InvoiceStatus.DRAFT ||
+                     cur.getParentInvoice().getStatus() == InvoiceStatus.VOID ||
+                     InvoiceModelDaoHelper.getRawBalanceForRegularInvoice(cur.getParentInvoice()).compareTo(BigDecimal.ZERO) == 0);
+
+            // invoices that are WRITTEN_OFF or paid children invoices are excluded from balance computation but the cba summation needs to be included
+            accountBalance = cur.isWrittenOff() || hasZeroParentBalance ? BigDecimal.ZERO : accountBalance.add(InvoiceModelDaoHelper.getRawBalanceForRegularInvoice(cur));
+            cba = cba.add(InvoiceModelDaoHelper.getCBAAmount(cur));
+        }
+        return accountBalance.subtract(cba);
+    }
+
+    // False if there is no snapshot to update incrementally (missing, stale WRITTEN_OFF fingerprint or account hierarchy)
+    private boolean applyDeltasFromTransaction(final BalanceContributions contributionsBefore,
+                                               final BalanceContributions contributionsAfter,
+                                               final Iterable<UUID> invoiceIds,
+                                               final Iterable<Tag> invoicesTags,
+                                               final InvoiceAccountBalanceSqlDao sqlDao,
+                                               final InternalCallContext context) {
+        BigDecimal balanceDelta = BigDecimal.ZERO;
+        for (final UUID invoiceId : invoiceIds) {
+            balanceDelta = balanceDelta.add(contributionsAfter.getContribution(invoiceId))
+                                       .subtract(contributionsBefore.getContribution(invoiceId));
+        }
+        final BigDecimal cbaDelta = contributionsAfter.getCba().subtract(contributionsBefore.getCba());
+        return sqlDao.updateFromDeltas(balanceDelta, cbaDelta, computeWrittenOffFingerprint(invoicesTags), context) > 0;
+    }
+
+    // Null if there are no invoices or if the account has WRITTEN_OFF invoices
+    @Nullable
+    private InvoiceAccountBalanceModelDao computeSnapshotFromTransaction(final List<Tag> invoicesTags, final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final InternalCallContext context) {
+        if (hasWrittenOffInvoices(invoicesTags)) {
+            return null;
+        }
+
+        final List<InvoiceModelDao> invoices = invoiceDaoHelper.getAllInvoicesByAccountFromTransaction(false, invoicesTags, entitySqlDaoWrapperFactory, context);
+        if (invoices.isEmpty()) {
+            return null;
+        }
+
+        final BigDecimal cba = entitySqlDaoWrapperFactory.become(InvoiceItemSqlDao.class).getAccountCBA(context);
+        return new InvoiceAccountBalanceModelDao(invoices.get(0).getAccountId(),
+                                                 computeAccountBalance(invoices),
+                                                 cba,
+                                                 computeWrittenOffFingerprint(invoicesTags),
+                                                 isPartOfAccountHierarchy(invoices));
+    }
+
+    // False if the snapshot was created concurrently
+    private boolean createFromTransaction(final InvoiceAccountBalanceModelDao snapshot, final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final InternalCallContext context) {
+        final Handle handle = entitySqlDaoWrapperFactory.getHandle();
+        // The savepoint lets the transaction go on after a duplicate key (PostgreSQL aborts the whole transaction otherwise)
+        handle.checkpoint(CREATE_SNAPSHOT_CHECKPOINT);
+        try {
+            getSqlDao(entitySqlDaoWrapperFactory).create(snapshot.getAccountId().toString(), snapshot.getBalance(), snapshot.getCba(), snapshot.getWrittenOffFingerprint(), snapshot.isAccountHierarchy(), context);
+        } catch (final RuntimeException e) {
+            if (!SQLExceptionUtils.isUniqueConstraintViolation(e)) {
+                throw e;
+            }
+            handle.rollback(CREATE_SNAPSHOT_CHECKPOINT);
+            return false;
+        }
+        handle.release(CREATE_SNAPSHOT_CHECKPOINT);
+        return true;
+    }
+
+    // Null if one of the invoices is part of an account hierarchy
+    @Nullable
+    private BalanceContributions getCurrentContributionsFromTransaction(final Collection<UUID> invoiceIds, final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final InternalTenantContext context) {
+        final BigDecimal cba = entitySqlDaoWrapperFactory.become(InvoiceItemSqlDao.class).getAccountCBA(context);
+        final Map<UUID, BigDecimal> contributions = new HashMap<UUID, BigDecimal>();
+        if (invoiceIds.isEmpty()) {
+            return new BalanceContributions(contributions, cba);
+        }
+
+        final Collection<String> invoiceIdsAsStrings = new HashSet<String>();
+        for (final UUID invoiceId : invoiceIds) {
+            invoiceIdsAsStrings.add(invoiceId.toString());
+        }
+        if (!entitySqlDaoWrapperFactory.become(InvoiceParentChildrenSqlDao.class).getParentChildMappingsByChildInvoiceIds(invoiceIdsAsStrings, context).isEmpty()) {
+            return null;
+        }
+
+        final InvoiceSqlDao invoiceSqlDao = entitySqlDaoWrapperFactory.become(InvoiceSqlDao.class);
+        final InvoiceItemSqlDao invoiceItemSqlDao = entitySqlDaoWrapperFactory.become(InvoiceItemSqlDao.class);
+        final InvoicePaymentSqlDao invoicePaymentSqlDao = entitySqlDaoWrapperFactory.become(InvoicePaymentSqlDao.class);
+        for (final UUID invoiceId : invoiceIds) {
+            final InvoiceModelDao invoice = invoiceSqlDao.getById(invoiceId.toString(), context);
+            if (invoice == null) {
+                continue;
+            }
+            if (invoice.isParentInvoice()) {
+                return null;
+            }
+            // Skip DRAFT OR VOID invoices (see computeAccountBalance)
+            if (invoice.getStatus() != InvoiceStatus.COMMITTED) {
+                contributions.put(invoiceId, BigDecimal.ZERO);
+                continue;
+            }
+
+            // PERF: only this invoice's items and payments (populateChildren would load the ones of the whole account)
+            invoice.addInvoiceItems(invoiceItemSqlDao.getInvoiceItemsByInvoice(invoiceId.toString(), context));
+            invoice.addPayments(invoicePaymentSqlDao.getAllPaymentsForInvoiceIncludedInit(invoiceId.toString(), context));
+            contributions.put(invoiceId, InvoiceModelDaoHelper.getRawBalanceForRegularInvoice(invoice).subtract(InvoiceModelDaoHelper.getCBAAmount(invoice)));
+        }
+        return new BalanceContributions(contributions, cba);
+    }
+
+    private boolean hasWrittenOffInvoices(final Iterable<Tag> invoicesTags) {
+        for (final Tag tag : invoicesTags) {
+            if (ControlTagType.WRITTEN_OFF.getId().equals(tag.getTagDefinitionId())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String computeWrittenOffFingerprint(final Iterable<Tag> invoicesTags) {
+        final List<String> writtenOffTagIds = new ArrayList<String>();
+        for (final Tag tag : invoicesTags) {
+            if (ControlTagType.WRITTEN_OFF.getId().equals(tag.getTagDefinitionId())) {
+                writtenOffTagIds.add(tag.getId().toString());
+            }
+        }
+
+        final Hasher hasher = Hashing.murmur3_128().newHasher();
+        for (final String writtenOffTagId : Ordering.<String>natural().sortedCopy(writtenOffTagIds)) {
+            hasher.putString(writtenOffTagId, StandardCharsets.UTF_8);
+        }
+        return hasher.hash().toString();
+    }
+
+    private boolean isPartOfAccountHierarchy(final Iterable<InvoiceModelDao> invoices) {
+        for (final InvoiceModelDao invoice : invoices) {
+            if (invoice.isParentInvoice() || invoice.getParentInvoice() != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private InvoiceAccountBalanceSqlDao getSqlDao(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) {
+        return entitySqlDaoWrapperFactory.getHandle().attach(InvoiceAccountBalanceSqlDao.class);
+    }
+
+    // Balance contribution of the invoices modified by a write, and account CBA
+    public static final class BalanceContributions {
+
+        private final Map<UUID, BigDecimal> contributions;
+        private final BigDecimal cba;
+
+        private BalanceContributions(final Map<UUID, BigDecimal> contributions, final BigDecimal cba) {
+            this.contributions = contributions;
+            this.cba = cba;
+        }
+
+        private BigDecimal getContribution(final UUID invoiceId) {
+            return MoreObjects.firstNonNull(contributions.get(invoiceId), BigDecimal.ZERO);
+        }
+
+        private BigDecimal getCba() {
+            return cba;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.invoice.dao;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import org.joda.time.DateTime;
+
+public class InvoiceAccountBalanceModelDao {
+
+    private Long recordId;
+    private UUID accountId;
+    private BigDecimal balance;
+    private BigDecimal cba;
+    private String writtenOffFingerprint;
+    private boolean accountHierarchy;
+    private DateTime updatedDate;
+    private Long accountRecordId;
+    private Long tenantRecordId;
+
+    public InvoiceAccountBalanceModelDao() { /* For the DAO mapper */ }
+
+    public InvoiceAccountBalanceModelDao(final UUID accountId, final BigDecimal balance, final BigDecimal cba, final String writtenOffFingerprint, final boolean accountHierarchy) {
+        this.accountId = accountId;
+        this.balance = balance;
+        this.cba = cba;
+        this.writtenOffFingerprint = writtenOffFingerprint;
+        this.accountHierarchy = accountHierarchy;
+    }
+
+    // Whether both snapshots report the same state (the scale of the amounts may differ once persisted)
+    public boolean hasSameState(final InvoiceAccountBalanceModelDao other) {
+        return other != null &&
+               balance.compareTo(other.getBalance()) == 0 &&
+               cba.compareTo(other.getCba()) == 0 &&
+               writtenOffFingerprint.equals(other.getWrittenOffFingerprint()) &&
+               accountHierarchy == other.isAccountHierarchy();
+    }
+
+    public Long getRecordId() {
+        return recordId;
+    }
+
+    public void setRecordId(final Long recordId) {
+        this.recordId = recordId;
+    }
+
+    public UUID getAccountId() {
+        return accountId;
+    }
+
+    public void setAccountId(final UUID accountId) {
+        this.accountId = accountId;
+    }
+
+    public BigDecimal getBalance() {
+        return balance;
+    }
+
+    public void setBalance(final BigDecimal balance) {
+        this.balance = balance;
+    }
+
+    public BigDecimal getCba() {
+        return cba;
+    }
+
+    public void setCba(final BigDecimal cba) {
+        this.cba = cba;
+    }
+
+    public String getWrittenOffFingerprint() {
+        return writtenOffFingerprint;
+    }
+
+    public void setWrittenOffFingerprint(final String writtenOffFingerprint) {
+        this.writtenOffFingerprint = writtenOffFingerprint;
+    }
+
+    public boolean isAccountHierarchy() {
+        return accountHierarchy;
+    }
+
+    public void setAccountHierarchy(final boolean accountHierarchy) {
+        this.accountHierarchy = accountHierarchy;
+    }
+
+    public DateTime getUpdatedDate() {
+        return updatedDate;
+    }
+
+    public void setUpdatedDate(final DateTime updatedDate) {
+        this.updatedDate = updatedDate;
+    }
+
+    public Long getAccountRecordId() {
+        return accountRecordId;
+    }
+
+    public void setAccountRecordId(final Long accountRecordId) {
+        this.accountRecordId = accountRecordId;
+    }
+
+    public Long getTenantRecordId() {
+        return tenantRecordId;
+    }
+
+    public void setTenantRecordId(final Long tenantRecordId) {
+        this.tenantRecordId = tenantRecordId;
+    }
+
+    @Override
+    public String toString() {
+        return "InvoiceAccountBalanceModelDao{" +
+               "recordId=" + recordId +
+               ", accountId=" + accountId +
+               ", balance=" + balance +
+               ", cba=" + cba +
+               ", writtenOffFingerprint='" + writtenOffFingerprint + '\'' +
+               ", accountHierarchy=" + accountHierarchy +
+               ", updatedDate=" + updatedDate +
+               ", accountRecordId=" + accountRecordId +
+               ", tenantRecordId=" + tenantRecordId +
+               '}';
+    }
+}
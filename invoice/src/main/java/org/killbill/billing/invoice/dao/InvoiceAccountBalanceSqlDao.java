@@ -0,0 +1,64 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.invoice.dao;
+
+import java.math.BigDecimal;
+
+import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.commons.jdbi.binder.SmartBindBean;
+import org.killbill.commons.jdbi.template.KillBillSqlDaoStringTemplate;
+import org.skife.jdbi.v2.sqlobject.Bind;
+import org.skife.jdbi.v2.sqlobject.SqlQuery;
+import org.skife.jdbi.v2.sqlobject.SqlUpdate;
+import org.skife.jdbi.v2.sqlobject.mixins.CloseMe;
+import org.skife.jdbi.v2.sqlobject.mixins.Transactional;
+
+// Not an EntitySqlDao: the snapshot is derived data (no id, no history, no audit)
+@KillBillSqlDaoStringTemplate
+public interface InvoiceAccountBalanceSqlDao extends Transactional<InvoiceAccountBalanceSqlDao>, CloseMe {
+
+    @SqlUpdate
+    public void create(@Bind("accountId") final String accountId,
+                       @Bind("balance") final BigDecimal balance,
+                       @Bind("cba") final BigDecimal cba,
+                       @Bind("writtenOffFingerprint") final String writtenOffFingerprint,
+                       @Bind("accountHierarchy") final boolean accountHierarchy,
+                       @SmartBindBean final InternalCallContext context);
+
+    @SqlUpdate
+    public int update(@Bind("balance") final BigDecimal balance,
+                      @Bind("cba") final BigDecimal cba,
+                      @Bind("writtenOffFingerprint") final String writtenOffFingerprint,
+                      @Bind("accountHierarchy") final boolean accountHierarchy,
+                      @SmartBindBean final InternalCallContext context);
+
+    // Relative update, so that concurrent writes on the account don't overwrite each other's changes. Only applies
+    // to snapshots computed with the same WRITTEN_OFF tags, outside of an account hierarchy.
+    @SqlUpdate
+    public int updateFromDeltas(@Bind("balanceDelta") final BigDecimal balanceDelta,
+                                @Bind("cbaDelta") final BigDecimal cbaDelta,
+                                @Bind("writtenOffFingerprint") final String writtenOffFingerprint,
+                                @SmartBindBean final InternalCallContext context);
+
+    @SqlQuery
+    public InvoiceAccountBalanceModelDao getByAccountRecordId(@SmartBindBean final InternalTenantContext context);
+
+    @SqlUpdate
+    public void deleteByAccountRecordId(@SmartBindBean final InternalTenantContext context);
+}
@@ -26,6 +26,7 @@ import java.util.UUID;
 
 import javax.annotation.Nullable;
 
+import org.joda.time.DateTime;
 import org.joda.time.LocalDate;
 import org.killbill.billing.account.api.Account;
 import org.killbill.billing.callcontext.InternalCallContext;
@@ -63,6 +64,13 @@ public interface InvoiceDao extends EntityDao<InvoiceModelDao, Invoice, InvoiceA
 
     List<InvoiceModelDao> getInvoicesBySubscription(UUID subscriptionId, InternalTenantContext context);
 
+    // Non migrated, non voided invoices of the account, only populated with the items of the specified subscriptions (no payment, no tag):
+    // this is the input needed to regenerate these subscriptions, it should not be used to compute balances.
+    List<InvoiceModelDao> getInvoicesWithItemsForSubscriptions(Set<UUID> subscriptionIds, InternalTenantContext context);
+
+    // Whether account level items (CBA, credits, account level charges, i.e. not attached to any subscription) were created after that date (or at all, if null)
+    boolean hasAccountLevelItemsCreatedAfter(@Nullable DateTime createdDate, InternalTenantContext context);
+
     Pagination<InvoiceModelDao> searchInvoices(String searchKey, Long offset, Long limit, InternalTenantContext context);
 
     UUID getInvoiceIdByPaymentId(UUID paymentId, InternalTenantContext context);
@@ -79,6 +87,9 @@ public interface InvoiceDao extends EntityDao<InvoiceModelDao, Invoice, InvoiceA
 
     BigDecimal getAccountCBA(UUID accountId, InternalTenantContext context);
 
+    // Recompute the persisted account balance snapshot from the invoices, returns true if the snapshot was missing or stale
+    boolean rebuildAccountBalance(InternalCallContext context);
+
     List<InvoiceModelDao> getUnpaidInvoicesByAccountId(UUID accountId, @Nullable LocalDate upToDate, InternalTenantContext context);
 
     // Include migrated invoices
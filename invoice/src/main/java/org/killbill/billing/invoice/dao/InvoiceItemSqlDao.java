@@ -19,6 +19,8 @@
 package org.killbill.billing.invoice.dao;
 
 import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 
 import org.killbill.billing.callcontext.InternalCallContext;
@@ -32,6 +34,7 @@ import org.killbill.commons.jdbi.template.KillBillSqlDaoStringTemplate;
 import org.skife.jdbi.v2.sqlobject.Bind;
 import org.skife.jdbi.v2.sqlobject.SqlQuery;
 import org.skife.jdbi.v2.sqlobject.SqlUpdate;
+import org.skife.jdbi.v2.unstable.BindIn;
 
 @KillBillSqlDaoStringTemplate
 public interface InvoiceItemSqlDao extends EntitySqlDao<InvoiceItemModelDao, InvoiceItem> {
@@ -43,6 +46,15 @@ public interface InvoiceItemSqlDao extends EntitySqlDao<InvoiceItemModelDao, Inv
     List<InvoiceItemModelDao> getInvoiceItemsBySubscription(@Bind("subscriptionId") final String subscriptionId,
                                                             @SmartBindBean final InternalTenantContext context);
 
+    // Items for these subscriptions, along with the (subscription-less) adjustments and repairs pointing to them
+    @SqlQuery
+    List<InvoiceItemModelDao> getInvoiceItemsBySubscriptionIds(@BindIn("subscriptionIds") final Collection<String> subscriptionIds,
+                                                               @SmartBindBean final InternalTenantContext context);
+
+    // Account level items (CBA, credits, account level charges...): neither attached to a subscription nor linked to another item
+    @SqlQuery
+    Integer getNbAccountLevelItemsCreatedAfter(@Bind("createdDate") final Date createdDate,
+                                               @SmartBindBean final InternalTenantContext context);
 
     @SqlQuery
     List<InvoiceItemModelDao> getAdjustedOrRepairedInvoiceItemsByLinkedId(@Bind("linkedItemId") final String linkedItemId,
@@ -24,9 +24,11 @@ import org.killbill.billing.invoice.InvoiceListener;
 import org.killbill.billing.invoice.InvoiceTagHandler;
 import org.killbill.billing.invoice.ParkedAccountsManager;
 import org.killbill.billing.invoice.api.DefaultInvoiceService;
+import org.killbill.billing.invoice.api.InvoiceAccountBalanceUserApi;
 import org.killbill.billing.invoice.api.InvoiceApiHelper;
 import org.killbill.billing.invoice.api.InvoiceInternalApi;
 import org.killbill.billing.invoice.api.InvoiceListenerService;
+import org.killbill.billing.invoice.api.InvoicePageTokenUserApi;
 import org.killbill.billing.invoice.api.InvoiceService;
 import org.killbill.billing.invoice.api.InvoiceUserApi;
 import org.killbill.billing.invoice.api.formatters.InvoiceFormatterFactory;
@@ -36,6 +38,7 @@ import org.killbill.billing.invoice.api.user.DefaultInvoiceUserApi;
 import org.killbill.billing.invoice.config.MultiTenantInvoiceConfig;
 import org.killbill.billing.invoice.dao.CBADao;
 import org.killbill.billing.invoice.dao.DefaultInvoiceDao;
+import org.killbill.billing.invoice.dao.InvoiceAccountBalanceDao;
 import org.killbill.billing.invoice.dao.InvoiceDao;
 import org.killbill.billing.invoice.dao.InvoiceDaoHelper;
 import org.killbill.billing.invoice.generator.DefaultInvoiceGenerator;
@@ -71,11 +74,16 @@ public class DefaultInvoiceModule extends KillBillModule implements InvoiceModul
         bind(InvoiceDao.class).to(DefaultInvoiceDao.class).asEagerSingleton();
         bind(InvoiceDaoHelper.class).asEagerSingleton();
         bind(CBADao.class).asEagerSingleton();
+        bind(InvoiceAccountBalanceDao.class).asEagerSingleton();
     }
 
     @Override
     public void installInvoiceUserApi() {
-        bind(InvoiceUserApi.class).to(DefaultInvoiceUserApi.class).asEagerSingleton();
+        // Single instance for all interfaces
+        bind(DefaultInvoiceUserApi.class).asEagerSingleton();
+        bind(InvoiceUserApi.class).to(DefaultInvoiceUserApi.class);
+        bind(InvoicePageTokenUserApi.class).to(DefaultInvoiceUserApi.class);
+        bind(InvoiceAccountBalanceUserApi.class).to(DefaultInvoiceUserApi.class);
     }
 
     @Override
@@ -18,9 +18,9 @@
 
 package org.killbill.billing.invoice.tree;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
@@ -32,11 +32,7 @@ import org.killbill.billing.invoice.api.InvoiceItem;
 import org.killbill.billing.invoice.tree.Item.ItemAction;
 
 import com.google.common.base.Preconditions;
-import com.google.common.base.Predicate;
-import com.google.common.collect.Collections2;
-import com.google.common.collect.Iterables;
 import com.google.common.collect.LinkedListMultimap;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
 
 /**
@@ -46,7 +42,7 @@ public class ItemsInterval {
 
     // Parent (enclosing) interval
     private final ItemsNodeInterval interval;
-    private final LinkedList<Item> items;
+    private final List<Item> items;
 
     public ItemsInterval(final ItemsNodeInterval interval) {
         this(interval, null);
@@ -54,7 +50,8 @@ public class ItemsInterval {
 
     public ItemsInterval(final ItemsNodeInterval interval, final Item initialItem) {
         this.interval = interval;
-        this.items = Lists.newLinkedList();
+        // Most intervals only ever hold one or two items
+        this.items = new ArrayList<Item>(2);
         if (initialItem != null) {
             items.add(initialItem);
         }
@@ -73,23 +70,21 @@ public class ItemsInterval {
     }
 
     public Item getCancellingItemIfExists(final UUID targetId) {
-        return Iterables.tryFind(items,
-                                 new Predicate<Item>() {
-                                     @Override
-                                     public boolean apply(final Item input) {
-                                         return input.getAction() == ItemAction.CANCEL && input.getLinkedId().equals(targetId);
-                                     }
-                                 }).orNull();
+        for (final Item item : items) {
+            if (item.getAction() == ItemAction.CANCEL && item.getLinkedId().equals(targetId)) {
+                return item;
+            }
+        }
+        return null;
     }
 
     public Item getCancelledItemIfExists(final UUID linkedId) {
-        return Iterables.tryFind(items,
-                                 new Predicate<Item>() {
-                                     @Override
-                                     public boolean apply(final Item input) {
-                                         return input.getAction() == ItemAction.ADD && input.getId().equals(linkedId);
-                                     }
-                                 }).orNull();
+        for (final Item item : items) {
+            if (item.getAction() == ItemAction.ADD && item.getId().equals(linkedId)) {
+                return item;
+            }
+        }
+        return null;
     }
 
     public NodeInterval getNodeInterval() {
@@ -97,15 +92,14 @@ public class ItemsInterval {
     }
 
     public Item findItem(final UUID targetId) {
-        final Collection<Item> matchingItems = Collections2.<Item>filter(items,
-                                                                         new Predicate<Item>() {
-                                                                             @Override
-                                                                             public boolean apply(final Item input) {
-                                                                                 return input.getId().equals(targetId);
-                                                                             }
-                                                                         });
-        Preconditions.checkState(matchingItems.size() < 2, "Too many items matching id='%s' among items='%s'", targetId, items);
-        return matchingItems.size() == 1 ? matchingItems.iterator().next() : null;
+        Item result = null;
+        for (final Item item : items) {
+            if (item.getId().equals(targetId)) {
+                Preconditions.checkState(result == null, "Too many items matching id='%s' among items='%s'", targetId, items);
+                result = item;
+            }
+        }
+        return result;
     }
 
     /**
@@ -262,18 +256,26 @@ public class ItemsInterval {
     }
 
     private Item findItem(final ItemAction itemAction) {
-        final Collection<Item> matchingItems = findItems(itemAction);
-        return matchingItems.size() == 1 ? matchingItems.iterator().next() : null;
+        Item result = null;
+        for (final Item item : items) {
+            if (item.getAction() == itemAction) {
+                if (result != null) {
+                    return null;
+                }
+                result = item;
+            }
+        }
+        return result;
     }
 
     private Collection<Item> findItems(final ItemAction itemAction) {
-        return Collections2.<Item>filter(items,
-                                         new Predicate<Item>() {
-                                             @Override
-                                             public boolean apply(final Item input) {
-                                                 return input.getAction() == itemAction;
-                                             }
-                                         });
+        final Collection<Item> result = new ArrayList<Item>(items.size());
+        for (final Item item : items) {
+            if (item.getAction() == itemAction) {
+                result.add(item);
+            }
+        }
+        return result;
     }
 
     @Override
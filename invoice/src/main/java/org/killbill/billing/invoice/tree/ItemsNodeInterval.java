@@ -39,6 +39,8 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Multiset;
 
 /**
  * Node in the SubscriptionItemTree
@@ -252,7 +254,17 @@ public class ItemsNodeInterval extends NodeInterval {
     // When we detect such nodes, we delete both the ADD in the parent interval and the CANCEL in the children (and cleanup the interval if it does not have items)
     //
     private void pruneAndValidateTree() {
-        final NodeInterval root = this;
+        // Ids of the ADD items currently in the tree, kept up-to-date as we prune, to validate the CANCEL items without searching the whole tree each time
+        final Multiset<UUID> addItemIds = HashMultiset.<UUID>create();
+        walkTree(new WalkCallback() {
+            @Override
+            public void onCurrentNode(final int depth, final NodeInterval curNode, final NodeInterval parent) {
+                for (final Item curAddItem : ((ItemsNodeInterval) curNode).getItemsInterval().get_ADD_items()) {
+                    addItemIds.add(curAddItem.getId());
+                }
+            }
+        });
+
         walkTree(new WalkCallback() {
             @Override
             public void onCurrentNode(final int depth, final NodeInterval curNode, final NodeInterval parent) {
@@ -264,7 +276,13 @@ public class ItemsNodeInterval extends NodeInterval {
                 final ItemsInterval curNodeItems = ((ItemsNodeInterval) curNode).getItemsInterval();
 
                 // Case A:
+                for (final Item curAddItem : curNodeItems.get_ADD_items()) {
+                    addItemIds.remove(curAddItem.getId());
+                }
                 final boolean isEmpty = curNodeItems.mergeCancellingPairs();
+                for (final Item curAddItem : curNodeItems.get_ADD_items()) {
+                    addItemIds.add(curAddItem.getId());
+                }
                 if (isEmpty && curNode.getLeftChild() == null) {
                     curNode.getParent().removeChild(curNode);
                 }
@@ -284,15 +302,7 @@ public class ItemsNodeInterval extends NodeInterval {
                     }
 
                     // Sanity: make sure the CANCEL item points to an ADD item
-                    final NodeInterval nodeIntervalForCancelledItem = root.findNode(new SearchCallback() {
-                        @Override
-                        public boolean isMatch(final NodeInterval curNode) {
-                            final ItemsInterval curChildItems = ((ItemsNodeInterval) curNode).getItemsInterval();
-                            final Item cancelledItem = curChildItems.getCancelledItemIfExists(curCancelItem.getLinkedId());
-                            return cancelledItem != null;
-                        }
-                    });
-                    Preconditions.checkState(nodeIntervalForCancelledItem != null, "Missing cancelledItem for cancelItem=%s", curCancelItem);
+                    Preconditions.checkState(addItemIds.contains(curCancelItem.getLinkedId()), "Missing cancelledItem for cancelItem=%s", curCancelItem);
                 }
 
                 for (final Item curAddItem : curNodeItems.get_ADD_items()) {
@@ -359,6 +369,7 @@ public class ItemsNodeInterval extends NodeInterval {
                 // Finally Execute the removal of the curNodeItems outside of the upper while loop so as to not trigger ConcurrentModificationException (see #641)
                 for (Item curNodeItemsRemoval : curNodeItemsToBeRemoved) {
                     curNodeItems.remove(curNodeItemsRemoval);
+                    addItemIds.remove(curNodeItemsRemoval.getId());
                 }
             }
         });
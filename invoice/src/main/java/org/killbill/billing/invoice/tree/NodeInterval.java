@@ -16,23 +16,34 @@
 
 package org.killbill.billing.invoice.tree;
 
-import java.util.List;
+import java.util.Arrays;
 
 import org.joda.time.LocalDate;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.Lists;
 
+/**
+ * Interval node. Children are kept in an array sorted by start date, along with the running maximum of their end dates
+ * (which handles the rare case of overlapping siblings), so that finding the child containing a given interval or date
+ * is a binary search instead of a walk through the siblings.
+ */
 public class NodeInterval {
 
+    private static final NodeInterval[] NO_CHILDREN = new NodeInterval[0];
+    private static final LocalDate[] NO_DATES = new LocalDate[0];
+
     protected NodeInterval parent;
-    protected NodeInterval leftChild;
-    protected NodeInterval rightSibling;
 
     protected LocalDate start;
     protected LocalDate end;
 
+    // Children sorted by start date (insertion order for the same start date)
+    private NodeInterval[] children;
+    // childrenMaxEnd[i] is the max end date of children[0..i], hence non-decreasing
+    private LocalDate[] childrenMaxEnd;
+    private int nbChildren;
+
     public NodeInterval() {
         this(null, null, null);
     }
@@ -41,8 +52,9 @@ public class NodeInterval {
         this.start = startDate;
         this.end = endDate;
         this.parent = parent;
-        this.leftChild = null;
-        this.rightSibling = null;
+        this.children = NO_CHILDREN;
+        this.childrenMaxEnd = NO_DATES;
+        this.nbChildren = 0;
     }
 
     /**
@@ -55,21 +67,20 @@ public class NodeInterval {
 
         Preconditions.checkNotNull(callback);
 
-        if (leftChild == null) {
+        if (nbChildren == 0) {
             callback.onLastNode(this);
             return;
         }
 
         LocalDate curDate = start;
-        NodeInterval curChild = leftChild;
-        while (curChild != null) {
+        for (int i = 0; i < nbChildren; i++) {
+            final NodeInterval curChild = children[i];
             if (curChild.getStart().compareTo(curDate) > 0) {
                 callback.onMissingInterval(this, curDate, curChild.getStart());
             }
             curChild.build(callback);
             // Note that skip to child endDate, meaning that we always consider the child [start end]
             curDate = curChild.getEnd();
-            curChild = curChild.getRightSibling();
         }
 
         // Finally if there is a hole at the end, we build the missing piece from ourselves
@@ -99,50 +110,39 @@ public class NodeInterval {
         computeRootInterval(newNode);
 
         newNode.parent = this;
-        if (leftChild == null) {
+        if (nbChildren == 0) {
             if (callback.shouldInsertNode(this)) {
-                leftChild = newNode;
+                insertChild(0, newNode);
                 return true;
             } else {
                 return false;
             }
         }
 
-        NodeInterval prevChild = null;
-        NodeInterval curChild = leftChild;
-        while (curChild != null) {
+        // Children starting strictly before the new node can only contain it: pick the first one which ends after it
+        final int firstChildNotBefore = lowerBoundStart(newNode.getStart());
+        final int containingChild = firstChildEndingOnOrAfter(newNode.getEnd(), firstChildNotBefore);
+        if (containingChild < firstChildNotBefore) {
+            return children[containingChild].addNode(newNode, callback);
+        }
+
+        if (firstChildNotBefore < nbChildren) {
+            final NodeInterval curChild = children[firstChildNotBefore];
             if (curChild.isItemContained(newNode)) {
                 return curChild.addNode(newNode, callback);
             }
 
             if (curChild.isItemOverlap(newNode)) {
-                if (rebalance(newNode)) {
-                    return callback.shouldInsertNode(this);
-                }
+                rebalance(firstChildNotBefore, newNode);
+                return callback.shouldInsertNode(this);
             }
 
-            if (newNode.getStart().compareTo(curChild.getStart()) < 0) {
-
-                Preconditions.checkState(newNode.getEnd().compareTo(end) <= 0);
-
-                if (callback.shouldInsertNode(this)) {
-                    newNode.rightSibling = curChild;
-                    if (prevChild == null) {
-                        leftChild = newNode;
-                    } else {
-                        prevChild.rightSibling = newNode;
-                    }
-                    return true;
-                } else {
-                    return false;
-                }
-            }
-            prevChild = curChild;
-            curChild = curChild.rightSibling;
+            // The child starts strictly after the new node (same start would either be a containment or an overlap)
+            Preconditions.checkState(newNode.getEnd().compareTo(end) <= 0);
         }
 
         if (callback.shouldInsertNode(this)) {
-            prevChild.rightSibling = newNode;
+            insertChild(firstChildNotBefore, newNode);
             return true;
         } else {
             return false;
@@ -150,57 +150,34 @@ public class NodeInterval {
     }
 
     public void removeChild(final NodeInterval toBeRemoved) {
-        NodeInterval prevChild = null;
-        NodeInterval curChild = leftChild;
-        while (curChild != null) {
+        for (int i = lowerBoundStart(toBeRemoved.getStart()); i < nbChildren && children[i].getStart().compareTo(toBeRemoved.getStart()) == 0; i++) {
+            final NodeInterval curChild = children[i];
             if (curChild.isSame(toBeRemoved)) {
-                if (prevChild == null) {
-                    if (curChild.getLeftChild() == null) {
-                        leftChild = curChild.getRightSibling();
-                    } else {
-                        leftChild = curChild.getLeftChild();
-                        adjustRightMostChildSibling(curChild);
-                    }
-                } else {
-                    if (curChild.getLeftChild() == null) {
-                        prevChild.rightSibling = curChild.getRightSibling();
-                    } else {
-                        prevChild.rightSibling = curChild.getLeftChild();
-                        adjustRightMostChildSibling(curChild);
-                    }
+                // The children of the removed node (if any) take its place
+                final NodeInterval[] grandChildren = Arrays.copyOf(curChild.children, curChild.nbChildren);
+                for (final NodeInterval grandChild : grandChildren) {
+                    grandChild.parent = this;
                 }
+                replaceChildren(i, i + 1, grandChildren);
                 break;
             }
-            prevChild = curChild;
-            curChild = curChild.getRightSibling();
-        }
-    }
-
-    private void adjustRightMostChildSibling(final NodeInterval curNode) {
-        NodeInterval tmpChild = curNode.getLeftChild();
-        NodeInterval preTmpChild = null;
-        while (tmpChild != null) {
-            preTmpChild = tmpChild;
-            tmpChild = tmpChild.getRightSibling();
         }
-        preTmpChild.rightSibling = curNode.getRightSibling();
     }
 
     @JsonIgnore
     public boolean isPartitionedByChildren() {
 
-        if (leftChild == null) {
+        if (nbChildren == 0) {
             return false;
         }
 
         LocalDate curDate = start;
-        NodeInterval curChild = leftChild;
-        while (curChild != null) {
+        for (int i = 0; i < nbChildren; i++) {
+            final NodeInterval curChild = children[i];
             if (curChild.getStart().compareTo(curDate) > 0) {
                 return false;
             }
             curDate = curChild.getEnd();
-            curChild = curChild.getRightSibling();
         }
         return (curDate.compareTo(end) == 0);
     }
@@ -221,18 +198,18 @@ public class NodeInterval {
             return null;
         }
 
-        NodeInterval curChild = leftChild;
-        while (curChild != null) {
-            if (curChild.getStart().compareTo(targetDate) <= 0 && curChild.getEnd().compareTo(targetDate) >= 0) {
+        final int firstChildAfter = upperBoundStart(targetDate);
+        for (int i = firstChildEndingOnOrAfter(targetDate, firstChildAfter); i < firstChildAfter; i++) {
+            final NodeInterval curChild = children[i];
+            if (curChild.getEnd().compareTo(targetDate) >= 0) {
                 if (callback.isMatch(curChild)) {
                     return curChild;
                 }
-                NodeInterval result = curChild.findNode(targetDate, callback);
+                final NodeInterval result = curChild.findNode(targetDate, callback);
                 if (result != null) {
                     return result;
                 }
             }
-            curChild = curChild.getRightSibling();
         }
         return null;
     }
@@ -250,13 +227,11 @@ public class NodeInterval {
             return this;
         }
 
-        NodeInterval curChild = leftChild;
-        while (curChild != null) {
-            final NodeInterval result = curChild.findNode(callback);
+        for (int i = 0; i < nbChildren; i++) {
+            final NodeInterval result = children[i].findNode(callback);
             if (result != null) {
                 return result;
             }
-            curChild = curChild.getRightSibling();
         }
         return null;
     }
@@ -276,10 +251,14 @@ public class NodeInterval {
         Preconditions.checkNotNull(callback);
         callback.onCurrentNode(depth, this, parent);
 
-        NodeInterval curChild = leftChild;
-        while (curChild != null) {
+        if (nbChildren == 0) {
+            return;
+        }
+
+        // The callback may remove the node being visited from its parent, so iterate over a copy
+        final NodeInterval[] curChildren = Arrays.copyOf(children, nbChildren);
+        for (final NodeInterval curChild : curChildren) {
             curChild.walkTreeWithDepth(callback, (depth + 1));
-            curChild = curChild.getRightSibling();
         }
     }
 
@@ -324,27 +303,27 @@ public class NodeInterval {
 
     @JsonIgnore
     public NodeInterval getLeftChild() {
-        return leftChild;
+        return nbChildren == 0 ? null : children[0];
     }
 
     @JsonIgnore
     public NodeInterval getRightSibling() {
-        return rightSibling;
+        if (parent == null) {
+            return null;
+        }
+        final int index = parent.indexOfChild(this);
+        return (index < 0 || index + 1 >= parent.nbChildren) ? null : parent.children[index + 1];
     }
 
     @JsonIgnore
     public int getNbChildren() {
-        int result = 0;
-        NodeInterval curChild = leftChild;
-        while (curChild != null) {
-            result++;
-            curChild = curChild.rightSibling;
-        }
-        return result;
+        return nbChildren;
     }
 
     @Override
     public String toString() {
+        final NodeInterval leftChild = getLeftChild();
+        final NodeInterval rightSibling = getRightSibling();
         final StringBuilder sb = new StringBuilder("NodeInterval{");
         sb.append("this=[")
           .append(start)
@@ -382,62 +361,122 @@ public class NodeInterval {
         return sb.toString();
     }
 
+    /**
+     * Append a child, bypassing the addNode logic. The caller is responsible for keeping the children ordered.
+     *
+     * @param child the new (last) child
+     */
+    void appendChild(final NodeInterval child) {
+        child.parent = this;
+        insertChild(nbChildren, child);
+    }
+
     /**
      * Since items may be added out of order, there is no guarantee that we don't suddenly have a new node
      * whose interval emcompasses cuurent node(s). In which case we need to rebalance the tree.
      *
-     * @param newNode node that triggered a rebalance operation
+     * @param firstOverlappedChild index of the first child overlapped by the new node
+     * @param newNode              node that triggered a rebalance operation
      */
-    private boolean rebalance(final NodeInterval newNode) {
+    private void rebalance(final int firstOverlappedChild, final NodeInterval newNode) {
+        int lastOverlappedChild = firstOverlappedChild + 1;
+        while (lastOverlappedChild < nbChildren && children[lastOverlappedChild].isItemOverlap(newNode)) {
+            lastOverlappedChild++;
+        }
 
-        NodeInterval prevRebalanced = null;
-        NodeInterval curChild = leftChild;
-        List<NodeInterval> toBeRebalanced = Lists.newLinkedList();
-        do {
-            if (curChild.isItemOverlap(newNode)) {
-                toBeRebalanced.add(curChild);
-            } else {
-                if (toBeRebalanced.size() > 0) {
-                    break;
-                }
-                prevRebalanced = curChild;
+        newNode.parent = this;
+        for (int i = firstOverlappedChild; i < lastOverlappedChild; i++) {
+            newNode.appendChild(children[i]);
+        }
+        replaceChildren(firstOverlappedChild, lastOverlappedChild, new NodeInterval[]{newNode});
+    }
+
+    private void computeRootInterval(final NodeInterval newNode) {
+        if (!isRoot()) {
+            return;
+        }
+        this.start = (start == null || start.compareTo(newNode.getStart()) > 0) ? newNode.getStart() : start;
+        this.end = (end == null || end.compareTo(newNode.getEnd()) < 0) ? newNode.getEnd() : end;
+    }
+
+    private int indexOfChild(final NodeInterval child) {
+        for (int i = lowerBoundStart(child.getStart()); i < nbChildren && children[i].getStart().compareTo(child.getStart()) == 0; i++) {
+            if (children[i] == child) {
+                return i;
             }
-            curChild = curChild.rightSibling;
-        } while (curChild != null);
+        }
+        return -1;
+    }
 
-        if (toBeRebalanced.isEmpty()) {
-            return false;
+    // Index of the first child whose start is on or after the date (nbChildren if none)
+    private int lowerBoundStart(final LocalDate date) {
+        int low = 0;
+        int high = nbChildren;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (children[mid].getStart().compareTo(date) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
         }
+        return low;
+    }
 
-        newNode.parent = this;
-        final NodeInterval lastNodeToRebalance = toBeRebalanced.get(toBeRebalanced.size() - 1);
-        newNode.rightSibling = lastNodeToRebalance.rightSibling;
-        lastNodeToRebalance.rightSibling = null;
-        if (prevRebalanced == null) {
-            leftChild = newNode;
-        } else {
-            prevRebalanced.rightSibling = newNode;
+    // Index of the first child whose start is strictly after the date (nbChildren if none)
+    private int upperBoundStart(final LocalDate date) {
+        int low = 0;
+        int high = nbChildren;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (children[mid].getStart().compareTo(date) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
         }
+        return low;
+    }
 
-        NodeInterval prev = null;
-        for (NodeInterval cur : toBeRebalanced) {
-            cur.parent = newNode;
-            if (prev == null) {
-                newNode.leftChild = cur;
+    // Index of the first child among [0, toIndex) whose end is on or after the date (toIndex if none)
+    private int firstChildEndingOnOrAfter(final LocalDate date, final int toIndex) {
+        int low = 0;
+        int high = toIndex;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (childrenMaxEnd[mid].compareTo(date) < 0) {
+                low = mid + 1;
             } else {
-                prev.rightSibling = cur;
+                high = mid;
             }
-            prev = cur;
         }
-        return true;
+        return low;
     }
 
-    private void computeRootInterval(final NodeInterval newNode) {
-        if (!isRoot()) {
-            return;
+    private void insertChild(final int index, final NodeInterval child) {
+        replaceChildren(index, index, new NodeInterval[]{child});
+    }
+
+    // Replace the children [fromIndex, toIndex) with the (ordered) new ones
+    private void replaceChildren(final int fromIndex, final int toIndex, final NodeInterval[] newChildren) {
+        final int newNbChildren = nbChildren - (toIndex - fromIndex) + newChildren.length;
+        if (newNbChildren > children.length) {
+            final int newCapacity = Math.max(newNbChildren, Math.max(4, children.length + (children.length >> 1)));
+            children = Arrays.copyOf(children, newCapacity);
+            childrenMaxEnd = Arrays.copyOf(childrenMaxEnd, newCapacity);
+        }
+        System.arraycopy(children, toIndex, children, fromIndex + newChildren.length, nbChildren - toIndex);
+        System.arraycopy(newChildren, 0, children, fromIndex, newChildren.length);
+        for (int i = newNbChildren; i < nbChildren; i++) {
+            children[i] = null;
+            childrenMaxEnd[i] = null;
+        }
+        nbChildren = newNbChildren;
+
+        for (int i = fromIndex; i < nbChildren; i++) {
+            final LocalDate childEnd = children[i].getEnd();
+            childrenMaxEnd[i] = (i == 0 || childEnd.compareTo(childrenMaxEnd[i - 1]) > 0) ? childEnd : childrenMaxEnd[i - 1];
         }
-        this.start = (start == null || start.compareTo(newNode.getStart()) > 0) ? newNode.getStart() : start;
-        this.end = (end == null || end.compareTo(newNode.getEnd()) < 0) ? newNode.getEnd() : end;
     }
 
     /**
@@ -47,6 +47,7 @@ import org.killbill.billing.invoice.generator.InvoiceWithMetadata.TrackingRecord
 import org.killbill.billing.invoice.model.UsageInvoiceItem;
 import org.killbill.billing.invoice.usage.details.UsageInArrearAggregate;
 import org.killbill.billing.junction.BillingEvent;
+import org.killbill.billing.usage.DailyUsage;
 import org.killbill.billing.usage.RawUsage;
 import org.killbill.billing.usage.api.RolledUpUnit;
 import org.killbill.billing.usage.api.RolledUpUsage;
@@ -395,10 +396,7 @@ public abstract class ContiguousIntervalUsageInArrear {
                 // Start consuming prevRawUsage element if it exists and falls into the range
                 if (prevRawUsage != null) {
                     if (prevRawUsage.getDate().compareTo(prevDate) >= 0 && prevRawUsage.getDate().compareTo(curDate) < 0) {
-                        final Long currentAmount = perRangeUnitToAmount.get(prevRawUsage.getUnitType());
-                        final Long updatedAmount = computeUpdatedAmount(currentAmount, prevRawUsage.getAmount());
-                        perRangeUnitToAmount.put(prevRawUsage.getUnitType(), updatedAmount);
-                        trackingIds.add(new TrackingRecordId(prevRawUsage.getTrackingId(), invoiceId, prevRawUsage.getSubscriptionId(), prevRawUsage.getUnitType(), prevRawUsage.getDate()));
+                        consumeRawUsage(prevRawUsage, perRangeUnitToAmount, trackingIds);
                         prevRawUsage = null;
                     }
                 }
@@ -417,10 +415,7 @@ public abstract class ContiguousIntervalUsageInArrear {
                             break;
                         }
 
-                        final Long currentAmount = perRangeUnitToAmount.get(curRawUsage.getUnitType());
-                        final Long updatedAmount = computeUpdatedAmount(currentAmount, curRawUsage.getAmount());
-                        perRangeUnitToAmount.put(curRawUsage.getUnitType(), updatedAmount);
-                        trackingIds.add(new TrackingRecordId(curRawUsage.getTrackingId(), invoiceId, curRawUsage.getSubscriptionId(), curRawUsage.getUnitType(), curRawUsage.getDate()));
+                        consumeRawUsage(curRawUsage, perRangeUnitToAmount, trackingIds);
                     }
                 }
 
@@ -459,6 +454,22 @@ public abstract class ContiguousIntervalUsageInArrear {
         return new RolledUpUnitsWithTracking(result, trackingIds);
     }
 
+    private void consumeRawUsage(final RawUsage rawUsage, final Map<String, Long> perRangeUnitToAmount, final Set<TrackingRecordId> trackingIds) {
+        final Long currentAmount = perRangeUnitToAmount.get(rawUsage.getUnitType());
+        if (rawUsage instanceof DailyUsage) {
+            // Pre-aggregated entry: the highest amount of the day is what matters for CAPACITY usage, and all tracking ids of the day need to be recorded
+            final DailyUsage dailyUsage = (DailyUsage) rawUsage;
+            final Long amount = usage.getUsageType() == UsageType.CAPACITY ? dailyUsage.getMaxAmount() : dailyUsage.getAmount();
+            perRangeUnitToAmount.put(rawUsage.getUnitType(), computeUpdatedAmount(currentAmount, amount));
+            for (final String trackingId : dailyUsage.getTrackingIds()) {
+                trackingIds.add(new TrackingRecordId(trackingId, invoiceId, rawUsage.getSubscriptionId(), rawUsage.getUnitType(), rawUsage.getDate()));
+            }
+        } else {
+            perRangeUnitToAmount.put(rawUsage.getUnitType(), computeUpdatedAmount(currentAmount, rawUsage.getAmount()));
+            trackingIds.add(new TrackingRecordId(rawUsage.getTrackingId(), invoiceId, rawUsage.getSubscriptionId(), rawUsage.getUnitType(), rawUsage.getDate()));
+        }
+    }
+
     private List<RolledUpUsage> getEmptyRolledUpUsage() {
         final List<RolledUpUsage> result = new ArrayList<RolledUpUsage>();
         final TransitionTime initialTransition = transitionTimes.get(transitionTimes.size() - 2);
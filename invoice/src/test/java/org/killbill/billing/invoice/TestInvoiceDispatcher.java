@@ -19,7 +19,9 @@
 package org.killbill.billing.invoice;
 
 import java.math.BigDecimal;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 import org.joda.time.DateTime;
@@ -28,6 +30,7 @@ import org.killbill.billing.ErrorCode;
 import org.killbill.billing.account.api.Account;
 import org.killbill.billing.account.api.AccountApiException;
 import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.catalog.MockPlan;
 import org.killbill.billing.catalog.MockPlanPhase;
 import org.killbill.billing.catalog.api.BillingMode;
@@ -37,19 +40,23 @@ import org.killbill.billing.catalog.api.Currency;
 import org.killbill.billing.catalog.api.PhaseType;
 import org.killbill.billing.catalog.api.Plan;
 import org.killbill.billing.catalog.api.PlanPhase;
+import org.killbill.billing.events.EffectiveSubscriptionInternalEvent;
 import org.killbill.billing.invoice.TestInvoiceHelper.DryRunFutureDateArguments;
 import org.killbill.billing.invoice.api.DryRunArguments;
 import org.killbill.billing.invoice.api.Invoice;
 import org.killbill.billing.invoice.api.InvoiceApiException;
 import org.killbill.billing.invoice.api.InvoiceItem;
 import org.killbill.billing.invoice.api.InvoiceItemType;
+import org.killbill.billing.invoice.dao.InvoiceDao;
 import org.killbill.billing.invoice.dao.InvoiceItemModelDao;
 import org.killbill.billing.invoice.dao.InvoiceModelDao;
+import org.killbill.billing.invoice.model.DefaultInvoice;
 import org.killbill.billing.junction.BillingEventSet;
 import org.killbill.billing.subscription.api.SubscriptionBase;
 import org.killbill.billing.subscription.api.SubscriptionBaseTransitionType;
 import org.killbill.billing.subscription.api.user.SubscriptionBaseApiException;
 import org.killbill.billing.util.api.TagDefinitionApiException;
+import org.killbill.billing.util.config.definition.InvoiceConfig;
 import org.killbill.billing.util.tag.Tag;
 import org.killbill.billing.util.tag.dao.SystemTags;
 import org.mockito.Mockito;
@@ -339,4 +346,67 @@ public class TestInvoiceDispatcher extends InvoiceTestSuiteWithEmbeddedDB {
             Assert.assertEquals(item.getSubscriptionId(), subscription.getId());
         }
     }
+
+    @Test(groups = "slow")
+    public void testIncrementalGenerationMatchesFullGeneration() throws Exception {
+        final SubscriptionBase subscription2 = invoiceUtil.createSubscription();
+        final Plan plan = MockPlan.createBicycleNoTrialEvergreen1USD();
+        final PlanPhase planPhase = MockPlanPhase.create1USDMonthlyEvergreen();
+
+        final BillingEventSet events = new MockBillingEventSet();
+        events.add(invoiceUtil.createMockBillingEvent(account, subscription, new DateTime("2012-05-01T00:03:42.000Z"), plan, planPhase,
+                                                      null, BigDecimal.ONE, account.getCurrency(), BillingPeriod.MONTHLY,
+                                                      1, BillingMode.IN_ADVANCE, "CREATE", 1L, SubscriptionBaseTransitionType.CREATE));
+        events.add(invoiceUtil.createMockBillingEvent(account, subscription2, new DateTime("2012-05-01T00:03:42.000Z"), plan, planPhase,
+                                                      null, BigDecimal.ONE, account.getCurrency(), BillingPeriod.MONTHLY,
+                                                      1, BillingMode.IN_ADVANCE, "CREATE", 2L, SubscriptionBaseTransitionType.CREATE));
+        Mockito.when(billingApi.getBillingEventsForAccountAndUpdateAccountBCD(Mockito.<UUID>any(), Mockito.<DryRunArguments>any(), Mockito.<InternalCallContext>any())).thenReturn(events);
+
+        // Initial (full) run for both subscriptions
+        Assert.assertNotNull(dispatcher.processAccountFromNotificationOrBusEvent(account.getId(), new LocalDate("2012-05-01"), null, false, context));
+
+        // Price change for the first subscription only
+        final DateTime changeDate = new DateTime("2012-05-15T00:04:00.000Z");
+        events.add(invoiceUtil.createMockBillingEvent(account, subscription, changeDate, plan, planPhase,
+                                                      null, BigDecimal.TEN, account.getCurrency(), BillingPeriod.MONTHLY,
+                                                      1, BillingMode.IN_ADVANCE, "CHANGE", 3L, SubscriptionBaseTransitionType.CHANGE));
+
+        // Full regeneration (dry-run, nothing is persisted)
+        final Invoice fullInvoice = dispatcher.processAccountFromNotificationOrBusEvent(account.getId(), context.toLocalDate(changeDate), new DryRunFutureDateArguments(), false, context);
+        Assert.assertNotNull(fullInvoice);
+
+        // Incremental generation for the same account and target date
+        final InvoiceConfig incrementalInvoiceConfig = Mockito.spy(invoiceConfig);
+        Mockito.doReturn(true).when(incrementalInvoiceConfig).isIncrementalInvoiceGenerationEnabled(Mockito.<InternalTenantContext>any());
+        final InvoiceDao spiedInvoiceDao = Mockito.spy(invoiceDao);
+        final InvoiceDispatcher incrementalDispatcher = new InvoiceDispatcher(generator, accountApi, billingApi, subscriptionApi, spiedInvoiceDao,
+                                                                              internalCallContextFactory, invoicePluginDispatcher, locker, busService.getBus(),
+                                                                              notificationQueueService, incrementalInvoiceConfig, clock, parkedAccountsManager);
+        final EffectiveSubscriptionInternalEvent transition = Mockito.mock(EffectiveSubscriptionInternalEvent.class);
+        Mockito.when(transition.getSubscriptionId()).thenReturn(subscription.getId());
+        Mockito.when(transition.getEffectiveTransitionTime()).thenReturn(changeDate);
+        incrementalDispatcher.processSubscriptionForInvoiceGeneration(transition, context);
+
+        // Only the items of the changed subscription were loaded
+        Mockito.verify(spiedInvoiceDao).getInvoicesWithItemsForSubscriptions(ImmutableSet.<UUID>of(subscription.getId()), context);
+        Mockito.verify(spiedInvoiceDao, Mockito.never()).getInvoicesByAccount(false, context);
+
+        final List<InvoiceModelDao> invoices = invoiceDao.getInvoicesByAccount(false, context);
+        Assert.assertEquals(invoices.size(), 2);
+        final InvoiceModelDao incrementalInvoice = invoices.get(0).getTargetDate().compareTo(context.toLocalDate(changeDate)) == 0 ? invoices.get(0) : invoices.get(1);
+        Assert.assertEquals(toComparableItems(new DefaultInvoice(incrementalInvoice).getInvoiceItems()), toComparableItems(fullInvoice.getInvoiceItems()));
+    }
+
+    private Set<String> toComparableItems(final Iterable<InvoiceItem> invoiceItems) {
+        final Set<String> result = new HashSet<String>();
+        for (final InvoiceItem invoiceItem : invoiceItems) {
+            result.add(String.format("%s|%s|%s|%s|%s",
+                                     invoiceItem.getInvoiceItemType(),
+                                     invoiceItem.getSubscriptionId(),
+                                     invoiceItem.getStartDate(),
+                                     invoiceItem.getEndDate(),
+                                     invoiceItem.getAmount().stripTrailingZeros().toPlainString()));
+        }
+        return result;
+    }
 }
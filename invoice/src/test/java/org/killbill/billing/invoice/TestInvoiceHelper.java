@@ -282,6 +282,8 @@ public class TestInvoiceHelper {
 
     public void createInvoiceItem(final InvoiceItem invoiceItem, final InternalCallContext internalCallContext) throws EntityPersistenceException {
         invoiceItemSqlDao.create(new InvoiceItemModelDao(invoiceItem), internalCallContext);
+        // Bypassing the DAO: keep the account balance snapshot in sync
+        invoiceDao.rebuildAccountBalance(internalCallContext);
     }
 
     public InvoiceItemModelDao getInvoiceItemById(final UUID invoiceItemId, final InternalCallContext internalCallContext) {
@@ -312,8 +314,9 @@ public class TestInvoiceHelper {
         invoiceSqlDao.create(invoiceModelDao, internalCallContext);
 
         for (final InvoiceItem invoiceItem : invoice.getInvoiceItems()) {
-            createInvoiceItem(invoiceItem, internalCallContext);
+            invoiceItemSqlDao.create(new InvoiceItemModelDao(invoiceItem), internalCallContext);
         }
+        invoiceDao.rebuildAccountBalance(internalCallContext);
     }
 
     public void createPayment(final InvoicePayment invoicePayment, final InternalCallContext internalCallContext) {
@@ -322,6 +325,7 @@ public class TestInvoiceHelper {
         } catch (final EntityPersistenceException e) {
             Assert.fail(e.getMessage());
         }
+        invoiceDao.rebuildAccountBalance(internalCallContext);
     }
 
     public void verifyInvoice(final UUID invoiceId, final double balance, final double cbaAmount, final InternalTenantContext context) throws InvoiceApiException {
@@ -21,6 +21,7 @@ package org.killbill.billing.invoice.dao;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -28,6 +29,9 @@ import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 
+import javax.annotation.Nullable;
+
+import org.joda.time.DateTime;
 import org.joda.time.LocalDate;
 import org.killbill.billing.account.api.Account;
 import org.killbill.billing.callcontext.InternalCallContext;
@@ -189,6 +193,44 @@ public class MockInvoiceDao extends MockEntityDaoBase<InvoiceModelDao, Invoice,
         return result;
     }
 
+    @Override
+    public List<InvoiceModelDao> getInvoicesWithItemsForSubscriptions(final Set<UUID> subscriptionIds, final InternalTenantContext context) {
+        final List<InvoiceModelDao> result = new ArrayList<InvoiceModelDao>();
+        for (final InvoiceModelDao invoice : getInvoicesByAccount(false, context)) {
+            final Set<UUID> itemIds = new HashSet<UUID>();
+            for (final InvoiceItemModelDao item : invoice.getInvoiceItems()) {
+                if (subscriptionIds.contains(item.getSubscriptionId())) {
+                    itemIds.add(item.getId());
+                }
+            }
+
+            final InvoiceModelDao invoiceForSubscriptions = new InvoiceModelDao(invoice.getId(), invoice.getCreatedDate(), invoice.getAccountId(), invoice.getInvoiceNumber(),
+                                                                                invoice.getInvoiceDate(), invoice.getTargetDate(), invoice.getCurrency(), invoice.isMigrated(),
+                                                                                invoice.getStatus(), invoice.isParentInvoice());
+            for (final InvoiceItemModelDao item : invoice.getInvoiceItems()) {
+                if (itemIds.contains(item.getId()) || itemIds.contains(item.getLinkedItemId())) {
+                    invoiceForSubscriptions.addInvoiceItem(item);
+                }
+            }
+            result.add(invoiceForSubscriptions);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean hasAccountLevelItemsCreatedAfter(@Nullable final DateTime createdDate, final InternalTenantContext context) {
+        for (final InvoiceModelDao invoice : getInvoicesByAccount(false, context)) {
+            for (final InvoiceItemModelDao item : invoice.getInvoiceItems()) {
+                if (item.getSubscriptionId() == null &&
+                    item.getLinkedItemId() == null &&
+                    (createdDate == null || item.getCreatedDate() == null || item.getCreatedDate().compareTo(createdDate) > 0)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     @Override
     public Pagination<InvoiceModelDao> searchInvoices(final String searchKey, final Long offset, final Long limit, final InternalTenantContext context) {
         final List<InvoiceModelDao> results = new LinkedList<InvoiceModelDao>();
@@ -383,6 +425,11 @@ public class MockInvoiceDao extends MockEntityDaoBase<InvoiceModelDao, Invoice,
         return null;
     }
 
+    @Override
+    public boolean rebuildAccountBalance(final InternalCallContext context) {
+        return false;
+    }
+
     @Override
     public InvoicePaymentModelDao createRefund(final UUID paymentId, final BigDecimal amount, final boolean isInvoiceAdjusted,
                                                final Map<UUID, BigDecimal> invoiceItemIdsWithAmounts, final String transactionExternalKey,
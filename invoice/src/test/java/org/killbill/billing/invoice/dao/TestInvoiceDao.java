@@ -25,6 +25,12 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nullable;
 
@@ -87,6 +93,7 @@ import static org.killbill.billing.invoice.TestInvoiceHelper.TEN;
 import static org.killbill.billing.invoice.TestInvoiceHelper.TWENTY;
 import static org.killbill.billing.invoice.TestInvoiceHelper.ZERO;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
@@ -298,6 +305,69 @@ public class TestInvoiceDao extends InvoiceTestSuiteWithEmbeddedDB {
         assertEquals(items4.size(), 1);
     }
 
+    @Test(groups = "slow")
+    public void testGetInvoicesWithItemsForSubscriptions() throws EntityPersistenceException {
+        final UUID accountId = account.getId();
+        final UUID bundleId = UUID.randomUUID();
+        final UUID subscriptionId1 = UUID.randomUUID();
+        final UUID subscriptionId2 = UUID.randomUUID();
+        final BigDecimal rate = new BigDecimal("17.0");
+        final LocalDate startDate = new LocalDate(2011, 3, 1);
+        final LocalDate endDate = startDate.plusMonths(1);
+
+        final Invoice invoice1 = new DefaultInvoice(accountId, clock.getUTCToday(), startDate, Currency.USD);
+        invoiceUtil.createInvoice(invoice1, context);
+        final RecurringInvoiceItem item1 = new RecurringInvoiceItem(invoice1.getId(), accountId, bundleId, subscriptionId1, "test product", "test plan", "test A", startDate, endDate,
+                                                                    rate, rate, Currency.USD);
+        invoiceUtil.createInvoiceItem(item1, context);
+        final RecurringInvoiceItem item2 = new RecurringInvoiceItem(invoice1.getId(), accountId, bundleId, subscriptionId2, "test product", "test plan", "test B", startDate, endDate,
+                                                                    rate, rate, Currency.USD);
+        invoiceUtil.createInvoiceItem(item2, context);
+
+        // Invoice only containing an adjustment (no subscription id) for subscription 1
+        final Invoice invoice2 = new DefaultInvoice(accountId, clock.getUTCToday(), startDate, Currency.USD);
+        invoiceUtil.createInvoice(invoice2, context);
+        final RepairAdjInvoiceItem item1Repair = new RepairAdjInvoiceItem(invoice2.getId(), accountId, startDate.plusDays(10), endDate, new BigDecimal("-10.0"), Currency.USD, item1.getId());
+        invoiceUtil.createInvoiceItem(item1Repair, context);
+
+        final List<InvoiceModelDao> invoices = invoiceDao.getInvoicesWithItemsForSubscriptions(ImmutableSet.<UUID>of(subscriptionId1), context);
+        assertEquals(invoices.size(), 2);
+        for (final InvoiceModelDao invoice : invoices) {
+            assertEquals(invoice.getInvoiceItems().size(), 1);
+            if (invoice.getId().equals(invoice1.getId())) {
+                assertEquals(invoice.getInvoiceItems().get(0).getId(), item1.getId());
+            } else {
+                assertEquals(invoice.getInvoiceItems().get(0).getId(), item1Repair.getId());
+            }
+        }
+
+        final List<InvoiceModelDao> invoicesForSubscription2 = invoiceDao.getInvoicesWithItemsForSubscriptions(ImmutableSet.<UUID>of(subscriptionId2), context);
+        assertEquals(invoicesForSubscription2.size(), 2);
+        for (final InvoiceModelDao invoice : invoicesForSubscription2) {
+            assertEquals(invoice.getInvoiceItems().size(), invoice.getId().equals(invoice1.getId()) ? 1 : 0);
+        }
+    }
+
+    @Test(groups = "slow")
+    public void testHasAccountLevelItemsCreatedAfter() throws EntityPersistenceException {
+        final UUID accountId = account.getId();
+        final LocalDate startDate = new LocalDate(2011, 3, 1);
+        final BigDecimal rate = new BigDecimal("17.0");
+
+        final Invoice invoice = new DefaultInvoice(accountId, clock.getUTCToday(), startDate, Currency.USD);
+        invoiceUtil.createInvoice(invoice, context);
+        final RecurringInvoiceItem recurring = new RecurringInvoiceItem(invoice.getId(), accountId, UUID.randomUUID(), UUID.randomUUID(), "test product", "test plan", "test A", startDate, startDate.plusMonths(1),
+                                                                        rate, rate, Currency.USD);
+        invoiceUtil.createInvoiceItem(recurring, context);
+        // Adjustments are linked to the subscription item
+        invoiceUtil.createInvoiceItem(new ItemAdjInvoiceItem(recurring, startDate, new BigDecimal("-1.0"), Currency.USD), context);
+        assertFalse(invoiceDao.hasAccountLevelItemsCreatedAfter(null, context));
+
+        invoiceUtil.createInvoiceItem(new ExternalChargeInvoiceItem(invoice.getId(), accountId, null, null, startDate, startDate, rate, Currency.USD, null), context);
+        assertTrue(invoiceDao.hasAccountLevelItemsCreatedAfter(null, context));
+        assertFalse(invoiceDao.hasAccountLevelItemsCreatedAfter(clock.getUTCNow().plusDays(1), context));
+    }
+
     @Test(groups = "slow")
     public void testGetInvoicesBySubscriptionForFixedItems() throws EntityPersistenceException {
         final UUID accountId = account.getId();
@@ -535,6 +605,145 @@ public class TestInvoiceDao extends InvoiceTestSuiteWithEmbeddedDB {
         assertEquals(balance.compareTo(rate1.add(rate2).subtract(payment1)), 0);
     }
 
+    @Test(groups = "slow")
+    public void testAccountBalanceSnapshot() throws Exception {
+        final UUID accountId = account.getId();
+        final BigDecimal rate = new BigDecimal("17.0");
+
+        // No invoice, no snapshot
+        assertFalse(invoiceDao.rebuildAccountBalance(context));
+        assertEquals(invoiceDao.getAccountBalance(accountId, context).compareTo(BigDecimal.ZERO), 0);
+
+        final InvoiceModelDao invoice = new InvoiceModelDao(accountId, clock.getUTCToday(), clock.getUTCToday(), Currency.USD, false);
+        invoice.addInvoiceItem(new InvoiceItemModelDao(new ExternalChargeInvoiceItem(invoice.getId(), accountId, null, null, clock.getUTCToday(), clock.getUTCToday(), rate, Currency.USD, null)));
+        invoiceDao.createInvoices(ImmutableList.<InvoiceModelDao>of(invoice), ImmutableSet.of(), context);
+        assertFalse(invoiceDao.rebuildAccountBalance(context));
+        assertEquals(invoiceDao.getAccountBalance(accountId, context).compareTo(rate), 0);
+
+        final BigDecimal paymentAmount = new BigDecimal("10.0");
+        final DefaultInvoicePayment payment = new DefaultInvoicePayment(InvoicePaymentType.ATTEMPT, UUID.randomUUID(), invoice.getId(), clock.getUTCNow(), paymentAmount, Currency.USD, Currency.USD, "cookie", true);
+        invoiceDao.notifyOfPaymentCompletion(new InvoicePaymentModelDao(payment), context);
+        assertFalse(invoiceDao.rebuildAccountBalance(context));
+        assertEquals(invoiceDao.getAccountBalance(accountId, context).compareTo(rate.subtract(paymentAmount)), 0);
+
+        // Bypass the DAO: the snapshot is now stale
+        final InvoiceItemModelDao charge = new InvoiceItemModelDao(new ExternalChargeInvoiceItem(invoice.getId(), accountId, null, null, clock.getUTCToday(), clock.getUTCToday(), rate, Currency.USD, null));
+        dbi.onDemand(InvoiceItemSqlDao.class).create(charge, context);
+        assertEquals(invoiceDao.getAccountBalance(accountId, context).compareTo(rate.subtract(paymentAmount)), 0);
+
+        assertTrue(invoiceDao.rebuildAccountBalance(context));
+        assertFalse(invoiceDao.rebuildAccountBalance(context));
+        assertEquals(invoiceDao.getAccountBalance(accountId, context).compareTo(rate.add(rate).subtract(paymentAmount)), 0);
+        assertEquals(invoiceDao.getAccountCBA(accountId, context).compareTo(BigDecimal.ZERO), 0);
+    }
+
+    @Test(groups = "slow")
+    public void testAccountBalanceSnapshotUpdates() throws Exception {
+        final UUID accountId = account.getId();
+        final BigDecimal rate = new BigDecimal("17.0");
+        final BigDecimal creditAmount = new BigDecimal("5.0");
+
+        final InvoiceModelDao invoice = new InvoiceModelDao(accountId, clock.getUTCToday(), clock.getUTCToday(), Currency.USD, false);
+        invoice.addInvoiceItem(new InvoiceItemModelDao(new ExternalChargeInvoiceItem(invoice.getId(), accountId, null, null, clock.getUTCToday(), clock.getUTCToday(), rate, Currency.USD, null)));
+        invoiceDao.createInvoices(ImmutableList.<InvoiceModelDao>of(invoice), ImmutableSet.of(), context);
+
+        // Credit: the CBA is generated on the credit invoice and consumed on the unpaid one
+        final InvoiceModelDao creditInvoice = new InvoiceModelDao(accountId, clock.getUTCToday(), clock.getUTCToday(), Currency.USD, false);
+        creditInvoice.addInvoiceItem(new InvoiceItemModelDao(new CreditAdjInvoiceItem(creditInvoice.getId(), accountId, clock.getUTCToday(), null, creditAmount.negate(), Currency.USD, null)));
+        invoiceDao.createInvoices(ImmutableList.<InvoiceModelDao>of(creditInvoice), ImmutableSet.of(), context);
+        // The snapshot updated by the writes matches a full recomputation
+        assertFalse(invoiceDao.rebuildAccountBalance(context));
+        assertEquals(invoiceDao.getAccountBalance(accountId, context).compareTo(rate.subtract(creditAmount)), 0);
+        assertEquals(invoiceDao.getAccountCBA(accountId, context).compareTo(BigDecimal.ZERO), 0);
+
+        final BigDecimal paymentAmount = new BigDecimal("20.0");
+        final DefaultInvoicePayment payment = new DefaultInvoicePayment(InvoicePaymentType.ATTEMPT, UUID.randomUUID(), invoice.getId(), clock.getUTCNow(), paymentAmount, Currency.USD, Currency.USD, "cookie", true);
+        invoiceDao.notifyOfPaymentCompletion(new InvoicePaymentModelDao(payment), context);
+        assertFalse(invoiceDao.rebuildAccountBalance(context));
+        assertEquals(invoiceDao.getAccountBalance(accountId, context).compareTo(rate.subtract(creditAmount).subtract(paymentAmount)), 0);
+
+        // DRAFT invoices don't count until they are committed
+        final InvoiceModelDao draftInvoice = new InvoiceModelDao(accountId, clock.getUTCToday(), clock.getUTCToday(), Currency.USD, false, InvoiceStatus.DRAFT);
+        draftInvoice.addInvoiceItem(new InvoiceItemModelDao(new ExternalChargeInvoiceItem(draftInvoice.getId(), accountId, null, null, clock.getUTCToday(), clock.getUTCToday(), rate, Currency.USD, null)));
+        invoiceDao.createInvoices(ImmutableList.<InvoiceModelDao>of(draftInvoice), ImmutableSet.of(), context);
+        assertFalse(invoiceDao.rebuildAccountBalance(context));
+        assertEquals(invoiceDao.getAccountBalance(accountId, context).compareTo(rate.subtract(creditAmount).subtract(paymentAmount)), 0);
+
+        invoiceDao.changeInvoiceStatus(draftInvoice.getId(), InvoiceStatus.COMMITTED, context);
+        assertFalse(invoiceDao.rebuildAccountBalance(context));
+        assertEquals(invoiceDao.getAccountBalance(accountId, context).compareTo(rate.add(rate).subtract(creditAmount).subtract(paymentAmount)), 0);
+    }
+
+    @Test(groups = "slow")
+    public void testAccountBalanceSnapshotRepair() throws Exception {
+        final UUID accountId = account.getId();
+        final BigDecimal rate = new BigDecimal("17.0");
+        final InvoiceAccountBalanceSqlDao invoiceAccountBalanceSqlDao = dbi.onDemand(InvoiceAccountBalanceSqlDao.class);
+
+        final InvoiceModelDao invoice = new InvoiceModelDao(accountId, clock.getUTCToday(), clock.getUTCToday(), Currency.USD, false);
+        invoice.addInvoiceItem(new InvoiceItemModelDao(new ExternalChargeInvoiceItem(invoice.getId(), accountId, null, null, clock.getUTCToday(), clock.getUTCToday(), rate, Currency.USD, null)));
+        invoiceDao.createInvoices(ImmutableList.<InvoiceModelDao>of(invoice), ImmutableSet.of(), context);
+        assertNotNull(invoiceAccountBalanceSqlDao.getByAccountRecordId(context));
+
+        // E.g. account created before the snapshots were introduced: the balance is computed from the invoices...
+        invoiceAccountBalanceSqlDao.deleteByAccountRecordId(context);
+        assertEquals(invoiceDao.getAccountBalance(accountId, context).compareTo(rate), 0);
+
+        // ...until the next write, which builds the snapshot once
+        final BigDecimal paymentAmount = new BigDecimal("10.0");
+        final DefaultInvoicePayment payment = new DefaultInvoicePayment(InvoicePaymentType.ATTEMPT, UUID.randomUUID(), invoice.getId(), clock.getUTCNow(), paymentAmount, Currency.USD, Currency.USD, "cookie", true);
+        invoiceDao.notifyOfPaymentCompletion(new InvoicePaymentModelDao(payment), context);
+        final InvoiceAccountBalanceModelDao snapshot = invoiceAccountBalanceSqlDao.getByAccountRecordId(context);
+        assertNotNull(snapshot);
+        assertFalse(snapshot.isAccountHierarchy());
+        assertEquals(snapshot.getBalance().compareTo(rate.subtract(paymentAmount)), 0);
+        assertFalse(invoiceDao.rebuildAccountBalance(context));
+    }
+
+    @Test(groups = "slow")
+    public void testAccountBalanceSnapshotConcurrentUpdates() throws Exception {
+        final UUID accountId = account.getId();
+        final BigDecimal rate = new BigDecimal("17.0");
+        final BigDecimal paymentAmount = new BigDecimal("10.0");
+        final int nbThreads = 4;
+
+        final List<InvoiceModelDao> invoices = new ArrayList<InvoiceModelDao>();
+        for (int i = 0; i < nbThreads; i++) {
+            final InvoiceModelDao invoice = new InvoiceModelDao(accountId, clock.getUTCToday(), clock.getUTCToday(), Currency.USD, false);
+            invoice.addInvoiceItem(new InvoiceItemModelDao(new ExternalChargeInvoiceItem(invoice.getId(), accountId, null, null, clock.getUTCToday(), clock.getUTCToday(), rate, Currency.USD, null)));
+            invoiceDao.createInvoices(ImmutableList.<InvoiceModelDao>of(invoice), ImmutableSet.of(), context);
+            invoices.add(invoice);
+        }
+
+        // Payments on different invoices of the same account, starting from the same snapshot
+        final CyclicBarrier barrier = new CyclicBarrier(nbThreads);
+        final ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+        try {
+            final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (final InvoiceModelDao invoice : invoices) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        final DefaultInvoicePayment payment = new DefaultInvoicePayment(InvoicePaymentType.ATTEMPT, UUID.randomUUID(), invoice.getId(), clock.getUTCNow(), paymentAmount, Currency.USD, Currency.USD, "cookie-" + invoice.getId(), true);
+                        barrier.await();
+                        invoiceDao.notifyOfPaymentCompletion(new InvoicePaymentModelDao(payment), context);
+                        return null;
+                    }
+                }));
+            }
+            for (final Future<Void> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // No payment was lost
+        final BigDecimal expectedBalance = rate.subtract(paymentAmount).multiply(new BigDecimal(nbThreads));
+        assertEquals(invoiceDao.getAccountBalance(accountId, context).compareTo(expectedBalance), 0);
+        assertFalse(invoiceDao.rebuildAccountBalance(context));
+    }
+
     @Test(groups = "slow")
     public void testAccountBalanceWithCredit() throws EntityPersistenceException {
         final UUID accountId = account.getId();
@@ -1876,4 +2085,22 @@ public class TestInvoiceDao extends InvoiceTestSuiteWithEmbeddedDB {
         assertEquals(targetInvoice.getInvoiceItems().get(0).getId(), recurringItem1.getId());
     }
 
+    @Test(groups = "slow")
+    public void testCreateInvoicesWithManyExistingItems() throws Exception {
+        final UUID accountId = account.getId();
+        final BigDecimal rate = new BigDecimal("1.0");
+
+        // More items than the maximum number of ids per lookup query
+        final InvoiceModelDao invoice = new InvoiceModelDao(accountId, clock.getUTCToday(), clock.getUTCToday(), Currency.USD, false);
+        for (int i = 0; i < 2500; i++) {
+            invoice.addInvoiceItem(new InvoiceItemModelDao(new ExternalChargeInvoiceItem(invoice.getId(), accountId, null, "charge " + i, clock.getUTCToday(), clock.getUTCToday(), rate, Currency.USD, null)));
+        }
+        invoiceDao.createInvoices(ImmutableList.<InvoiceModelDao>of(invoice), ImmutableSet.of(), context);
+        assertEquals(invoiceDao.getById(invoice.getId(), context).getInvoiceItems().size(), 2500);
+
+        // All existing items are found again, across lookup chunks, and aren't re-created
+        invoiceDao.createInvoices(ImmutableList.<InvoiceModelDao>of(invoice), ImmutableSet.of(), context);
+        assertEquals(invoiceDao.getById(invoice.getId(), context).getInvoiceItems().size(), 2500);
+        assertEquals(invoiceDao.getAccountBalance(accountId, context).compareTo(new BigDecimal("2500.0")), 0);
+    }
 }
@@ -427,6 +427,54 @@ public class TestNodeInterval /* extends InvoiceTestSuiteNoDB  */ {
 
     }
 
+    @Test(groups = "fast")
+    public void testAddManyItemsOutOfOrder() {
+        final DummyNodeInterval root = new DummyNodeInterval();
+
+        // 5 years of monthly periods, inserted in a scrambled order
+        final int nbMonths = 60;
+        final List<DummyNodeInterval> months = new ArrayList<DummyNodeInterval>();
+        for (int i = 0; i < nbMonths; i++) {
+            months.add(createNodeInterval(new LocalDate("2014-01-01").plusMonths(i), new LocalDate("2014-02-01").plusMonths(i)));
+        }
+        for (int i = 0; i < nbMonths; i++) {
+            root.addNode(months.get((i * 7) % nbMonths), CALLBACK);
+        }
+        assertEquals(root.getNbChildren(), nbMonths);
+        checkInterval(root, createNodeInterval("2014-01-01", "2019-01-01"));
+
+        NodeInterval curChild = root.getLeftChild();
+        for (int i = 0; i < nbMonths; i++) {
+            checkNode(curChild, 0, root, null, i == nbMonths - 1 ? null : months.get(i + 1));
+            checkInterval(curChild, months.get(i));
+            curChild = curChild.getRightSibling();
+        }
+
+        // A mid-month repair ends up below its month
+        final DummyNodeInterval repair = createNodeInterval("2016-06-15", "2016-07-01");
+        root.addNode(repair, CALLBACK);
+        assertEquals(root.getNbChildren(), nbMonths);
+        assertEquals(repair.getParent(), months.get(29));
+
+        final NodeInterval search = root.findNode(new LocalDate("2016-06-20"), new SearchCallback() {
+            @Override
+            public boolean isMatch(final NodeInterval curNode) {
+                return ((DummyNodeInterval) curNode).getId().equals(repair.getId());
+            }
+        });
+        checkInterval(search, repair);
+
+        // A yearly period encompassing 12 existing months triggers a rebalance
+        final DummyNodeInterval year = createNodeInterval("2016-01-01", "2017-01-01");
+        root.addNode(year, CALLBACK);
+        assertEquals(root.getNbChildren(), nbMonths - 11);
+        checkNode(year, 12, root, months.get(24), months.get(36));
+        assertEquals(months.get(23).getRightSibling(), year);
+        assertEquals(months.get(35).getRightSibling(), null);
+        assertEquals(months.get(35).getParent(), year);
+        assertEquals(repair.getParent(), months.get(29));
+    }
+
     private void checkInterval(final NodeInterval real, final NodeInterval expected) {
         assertEquals(real.getStart(), expected.getStart());
         assertEquals(real.getEnd(), expected.getEnd());
@@ -59,9 +59,9 @@ public class TestTreePrinter extends InvoiceTestSuiteNoDB {
 
     @Test(groups = "fast")
     public void testSimpleTranslate() throws Exception {
-        root.leftChild = node11;
-        node11.rightSibling = node12;
-        node12.leftChild = node23;
+        root.appendChild(node11);
+        root.appendChild(node12);
+        node12.appendChild(node23);
 
         final SortedMap<XY, ItemsNodeInterval> coords = TreePrinter.buildCoordinates(root);
         Assert.assertEquals(coords.size(), 4);
@@ -78,14 +78,14 @@ public class TestTreePrinter extends InvoiceTestSuiteNoDB {
         Assert.assertEquals(coords.size(), 1);
         Assert.assertEquals(coords.get(new XY(0, 0)), root);
 
-        root.leftChild = node11;
+        root.appendChild(node11);
 
         coords = TreePrinter.buildCoordinates(root);
         Assert.assertEquals(coords.size(), 2);
         Assert.assertEquals(coords.get(new XY(0, 0)), root);
         Assert.assertEquals(coords.get(new XY(-1, -1)), node11);
 
-        node11.rightSibling = node12;
+        root.appendChild(node12);
 
         coords = TreePrinter.buildCoordinates(root);
         Assert.assertEquals(coords.size(), 3);
@@ -93,7 +93,7 @@ public class TestTreePrinter extends InvoiceTestSuiteNoDB {
         Assert.assertEquals(coords.get(new XY(-1, -1)), node11);
         Assert.assertEquals(coords.get(new XY(0, -1)), node12);
 
-        node11.leftChild = node21;
+        node11.appendChild(node21);
 
         coords = TreePrinter.buildCoordinates(root);
         Assert.assertEquals(coords.size(), 4);
@@ -102,7 +102,7 @@ public class TestTreePrinter extends InvoiceTestSuiteNoDB {
         Assert.assertEquals(coords.get(new XY(0, -1)), node12);
         Assert.assertEquals(coords.get(new XY(-2, -2)), node21);
 
-        node21.rightSibling = node22;
+        node11.appendChild(node22);
 
         coords = TreePrinter.buildCoordinates(root);
         Assert.assertEquals(coords.size(), 5);
@@ -112,7 +112,7 @@ public class TestTreePrinter extends InvoiceTestSuiteNoDB {
         Assert.assertEquals(coords.get(new XY(-2, -2)), node21);
         Assert.assertEquals(coords.get(new XY(-1, -2)), node22);
 
-        node12.leftChild = node23;
+        node12.appendChild(node23);
         //System.out.println(TreePrinter.print(root));
 
         coords = TreePrinter.buildCoordinates(root);
@@ -124,7 +124,7 @@ public class TestTreePrinter extends InvoiceTestSuiteNoDB {
         Assert.assertEquals(coords.get(new XY(-1, -2)), node22);
         Assert.assertEquals(coords.get(new XY(0, -2)), node23); // (-1,-2) before translation
 
-        node23.leftChild = node31;
+        node23.appendChild(node31);
         //System.out.println(TreePrinter.print(root));
 
         coords = TreePrinter.buildCoordinates(root);
@@ -39,12 +39,14 @@ import org.killbill.billing.invoice.api.InvoiceItem;
 import org.killbill.billing.invoice.generator.InvoiceWithMetadata.TrackingRecordId;
 import org.killbill.billing.invoice.model.FixedPriceInvoiceItem;
 import org.killbill.billing.invoice.model.UsageInvoiceItem;
+import org.killbill.billing.invoice.usage.ContiguousIntervalUsageInArrear.RolledUpUnitsWithTracking;
 import org.killbill.billing.invoice.usage.ContiguousIntervalUsageInArrear.UsageInArrearItemsAndNextNotificationDate;
 import org.killbill.billing.invoice.usage.details.UsageCapacityInArrearAggregate;
 import org.killbill.billing.invoice.usage.details.UsageInArrearTierUnitDetail;
 import org.killbill.billing.junction.BillingEvent;
 import org.killbill.billing.usage.RawUsage;
 import org.killbill.billing.usage.api.RolledUpUnit;
+import org.killbill.billing.usage.api.svcs.DefaultDailyUsage;
 import org.killbill.billing.usage.api.svcs.DefaultRawUsage;
 import org.killbill.billing.util.config.definition.InvoiceConfig.UsageDetailMode;
 import org.testng.annotations.Test;
@@ -52,6 +54,7 @@ import org.testng.annotations.Test;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 
@@ -245,6 +248,40 @@ public class TestContiguousIntervalCapacityInArrear extends TestUsageInArrearBas
         assertTrue(result.get(1).getEndDate().compareTo(endDate) == 0);
     }
 
+    @Test(groups = "fast")
+    public void testGetRolledUpUsageWithDailyUsage() throws Exception {
+
+        final LocalDate startDate = new LocalDate(2014, 03, 20);
+        final LocalDate firstBCDDate = new LocalDate(2014, 04, 15);
+        final LocalDate endDate = new LocalDate(2014, 05, 15);
+
+        final List<RawUsage> rawUsages = new ArrayList<RawUsage>();
+        // First period: 3 records on the same day (130 + 271 + 20) and another day
+        rawUsages.add(new DefaultDailyUsage(subscriptionId, new LocalDate(2014, 03, 20), "unit1", 421L, 271L, ImmutableSet.<String>of("tracking-1", "tracking-2", "tracking-3")));
+        rawUsages.add(new DefaultDailyUsage(subscriptionId, new LocalDate(2014, 03, 21), "unit1", 50L, 50L, ImmutableSet.<String>of("tracking-4")));
+        // Second period
+        rawUsages.add(new DefaultDailyUsage(subscriptionId, new LocalDate(2014, 04, 15), "unit1", 199L, 100L, ImmutableSet.<String>of("tracking-5", "tracking-6")));
+
+        final DefaultUnit unit1 = new DefaultUnit().setName("unit1");
+        final DefaultLimit limit1 = new DefaultLimit().setUnit(unit1).setMax((double) -1);
+        final DefaultTier tier = createDefaultTierWithLimits(BigDecimal.TEN, limit1);
+        final DefaultUsage usage = createCapacityInArrearUsage(usageName, BillingPeriod.MONTHLY, tier);
+
+        final BillingEvent event1 = createMockBillingEvent(startDate.toDateTimeAtStartOfDay(DateTimeZone.UTC), BillingPeriod.MONTHLY, Collections.<Usage>emptyList());
+        final BillingEvent event2 = createMockBillingEvent(endDate.toDateTimeAtStartOfDay(DateTimeZone.UTC), BillingPeriod.MONTHLY, Collections.<Usage>emptyList());
+        final ContiguousIntervalCapacityUsageInArrear intervalCapacityInArrear = createContiguousIntervalCapacityInArrear(usage, rawUsages, endDate, true, event1, event2);
+
+        final RolledUpUnitsWithTracking rolledUpUsage = intervalCapacityInArrear.getRolledUpUsage();
+        assertEquals(rolledUpUsage.getUsage().size(), 2);
+        // CAPACITY usage relies on the highest amount recorded on a given day, not on the total for that day
+        assertTrue(rolledUpUsage.getUsage().get(0).getStart().compareTo(startDate) == 0);
+        assertEquals(rolledUpUsage.getUsage().get(0).getRolledUpUnits().get(0).getAmount(), (Long) 271L);
+        assertTrue(rolledUpUsage.getUsage().get(1).getStart().compareTo(firstBCDDate) == 0);
+        assertEquals(rolledUpUsage.getUsage().get(1).getRolledUpUnits().get(0).getAmount(), (Long) 100L);
+        // Each tracking id of the day is part of the audit trail
+        assertEquals(rolledUpUsage.getTrackingIds().size(), 6);
+    }
+
     @Test(groups = "fast")
     public void testMultipleItemsAndTiersAggregateMode() throws Exception {
         testMultipleItemsAndTiers(UsageDetailMode.AGGREGATE);
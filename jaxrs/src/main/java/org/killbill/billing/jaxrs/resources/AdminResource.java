@@ -49,6 +49,7 @@ import org.killbill.billing.ObjectType;
 import org.killbill.billing.account.api.AccountUserApi;
 import org.killbill.billing.account.api.ImmutableAccountData;
 import org.killbill.billing.catalog.api.Catalog;
+import org.killbill.billing.invoice.api.InvoiceAccountBalanceUserApi;
 import org.killbill.billing.invoice.api.InvoiceApiException;
 import org.killbill.billing.invoice.api.InvoiceUserApi;
 import org.killbill.billing.jaxrs.json.AdminPaymentJson;
@@ -113,6 +114,7 @@ public class AdminResource extends JaxRsResourceBase {
 
     private final AdminPaymentApi adminPaymentApi;
     private final InvoiceUserApi invoiceUserApi;
+    private final InvoiceAccountBalanceUserApi invoiceAccountBalanceUserApi;
     private final TenantUserApi tenantApi;
     private final CacheControllerDispatcher cacheControllerDispatcher;
     private final RecordIdApi recordIdApi;
@@ -130,6 +132,7 @@ public class AdminResource extends JaxRsResourceBase {
                          final InvoicePaymentApi invoicePaymentApi,
                          final AdminPaymentApi adminPaymentApi,
                          final InvoiceUserApi invoiceUserApi,
+                         final InvoiceAccountBalanceUserApi invoiceAccountBalanceUserApi,
                          final CacheControllerDispatcher cacheControllerDispatcher,
                          final TenantUserApi tenantApi,
                          final RecordIdApi recordIdApi,
@@ -141,6 +144,7 @@ public class AdminResource extends JaxRsResourceBase {
         super(uriBuilder, tagUserApi, customFieldUserApi, auditUserApi, accountUserApi, paymentApi, invoicePaymentApi, null, clock, context);
         this.adminPaymentApi = adminPaymentApi;
         this.invoiceUserApi = invoiceUserApi;
+        this.invoiceAccountBalanceUserApi = invoiceAccountBalanceUserApi;
         this.tenantApi = tenantApi;
         this.recordIdApi = recordIdApi;
         this.cacheControllerDispatcher = cacheControllerDispatcher;
@@ -323,6 +327,23 @@ public class AdminResource extends JaxRsResourceBase {
                        .build();
     }
 
+    @PUT
+    @Produces(APPLICATION_JSON)
+    @Path("/invoices/" + ACCOUNTS + "/{accountId:" + UUID_PATTERN + "}/balance")
+    @ApiOperation(value = "Verify and rebuild the account balance snapshot from the invoices")
+    @ApiResponses(value = {@ApiResponse(code = 200, message = "Successful operation"),
+                           @ApiResponse(code = 400, message = "Invalid account id supplied")})
+    public Response rebuildAccountBalance(@PathParam("accountId") final UUID accountId,
+                                          @HeaderParam(HDR_CREATED_BY) final String createdBy,
+                                          @HeaderParam(HDR_REASON) final String reason,
+                                          @HeaderParam(HDR_COMMENT) final String comment,
+                                          @javax.ws.rs.core.Context final HttpServletRequest request) {
+        final CallContext callContext = context.createCallContextWithAccountId(accountId, createdBy, reason, comment, request);
+
+        final boolean wasStale = invoiceAccountBalanceUserApi.rebuildAccountBalanceSnapshot(accountId, callContext);
+        return Response.status(Status.OK).entity(ImmutableMap.<String, Object>of("accountId", accountId, "stale", wasStale)).build();
+    }
+
     @DELETE
     @Path("/" + CACHE)
     @Produces(APPLICATION_JSON)
@@ -69,6 +69,7 @@ import org.killbill.billing.invoice.api.DryRunType;
 import org.killbill.billing.invoice.api.Invoice;
 import org.killbill.billing.invoice.api.InvoiceApiException;
 import org.killbill.billing.invoice.api.InvoiceItem;
+import org.killbill.billing.invoice.api.InvoicePageTokenUserApi;
 import org.killbill.billing.invoice.api.InvoicePayment;
 import org.killbill.billing.invoice.api.InvoiceUserApi;
 import org.killbill.billing.jaxrs.json.CustomFieldJson;
@@ -136,6 +137,7 @@ public class InvoiceResource extends JaxRsResourceBase {
     private final InvoiceUserApi invoiceApi;
     private final TenantUserApi tenantApi;
     private final Locale defaultLocale;
+    private final InvoicePageTokenUserApi invoicePageTokenUserApi;
 
     private static final Ordering<InvoicePaymentJson> INVOICE_PAYMENT_ORDERING = Ordering.from(new Comparator<InvoicePaymentJson>() {
         @Override
@@ -155,11 +157,13 @@ public class InvoiceResource extends JaxRsResourceBase {
                            final CustomFieldUserApi customFieldUserApi,
                            final AuditUserApi auditUserApi,
                            final TenantUserApi tenantApi,
-                           final Context context) {
+                           final Context context,
+                           final InvoicePageTokenUserApi invoicePageTokenUserApi) {
         super(uriBuilder, tagUserApi, customFieldUserApi, auditUserApi, accountUserApi, paymentApi, invoicePaymentApi, null, clock, context);
         this.invoiceApi = invoiceApi;
         this.tenantApi = tenantApi;
         this.defaultLocale = Locale.getDefault();
+        this.invoicePageTokenUserApi = invoicePageTokenUserApi;
     }
 
     @TimedResource
@@ -250,13 +254,25 @@ public class InvoiceResource extends JaxRsResourceBase {
     @ApiResponses(value = {})
     public Response getInvoices(@QueryParam(QUERY_SEARCH_OFFSET) @DefaultValue("0") final Long offset,
                                 @QueryParam(QUERY_SEARCH_LIMIT) @DefaultValue("100") final Long limit,
+                                @QueryParam(QUERY_SEARCH_PAGE_TOKEN) final String pageToken,
+                                @QueryParam(QUERY_SEARCH_WITH_COUNT) @DefaultValue("false") final Boolean withCount,
                                 @QueryParam(QUERY_INVOICE_WITH_ITEMS) @DefaultValue("false") final Boolean withItems,
                                 @QueryParam(QUERY_AUDIT) @DefaultValue("NONE") final AuditMode auditMode,
                                 @javax.ws.rs.core.Context final HttpServletRequest request) throws InvoiceApiException {
         final TenantContext tenantContext = context.createTenantContextNoAccountId(request);
-        final Pagination<Invoice> invoices = invoiceApi.getInvoices(offset, limit, tenantContext);
-        final URI nextPageUri = uriBuilder.nextPage(InvoiceResource.class, "getInvoices", invoices.getNextOffset(), limit, ImmutableMap.<String, String>of(QUERY_INVOICE_WITH_ITEMS, withItems.toString(),
-                                                                                                                                                           QUERY_AUDIT, auditMode.getLevel().toString()));
+        final Map<String, String> nextPageParams = ImmutableMap.<String, String>of(QUERY_INVOICE_WITH_ITEMS, withItems.toString(),
+                                                                                   QUERY_AUDIT, auditMode.getLevel().toString());
+        final Pagination<Invoice> invoices;
+        final URI nextPageUri;
+        if (pageToken == null) {
+            invoices = invoiceApi.getInvoices(offset, limit, tenantContext);
+            nextPageUri = uriBuilder.nextPage(InvoiceResource.class, "getInvoices", invoices.getNextOffset(), limit, nextPageParams);
+        } else {
+            // Keyset pagination (empty token for the first page)
+            invoices = invoicePageTokenUserApi.getInvoices(pageToken, limit, withCount, tenantContext);
+            nextPageUri = uriBuilder.nextPageWithToken(InvoiceResource.class, "getInvoices", getNextPageToken(invoices), limit,
+                                                       ImmutableMap.<String, String>builder().putAll(nextPageParams).put(QUERY_SEARCH_WITH_COUNT, withCount.toString()).build());
+        }
 
         final AtomicReference<Map<UUID, AccountAuditLogs>> accountsAuditLogs = new AtomicReference<Map<UUID, AccountAuditLogs>>(new HashMap<UUID, AccountAuditLogs>());
         return buildStreamingPaginationResponse(invoices,
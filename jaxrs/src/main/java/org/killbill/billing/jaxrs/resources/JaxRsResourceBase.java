@@ -95,6 +95,7 @@ import org.killbill.billing.util.callcontext.CallContext;
 import org.killbill.billing.util.callcontext.TenantContext;
 import org.killbill.billing.util.customfield.CustomField;
 import org.killbill.billing.util.customfield.StringCustomField;
+import org.killbill.billing.util.entity.DefaultPagination;
 import org.killbill.billing.util.entity.Entity;
 import org.killbill.billing.util.entity.Pagination;
 import org.killbill.billing.util.jackson.ObjectMapper;
@@ -362,9 +363,15 @@ public abstract class JaxRsResourceBase implements JaxrsResource {
                        .header(HDR_PAGINATION_TOTAL_NB_RECORDS, entities.getTotalNbRecords())
                        .header(HDR_PAGINATION_MAX_NB_RECORDS, entities.getMaxNbRecords())
                        .header(HDR_PAGINATION_NEXT_PAGE_URI, nextPageUri)
+                       .header(HDR_PAGINATION_NEXT_PAGE_TOKEN, getNextPageToken(entities))
                        .build();
     }
 
+    // Only set for keyset pagination (see QUERY_SEARCH_PAGE_TOKEN)
+    protected String getNextPageToken(final Pagination<?> entities) {
+        return entities instanceof DefaultPagination ? ((DefaultPagination) entities).getNextPageToken() : null;
+    }
+
     protected void validatePaymentMethodForAccount(final UUID accountId, final UUID paymentMethodId, final CallContext callContext) throws PaymentApiException {
         if (paymentMethodId != null) {
             final PaymentMethod paymentMethod = paymentApi.getPaymentMethodById(paymentMethodId, false, false, ImmutableList.<PluginProperty>of(), callContext);
@@ -51,6 +51,7 @@ public interface JaxrsResource {
     String HDR_PAGINATION_TOTAL_NB_RECORDS = "X-Killbill-Pagination-TotalNbRecords";
     String HDR_PAGINATION_MAX_NB_RECORDS = "X-Killbill-Pagination-MaxNbRecords";
     String HDR_PAGINATION_NEXT_PAGE_URI = "X-Killbill-Pagination-NextPageUri";
+    String HDR_PAGINATION_NEXT_PAGE_TOKEN = "X-Killbill-Pagination-NextPageToken";
 
     /*
      * Patterns
@@ -82,6 +83,8 @@ public interface JaxrsResource {
     String QUERY_ENTITLEMENT_POLICY = "entitlementPolicy";
     String QUERY_SEARCH_OFFSET = "offset";
     String QUERY_SEARCH_LIMIT = "limit";
+    String QUERY_SEARCH_PAGE_TOKEN = "pageToken";
+    String QUERY_SEARCH_WITH_COUNT = "withCount";
     String QUERY_ENTITLEMENT_EFFECTIVE_FROM_DT = "effectiveFromDate";
     String QUERY_FORCE_NEW_BCD_WITH_PAST_EFFECTIVE_DATE = "forceNewBcdWithPastEffectiveDate";
 
@@ -284,6 +287,7 @@ public interface JaxrsResource {
 
     String COMBO = "combo";
     String MIGRATION = "migration";
+    String BULK = "bulk";
 
     String CHILDREN = "children";
     String BCD = "bcd";
@@ -703,7 +703,7 @@ public class SubscriptionResource extends JaxRsResourceBase {
             final CompletionUserRequestEntitlement waiter = callCompletion ? new CompletionUserRequestEntitlement(callContext.getUserToken()) : null;
             try {
                 if (waiter != null) {
-                    killbillHandler.registerCompletionUserRequestWaiter(waiter);
+                    killbillHandler.registerCompletionUserRequestWaiter(waiter, timeoutSec * 1000);
                 }
                 final T operationValue = callback.doOperation(callContext);
                 if (waiter != null && callback.isImmOperation()) {
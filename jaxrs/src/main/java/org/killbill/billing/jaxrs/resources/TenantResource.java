@@ -53,6 +53,7 @@ import org.killbill.billing.payment.api.PaymentApi;
 import org.killbill.billing.tenant.api.Tenant;
 import org.killbill.billing.tenant.api.TenantApiException;
 import org.killbill.billing.tenant.api.TenantData;
+import org.killbill.billing.tenant.api.TenantInternalApi;
 import org.killbill.billing.tenant.api.TenantKV.TenantKey;
 import org.killbill.billing.tenant.api.TenantUserApi;
 import org.killbill.billing.util.api.AuditUserApi;
@@ -65,6 +66,7 @@ import org.killbill.billing.util.callcontext.UserType;
 import org.killbill.clock.Clock;
 import org.killbill.commons.metrics.TimedResource;
 
+import com.google.common.base.Preconditions;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import io.swagger.annotations.Api;
@@ -355,6 +357,7 @@ public class TenantResource extends JaxRsResourceBase {
                                @HeaderParam(HDR_COMMENT) final String comment,
                                @javax.ws.rs.core.Context final HttpServletRequest request,
                                @javax.ws.rs.core.Context  final UriInfo uriInfo) throws TenantApiException {
+        verifyUserKey(key);
         final CallContext callContext = context.createCallContextNoAccountId(createdBy, reason, comment, request);
         tenantApi.addTenantKeyValue(key, value, callContext);
         return uriBuilder.buildResponse(uriInfo, TenantResource.class, "getUserKeyValue", key, request);
@@ -386,11 +389,17 @@ public class TenantResource extends JaxRsResourceBase {
                                               @HeaderParam(HDR_REASON) final String reason,
                                               @HeaderParam(HDR_COMMENT) final String comment,
                                               @javax.ws.rs.core.Context final HttpServletRequest request) throws TenantApiException {
+        verifyUserKey(key);
         final CallContext callContext = context.createCallContextNoAccountId(createdBy, reason, comment, request);
         tenantApi.deleteTenantKey(key, callContext);
         return Response.status(Status.NO_CONTENT).build();
     }
 
+    // Keys maintained by Kill Bill itself outside of the TenantKey values
+    private void verifyUserKey(final String key) {
+        Preconditions.checkArgument(!TenantInternalApi.CATALOG_SNAPSHOT_KEY.equals(key), "Key %s is reserved", key);
+    }
+
 
 
     private Response insertTenantKey(final TenantKey key,
@@ -17,7 +17,14 @@
 
 package org.killbill.billing.jaxrs.resources;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import javax.inject.Inject;
@@ -51,6 +58,7 @@ import org.killbill.billing.payment.api.PaymentApi;
 import org.killbill.billing.usage.api.RolledUpUsage;
 import org.killbill.billing.usage.api.SubscriptionUsageRecord;
 import org.killbill.billing.usage.api.UsageApiException;
+import org.killbill.billing.usage.api.UsageBulkUserApi;
 import org.killbill.billing.usage.api.UsageUserApi;
 import org.killbill.billing.util.api.AuditUserApi;
 import org.killbill.billing.util.api.CustomFieldUserApi;
@@ -60,9 +68,13 @@ import org.killbill.billing.util.callcontext.TenantContext;
 import org.killbill.clock.Clock;
 import org.killbill.commons.metrics.TimedResource;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
+import com.google.common.base.Charsets;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Ordering;
@@ -79,8 +91,14 @@ import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
 @Api(value = JaxrsResource.USAGES_PATH, description = "Operations on usage", tags="Usage")
 public class UsageResource extends JaxRsResourceBase {
 
+    private static final String APPLICATION_NDJSON = "application/x-ndjson";
+    // Number of NDJSON lines recorded per transaction
+    private static final int NDJSON_CHUNK_SIZE = 1000;
+
     private final UsageUserApi usageUserApi;
+    private final UsageBulkUserApi usageBulkUserApi;
     private final EntitlementApi entitlementApi;
+    private final ObjectMapper objectMapper;
 
     @Inject
     public UsageResource(final JaxrsUriBuilder uriBuilder,
@@ -89,14 +107,18 @@ public class UsageResource extends JaxRsResourceBase {
                          final AuditUserApi auditUserApi,
                          final AccountUserApi accountUserApi,
                          final UsageUserApi usageUserApi,
+                         final UsageBulkUserApi usageBulkUserApi,
                          final PaymentApi paymentApi,
                          final InvoicePaymentApi invoicePaymentApi,
                          final EntitlementApi entitlementApi,
+                         final ObjectMapper objectMapper,
                          final Clock clock,
                          final Context context) {
         super(uriBuilder, tagUserApi, customFieldUserApi, auditUserApi, accountUserApi, paymentApi, invoicePaymentApi, null, clock, context);
         this.usageUserApi = usageUserApi;
+        this.usageBulkUserApi = usageBulkUserApi;
         this.entitlementApi = entitlementApi;
+        this.objectMapper = objectMapper;
     }
 
     @TimedResource
@@ -114,6 +136,136 @@ public class UsageResource extends JaxRsResourceBase {
                                 @javax.ws.rs.core.Context final UriInfo uriInfo) throws EntitlementApiException,
                                                                                         AccountApiException,
                                                                                         UsageApiException {
+        verifySubscriptionUsageRecordJson(json);
+        final CallContext callContext = context.createCallContextNoAccountId(createdBy, reason, comment, request);
+        // Verify subscription exists..
+        final Entitlement entitlement = entitlementApi.getEntitlementForId(json.getSubscriptionId(), callContext);
+        if (!isActiveForRecords(entitlement, json)) {
+            return Response.status(Status.BAD_REQUEST).build();
+        }
+
+        final SubscriptionUsageRecord record = json.toSubscriptionUsageRecord();
+        usageUserApi.recordRolledUpUsage(record, callContext);
+        return Response.status(Status.CREATED).build();
+    }
+
+    @TimedResource
+    @POST
+    @Path("/" + BULK)
+    @Consumes(APPLICATION_JSON)
+    @Produces(APPLICATION_JSON)
+    @ApiOperation(value = "Record usage for multiple subscriptions",
+                  notes = "The request is atomic: if any record is invalid, none of the records are recorded")
+    @ApiResponses(value = {@ApiResponse(code = 201, message = "Successfully recorded usage data change"),
+                           @ApiResponse(code = 400, message = "Invalid subscription (e.g. inactive)")})
+    public Response recordUsages(final List<SubscriptionUsageRecordJson> json,
+                                 @HeaderParam(HDR_CREATED_BY) final String createdBy,
+                                 @HeaderParam(HDR_REASON) final String reason,
+                                 @HeaderParam(HDR_COMMENT) final String comment,
+                                 @javax.ws.rs.core.Context final HttpServletRequest request,
+                                 @javax.ws.rs.core.Context final UriInfo uriInfo) throws EntitlementApiException,
+                                                                                         AccountApiException,
+                                                                                         UsageApiException {
+        verifyNonNullOrEmpty(json, "SubscriptionUsageRecordJson body should be specified");
+        final CallContext callContext = context.createCallContextNoAccountId(createdBy, reason, comment, request);
+        final Map<UUID, Entitlement> entitlementsBySubscriptionId = new HashMap<UUID, Entitlement>();
+        final List<SubscriptionUsageRecord> records = new ArrayList<SubscriptionUsageRecord>(json.size());
+        for (final SubscriptionUsageRecordJson subscriptionUsageRecordJson : json) {
+            final SubscriptionUsageRecord record = toSubscriptionUsageRecord(subscriptionUsageRecordJson, entitlementsBySubscriptionId, callContext);
+            if (record == null) {
+                return Response.status(Status.BAD_REQUEST).build();
+            }
+            records.add(record);
+        }
+
+        usageBulkUserApi.recordRolledUpUsage(records, callContext);
+        return Response.status(Status.CREATED).build();
+    }
+
+    @TimedResource
+    @POST
+    @Path("/" + BULK)
+    @Consumes(APPLICATION_NDJSON)
+    @Produces(APPLICATION_JSON)
+    @ApiOperation(value = "Record usage for multiple subscriptions, one SubscriptionUsageRecordJson per line",
+                  notes = "The body is streamed: lines are validated as they are read, and recorded in chunks of " + NDJSON_CHUNK_SIZE + " lines, " +
+                          "each chunk in its own transaction. If a line is invalid, the chunks preceding it remain recorded " +
+                          "(their tracking ids would be rejected if sent again) and none of the lines of its chunk are recorded")
+    @ApiResponses(value = {@ApiResponse(code = 201, message = "Successfully recorded usage data change"),
+                           @ApiResponse(code = 400, message = "Invalid subscription (e.g. inactive) or invalid line")})
+    public Response recordUsagesStream(final InputStream body,
+                                       @HeaderParam(HDR_CREATED_BY) final String createdBy,
+                                       @HeaderParam(HDR_REASON) final String reason,
+                                       @HeaderParam(HDR_COMMENT) final String comment,
+                                       @javax.ws.rs.core.Context final HttpServletRequest request,
+                                       @javax.ws.rs.core.Context final UriInfo uriInfo) throws EntitlementApiException,
+                                                                                               AccountApiException,
+                                                                                               UsageApiException,
+                                                                                               IOException {
+        verifyNonNull(body, "SubscriptionUsageRecordJson body should be specified");
+        final CallContext callContext = context.createCallContextNoAccountId(createdBy, reason, comment, request);
+
+        // Only the current chunk is kept in memory, whatever the size of the body
+        final Map<UUID, Entitlement> entitlementsBySubscriptionId = new HashMap<UUID, Entitlement>();
+        List<SubscriptionUsageRecord> chunk = new ArrayList<SubscriptionUsageRecord>(NDJSON_CHUNK_SIZE);
+        int nbLines = 0;
+        int nbRecords = 0;
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(body, Charsets.UTF_8));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                nbLines++;
+                if (Strings.isNullOrEmpty(line.trim())) {
+                    continue;
+                }
+
+                final SubscriptionUsageRecordJson json;
+                try {
+                    json = objectMapper.readValue(line, SubscriptionUsageRecordJson.class);
+                } catch (final JsonProcessingException e) {
+                    throw new IllegalArgumentException(String.format("Invalid SubscriptionUsageRecordJson at line %s", nbLines), e);
+                }
+                final SubscriptionUsageRecord record = toSubscriptionUsageRecord(json, entitlementsBySubscriptionId, callContext);
+                if (record == null) {
+                    return Response.status(Status.BAD_REQUEST).build();
+                }
+                chunk.add(record);
+                nbRecords++;
+
+                if (chunk.size() == NDJSON_CHUNK_SIZE) {
+                    usageBulkUserApi.recordRolledUpUsage(chunk, callContext);
+                    chunk = new ArrayList<SubscriptionUsageRecord>(NDJSON_CHUNK_SIZE);
+                    entitlementsBySubscriptionId.clear();
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        Preconditions.checkArgument(nbRecords > 0, "SubscriptionUsageRecordJson body should be specified");
+
+        if (!chunk.isEmpty()) {
+            usageBulkUserApi.recordRolledUpUsage(chunk, callContext);
+        }
+        return Response.status(Status.CREATED).build();
+    }
+
+    // Returns null if the subscription isn't active for the records
+    private SubscriptionUsageRecord toSubscriptionUsageRecord(final SubscriptionUsageRecordJson json, final Map<UUID, Entitlement> entitlementsBySubscriptionId, final CallContext callContext) throws EntitlementApiException {
+        verifySubscriptionUsageRecordJson(json);
+
+        // Verify subscription exists (only once per subscription)..
+        Entitlement entitlement = entitlementsBySubscriptionId.get(json.getSubscriptionId());
+        if (entitlement == null) {
+            entitlement = entitlementApi.getEntitlementForId(json.getSubscriptionId(), callContext);
+            entitlementsBySubscriptionId.put(json.getSubscriptionId(), entitlement);
+        }
+        if (!isActiveForRecords(entitlement, json)) {
+            return null;
+        }
+        return json.toSubscriptionUsageRecord();
+    }
+
+    private void verifySubscriptionUsageRecordJson(final SubscriptionUsageRecordJson json) {
         verifyNonNullOrEmpty(json, "SubscriptionUsageRecordJson body should be specified");
         verifyNonNullOrEmpty(json.getSubscriptionId(), "SubscriptionUsageRecordJson subscriptionId needs to be set",
                              json.getUnitUsageRecords(), "SubscriptionUsageRecordJson unitUsageRecords needs to be set");
@@ -127,19 +279,14 @@ public class UsageResource extends JaxRsResourceBase {
                 verifyNonNull(usageRecordJson.getRecordDate(), "UsageRecordJson recordDate needs to be set");
             }
         }
-        final CallContext callContext = context.createCallContextNoAccountId(createdBy, reason, comment, request);
-        // Verify subscription exists..
-        final Entitlement entitlement = entitlementApi.getEntitlementForId(json.getSubscriptionId(), callContext);
-        if (entitlement.getEffectiveEndDate() != null) {
-            final LocalDate highestRecordDate = getHighestRecordDate(json.getUnitUsageRecords());
-            if (entitlement.getEffectiveEndDate().compareTo(highestRecordDate) < 0) {
-                return Response.status(Status.BAD_REQUEST).build();
-            }
-        }
+    }
 
-        final SubscriptionUsageRecord record = json.toSubscriptionUsageRecord();
-        usageUserApi.recordRolledUpUsage(record, callContext);
-        return Response.status(Status.CREATED).build();
+    private boolean isActiveForRecords(final Entitlement entitlement, final SubscriptionUsageRecordJson json) {
+        if (entitlement.getEffectiveEndDate() == null) {
+            return true;
+        }
+        final LocalDate highestRecordDate = getHighestRecordDate(json.getUnitUsageRecords());
+        return entitlement.getEffectiveEndDate().compareTo(highestRecordDate) >= 0;
     }
 
     @VisibleForTesting
@@ -131,6 +131,20 @@ public class JaxrsUriBuilder {
         return uriBuilder.build();
     }
 
+    public URI nextPageWithToken(final Class<? extends JaxrsResource> theClass, final String getMethodName, @Nullable final String nextPageToken, final Long limit, final Map<String, String> params) {
+        if (nextPageToken == null || limit == null) {
+            // End of pagination
+            return null;
+        }
+
+        final UriBuilder uriBuilder = getUriBuilder(theClass, getMethodName).queryParam(JaxRsResourceBase.QUERY_SEARCH_PAGE_TOKEN, nextPageToken)
+                                                                            .queryParam(JaxRsResourceBase.QUERY_SEARCH_LIMIT, limit);
+        for (final String key : params.keySet()) {
+            uriBuilder.queryParam(key, params.get(key));
+        }
+        return uriBuilder.build();
+    }
+
     private UriBuilder getUriBuilder(final String path, final Class<? extends JaxrsResource> theClassMaybeEnhanced, @Nullable final String getMethodName) {
         final Class theClass = getNonEnhancedClass(theClassMaybeEnhanced);
         return getMethodName != null ? fromPath(path.equals("/") ? path.substring(1) : path, theClass, getMethodName) : fromPath(path, theClass);
@@ -16,41 +16,74 @@
 
 package org.killbill.billing.jaxrs.util;
 
-import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.Map.Entry;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.killbill.billing.events.BusInternalEvent;
 import org.killbill.billing.util.userrequest.CompletionUserRequest;
-import org.killbill.billing.util.userrequest.CompletionUserRequestNotifier;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
 import com.google.common.eventbus.AllowConcurrentEvents;
 import com.google.common.eventbus.Subscribe;
+import com.google.common.math.LongMath;
 
 public class KillbillEventHandler {
 
-    private final List<CompletionUserRequest> activeWaiters;
+    // Waiters are normally unregistered by their caller: expiration is only a safety net
+    private static final long EXPIRATION_GRACE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private static final long SWEEP_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    // Waiters by user token: the lists are immutable and swapped atomically, so neither registration nor dispatch requires a lock
+    private final ConcurrentMap<UUID, ImmutableList<Registration>> activeWaiters = new ConcurrentHashMap<UUID, ImmutableList<Registration>>();
+    private final AtomicLong nextSweepTimeMillis;
+    private final long expirationGraceMillis;
+    private final long sweepIntervalMillis;
 
     public KillbillEventHandler() {
-        activeWaiters = new LinkedList<CompletionUserRequest>();
+        this(EXPIRATION_GRACE_MILLIS, SWEEP_INTERVAL_MILLIS);
+    }
+
+    @VisibleForTesting
+    KillbillEventHandler(final long expirationGraceMillis, final long sweepIntervalMillis) {
+        this.expirationGraceMillis = expirationGraceMillis;
+        this.sweepIntervalMillis = sweepIntervalMillis;
+        this.nextSweepTimeMillis = new AtomicLong(currentTimeMillis() + sweepIntervalMillis);
     }
 
-    public void registerCompletionUserRequestWaiter(final CompletionUserRequest waiter) {
-        if (waiter == null) {
+    public void registerCompletionUserRequestWaiter(final CompletionUserRequest waiter, final long timeoutMillis) {
+        if (waiter == null || waiter.getUserToken() == null) {
             return;
         }
-        synchronized (activeWaiters) {
-            activeWaiters.add(waiter);
+
+        final long nowMillis = currentTimeMillis();
+        final Registration registration = new Registration(waiter, LongMath.saturatedAdd(nowMillis, LongMath.saturatedAdd(timeoutMillis, expirationGraceMillis)));
+        while (true) {
+            final ImmutableList<Registration> registrations = activeWaiters.get(waiter.getUserToken());
+            if (registrations == null) {
+                if (activeWaiters.putIfAbsent(waiter.getUserToken(), ImmutableList.<Registration>of(registration)) == null) {
+                    break;
+                }
+            } else {
+                final ImmutableList<Registration> newRegistrations = ImmutableList.<Registration>builder().addAll(registrations).add(registration).build();
+                if (activeWaiters.replace(waiter.getUserToken(), registrations, newRegistrations)) {
+                    break;
+                }
+            }
         }
+
+        sweepExpiredWaitersIfNeeded(nowMillis);
     }
 
     public void unregisterCompletionUserRequestWaiter(final CompletionUserRequest waiter) {
-        if (waiter == null) {
+        if (waiter == null || waiter.getUserToken() == null) {
             return;
         }
-        synchronized (activeWaiters) {
-            activeWaiters.remove(waiter);
-        }
+        unregister(waiter.getUserToken(), waiter, Long.MAX_VALUE);
     }
 
     /*
@@ -59,15 +92,86 @@ public class KillbillEventHandler {
     @AllowConcurrentEvents
     @Subscribe
     public void handleSubscriptionEvents(final BusInternalEvent event) {
-        final List<CompletionUserRequestNotifier> runningWaiters = new ArrayList<CompletionUserRequestNotifier>();
-        synchronized (activeWaiters) {
-            runningWaiters.addAll(activeWaiters);
+        if (event.getUserToken() == null) {
+            return;
+        }
+        final ImmutableList<Registration> registrations = activeWaiters.get(event.getUserToken());
+        if (registrations == null) {
+            return;
+        }
+        for (final Registration registration : registrations) {
+            registration.waiter.onBusEvent(event);
+        }
+    }
+
+    @VisibleForTesting
+    int getNbActiveWaiters() {
+        int nbActiveWaiters = 0;
+        for (final ImmutableList<Registration> registrations : activeWaiters.values()) {
+            nbActiveWaiters += registrations.size();
+        }
+        return nbActiveWaiters;
+    }
+
+    // Removes the waiter if it was registered and expires no later than maxExpirationTimeMillis
+    private void unregister(final UUID userToken, final CompletionUserRequest waiter, final long maxExpirationTimeMillis) {
+        while (true) {
+            final ImmutableList<Registration> registrations = activeWaiters.get(userToken);
+            if (registrations == null) {
+                return;
+            }
+
+            final ImmutableList.Builder<Registration> newRegistrationsBuilder = ImmutableList.<Registration>builder();
+            boolean found = false;
+            for (final Registration registration : registrations) {
+                if (registration.waiter == waiter && registration.expirationTimeMillis <= maxExpirationTimeMillis) {
+                    found = true;
+                } else {
+                    newRegistrationsBuilder.add(registration);
+                }
+            }
+            if (!found) {
+                return;
+            }
+
+            final ImmutableList<Registration> newRegistrations = newRegistrationsBuilder.build();
+            final boolean updated = newRegistrations.isEmpty() ?
+                                    activeWaiters.remove(userToken, registrations) :
+                                    activeWaiters.replace(userToken, registrations, newRegistrations);
+            if (updated) {
+                return;
+            }
         }
-        if (runningWaiters.size() == 0) {
+    }
+
+    // At most one thread sweeps per interval
+    private void sweepExpiredWaitersIfNeeded(final long nowMillis) {
+        final long sweepTimeMillis = nextSweepTimeMillis.get();
+        if (nowMillis < sweepTimeMillis || !nextSweepTimeMillis.compareAndSet(sweepTimeMillis, nowMillis + sweepIntervalMillis)) {
             return;
         }
-        for (final CompletionUserRequestNotifier cur : runningWaiters) {
-            cur.onBusEvent(event);
+
+        for (final Entry<UUID, ImmutableList<Registration>> entry : activeWaiters.entrySet()) {
+            for (final Registration registration : entry.getValue()) {
+                if (registration.expirationTimeMillis <= nowMillis) {
+                    unregister(entry.getKey(), registration.waiter, nowMillis);
+                }
+            }
+        }
+    }
+
+    private long currentTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    private static final class Registration {
+
+        private final CompletionUserRequest waiter;
+        private final long expirationTimeMillis;
+
+        private Registration(final CompletionUserRequest waiter, final long expirationTimeMillis) {
+            this.waiter = waiter;
+            this.expirationTimeMillis = expirationTimeMillis;
         }
     }
 }
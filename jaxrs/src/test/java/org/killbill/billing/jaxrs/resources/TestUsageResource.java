@@ -0,0 +1,192 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.jaxrs.resources;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.UriInfo;
+
+import org.joda.time.LocalDate;
+import org.killbill.billing.entitlement.api.Entitlement;
+import org.killbill.billing.entitlement.api.EntitlementApi;
+import org.killbill.billing.jaxrs.JaxrsTestSuiteNoDB;
+import org.killbill.billing.jaxrs.json.SubscriptionUsageRecordJson;
+import org.killbill.billing.jaxrs.json.SubscriptionUsageRecordJson.UnitUsageRecordJson;
+import org.killbill.billing.jaxrs.json.SubscriptionUsageRecordJson.UsageRecordJson;
+import org.killbill.billing.jaxrs.mappers.IllegalArgumentExceptionMapper;
+import org.killbill.billing.jaxrs.util.Context;
+import org.killbill.billing.usage.api.SubscriptionUsageRecord;
+import org.killbill.billing.usage.api.UsageBulkUserApi;
+import org.killbill.billing.util.callcontext.CallContext;
+import org.killbill.billing.util.callcontext.TenantContext;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+
+public class TestUsageResource extends JaxrsTestSuiteNoDB {
+
+    private final UUID activeSubscriptionId = UUID.randomUUID();
+    private final UUID cancelledSubscriptionId = UUID.randomUUID();
+
+    private UsageBulkUserApi usageBulkUserApi;
+    private UsageResource usageResource;
+
+    @BeforeMethod(groups = "fast")
+    public void beforeMethod() throws Exception {
+        if (hasFailed()) {
+            return;
+        }
+
+        final CallContext callContext = Mockito.mock(CallContext.class);
+        final Context context = Mockito.mock(Context.class);
+        Mockito.when(context.createCallContextNoAccountId(Mockito.anyString(), Mockito.anyString(), Mockito.anyString(), Mockito.<HttpServletRequest>any())).thenReturn(callContext);
+
+        final Entitlement activeEntitlement = Mockito.mock(Entitlement.class);
+        final Entitlement cancelledEntitlement = Mockito.mock(Entitlement.class);
+        Mockito.when(cancelledEntitlement.getEffectiveEndDate()).thenReturn(new LocalDate(2019, 1, 1));
+        final EntitlementApi entitlementApi = Mockito.mock(EntitlementApi.class);
+        Mockito.when(entitlementApi.getEntitlementForId(Mockito.eq(activeSubscriptionId), Mockito.<TenantContext>any())).thenReturn(activeEntitlement);
+        Mockito.when(entitlementApi.getEntitlementForId(Mockito.eq(cancelledSubscriptionId), Mockito.<TenantContext>any())).thenReturn(cancelledEntitlement);
+
+        usageBulkUserApi = Mockito.mock(UsageBulkUserApi.class);
+        usageResource = new UsageResource(null, null, null, null, null, null, usageBulkUserApi, null, null, entitlementApi, mapper, clock, context);
+    }
+
+    @Test(groups = "fast")
+    public void testRecordUsagesBulk() throws Exception {
+        final List<SubscriptionUsageRecordJson> json = ImmutableList.<SubscriptionUsageRecordJson>of(createRecord(activeSubscriptionId, "t1", new LocalDate(2019, 2, 1)),
+                                                                                                      createRecord(activeSubscriptionId, "t2", new LocalDate(2019, 2, 2)));
+
+        final Response response = usageResource.recordUsages(json, "createdBy", "reason", "comment", null, null);
+        Assert.assertEquals(response.getStatus(), Status.CREATED.getStatusCode());
+        final List<List<SubscriptionUsageRecord>> chunks = getRecordedChunks(1);
+        Assert.assertEquals(chunks.get(0).size(), 2);
+    }
+
+    @Test(groups = "fast")
+    public void testRecordUsagesBulkWithInactiveSubscription() throws Exception {
+        // The first record is valid, but the request is atomic
+        final List<SubscriptionUsageRecordJson> json = ImmutableList.<SubscriptionUsageRecordJson>of(createRecord(activeSubscriptionId, "t1", new LocalDate(2019, 2, 1)),
+                                                                                                      createRecord(cancelledSubscriptionId, "t2", new LocalDate(2019, 2, 2)));
+
+        final Response response = usageResource.recordUsages(json, "createdBy", "reason", "comment", null, null);
+        Assert.assertEquals(response.getStatus(), Status.BAD_REQUEST.getStatusCode());
+        Mockito.verify(usageBulkUserApi, Mockito.never()).recordRolledUpUsage(Mockito.<Iterable<SubscriptionUsageRecord>>any(), Mockito.<CallContext>any());
+    }
+
+    @Test(groups = "fast")
+    public void testRecordUsagesStream() throws Exception {
+        final StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 2500; i++) {
+            appendLine(body, createRecord(activeSubscriptionId, "t" + i, new LocalDate(2019, 2, 1)));
+            if (i % 1000 == 0) {
+                // Blank lines are ignored
+                body.append("\n");
+            }
+        }
+
+        final Response response = usageResource.recordUsagesStream(toInputStream(body), "createdBy", "reason", "comment", null, null);
+        Assert.assertEquals(response.getStatus(), Status.CREATED.getStatusCode());
+
+        // Recorded in bounded chunks, in order
+        final List<List<SubscriptionUsageRecord>> chunks = getRecordedChunks(3);
+        Assert.assertEquals(chunks.get(0).size(), 1000);
+        Assert.assertEquals(chunks.get(1).size(), 1000);
+        Assert.assertEquals(chunks.get(2).size(), 500);
+        Assert.assertEquals(chunks.get(0).get(0).getTrackingId(), "t0");
+        Assert.assertEquals(chunks.get(1).get(0).getTrackingId(), "t1000");
+        Assert.assertEquals(chunks.get(2).get(499).getTrackingId(), "t2499");
+        Assert.assertEquals(chunks.get(2).get(499).getUnitUsageRecord().get(0).getDailyAmount().get(0).getDate(), new LocalDate(2019, 2, 1));
+    }
+
+    @Test(groups = "fast")
+    public void testRecordUsagesStreamWithFailingChunk() throws Exception {
+        // One full chunk, followed by a partial chunk ending with an invalid line
+        final StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 1500; i++) {
+            appendLine(body, createRecord(activeSubscriptionId, "t" + i, new LocalDate(2019, 2, 1)));
+        }
+        appendLine(body, createRecord(cancelledSubscriptionId, "t1500", new LocalDate(2019, 2, 1)));
+
+        final Response response = usageResource.recordUsagesStream(toInputStream(body), "createdBy", "reason", "comment", null, null);
+        Assert.assertEquals(response.getStatus(), Status.BAD_REQUEST.getStatusCode());
+
+        // Only the first chunk was recorded
+        final List<List<SubscriptionUsageRecord>> chunks = getRecordedChunks(1);
+        Assert.assertEquals(chunks.get(0).size(), 1000);
+        Assert.assertEquals(chunks.get(0).get(999).getTrackingId(), "t999");
+    }
+
+    @Test(groups = "fast")
+    public void testRecordUsagesStreamWithMalformedLine() throws Exception {
+        final StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 1500; i++) {
+            appendLine(body, createRecord(activeSubscriptionId, "t" + i, new LocalDate(2019, 2, 1)));
+        }
+        body.append("{\"subscriptionId\":\n");
+
+        try {
+            usageResource.recordUsagesStream(toInputStream(body), "createdBy", "reason", "comment", null, null);
+            Assert.fail("Malformed line should have been rejected");
+        } catch (final IllegalArgumentException e) {
+            Assert.assertEquals(e.getMessage(), "Invalid SubscriptionUsageRecordJson at line 1501");
+            final Response response = new IllegalArgumentExceptionMapper(Mockito.mock(UriInfo.class)).toResponse(e);
+            Assert.assertEquals(response.getStatus(), Status.BAD_REQUEST.getStatusCode());
+        }
+
+        // Only the first chunk was recorded
+        final List<List<SubscriptionUsageRecord>> chunks = getRecordedChunks(1);
+        Assert.assertEquals(chunks.get(0).size(), 1000);
+    }
+
+    private List<List<SubscriptionUsageRecord>> getRecordedChunks(final int expectedNbChunks) throws Exception {
+        final ArgumentCaptor<Iterable> records = ArgumentCaptor.forClass(Iterable.class);
+        Mockito.verify(usageBulkUserApi, Mockito.times(expectedNbChunks)).recordRolledUpUsage(records.capture(), Mockito.<CallContext>any());
+
+        final List<List<SubscriptionUsageRecord>> chunks = new ArrayList<List<SubscriptionUsageRecord>>();
+        for (final Iterable chunk : records.getAllValues()) {
+            chunks.add(ImmutableList.<SubscriptionUsageRecord>copyOf(Iterables.<SubscriptionUsageRecord>filter(chunk, SubscriptionUsageRecord.class)));
+        }
+        return chunks;
+    }
+
+    private void appendLine(final StringBuilder body, final SubscriptionUsageRecordJson json) throws Exception {
+        body.append(mapper.writeValueAsString(json)).append("\n");
+    }
+
+    private ByteArrayInputStream toInputStream(final StringBuilder body) {
+        return new ByteArrayInputStream(body.toString().getBytes(Charsets.UTF_8));
+    }
+
+    private SubscriptionUsageRecordJson createRecord(final UUID subscriptionId, final String trackingId, final LocalDate recordDate) {
+        final UnitUsageRecordJson unitUsageRecordJson = new UnitUsageRecordJson("bytes", ImmutableList.<UsageRecordJson>of(new UsageRecordJson(recordDate, 10L)));
+        return new SubscriptionUsageRecordJson(subscriptionId, trackingId, ImmutableList.<UnitUsageRecordJson>of(unitUsageRecordJson));
+    }
+}
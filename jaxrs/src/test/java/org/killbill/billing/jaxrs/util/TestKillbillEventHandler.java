@@ -0,0 +1,194 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.jaxrs.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.killbill.billing.events.AccountCreationInternalEvent;
+import org.killbill.billing.events.BusInternalEvent;
+import org.killbill.billing.events.BusInternalEvent.BusInternalEventType;
+import org.killbill.billing.jaxrs.JaxrsTestSuiteNoDB;
+import org.killbill.billing.util.userrequest.CompletionUserRequestBase;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestKillbillEventHandler extends JaxrsTestSuiteNoDB {
+
+    @Test(groups = "fast")
+    public void testDispatchByUserToken() throws Exception {
+        final KillbillEventHandler killbillEventHandler = new KillbillEventHandler();
+
+        final TestCompletionUserRequest waiter1 = new TestCompletionUserRequest(UUID.randomUUID());
+        final TestCompletionUserRequest waiter2 = new TestCompletionUserRequest(UUID.randomUUID());
+        killbillEventHandler.registerCompletionUserRequestWaiter(waiter1, 1000L);
+        killbillEventHandler.registerCompletionUserRequestWaiter(waiter2, 1000L);
+        Assert.assertEquals(killbillEventHandler.getNbActiveWaiters(), 2);
+
+        killbillEventHandler.handleSubscriptionEvents(createAccountCreationEvent(waiter1.getUserToken()));
+        killbillEventHandler.handleSubscriptionEvents(createAccountCreationEvent(UUID.randomUUID()));
+        killbillEventHandler.handleSubscriptionEvents(createAccountCreationEvent(null));
+        Assert.assertEquals(waiter1.getNbAccountCreations(), 1);
+        Assert.assertEquals(waiter2.getNbAccountCreations(), 0);
+
+        killbillEventHandler.unregisterCompletionUserRequestWaiter(waiter1);
+        killbillEventHandler.handleSubscriptionEvents(createAccountCreationEvent(waiter1.getUserToken()));
+        Assert.assertEquals(waiter1.getNbAccountCreations(), 1);
+        Assert.assertEquals(killbillEventHandler.getNbActiveWaiters(), 1);
+
+        killbillEventHandler.unregisterCompletionUserRequestWaiter(waiter2);
+        Assert.assertEquals(killbillEventHandler.getNbActiveWaiters(), 0);
+    }
+
+    @Test(groups = "fast")
+    public void testWaitersSharingUserToken() throws Exception {
+        final KillbillEventHandler killbillEventHandler = new KillbillEventHandler();
+
+        final UUID userToken = UUID.randomUUID();
+        final TestCompletionUserRequest waiter1 = new TestCompletionUserRequest(userToken);
+        final TestCompletionUserRequest waiter2 = new TestCompletionUserRequest(userToken);
+        killbillEventHandler.registerCompletionUserRequestWaiter(waiter1, 1000L);
+        killbillEventHandler.registerCompletionUserRequestWaiter(waiter2, 1000L);
+
+        killbillEventHandler.handleSubscriptionEvents(createAccountCreationEvent(userToken));
+        Assert.assertEquals(waiter1.getNbAccountCreations(), 1);
+        Assert.assertEquals(waiter2.getNbAccountCreations(), 1);
+
+        killbillEventHandler.unregisterCompletionUserRequestWaiter(waiter1);
+        killbillEventHandler.handleSubscriptionEvents(createAccountCreationEvent(userToken));
+        Assert.assertEquals(waiter1.getNbAccountCreations(), 1);
+        Assert.assertEquals(waiter2.getNbAccountCreations(), 2);
+        Assert.assertEquals(killbillEventHandler.getNbActiveWaiters(), 1);
+    }
+
+    @Test(groups = "fast")
+    public void testExpiredWaitersAreSwept() throws Exception {
+        // No grace period and a sweep on each registration
+        final KillbillEventHandler killbillEventHandler = new KillbillEventHandler(0L, 0L);
+
+        // Never unregistered
+        final TestCompletionUserRequest leakedWaiter = new TestCompletionUserRequest(UUID.randomUUID());
+        killbillEventHandler.registerCompletionUserRequestWaiter(leakedWaiter, 0L);
+
+        final TestCompletionUserRequest waiter = new TestCompletionUserRequest(UUID.randomUUID());
+        killbillEventHandler.registerCompletionUserRequestWaiter(waiter, TimeUnit.HOURS.toMillis(1));
+        Assert.assertEquals(killbillEventHandler.getNbActiveWaiters(), 1);
+
+        killbillEventHandler.handleSubscriptionEvents(createAccountCreationEvent(leakedWaiter.getUserToken()));
+        Assert.assertEquals(leakedWaiter.getNbAccountCreations(), 0);
+    }
+
+    @Test(groups = "fast")
+    public void testConcurrentWaiters() throws Exception {
+        final KillbillEventHandler killbillEventHandler = new KillbillEventHandler();
+
+        // Two waiting requests per user token
+        final int nbRequests = 2000;
+        final List<TestCompletionUserRequest> waiters = new ArrayList<TestCompletionUserRequest>(nbRequests);
+        final List<BusInternalEvent> events = new ArrayList<BusInternalEvent>(nbRequests);
+        for (int i = 0; i < nbRequests / 2; i++) {
+            final UUID userToken = UUID.randomUUID();
+            for (int j = 0; j < 2; j++) {
+                waiters.add(new TestCompletionUserRequest(userToken));
+                events.add(createAccountCreationEvent(userToken));
+            }
+        }
+        // Events for requests nobody is waiting for
+        final List<BusInternalEvent> unrelatedEvents = new ArrayList<BusInternalEvent>(nbRequests);
+        for (int i = 0; i < nbRequests; i++) {
+            unrelatedEvents.add(createAccountCreationEvent(UUID.randomUUID()));
+        }
+
+        final ExecutorService requestExecutor = Executors.newFixedThreadPool(nbRequests);
+        final ExecutorService busExecutor = Executors.newFixedThreadPool(16);
+        try {
+            final List<Future<Integer>> futures = new ArrayList<Future<Integer>>(nbRequests);
+            for (int i = 0; i < nbRequests; i++) {
+                final TestCompletionUserRequest waiter = waiters.get(i);
+                final BusInternalEvent event = events.get(i);
+                final BusInternalEvent unrelatedEvent = unrelatedEvents.get(i);
+                futures.add(requestExecutor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        killbillEventHandler.registerCompletionUserRequestWaiter(waiter, TimeUnit.MINUTES.toMillis(1));
+                        try {
+                            // The operation triggers bus events, dispatched by the bus threads
+                            busExecutor.submit(new Runnable() {
+                                @Override
+                                public void run() {
+                                    killbillEventHandler.handleSubscriptionEvents(unrelatedEvent);
+                                    killbillEventHandler.handleSubscriptionEvents(event);
+                                }
+                            });
+                            return waiter.waitForCompletion(TimeUnit.MINUTES.toMillis(1)).size();
+                        } finally {
+                            killbillEventHandler.unregisterCompletionUserRequestWaiter(waiter);
+                        }
+                    }
+                }));
+            }
+
+            for (final Future<Integer> future : futures) {
+                // Its own event, and possibly the one of the other request sharing the user token
+                Assert.assertTrue(future.get(2, TimeUnit.MINUTES) >= 1);
+            }
+        } finally {
+            requestExecutor.shutdownNow();
+            busExecutor.shutdownNow();
+        }
+
+        Assert.assertEquals(killbillEventHandler.getNbActiveWaiters(), 0);
+        for (final TestCompletionUserRequest waiter : waiters) {
+            Assert.assertTrue(waiter.getNbAccountCreations() >= 1);
+        }
+    }
+
+    private BusInternalEvent createAccountCreationEvent(final UUID userToken) {
+        final AccountCreationInternalEvent event = Mockito.mock(AccountCreationInternalEvent.class);
+        Mockito.when(event.getUserToken()).thenReturn(userToken);
+        Mockito.when(event.getBusEventType()).thenReturn(BusInternalEventType.ACCOUNT_CREATE);
+        return event;
+    }
+
+    private static final class TestCompletionUserRequest extends CompletionUserRequestBase {
+
+        private final AtomicInteger nbAccountCreations = new AtomicInteger();
+
+        public TestCompletionUserRequest(final UUID userToken) {
+            super(userToken);
+        }
+
+        @Override
+        public void onAccountCreation(final AccountCreationInternalEvent curEvent) {
+            nbAccountCreations.incrementAndGet();
+            notifyForCompletion();
+        }
+
+        public int getNbAccountCreations() {
+            return nbAccountCreations.get();
+        }
+    }
+}
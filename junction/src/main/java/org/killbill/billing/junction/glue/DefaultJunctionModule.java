@@ -23,7 +23,9 @@ import org.killbill.billing.junction.BillingInternalApi;
 import org.killbill.billing.junction.plumbing.billing.BlockingCalculator;
 import org.killbill.billing.junction.plumbing.billing.DefaultInternalBillingApi;
 import org.killbill.billing.platform.api.KillbillConfigSource;
+import org.killbill.billing.util.config.definition.JunctionConfig;
 import org.killbill.billing.util.glue.KillBillModule;
+import org.skife.config.ConfigurationObjectFactory;
 
 public class DefaultJunctionModule extends KillBillModule implements JunctionModule {
 
@@ -33,10 +35,16 @@ public class DefaultJunctionModule extends KillBillModule implements JunctionMod
 
     @Override
     protected void configure() {
+        installConfig();
         installBillingApi();
         installBlockingCalculator();
     }
 
+    protected void installConfig() {
+        final JunctionConfig config = new ConfigurationObjectFactory(skifeConfigSource).build(JunctionConfig.class);
+        bind(JunctionConfig.class).toInstance(config);
+    }
+
     @Override
     public void installBillingApi() {
         bind(BillingInternalApi.class).to(DefaultInternalBillingApi.class).asEagerSingleton();
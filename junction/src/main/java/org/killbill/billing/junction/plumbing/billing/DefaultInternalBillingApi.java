@@ -22,11 +22,16 @@ import java.math.BigDecimal;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import javax.annotation.Nullable;
 
@@ -57,10 +62,12 @@ import org.killbill.billing.subscription.api.user.SubscriptionBillingEvent;
 import org.killbill.billing.tag.TagInternalApi;
 import org.killbill.billing.util.UUIDs;
 import org.killbill.billing.util.bcd.BillCycleDayCalculator;
+import org.killbill.billing.util.config.definition.JunctionConfig;
 import org.killbill.billing.util.tag.ControlTagType;
 import org.killbill.billing.util.tag.Tag;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
 
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
@@ -78,18 +85,26 @@ public class DefaultInternalBillingApi implements BillingInternalApi {
     private final CatalogInternalApi catalogInternalApi;
     private final BlockingCalculator blockCalculator;
     private final TagInternalApi tagApi;
+    private final int parallelismMinBundles;
+    // Workers are daemon threads which are reclaimed when idle, so the pool doesn't need to be shutdown
+    private final ForkJoinPool billingEventsPool;
 
     @Inject
     public DefaultInternalBillingApi(final AccountInternalApi accountApi,
                                      final SubscriptionBaseInternalApi subscriptionApi,
                                      final BlockingCalculator blockCalculator,
                                      final CatalogInternalApi catalogInternalApi,
-                                     final TagInternalApi tagApi) {
+                                     final TagInternalApi tagApi,
+                                     final JunctionConfig junctionConfig) {
         this.accountApi = accountApi;
         this.subscriptionApi = subscriptionApi;
         this.catalogInternalApi = catalogInternalApi;
         this.blockCalculator = blockCalculator;
         this.tagApi = tagApi;
+        this.parallelismMinBundles = junctionConfig.getBillingEventsParallelismMinBundles();
+
+        final int parallelism = junctionConfig.getBillingEventsParallelism() > 0 ? junctionConfig.getBillingEventsParallelism() : Runtime.getRuntime().availableProcessors();
+        this.billingEventsPool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
     }
 
     @Override
@@ -154,28 +169,9 @@ public class DefaultInternalBillingApi implements BillingInternalApi {
                                             final Catalog catalog,
                                             final List<Tag> tagsForAccount) throws AccountApiException, CatalogApiException, SubscriptionBaseApiException {
         final int currentAccountBCD = accountApi.getBCD(context);
-        addBillingEventsForBundles(bundles,
-                                   account,
-                                   dryRunArguments,
-                                   context,
-                                   result,
-                                   skipSubscriptionsSet,
-                                   subscriptionsForAccount,
-                                   catalog,
-                                   tagsForAccount,
-                                   currentAccountBCD);
-    }
 
-    private void addBillingEventsForBundles(final List<SubscriptionBaseBundle> bundles,
-                                            final ImmutableAccountData account,
-                                            final DryRunArguments dryRunArguments,
-                                            final InternalCallContext context,
-                                            final DefaultBillingEventSet result,
-                                            final Set<UUID> skipSubscriptionsSet,
-                                            final Map<UUID, List<SubscriptionBase>> subscriptionsForAccount,
-                                            final Catalog catalog,
-                                            final List<Tag> tagsForAccount,
-                                            final int currentAccountBCD) throws AccountApiException, CatalogApiException, SubscriptionBaseApiException {
+        final List<BundleBillingEvents> bundlesBillingEvents = new LinkedList<BundleBillingEvents>();
+
         // In dryRun mode, when we care about invoice generated for new BASE subscription, no such bundle exists yet; we still
         // want to tap into subscriptionBase logic, so we make up a bundleId
         if (dryRunArguments != null &&
@@ -184,7 +180,7 @@ public class DefaultInternalBillingApi implements BillingInternalApi {
             final UUID fakeBundleId = UUIDs.randomUUID();
             final List<SubscriptionBase> subscriptions = subscriptionApi.getSubscriptionsForBundle(fakeBundleId, dryRunArguments, context);
 
-            addBillingEventsForSubscription(account, subscriptions, null, currentAccountBCD, context, result, skipSubscriptionsSet, catalog);
+            bundlesBillingEvents.add(new BundleBillingEvents(subscriptions, null));
         }
 
         for (final SubscriptionBaseBundle bundle : bundles) {
@@ -209,10 +205,17 @@ public class DefaultInternalBillingApi implements BillingInternalApi {
                 }
             } else { // billing is not off
                 final SubscriptionBase baseSubscription = subscriptions != null && !subscriptions.isEmpty() ? subscriptions.get(0) : null;
-                addBillingEventsForSubscription(account, subscriptions, baseSubscription, currentAccountBCD, context, result, skipSubscriptionsSet, catalog);
+                bundlesBillingEvents.add(new BundleBillingEvents(subscriptions, baseSubscription));
             }
         }
 
+        // All subscriptions have been retrieved at this point: billing events of each bundle are computed in memory, independently of the other bundles
+        computeBillingEvents(bundlesBillingEvents, account, currentAccountBCD, context, catalog);
+        for (final BundleBillingEvents bundleBillingEvents : bundlesBillingEvents) {
+            result.addAll(bundleBillingEvents.getBillingEvents());
+            skipSubscriptionsSet.addAll(bundleBillingEvents.getSkippedSubscriptionIds());
+        }
+
         // If dryRun is specified, we don't want to to update the account BCD value, so we initialize the flag updatedAccountBCD to true
         if (currentAccountBCD == 0) {
             final Integer accountBCDCandidate = computeAccountBCD(result);
@@ -221,9 +224,19 @@ public class DefaultInternalBillingApi implements BillingInternalApi {
             }
 
             // Because we now have computed the real BCD, we need to re-compute the BillingEvents BCD for ACCOUNT alignments (see BillCycleDayCalculator#calculateBcdForAlignment).
-            // The code could maybe be optimized (no need to re-run the full function?), but since it's run once per account, it's probably not worth it.
-            result.clear();
-            addBillingEventsForBundles(bundles, account, dryRunArguments, context, result, skipSubscriptionsSet, subscriptionsForAccount, catalog, tagsForAccount, accountBCDCandidate);
+            // The other billing events are left untouched.
+            for (final BundleBillingEvents bundleBillingEvents : bundlesBillingEvents) {
+                for (final AccountAlignedBillingEvent accountAlignedBillingEvent : bundleBillingEvents.getAccountAlignedBillingEvents()) {
+                    // The new event has the same subscription, effective date and ordering, i.e. it replaces the old one (see DefaultBillingEvent#compareTo)
+                    result.remove(accountAlignedBillingEvent.getBillingEvent());
+                    result.add(new DefaultBillingEvent(accountAlignedBillingEvent.getTransition(),
+                                                       accountAlignedBillingEvent.getSubscription(),
+                                                       accountBCDCandidate,
+                                                       BillingAlignment.ACCOUNT,
+                                                       account.getCurrency(),
+                                                       catalog));
+                }
+            }
 
             final boolean dryRunMode = dryRunArguments != null;
             if (!dryRunMode) {
@@ -233,6 +246,66 @@ public class DefaultInternalBillingApi implements BillingInternalApi {
         }
     }
 
+    private void computeBillingEvents(final List<BundleBillingEvents> bundlesBillingEvents,
+                                      final ImmutableAccountData account,
+                                      final int currentAccountBCD,
+                                      final InternalCallContext context,
+                                      final Catalog catalog) throws CatalogApiException {
+        if (billingEventsPool == null || bundlesBillingEvents.size() < parallelismMinBundles) {
+            for (final BundleBillingEvents bundleBillingEvents : bundlesBillingEvents) {
+                addBillingEventsForSubscription(account, bundleBillingEvents, currentAccountBCD, context, catalog);
+            }
+            return;
+        }
+
+        // Keep the requestId, accountRecordId, etc. in the logs
+        final Map<String, String> mdcContextMap = MDC.getCopyOfContextMap();
+        final List<Callable<Void>> tasks = new LinkedList<Callable<Void>>();
+        for (final BundleBillingEvents bundleBillingEvents : bundlesBillingEvents) {
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws CatalogApiException {
+                    // Tasks can also be run by the calling thread, while it waits for the other ones
+                    final Map<String, String> previousMdcContextMap = MDC.getCopyOfContextMap();
+                    setMDCContextMap(mdcContextMap);
+                    try {
+                        addBillingEventsForSubscription(account, bundleBillingEvents, currentAccountBCD, context, catalog);
+                        return null;
+                    } finally {
+                        setMDCContextMap(previousMdcContextMap);
+                    }
+                }
+            });
+        }
+
+        for (final Future<Void> future : billingEventsPool.invokeAll(tasks)) {
+            try {
+                future.get();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } catch (final ExecutionException e) {
+                if (e.getCause() instanceof CatalogApiException) {
+                    throw (CatalogApiException) e.getCause();
+                } else if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                } else if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                } else {
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+        }
+    }
+
+    private void setMDCContextMap(@Nullable final Map<String, String> contextMap) {
+        if (contextMap == null) {
+            MDC.clear();
+        } else {
+            MDC.setContextMap(contextMap);
+        }
+    }
+
     private Integer computeAccountBCD(final BillingEventSet result) throws CatalogApiException {
         BillingEvent oldestAccountAlignedBillingEvent = null;
 
@@ -269,23 +342,20 @@ public class DefaultInternalBillingApi implements BillingInternalApi {
     }
 
     private void addBillingEventsForSubscription(final ImmutableAccountData account,
-                                                 final List<SubscriptionBase> subscriptions,
-                                                 final SubscriptionBase baseSubscription,
+                                                 final BundleBillingEvents bundleBillingEvents,
                                                  final int currentAccountBCD,
                                                  final InternalCallContext context,
-                                                 final DefaultBillingEventSet result,
-                                                 final Set<UUID> skipSubscriptionsSet,
                                                  final Catalog catalog) throws CatalogApiException {
         final Map<UUID, Integer> bcdCache = new HashMap<UUID, Integer>();
 
-        for (final SubscriptionBase subscription : subscriptions) {
+        for (final SubscriptionBase subscription : bundleBillingEvents.getSubscriptions()) {
 
             final List<SubscriptionBillingEvent> billingTransitions = subscriptionApi.getSubscriptionBillingEvents(subscription, context);
             if (billingTransitions.isEmpty() ||
                 (billingTransitions.get(0).getType() != SubscriptionBaseTransitionType.CREATE &&
                  billingTransitions.get(0).getType() != SubscriptionBaseTransitionType.TRANSFER)) {
                 log.warn("Skipping billing events for subscription " + subscription.getId() + ": Does not start with a valid CREATE transition");
-                skipSubscriptionsSet.add(subscription.getId());
+                bundleBillingEvents.getSkippedSubscriptionIds().add(subscription.getId());
                 return;
             }
 
@@ -301,10 +371,13 @@ public class DefaultInternalBillingApi implements BillingInternalApi {
                 overridenBCD = transition.getBcdLocal() != null ? transition.getBcdLocal() : overridenBCD;
                 final int bcdLocal = overridenBCD != null ?
                                      overridenBCD :
-                                     calculateBcdForTransition(alignment, bcdCache, baseSubscription, subscription, currentAccountBCD, context);
+                                     calculateBcdForTransition(alignment, bcdCache, bundleBillingEvents.getBaseSubscription(), subscription, currentAccountBCD, context);
 
                 final BillingEvent event = new DefaultBillingEvent(transition, subscription, bcdLocal, alignment, account.getCurrency(), catalog);
-                result.add(event);
+                bundleBillingEvents.getBillingEvents().add(event);
+                if (overridenBCD == null && alignment == BillingAlignment.ACCOUNT) {
+                    bundleBillingEvents.getAccountAlignedBillingEvents().add(new AccountAlignedBillingEvent(transition, subscription, event));
+                }
             }
         }
     }
@@ -369,4 +442,64 @@ public class DefaultInternalBillingApi implements BillingInternalApi {
         return subscriptionsForAccount.containsKey(bundleId) ? subscriptionsForAccount.get(bundleId) : ImmutableList.<SubscriptionBase>of();
     }
 
+    // Billing events computed for the subscriptions of a bundle (each bundle is processed by a single thread)
+    private static final class BundleBillingEvents {
+
+        private final List<SubscriptionBase> subscriptions;
+        private final SubscriptionBase baseSubscription;
+        private final List<BillingEvent> billingEvents = new LinkedList<BillingEvent>();
+        // Events whose BCD depends on the account BCD (i.e. to recompute when the account BCD isn't set yet)
+        private final List<AccountAlignedBillingEvent> accountAlignedBillingEvents = new LinkedList<AccountAlignedBillingEvent>();
+        private final Set<UUID> skippedSubscriptionIds = new HashSet<UUID>();
+
+        private BundleBillingEvents(final List<SubscriptionBase> subscriptions, @Nullable final SubscriptionBase baseSubscription) {
+            this.subscriptions = subscriptions;
+            this.baseSubscription = baseSubscription;
+        }
+
+        public List<SubscriptionBase> getSubscriptions() {
+            return subscriptions;
+        }
+
+        public SubscriptionBase getBaseSubscription() {
+            return baseSubscription;
+        }
+
+        public List<BillingEvent> getBillingEvents() {
+            return billingEvents;
+        }
+
+        public List<AccountAlignedBillingEvent> getAccountAlignedBillingEvents() {
+            return accountAlignedBillingEvents;
+        }
+
+        public Set<UUID> getSkippedSubscriptionIds() {
+            return skippedSubscriptionIds;
+        }
+    }
+
+    private static final class AccountAlignedBillingEvent {
+
+        private final SubscriptionBillingEvent transition;
+        private final SubscriptionBase subscription;
+        private final BillingEvent billingEvent;
+
+        private AccountAlignedBillingEvent(final SubscriptionBillingEvent transition, final SubscriptionBase subscription, final BillingEvent billingEvent) {
+            this.transition = transition;
+            this.subscription = subscription;
+            this.billingEvent = billingEvent;
+        }
+
+        public SubscriptionBillingEvent getTransition() {
+            return transition;
+        }
+
+        public SubscriptionBase getSubscription() {
+            return subscription;
+        }
+
+        public BillingEvent getBillingEvent() {
+            return billingEvent;
+        }
+    }
 }
@@ -29,6 +29,7 @@ import org.joda.time.DateTimeZone;
 import org.killbill.billing.ObjectType;
 import org.killbill.billing.account.api.Account;
 import org.killbill.billing.account.api.AccountApiException;
+import org.killbill.billing.callcontext.InternalCallContext;
 import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.catalog.DefaultVersionedCatalog;
 import org.killbill.billing.catalog.MockCatalog;
@@ -48,6 +49,7 @@ import org.killbill.billing.events.EffectiveSubscriptionInternalEvent;
 import org.killbill.billing.invoice.api.DryRunArguments;
 import org.killbill.billing.junction.BillingEvent;
 import org.killbill.billing.junction.BillingEventSet;
+import org.killbill.billing.junction.BillingInternalApi;
 import org.killbill.billing.junction.DefaultBlockingState;
 import org.killbill.billing.junction.JunctionTestSuiteNoDB;
 import org.killbill.billing.mock.MockEffectiveSubscriptionEvent;
@@ -59,6 +61,7 @@ import org.killbill.billing.subscription.api.user.DefaultSubscriptionBillingEven
 import org.killbill.billing.subscription.api.user.SubscriptionBaseApiException;
 import org.killbill.billing.subscription.api.user.SubscriptionBaseBundle;
 import org.killbill.billing.util.api.TagApiException;
+import org.killbill.billing.util.config.definition.JunctionConfig;
 import org.killbill.billing.util.tag.ControlTagType;
 import org.killbill.billing.util.tag.dao.MockTagDao;
 import org.mockito.Mockito;
@@ -250,6 +253,50 @@ public class TestBillingApi extends JunctionTestSuiteNoDB {
         assertEquals(events.size(), 0);
     }
 
+    @Test(groups = "fast")
+    public void testBillingEventsMultipleBundlesInParallel() throws CatalogApiException, AccountApiException, SubscriptionBaseApiException {
+        final Plan nextPlan = catalog.findPlan("3-PickupTrialEvergreen10USD", clock.getUTCNow());
+        final PlanPhase nextPhase = nextPlan.getAllPhases()[1];
+
+        final List<SubscriptionBaseBundle> bundles = new LinkedList<SubscriptionBaseBundle>();
+        final ImmutableMap.Builder<UUID, List<SubscriptionBase>> subscriptionsForAccount = ImmutableMap.<UUID, List<SubscriptionBase>>builder();
+        DateTime oldestStartDate = null;
+        for (int i = 0; i < 10; i++) {
+            final UUID bundleId = UUID.randomUUID();
+            final SubscriptionBaseBundle bundle = Mockito.mock(SubscriptionBaseBundle.class);
+            Mockito.when(bundle.getId()).thenReturn(bundleId);
+            bundles.add(bundle);
+
+            final DateTime startDate = clock.getUTCNow().minusDays(i + 1);
+            final SubscriptionBase subscription = new MockSubscription(UUID.randomUUID(), bundleId, nextPlan, startDate, startDate);
+            subscriptionsForAccount.put(bundleId, ImmutableList.<SubscriptionBase>of(subscription));
+            Mockito.when(subscriptionInternalApi.getSubscriptionBillingEvents(Mockito.eq(subscription), Mockito.<InternalTenantContext>any()))
+                   .thenReturn(ImmutableList.<SubscriptionBillingEvent>of(new DefaultSubscriptionBillingEvent(SubscriptionBaseTransitionType.CREATE, nextPlan.getName(), nextPhase.getName(), startDate, 1L, startDate, null)));
+            oldestStartDate = startDate;
+        }
+        Mockito.when(subscriptionInternalApi.getBundlesForAccount(Mockito.<UUID>any(), Mockito.<InternalTenantContext>any())).thenReturn(bundles);
+        Mockito.when(subscriptionInternalApi.getSubscriptionsForAccount(Mockito.<Catalog>any(), Mockito.<InternalTenantContext>any())).thenReturn(subscriptionsForAccount.build());
+
+        // Account with no BCD
+        final Account account = createAccount(0);
+
+        final JunctionConfig junctionConfig = Mockito.mock(JunctionConfig.class);
+        Mockito.when(junctionConfig.getBillingEventsParallelism()).thenReturn(4);
+        Mockito.when(junctionConfig.getBillingEventsParallelismMinBundles()).thenReturn(2);
+        final BillingInternalApi parallelBillingInternalApi = new DefaultInternalBillingApi(accountInternalApi, subscriptionInternalApi, blockingCalculator, catalogInternalApi, tagInternalApi, junctionConfig);
+
+        final SortedSet<BillingEvent> events = parallelBillingInternalApi.getBillingEventsForAccountAndUpdateAccountBCD(account.getId(), null, internalCallContext);
+        Assert.assertEquals(events.size(), 10);
+
+        // All events are re-aligned on the BCD of the oldest subscription
+        final int expectedBCD = internalCallContext.toLocalDate(oldestStartDate).getDayOfMonth();
+        for (final BillingEvent event : events) {
+            Assert.assertEquals(event.getBillCycleDayLocal(), expectedBCD);
+            Assert.assertEquals(event.getBillingAlignment(), BillingAlignment.ACCOUNT);
+        }
+        Mockito.verify(accountInternalApi).updateBCD(Mockito.<String>any(), Mockito.eq(expectedBCD), Mockito.<InternalCallContext>any());
+    }
+
     private void checkFirstEvent(final SortedSet<BillingEvent> events, final Plan nextPlan,
                                  final int BCD, final UUID id, final DateTime time, final PlanPhase nextPhase, final String desc) throws CatalogApiException {
         Assert.assertEquals(events.size(), 1);
@@ -26,6 +26,7 @@ import org.killbill.billing.overdue.api.OverdueApi;
 import org.killbill.billing.overdue.caching.DefaultOverdueConfigCache;
 import org.killbill.billing.overdue.caching.OverdueCacheInvalidationCallback;
 import org.killbill.billing.overdue.caching.OverdueConfigCache;
+import org.killbill.billing.overdue.caching.OverdueConfigCacheWarmer;
 import org.killbill.billing.overdue.listener.OverdueListener;
 import org.killbill.billing.overdue.notification.OverdueAsyncBusNotifier;
 import org.killbill.billing.overdue.notification.OverdueAsyncBusPoster;
@@ -37,9 +38,11 @@ import org.killbill.billing.overdue.service.DefaultOverdueService;
 import org.killbill.billing.overdue.wrapper.OverdueWrapperFactory;
 import org.killbill.billing.platform.api.KillbillConfigSource;
 import org.killbill.billing.tenant.api.TenantInternalApi.CacheInvalidationCallback;
+import org.killbill.billing.util.cache.TenantCacheWarmer;
 import org.killbill.billing.util.glue.KillBillModule;
 import org.skife.config.ConfigurationObjectFactory;
 
+import com.google.inject.multibindings.Multibinder;
 import com.google.inject.name.Names;
 
 public class DefaultOverdueModule extends KillBillModule implements OverdueModule {
@@ -90,5 +93,7 @@ public class DefaultOverdueModule extends KillBillModule implements OverdueModul
     public void installOverdueConfigCache() {
         bind(OverdueConfigCache.class).to(DefaultOverdueConfigCache.class).asEagerSingleton();
         bind(CacheInvalidationCallback.class).annotatedWith(Names.named(OVERDUE_INVALIDATION_CALLBACK)).to(OverdueCacheInvalidationCallback.class).asEagerSingleton();
+
+        Multibinder.newSetBinder(binder(), TenantCacheWarmer.class).addBinding().to(OverdueConfigCacheWarmer.class).asEagerSingleton();
     }
 }
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.payment.caching;
+
+import javax.inject.Inject;
+
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.osgi.api.OSGIServiceRegistration;
+import org.killbill.billing.payment.plugin.api.PaymentPluginApi;
+import org.killbill.billing.util.cache.TenantCacheWarmer;
+
+// Load (and parse) the tenant payment state machine configs on startup, for the payment plugins registered at that time
+public class StateMachineConfigCacheWarmer implements TenantCacheWarmer {
+
+    private final StateMachineConfigCache stateMachineConfigCache;
+    private final OSGIServiceRegistration<PaymentPluginApi> paymentPluginServiceRegistration;
+
+    @Inject
+    public StateMachineConfigCacheWarmer(final StateMachineConfigCache stateMachineConfigCache,
+                                         final OSGIServiceRegistration<PaymentPluginApi> paymentPluginServiceRegistration) {
+        this.stateMachineConfigCache = stateMachineConfigCache;
+        this.paymentPluginServiceRegistration = paymentPluginServiceRegistration;
+    }
+
+    @Override
+    public String getName() {
+        return "payment state machine configs";
+    }
+
+    @Override
+    public void warmUp(final InternalTenantContext tenantContext) throws Exception {
+        for (final String pluginName : paymentPluginServiceRegistration.getAllServices()) {
+            stateMachineConfigCache.getPaymentStateMachineConfig(pluginName, tenantContext);
+        }
+    }
+}
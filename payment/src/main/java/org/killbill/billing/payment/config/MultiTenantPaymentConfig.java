@@ -149,6 +149,21 @@ public class MultiTenantPaymentConfig extends MultiTenantConfigBase implements P
         return staticConfig.getIncompleteAttemptsTimeSpanDelay();
     }
 
+    @Override
+    public int getJanitorThreadNb() {
+        return staticConfig.getJanitorThreadNb();
+    }
+
+    @Override
+    public int getJanitorNodeNb() {
+        return staticConfig.getJanitorNodeNb();
+    }
+
+    @Override
+    public int getJanitorNodeIndex() {
+        return staticConfig.getJanitorNodeIndex();
+    }
+
     @Override
     public String getDefaultPaymentProvider() {
         return staticConfig.getDefaultPaymentProvider();
@@ -164,6 +179,36 @@ public class MultiTenantPaymentConfig extends MultiTenantConfigBase implements P
         return staticConfig.getPaymentPluginThreadNb();
     }
 
+    @Override
+    public PluginExecutorMode getPaymentPluginExecutorMode() {
+        return staticConfig.getPaymentPluginExecutorMode();
+    }
+
+    @Override
+    public int getPaymentPluginQueueSize() {
+        return staticConfig.getPaymentPluginQueueSize();
+    }
+
+    @Override
+    public int getPaymentPluginMaxConcurrentCalls() {
+        return staticConfig.getPaymentPluginMaxConcurrentCalls();
+    }
+
+    @Override
+    public int getPaymentPluginCircuitBreakerFailureRateThreshold() {
+        return staticConfig.getPaymentPluginCircuitBreakerFailureRateThreshold();
+    }
+
+    @Override
+    public int getPaymentPluginCircuitBreakerSlidingWindowSize() {
+        return staticConfig.getPaymentPluginCircuitBreakerSlidingWindowSize();
+    }
+
+    @Override
+    public TimeSpan getPaymentPluginCircuitBreakerWaitDurationInOpenState() {
+        return staticConfig.getPaymentPluginCircuitBreakerWaitDurationInOpenState();
+    }
+
     @Override
     public int getMaxGlobalLockRetries() {
         return staticConfig.getMaxGlobalLockRetries();
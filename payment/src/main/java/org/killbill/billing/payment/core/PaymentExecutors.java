@@ -17,6 +17,8 @@
 
 package org.killbill.billing.payment.core;
 
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
@@ -26,12 +28,21 @@ import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 
+import org.killbill.billing.payment.dispatcher.PluginBulkheads;
 import org.killbill.billing.util.config.definition.PaymentConfig;
+import org.killbill.billing.util.config.definition.PaymentConfig.PluginExecutorMode;
+import org.killbill.clock.Clock;
 import org.killbill.commons.concurrent.Executors;
 import org.killbill.commons.concurrent.WithProfilingThreadPoolExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.MetricRegistry;
 
 public class PaymentExecutors {
 
+    private static final Logger log = LoggerFactory.getLogger(PaymentExecutors.class);
+
     private static final long TIMEOUT_EXECUTOR_SEC = 3L;
 
     private static final int DEFAULT_MIN_PLUGIN_THREADS = 5;
@@ -43,62 +54,123 @@ public class PaymentExecutors {
     public static final String PLUGIN_EXECUTOR_NAMED = "PluginExecutor";
 
     private final PaymentConfig paymentConfig;
+    private final MetricRegistry metricRegistry;
+    private final Clock clock;
 
-    private volatile ThreadPoolExecutor pluginExecutorService;
+    private volatile PluginExecutorService pluginExecutorService;
+    private volatile PluginBulkheads pluginBulkheads;
     private volatile ScheduledExecutorService janitorExecutorService;
 
     @Inject
-    public PaymentExecutors(PaymentConfig paymentConfig) {
+    public PaymentExecutors(PaymentConfig paymentConfig, MetricRegistry metricRegistry, Clock clock) {
         this.paymentConfig = paymentConfig;
-
+        this.metricRegistry = metricRegistry;
+        this.clock = clock;
     }
 
     public void initialize() {
-        this.pluginExecutorService = createPluginExecutorService();
-        this.pluginExecutorService.prestartAllCoreThreads();
+        this.pluginExecutorService = new PluginExecutorService(createPluginExecutorService(paymentConfig.getPaymentPluginExecutorMode()));
+        this.pluginExecutorService.registerMetrics(metricRegistry);
+        this.pluginBulkheads = new PluginBulkheads(paymentConfig, clock, metricRegistry);
         this.janitorExecutorService = createJanitorExecutorService();
     }
 
 
     public void stop() throws InterruptedException {
+        pluginExecutorService.unregisterMetrics(metricRegistry);
+        pluginBulkheads.unregisterMetrics();
         pluginExecutorService.shutdownNow();
         janitorExecutorService.shutdownNow();
 
         pluginExecutorService.awaitTermination(TIMEOUT_EXECUTOR_SEC, TimeUnit.SECONDS);
         pluginExecutorService = null;
+        pluginBulkheads = null;
 
         janitorExecutorService.awaitTermination(TIMEOUT_EXECUTOR_SEC, TimeUnit.SECONDS);
         janitorExecutorService = null;
     }
 
-    public ExecutorService getPluginExecutorService() {
+    public PluginExecutorService getPluginExecutorService() {
         return pluginExecutorService;
     }
 
+    public PluginBulkheads getPluginBulkheads() {
+        return pluginBulkheads;
+    }
+
     public ScheduledExecutorService getJanitorExecutorService() {
         return janitorExecutorService;
     }
 
-    private ThreadPoolExecutor createPluginExecutorService() {
+    private ExecutorService createPluginExecutorService(final PluginExecutorMode mode) {
+        switch (mode) {
+            case VIRTUAL_THREADS:
+                final ExecutorService virtualThreadExecutorService = createVirtualThreadExecutorService();
+                if (virtualThreadExecutorService != null) {
+                    return virtualThreadExecutorService;
+                }
+                log.warn("Virtual threads aren't supported by this JVM, defaulting to the POOL plugin executor mode");
+                return createPooledPluginExecutorService();
+            case BOUNDED:
+                return createBoundedPluginExecutorService();
+            case POOL:
+            default:
+                return createPooledPluginExecutorService();
+        }
+    }
+
+    private ThreadPoolExecutor createPooledPluginExecutorService() {
         final int minThreadNb = DEFAULT_MIN_PLUGIN_THREADS < paymentConfig.getPaymentPluginThreadNb() ? DEFAULT_MIN_PLUGIN_THREADS : paymentConfig.getPaymentPluginThreadNb();
-        return new WithProfilingThreadPoolExecutor(minThreadNb,
-                                                   paymentConfig.getPaymentPluginThreadNb(),
-                                                   10,
-                                                   TimeUnit.MINUTES,
-                                                   new LinkedBlockingQueue<Runnable>(),
-                                                   new ThreadFactory() {
-
-                                                       @Override
-                                                       public Thread newThread(final Runnable r) {
-                                                           final Thread th = new Thread(new ThreadGroup(PAYMENT_PLUGIN_TH_GROUP_NAME), r);
-                                                           th.setName(PLUGIN_THREAD_PREFIX + th.getId());
-                                                           return th;
-                                                       }
-                                                   });
+        final ThreadPoolExecutor threadPoolExecutor = new WithProfilingThreadPoolExecutor(minThreadNb,
+                                                                                          paymentConfig.getPaymentPluginThreadNb(),
+                                                                                          10,
+                                                                                          TimeUnit.MINUTES,
+                                                                                          new LinkedBlockingQueue<Runnable>(),
+                                                                                          createPluginThreadFactory());
+        threadPoolExecutor.prestartAllCoreThreads();
+        return threadPoolExecutor;
+    }
+
+    // Once all threads are busy and the queue is full, calls are rejected right away (RejectedExecutionException) instead of piling up
+    private ThreadPoolExecutor createBoundedPluginExecutorService() {
+        final ThreadPoolExecutor threadPoolExecutor = new WithProfilingThreadPoolExecutor(paymentConfig.getPaymentPluginThreadNb(),
+                                                                                          paymentConfig.getPaymentPluginThreadNb(),
+                                                                                          10,
+                                                                                          TimeUnit.MINUTES,
+                                                                                          new ArrayBlockingQueue<Runnable>(paymentConfig.getPaymentPluginQueueSize()),
+                                                                                          createPluginThreadFactory(),
+                                                                                          new ThreadPoolExecutor.AbortPolicy());
+        threadPoolExecutor.allowCoreThreadTimeOut(true);
+        return threadPoolExecutor;
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() is only available on JDK 21+
+    private ExecutorService createVirtualThreadExecutorService() {
+        try {
+            final Method method = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (final NoSuchMethodException e) {
+            return null;
+        } catch (final ReflectiveOperationException e) {
+            log.warn("Unable to create the virtual thread executor", e);
+            return null;
+        }
+    }
+
+    private ThreadFactory createPluginThreadFactory() {
+        return new ThreadFactory() {
 
+            @Override
+            public Thread newThread(final Runnable r) {
+                final Thread th = new Thread(new ThreadGroup(PAYMENT_PLUGIN_TH_GROUP_NAME), r);
+                th.setName(PLUGIN_THREAD_PREFIX + th.getId());
+                return th;
+            }
+        };
     }
 
     private ScheduledExecutorService createJanitorExecutorService() {
-        return Executors.newSingleThreadScheduledExecutor("PaymentJanitor");
+        // One thread per Janitor shard
+        return Executors.newScheduledThreadPool(Math.max(1, paymentConfig.getJanitorThreadNb()), "PaymentJanitor");
     }
 }
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.payment.core;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.killbill.commons.concurrent.WithProfilingThreadPoolExecutor;
+import org.killbill.commons.profiling.Profiling;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+
+//
+// Executor used to dispatch plugin calls, whatever the underlying mode (see PaymentConfig.PluginExecutorMode).
+// It keeps track of the calls submitted but not completed yet, and of the calls rejected (BOUNDED mode, once the queue is full).
+//
+public class PluginExecutorService extends AbstractExecutorService {
+
+    private static final String METRIC_PREFIX = "payment.plugin.executor";
+
+    private final ExecutorService delegate;
+    private final AtomicInteger pendingTasks = new AtomicInteger();
+    private final Meter rejectedTasks = new Meter();
+
+    public PluginExecutorService(final ExecutorService delegate) {
+        this.delegate = delegate;
+    }
+
+    public void registerMetrics(final MetricRegistry metricRegistry) {
+        // Re-create the metrics, as the executor is re-created on restart (mainly useful for tests)
+        unregisterMetrics(metricRegistry);
+
+        metricRegistry.register(MetricRegistry.name(METRIC_PREFIX, "pending"), new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return getPendingTasks();
+            }
+        });
+        metricRegistry.register(MetricRegistry.name(METRIC_PREFIX, "queued"), new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return getQueuedTasks();
+            }
+        });
+        metricRegistry.register(MetricRegistry.name(METRIC_PREFIX, "rejected"), rejectedTasks);
+    }
+
+    public void unregisterMetrics(final MetricRegistry metricRegistry) {
+        metricRegistry.removeMatching(new MetricFilter() {
+            @Override
+            public boolean matches(final String name, final Metric metric) {
+                return name != null && name.startsWith(METRIC_PREFIX);
+            }
+        });
+    }
+
+    // Calls submitted but not completed yet (queued or running)
+    public int getPendingTasks() {
+        return pendingTasks.get();
+    }
+
+    // Calls waiting for a thread (there is no queue in VIRTUAL_THREADS mode)
+    public int getQueuedTasks() {
+        return delegate instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) delegate).getQueue().size() : 0;
+    }
+
+    public long getRejectedTasks() {
+        return rejectedTasks.getCount();
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+        pendingTasks.incrementAndGet();
+        try {
+            delegate.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        runWithProfiling(command);
+                    } finally {
+                        pendingTasks.decrementAndGet();
+                    }
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            pendingTasks.decrementAndGet();
+            rejectedTasks.mark();
+            throw e;
+        }
+    }
+
+    private void runWithProfiling(final Runnable command) {
+        if (delegate instanceof WithProfilingThreadPoolExecutor) {
+            // Already taken care of by the pool
+            command.run();
+            return;
+        }
+
+        Profiling.setPerThreadProfilingData();
+        try {
+            command.run();
+        } finally {
+            Profiling.resetPerThreadProfilingData();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        // The tasks which never started won't run (and decrement the counter) anymore
+        final List<Runnable> droppedTasks = delegate.shutdownNow();
+        pendingTasks.addAndGet(-droppedTasks.size());
+        return droppedTasks;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+}
@@ -19,6 +19,7 @@ package org.killbill.billing.payment.core.janitor;
 
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
@@ -49,7 +50,6 @@ import org.killbill.billing.util.callcontext.CallOrigin;
 import org.killbill.billing.util.callcontext.InternalCallContextFactory;
 import org.killbill.billing.util.callcontext.UserType;
 import org.killbill.billing.util.config.definition.PaymentConfig;
-import org.killbill.billing.util.entity.Pagination;
 import org.killbill.clock.Clock;
 import org.killbill.commons.locker.LockFailedException;
 import org.killbill.notificationq.api.NotificationEvent;
@@ -58,8 +58,13 @@ import org.skife.config.TimeSpan;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 
@@ -75,11 +80,13 @@ public class IncompletePaymentAttemptTask implements Runnable {
     private static final Logger log = LoggerFactory.getLogger(IncompletePaymentAttemptTask.class);
 
     //
-    // Each paymentAttempt *should* transition to a new state, so fetching a limited size will still allow us to progress (as opposed to fetching the same entries over and over)
-    // We also don't expect to see too many entries in the INIT state.
+    // Attempts are fetched by pages of MAX_ATTEMPTS_PER_ITERATIONS, using keyset pagination on the record id: entries which cannot be completed
+    // yet (e.g. UNKNOWN transaction) are not fetched over and over during a run, and a run drains the whole backlog.
     //
     private static final long MAX_ATTEMPTS_PER_ITERATIONS = 1000L;
 
+    private static final String METRIC_PREFIX = "payment.janitor.attempts";
+
     private final PaymentConfig paymentConfig;
     private final Clock clock;
     private final PaymentDao paymentDao;
@@ -89,6 +96,16 @@ public class IncompletePaymentAttemptTask implements Runnable {
     private final PluginControlPaymentAutomatonRunner pluginControlledPaymentAutomatonRunner;
     private final IncompletePaymentTransactionTask incompletePaymentTransactionTask;
 
+    // Attempts are sharded by account_record_id % nbShards, each node (see PaymentConfig#getJanitorNodeIndex) owning nbWorkers consecutive shards
+    private final int nbWorkers;
+    private final int nbShards;
+    private final int firstShard;
+
+    private final Meter processedAttempts;
+    private final Meter completedAttempts;
+    private final Meter failedAttempts;
+    private final Counter runningShards;
+
     @VisibleForTesting
     NotificationQueue janitorQueue;
 
@@ -102,7 +119,8 @@ public class IncompletePaymentAttemptTask implements Runnable {
                                         final PaymentControlStateMachineHelper retrySMHelper,
                                         final AccountInternalApi accountInternalApi,
                                         final PluginControlPaymentAutomatonRunner pluginControlledPaymentAutomatonRunner,
-                                        final IncompletePaymentTransactionTask incompletePaymentTransactionTask) {
+                                        final IncompletePaymentTransactionTask incompletePaymentTransactionTask,
+                                        final MetricRegistry metricRegistry) {
         this.internalCallContextFactory = internalCallContextFactory;
         this.paymentConfig = paymentConfig;
         this.paymentDao = paymentDao;
@@ -112,6 +130,42 @@ public class IncompletePaymentAttemptTask implements Runnable {
         this.pluginControlledPaymentAutomatonRunner = pluginControlledPaymentAutomatonRunner;
         this.incompletePaymentTransactionTask = incompletePaymentTransactionTask;
         this.isStopped = false;
+
+        Preconditions.checkArgument(paymentConfig.getJanitorNodeIndex() >= 0 && paymentConfig.getJanitorNodeIndex() < paymentConfig.getJanitorNodeNb(),
+                                    "Invalid Janitor node index %s (%s nodes)", paymentConfig.getJanitorNodeIndex(), paymentConfig.getJanitorNodeNb());
+        this.nbWorkers = Math.max(1, paymentConfig.getJanitorThreadNb());
+        this.nbShards = paymentConfig.getJanitorNodeNb() * nbWorkers;
+        this.firstShard = paymentConfig.getJanitorNodeIndex() * nbWorkers;
+
+        this.processedAttempts = metricRegistry.meter(MetricRegistry.name(METRIC_PREFIX, "processed"));
+        this.completedAttempts = metricRegistry.meter(MetricRegistry.name(METRIC_PREFIX, "completed"));
+        this.failedAttempts = metricRegistry.meter(MetricRegistry.name(METRIC_PREFIX, "failed"));
+        this.runningShards = metricRegistry.counter(MetricRegistry.name(METRIC_PREFIX, "runningShards"));
+    }
+
+    // One task per shard owned by this node, to be scheduled in parallel
+    List<Runnable> getShardTasks() {
+        final List<Runnable> shardTasks = new ArrayList<Runnable>(nbWorkers);
+        for (int shard = firstShard; shard < firstShard + nbWorkers; shard++) {
+            final int currentShard = shard;
+            shardTasks.add(new Runnable() {
+                @Override
+                public void run() {
+                    if (isStopped) {
+                        log.info("Janitor was requested to stop");
+                        return;
+                    }
+
+                    runningShards.inc();
+                    try {
+                        processItems(getItemsForIteration(currentShard), currentShard);
+                    } finally {
+                        runningShards.dec();
+                    }
+                }
+            });
+        }
+        return shardTasks;
     }
 
     void attachJanitorQueue(final NotificationQueue janitorQueue) {
@@ -154,6 +208,7 @@ public class IncompletePaymentAttemptTask implements Runnable {
                                                               event.getSearchKey2());
     }
 
+    // All the shards owned by this node, sequentially
     @Override
     public void run() {
         if (isStopped) {
@@ -161,35 +216,78 @@ public class IncompletePaymentAttemptTask implements Runnable {
             return;
         }
 
-        final Iterator<PaymentAttemptModelDao> iterator = getItemsForIteration().iterator();
-        try {
-            while (iterator.hasNext()) {
-                final PaymentAttemptModelDao item = iterator.next();
-                if (isStopped) {
-                    log.info("Janitor was requested to stop");
-                    return;
-                }
-                try {
-                    doIteration(item);
-                } catch (final Exception e) {
-                    log.warn("Exception during Janitor loop", e);
-                }
+        processItems(getItemsForIteration(), null);
+    }
+
+    private void processItems(final Iterable<PaymentAttemptModelDao> items, @Nullable final Integer shard) {
+        long nbProcessed = 0;
+        for (final PaymentAttemptModelDao item : items) {
+            if (isStopped) {
+                log.info("Janitor was requested to stop");
+                return;
             }
-        } finally {
-            // In case the loop stops early, make sure to close the underlying DB connection
-            while (iterator.hasNext()) {
-                iterator.next();
+            try {
+                if (doIteration(item)) {
+                    completedAttempts.mark();
+                }
+            } catch (final Exception e) {
+                failedAttempts.mark();
+                log.warn("Exception during Janitor loop", e);
             }
+            processedAttempts.mark();
+            nbProcessed++;
+        }
+
+        if (nbProcessed > 0) {
+            log.info("Janitor AttemptCompletionTask processed {} incomplete attempts (shard={}, nbShards={})", nbProcessed, shard == null ? "all" : shard, nbShards);
         }
     }
 
     @VisibleForTesting
     Iterable<PaymentAttemptModelDao> getItemsForIteration() {
-        final Pagination<PaymentAttemptModelDao> incompleteAttempts = paymentDao.getPaymentAttemptsByStateAcrossTenants(retrySMHelper.getInitialState().getName(), getCreatedDateBefore(), 0L, MAX_ATTEMPTS_PER_ITERATIONS);
-        if (incompleteAttempts.getTotalNbRecords() > 0) {
-            log.info("Janitor AttemptCompletionTask start run: found {} incomplete attempts", incompleteAttempts.getTotalNbRecords());
+        final List<Iterable<PaymentAttemptModelDao>> itemsPerShard = new ArrayList<Iterable<PaymentAttemptModelDao>>(nbWorkers);
+        for (int shard = firstShard; shard < firstShard + nbWorkers; shard++) {
+            itemsPerShard.add(getItemsForIteration(shard));
         }
-        return incompleteAttempts;
+        return Iterables.concat(itemsPerShard);
+    }
+
+    // Pages are fetched lazily
+    @VisibleForTesting
+    Iterable<PaymentAttemptModelDao> getItemsForIteration(final int shard) {
+        final String stateName = retrySMHelper.getInitialState().getName();
+        final DateTime createdBeforeDate = getCreatedDateBefore();
+        return new Iterable<PaymentAttemptModelDao>() {
+            @Override
+            public Iterator<PaymentAttemptModelDao> iterator() {
+                return new AbstractIterator<PaymentAttemptModelDao>() {
+
+                    private Iterator<PaymentAttemptModelDao> currentPage = ImmutableList.<PaymentAttemptModelDao>of().iterator();
+                    private boolean isLastPage = false;
+                    private Long lastRecordId = 0L;
+
+                    @Override
+                    protected PaymentAttemptModelDao computeNext() {
+                        if (!currentPage.hasNext()) {
+                            if (isLastPage) {
+                                return endOfData();
+                            }
+
+                            final List<PaymentAttemptModelDao> page = paymentDao.getPaymentAttemptsByStateAcrossTenantsForShard(stateName, createdBeforeDate, lastRecordId, nbShards, shard, MAX_ATTEMPTS_PER_ITERATIONS);
+                            isLastPage = page.size() < MAX_ATTEMPTS_PER_ITERATIONS;
+                            if (page.isEmpty()) {
+                                return endOfData();
+                            }
+                            currentPage = page.iterator();
+                        }
+
+                        final PaymentAttemptModelDao next = currentPage.next();
+                        lastRecordId = next.getRecordId();
+                        return next;
+                    }
+                };
+            }
+        };
     }
 
     @VisibleForTesting
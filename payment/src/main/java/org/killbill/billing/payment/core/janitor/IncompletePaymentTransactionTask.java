@@ -19,6 +19,8 @@ package org.killbill.billing.payment.core.janitor;
 
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
@@ -30,13 +32,17 @@ import org.killbill.billing.callcontext.InternalCallContext;
 import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.payment.api.PluginProperty;
 import org.killbill.billing.payment.api.TransactionStatus;
+import org.killbill.billing.payment.core.PaymentExecutors;
 import org.killbill.billing.payment.core.PaymentPluginServiceRegistration;
 import org.killbill.billing.payment.core.PaymentTransactionInfoPluginConverter;
 import org.killbill.billing.payment.core.sm.PaymentAutomatonDAOHelper;
 import org.killbill.billing.payment.core.sm.PaymentStateMachineHelper;
 import org.killbill.billing.payment.dao.PaymentDao;
+import org.killbill.billing.payment.dao.PaymentMethodModelDao;
 import org.killbill.billing.payment.dao.PaymentModelDao;
 import org.killbill.billing.payment.dao.PaymentTransactionModelDao;
+import org.killbill.billing.payment.dispatcher.PluginDispatcher;
+import org.killbill.billing.payment.dispatcher.PluginDispatcher.PluginDispatcherReturnType;
 import org.killbill.billing.payment.plugin.api.PaymentPluginApi;
 import org.killbill.billing.payment.plugin.api.PaymentPluginStatus;
 import org.killbill.billing.payment.plugin.api.PaymentTransactionInfoPlugin;
@@ -59,6 +65,8 @@ import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 
+import static org.killbill.billing.payment.dispatcher.PaymentPluginDispatcher.dispatchWithExceptionHandling;
+
 // Janitor implementation for payment transactions only (see IncompletePaymentAttemptTask for payments going through the control APIs).
 // Invoked on-the-fly or as part of the Janitor notification queue
 public class IncompletePaymentTransactionTask {
@@ -76,6 +84,7 @@ public class IncompletePaymentTransactionTask {
     private final AccountInternalApi accountInternalApi;
     private final GlobalLocker locker;
     private final PaymentPluginServiceRegistration paymentPluginServiceRegistration;
+    private final PluginDispatcher<List<PaymentTransactionInfoPlugin>> paymentPluginInfoDispatcher;
 
     @Inject
     public IncompletePaymentTransactionTask(final InternalCallContextFactory internalCallContextFactory,
@@ -84,6 +93,7 @@ public class IncompletePaymentTransactionTask {
                                             final PaymentStateMachineHelper paymentStateMachineHelper,
                                             final AccountInternalApi accountInternalApi,
                                             final PaymentPluginServiceRegistration paymentPluginServiceRegistration,
+                                            final PaymentExecutors executors,
                                             final GlobalLocker locker) {
         this.internalCallContextFactory = internalCallContextFactory;
         this.paymentConfig = paymentConfig;
@@ -92,6 +102,8 @@ public class IncompletePaymentTransactionTask {
         this.accountInternalApi = accountInternalApi;
         this.locker = locker;
         this.paymentPluginServiceRegistration = paymentPluginServiceRegistration;
+        final long paymentPluginTimeoutSec = TimeUnit.SECONDS.convert(paymentConfig.getPaymentPluginTimeout().getPeriod(), paymentConfig.getPaymentPluginTimeout().getUnit());
+        this.paymentPluginInfoDispatcher = new PluginDispatcher<List<PaymentTransactionInfoPlugin>>(paymentPluginTimeoutSec, executors);
     }
 
     // On-the-fly Janitor: we already have the latest plugin information, we just update the payment & transaction states if needed
@@ -247,8 +259,18 @@ public class IncompletePaymentTransactionTask {
                                                                                                           null);
         PaymentTransactionInfoPlugin paymentTransactionInfoPlugin;
         try {
-            final PaymentPluginApi paymentPluginApi = paymentPluginServiceRegistration.getPaymentPluginApi(payment.getPaymentMethodId(), false, internalTenantContext);
-            final List<PaymentTransactionInfoPlugin> result = paymentPluginApi.getPaymentInfo(payment.getAccountId(), payment.getId(), ImmutableList.<PluginProperty>of(), tenantContext);
+            final PaymentMethodModelDao paymentMethod = paymentPluginServiceRegistration.getPaymentMethodById(payment.getPaymentMethodId(), false, internalTenantContext);
+            final PaymentPluginApi paymentPluginApi = paymentPluginServiceRegistration.getPaymentPluginApi(paymentMethod.getPluginName());
+            // Same isolation (bulkhead, circuit breaker and timeout) as the other calls to the plugin
+            final List<PaymentTransactionInfoPlugin> result = dispatchWithExceptionHandling(null,
+                                                                                            paymentMethod.getPluginName(),
+                                                                                            new Callable<PluginDispatcherReturnType<List<PaymentTransactionInfoPlugin>>>() {
+                                                                                                @Override
+                                                                                                public PluginDispatcherReturnType<List<PaymentTransactionInfoPlugin>> call() throws Exception {
+                                                                                                    return PluginDispatcher.createPluginDispatcherReturnType(paymentPluginApi.getPaymentInfo(payment.getAccountId(), payment.getId(), ImmutableList.<PluginProperty>of(), tenantContext));
+                                                                                                }
+                                                                                            },
+                                                                                            paymentPluginInfoDispatcher);
             paymentTransactionInfoPlugin = Iterables.tryFind(result, new Predicate<PaymentTransactionInfoPlugin>() {
                 @Override
                 public boolean apply(final PaymentTransactionInfoPlugin input) {
@@ -102,10 +102,12 @@ public class Janitor {
 
         janitorQueue.startQueue();
 
-        // Start task for completing incomplete payment attempts
+        // Start tasks for completing incomplete payment attempts (one per shard, see PaymentConfig#getJanitorThreadNb)
         final TimeUnit attemptCompletionRateUnit = paymentConfig.getJanitorRunningRate().getUnit();
         final long attemptCompletionPeriod = paymentConfig.getJanitorRunningRate().getPeriod();
-        janitorExecutor.scheduleAtFixedRate(incompletePaymentAttemptTask, attemptCompletionPeriod, attemptCompletionPeriod, attemptCompletionRateUnit);
+        for (final Runnable shardTask : incompletePaymentAttemptTask.getShardTasks()) {
+            janitorExecutor.scheduleAtFixedRate(shardTask, attemptCompletionPeriod, attemptCompletionPeriod, attemptCompletionRateUnit);
+        }
     }
 
     public void stop() throws NoSuchNotificationQueue {
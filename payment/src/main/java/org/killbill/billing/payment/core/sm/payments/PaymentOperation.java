@@ -35,6 +35,7 @@ import org.killbill.billing.payment.core.sm.PaymentStateContext;
 import org.killbill.billing.payment.dao.PaymentTransactionModelDao;
 import org.killbill.billing.payment.dispatcher.PluginDispatcher;
 import org.killbill.billing.payment.dispatcher.PluginDispatcher.PluginDispatcherReturnType;
+import org.killbill.billing.payment.dispatcher.PluginUnavailableException;
 import org.killbill.billing.payment.plugin.api.PaymentPluginApi;
 import org.killbill.billing.payment.plugin.api.PaymentPluginApiException;
 import org.killbill.billing.payment.plugin.api.PaymentPluginStatus;
@@ -88,6 +89,10 @@ public abstract class PaymentOperation extends OperationCallbackBase<PaymentTran
 
     @Override
     protected OperationException unwrapExceptionFromDispatchedTask(final PaymentApiException e) {
+        if (e.getCause() instanceof PluginUnavailableException) {
+            // The call was rejected before reaching the plugin: we know for sure the transaction didn't happen (PLUGIN_FAILURE)
+            return convertToErroredPaymentState(e, PaymentPluginStatus.CANCELED);
+        }
         return convertToUnknownTransactionStatusAndErroredPaymentState(e);
     }
 
@@ -98,7 +103,10 @@ public abstract class PaymentOperation extends OperationCallbackBase<PaymentTran
     //   be fixed by Janitor.
     //
     private OperationException convertToUnknownTransactionStatusAndErroredPaymentState(final Exception e) {
+        return convertToErroredPaymentState(e, PaymentPluginStatus.UNDEFINED);
+    }
 
+    private OperationException convertToErroredPaymentState(final Exception e, final PaymentPluginStatus paymentPluginStatus) {
         final PaymentTransactionInfoPlugin paymentInfoPlugin = new DefaultNoOpPaymentInfoPlugin(paymentStateContext.getPaymentId(),
                                                                                                 paymentStateContext.getTransactionId(),
                                                                                                 paymentStateContext.getTransactionType(),
@@ -106,7 +114,7 @@ public abstract class PaymentOperation extends OperationCallbackBase<PaymentTran
                                                                                                 paymentStateContext.getCurrency(),
                                                                                                 paymentStateContext.getCallContext().getCreatedDate(),
                                                                                                 paymentStateContext.getCallContext().getCreatedDate(),
-                                                                                                PaymentPluginStatus.UNDEFINED,
+                                                                                                paymentPluginStatus,
                                                                                                 null,
                                                                                                 null);
         paymentStateContext.setPaymentTransactionInfoPlugin(paymentInfoPlugin);
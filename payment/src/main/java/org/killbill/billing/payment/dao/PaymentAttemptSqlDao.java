@@ -69,4 +69,12 @@ public interface PaymentAttemptSqlDao extends EntitySqlDao<PaymentAttemptModelDa
                                                                  @Bind("rowCount") final Long rowCount,
                                                                  @Define("ordering") final String ordering);
 
+    @SqlQuery
+    List<PaymentAttemptModelDao> getByStateNameAcrossTenantsForShard(@Bind("stateName") final String stateName,
+                                                                     @Bind("createdBeforeDate") final Date createdBeforeDate,
+                                                                     @Bind("fromRecordId") final Long fromRecordId,
+                                                                     @Bind("nbShards") final int nbShards,
+                                                                     @Bind("shard") final int shard,
+                                                                     @Bind("rowCount") final Long rowCount);
+
 }
@@ -45,6 +45,9 @@ public interface PaymentDao extends EntityDao<PaymentModelDao, Payment, PaymentA
 
     public Pagination<PaymentAttemptModelDao> getPaymentAttemptsByStateAcrossTenants(String stateName, DateTime createdBeforeDate, final Long offset, final Long limit);
 
+    // Keyset pagination (by record id) over the attempts whose account_record_id % nbShards == shard
+    public List<PaymentAttemptModelDao> getPaymentAttemptsByStateAcrossTenantsForShard(String stateName, DateTime createdBeforeDate, Long fromRecordId, int nbShards, int shard, Long limit);
+
     public List<PaymentAttemptModelDao> getPaymentAttempts(String paymentExternalKey, InternalTenantContext context);
 
     public List<PaymentAttemptModelDao> getPaymentAttemptByTransactionExternalKey(String externalKey, InternalTenantContext context);
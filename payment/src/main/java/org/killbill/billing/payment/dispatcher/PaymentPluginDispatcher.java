@@ -20,6 +20,7 @@ package org.killbill.billing.payment.dispatcher;
 import java.util.UUID;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeoutException;
 
 import javax.annotation.Nullable;
@@ -44,13 +45,23 @@ public class PaymentPluginDispatcher {
 
         try {
             log.debug("Calling plugin(s) {}", pluginNames);
-            final ReturnType result = pluginDispatcher.dispatchWithTimeout(callable);
+            final ReturnType result = pluginDispatcher.dispatchWithTimeout(pluginNames, callable);
             log.debug("Successful plugin(s) call of {} for account {} with result {}", pluginNames, accountExternalKey, result);
             return result;
         } catch (final TimeoutException e) {
             final String errorMessage = String.format("Call TIMEOUT for accountId='%s' accountExternalKey='%s' plugin='%s'", accountId, accountExternalKey, pluginNames);
             log.warn(errorMessage);
             throw new PaymentApiException(ErrorCode.PAYMENT_PLUGIN_TIMEOUT, accountId, errorMessage);
+        } catch (final PluginUnavailableException e) {
+            // Fast-fail: the plugin wasn't called
+            final String errorMessage = String.format("Call REJECTED for accountId='%s' accountExternalKey='%s' plugin='%s': %s", accountId, accountExternalKey, pluginNames, e.getMessage());
+            log.warn(errorMessage);
+            throw new PaymentApiException(e, ErrorCode.PAYMENT_PLUGIN_EXCEPTION, errorMessage);
+        } catch (final RejectedExecutionException e) {
+            // BOUNDED plugin executor mode: back-pressure
+            final String errorMessage = String.format("Call REJECTED (plugin executor saturated) for accountId='%s' accountExternalKey='%s' plugin='%s'", accountId, accountExternalKey, pluginNames);
+            log.warn(errorMessage);
+            throw new PaymentApiException(ErrorCode.PAYMENT_INTERNAL_ERROR, errorMessage);
         } catch (final InterruptedException e) {
             Thread.currentThread().interrupt();
             final String errorMessage = String.format("Call was interrupted for accountId='%s' accountExternalKey='%s' plugin='%s'", accountId, accountExternalKey, pluginNames);
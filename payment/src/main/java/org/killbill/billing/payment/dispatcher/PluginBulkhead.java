@@ -0,0 +1,84 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.payment.dispatcher;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
+
+import com.codahale.metrics.Meter;
+
+//
+// Isolates the calls to a given plugin: bounded number of concurrent calls and circuit breaker.
+//
+// The concurrent call slot is held until the task completes on the plugin executor (even after the caller timed out), so that
+// a hanging plugin cannot take over the shared plugin threads.
+//
+public class PluginBulkhead {
+
+    private final String pluginName;
+    @Nullable
+    private final Semaphore concurrentCalls;
+    private final PluginCircuitBreaker circuitBreaker;
+    private final AtomicInteger inFlightCalls = new AtomicInteger();
+    private final Meter rejectedCalls = new Meter();
+
+    public PluginBulkhead(final String pluginName, final int maxConcurrentCalls, final PluginCircuitBreaker circuitBreaker) {
+        this.pluginName = pluginName;
+        this.concurrentCalls = maxConcurrentCalls > 0 ? new Semaphore(maxConcurrentCalls) : null;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    public void acquire() throws PluginUnavailableException {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            rejectedCalls.mark();
+            throw new PluginUnavailableException(String.format("Circuit breaker is %s for plugin %s", circuitBreaker.getState(), pluginName));
+        }
+        if (concurrentCalls != null && !concurrentCalls.tryAcquire()) {
+            circuitBreaker.onIgnored();
+            rejectedCalls.mark();
+            throw new PluginUnavailableException(String.format("Too many concurrent calls for plugin %s", pluginName));
+        }
+        inFlightCalls.incrementAndGet();
+    }
+
+    // Once the task is done (or won't run)
+    public void release() {
+        inFlightCalls.decrementAndGet();
+        if (concurrentCalls != null) {
+            concurrentCalls.release();
+        }
+    }
+
+    public String getPluginName() {
+        return pluginName;
+    }
+
+    public PluginCircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public int getInFlightCalls() {
+        return inFlightCalls.get();
+    }
+
+    public Meter getRejectedCalls() {
+        return rejectedCalls;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.payment.dispatcher;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.killbill.billing.util.config.definition.PaymentConfig;
+import org.killbill.clock.Clock;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+
+//
+// Bulkheads, by plugin name(s), created on first use
+//
+public class PluginBulkheads {
+
+    private static final String METRIC_PREFIX = "payment.plugin.bulkhead";
+
+    private final PaymentConfig paymentConfig;
+    private final Clock clock;
+    private final MetricRegistry metricRegistry;
+    private final ConcurrentMap<String, PluginBulkhead> bulkheads = new ConcurrentHashMap<String, PluginBulkhead>();
+
+    public PluginBulkheads(final PaymentConfig paymentConfig, final Clock clock, final MetricRegistry metricRegistry) {
+        this.paymentConfig = paymentConfig;
+        this.clock = clock;
+        this.metricRegistry = metricRegistry;
+    }
+
+    public PluginBulkhead getBulkhead(final String pluginName) {
+        final PluginBulkhead existingBulkhead = bulkheads.get(pluginName);
+        if (existingBulkhead != null) {
+            return existingBulkhead;
+        }
+
+        final PluginCircuitBreaker circuitBreaker = new PluginCircuitBreaker(paymentConfig.getPaymentPluginCircuitBreakerFailureRateThreshold(),
+                                                                             paymentConfig.getPaymentPluginCircuitBreakerSlidingWindowSize(),
+                                                                             paymentConfig.getPaymentPluginCircuitBreakerWaitDurationInOpenState().getMillis(),
+                                                                             clock);
+        final PluginBulkhead newBulkhead = new PluginBulkhead(pluginName, paymentConfig.getPaymentPluginMaxConcurrentCalls(), circuitBreaker);
+        final PluginBulkhead previousBulkhead = bulkheads.putIfAbsent(pluginName, newBulkhead);
+        if (previousBulkhead != null) {
+            return previousBulkhead;
+        }
+
+        registerMetrics(newBulkhead);
+        return newBulkhead;
+    }
+
+    public void unregisterMetrics() {
+        metricRegistry.removeMatching(new MetricFilter() {
+            @Override
+            public boolean matches(final String name, final Metric metric) {
+                return name != null && name.startsWith(METRIC_PREFIX);
+            }
+        });
+    }
+
+    private void registerMetrics(final PluginBulkhead bulkhead) {
+        metricRegistry.register(MetricRegistry.name(METRIC_PREFIX, bulkhead.getPluginName(), "inFlight"), new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return bulkhead.getInFlightCalls();
+            }
+        });
+        metricRegistry.register(MetricRegistry.name(METRIC_PREFIX, bulkhead.getPluginName(), "rejected"), bulkhead.getRejectedCalls());
+        metricRegistry.register(MetricRegistry.name(METRIC_PREFIX, bulkhead.getPluginName(), "circuitBreaker"), new Gauge<String>() {
+            @Override
+            public String getValue() {
+                return bulkhead.getCircuitBreaker().getState().toString();
+            }
+        });
+    }
+}
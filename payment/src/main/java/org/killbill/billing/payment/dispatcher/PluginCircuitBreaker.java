@@ -0,0 +1,147 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.payment.dispatcher;
+
+import org.killbill.clock.Clock;
+
+//
+// Count based circuit breaker: once the failure rate over the last slidingWindowSize calls reaches the threshold, the breaker opens and
+// calls are rejected for waitDurationMillis. A single probe call is then let through (HALF_OPEN): the breaker closes if it succeeds and
+// opens again otherwise.
+//
+public class PluginCircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int failureRateThreshold;
+    private final long waitDurationMillis;
+    private final Clock clock;
+    // Ring buffer of the most recent call outcomes (true for a failure)
+    private final boolean[] outcomes;
+
+    private State state = State.CLOSED;
+    private int nbCalls = 0;
+    private int nbFailures = 0;
+    private int position = 0;
+    private long openedAtMillis = 0;
+    private boolean probeInFlight = false;
+
+    public PluginCircuitBreaker(final int failureRateThreshold, final int slidingWindowSize, final long waitDurationMillis, final Clock clock) {
+        this.failureRateThreshold = failureRateThreshold;
+        this.waitDurationMillis = waitDurationMillis;
+        this.clock = clock;
+        this.outcomes = new boolean[Math.max(1, slidingWindowSize)];
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized boolean tryAcquirePermission() {
+        if (failureRateThreshold <= 0) {
+            return true;
+        }
+
+        switch (state) {
+            case OPEN:
+                if (clock.getUTCNow().getMillis() - openedAtMillis < waitDurationMillis) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                probeInFlight = true;
+                return true;
+            case HALF_OPEN:
+                if (probeInFlight) {
+                    return false;
+                }
+                probeInFlight = true;
+                return true;
+            case CLOSED:
+            default:
+                return true;
+        }
+    }
+
+    public synchronized void onSuccess() {
+        if (failureRateThreshold <= 0) {
+            return;
+        }
+
+        if (state == State.HALF_OPEN) {
+            close();
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    public synchronized void onFailure() {
+        if (failureRateThreshold <= 0) {
+            return;
+        }
+
+        if (state == State.HALF_OPEN) {
+            open();
+        } else if (state == State.CLOSED) {
+            record(true);
+        }
+    }
+
+    // The permission was acquired but the call didn't tell us anything about the plugin health
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN) {
+            probeInFlight = false;
+        }
+    }
+
+    private void record(final boolean failure) {
+        if (nbCalls == outcomes.length) {
+            if (outcomes[position]) {
+                nbFailures--;
+            }
+        } else {
+            nbCalls++;
+        }
+        outcomes[position] = failure;
+        if (failure) {
+            nbFailures++;
+        }
+        position = (position + 1) % outcomes.length;
+
+        if (nbCalls == outcomes.length && nbFailures * 100 >= failureRateThreshold * nbCalls) {
+            open();
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAtMillis = clock.getUTCNow().getMillis();
+        probeInFlight = false;
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        nbCalls = 0;
+        nbFailures = 0;
+        position = 0;
+        probeInFlight = false;
+    }
+}
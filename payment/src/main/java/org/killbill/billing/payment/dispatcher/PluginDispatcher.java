@@ -22,12 +22,18 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
+import javax.annotation.Nullable;
+
 import org.apache.shiro.util.ThreadContext;
+import org.killbill.billing.ErrorCode;
+import org.killbill.billing.payment.api.PaymentApiException;
 import org.killbill.billing.payment.core.PaymentExecutors;
 import org.killbill.billing.util.UUIDs;
+import org.killbill.commons.locker.LockFailedException;
 import org.killbill.commons.profiling.Profiling;
 import org.killbill.commons.profiling.ProfilingData;
 import org.killbill.commons.request.Request;
@@ -49,12 +55,23 @@ public class PluginDispatcher<ReturnType> {
 
     // TODO Once we switch fully to automata, should this throw PaymentPluginApiException instead?
     public ReturnType dispatchWithTimeout(final Callable<PluginDispatcherReturnType<ReturnType>> task) throws TimeoutException, ExecutionException, InterruptedException {
-        return dispatchWithTimeout(task, timeoutSeconds, DEFAULT_PLUGIN_TIMEOUT_UNIT);
+        return dispatchWithTimeout(null, task, timeoutSeconds, DEFAULT_PLUGIN_TIMEOUT_UNIT);
+    }
+
+    // Calls are isolated per plugin name(s): see PluginBulkhead (PluginUnavailableException is thrown when the call is rejected)
+    public ReturnType dispatchWithTimeout(@Nullable final String pluginNames, final Callable<PluginDispatcherReturnType<ReturnType>> task) throws TimeoutException, ExecutionException, InterruptedException {
+        return dispatchWithTimeout(pluginNames, task, timeoutSeconds, DEFAULT_PLUGIN_TIMEOUT_UNIT);
     }
 
     @VisibleForTesting
     ReturnType dispatchWithTimeout(final Callable<PluginDispatcherReturnType<ReturnType>> task, final long timeout, final TimeUnit unit)
             throws TimeoutException, ExecutionException, InterruptedException {
+        return dispatchWithTimeout(null, task, timeout, unit);
+    }
+
+    @VisibleForTesting
+    ReturnType dispatchWithTimeout(@Nullable final String pluginNames, final Callable<PluginDispatcherReturnType<ReturnType>> task, final long timeout, final TimeUnit unit)
+            throws TimeoutException, ExecutionException, InterruptedException {
 
         final ExecutorService pluginExecutor = paymentExecutors.getPluginExecutorService();
 
@@ -66,8 +83,13 @@ public class PluginDispatcher<ReturnType> {
                                                                                                                      MDC.getCopyOfContextMap(),
                                                                                                                      task);
 
-        final Future<PluginDispatcherReturnType<ReturnType>> future = pluginExecutor.submit(callableWithRequestData);
-        final PluginDispatcherReturnType<ReturnType> pluginDispatcherResult = future.get(timeout, unit);
+        final PluginDispatcherReturnType<ReturnType> pluginDispatcherResult;
+        if (pluginNames == null) {
+            final Future<PluginDispatcherReturnType<ReturnType>> future = pluginExecutor.submit(callableWithRequestData);
+            pluginDispatcherResult = future.get(timeout, unit);
+        } else {
+            pluginDispatcherResult = dispatchWithBulkhead(paymentExecutors.getPluginBulkheads().getBulkhead(pluginNames), pluginExecutor, callableWithRequestData, timeout, unit);
+        }
 
         if (pluginDispatcherResult instanceof WithProfilingPluginDispatcherReturnType) {
             // Transfer state from dispatch thread into current one.
@@ -79,6 +101,63 @@ public class PluginDispatcher<ReturnType> {
         return pluginDispatcherResult.getReturnType();
     }
 
+    private PluginDispatcherReturnType<ReturnType> dispatchWithBulkhead(final PluginBulkhead bulkhead,
+                                                                        final ExecutorService pluginExecutor,
+                                                                        final Callable<PluginDispatcherReturnType<ReturnType>> task,
+                                                                        final long timeout,
+                                                                        final TimeUnit unit) throws TimeoutException, ExecutionException, InterruptedException {
+        bulkhead.acquire();
+
+        final Future<PluginDispatcherReturnType<ReturnType>> future;
+        try {
+            future = pluginExecutor.submit(new Callable<PluginDispatcherReturnType<ReturnType>>() {
+                @Override
+                public PluginDispatcherReturnType<ReturnType> call() throws Exception {
+                    try {
+                        return task.call();
+                    } finally {
+                        bulkhead.release();
+                    }
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            bulkhead.release();
+            bulkhead.getCircuitBreaker().onIgnored();
+            throw e;
+        }
+
+        try {
+            final PluginDispatcherReturnType<ReturnType> result = future.get(timeout, unit);
+            bulkhead.getCircuitBreaker().onSuccess();
+            return result;
+        } catch (final TimeoutException e) {
+            bulkhead.getCircuitBreaker().onFailure();
+            throw e;
+        } catch (final ExecutionException e) {
+            if (isPluginFailure(e.getCause())) {
+                bulkhead.getCircuitBreaker().onFailure();
+            } else {
+                bulkhead.getCircuitBreaker().onSuccess();
+            }
+            throw e;
+        } catch (final InterruptedException e) {
+            bulkhead.getCircuitBreaker().onIgnored();
+            throw e;
+        }
+    }
+
+    // Errors raised by Kill Bill itself (invalid parameters, lock failures, etc.) don't say anything about the plugin health
+    private static boolean isPluginFailure(final Throwable cause) {
+        for (Throwable throwable = cause; throwable != null; throwable = throwable.getCause()) {
+            if (throwable instanceof PaymentApiException) {
+                return ((PaymentApiException) throwable).getCode() == ErrorCode.PAYMENT_PLUGIN_EXCEPTION.getCode();
+            } else if (throwable instanceof LockFailedException) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public interface PluginDispatcherReturnType<ReturnType> {
         public ReturnType getReturnType();
     }
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.payment.dispatcher;
+
+import java.util.concurrent.RejectedExecutionException;
+
+//
+// The call was rejected before reaching the plugin (circuit breaker open or too many concurrent calls):
+// unlike a timeout, we know for sure the plugin didn't see it.
+//
+public class PluginUnavailableException extends RejectedExecutionException {
+
+    private static final long serialVersionUID = 1L;
+
+    public PluginUnavailableException(final String message) {
+        super(message);
+    }
+}
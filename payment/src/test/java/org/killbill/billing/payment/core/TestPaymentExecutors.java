@@ -0,0 +1,172 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.payment.core;
+
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.killbill.billing.payment.PaymentTestSuiteNoDB;
+import org.killbill.billing.payment.dispatcher.PluginDispatcher;
+import org.killbill.billing.payment.dispatcher.PluginDispatcher.PluginDispatcherReturnType;
+import org.killbill.billing.util.config.definition.PaymentConfig;
+import org.killbill.billing.util.config.definition.PaymentConfig.PluginExecutorMode;
+import org.killbill.commons.request.Request;
+import org.killbill.commons.request.RequestData;
+import org.skife.config.ConfigurationObjectFactory;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+
+public class TestPaymentExecutors extends PaymentTestSuiteNoDB {
+
+    @Test(groups = "fast")
+    public void testPoolMode() throws Exception {
+        testDispatchWithRequestData(PluginExecutorMode.POOL);
+    }
+
+    @Test(groups = "fast")
+    public void testVirtualThreadsMode() throws Exception {
+        // Defaults to the POOL mode on JDKs without virtual threads
+        testDispatchWithRequestData(PluginExecutorMode.VIRTUAL_THREADS);
+    }
+
+    @Test(groups = "fast")
+    public void testBoundedMode() throws Exception {
+        testDispatchWithRequestData(PluginExecutorMode.BOUNDED);
+    }
+
+    @Test(groups = "fast")
+    public void testBoundedModeRejectsWhenSaturated() throws Exception {
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final PaymentExecutors executors = createPaymentExecutors(PluginExecutorMode.BOUNDED, metricRegistry);
+        executors.initialize();
+        try {
+            final PluginExecutorService pluginExecutorService = executors.getPluginExecutorService();
+
+            final CountDownLatch started = new CountDownLatch(1);
+            final CountDownLatch release = new CountDownLatch(1);
+            final Callable<Void> blockingTask = new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    started.countDown();
+                    release.await();
+                    return null;
+                }
+            };
+
+            // One running, one queued
+            final Future<Void> running = pluginExecutorService.submit(blockingTask);
+            Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+            final Future<Void> queued = pluginExecutorService.submit(blockingTask);
+            Assert.assertEquals(pluginExecutorService.getQueuedTasks(), 1);
+            Assert.assertEquals(pluginExecutorService.getPendingTasks(), 2);
+
+            try {
+                pluginExecutorService.submit(blockingTask);
+                Assert.fail("Plugin executor should be saturated");
+            } catch (final RejectedExecutionException e) {
+                Assert.assertEquals(pluginExecutorService.getRejectedTasks(), 1);
+                Assert.assertEquals(((Meter) metricRegistry.getMetrics().get("payment.plugin.executor.rejected")).getCount(), 1);
+            }
+            Assert.assertEquals(pluginExecutorService.getPendingTasks(), 2);
+
+            release.countDown();
+            running.get(5, TimeUnit.SECONDS);
+            queued.get(5, TimeUnit.SECONDS);
+            Assert.assertEquals(pluginExecutorService.getQueuedTasks(), 0);
+        } finally {
+            executors.stop();
+        }
+        Assert.assertTrue(metricRegistry.getMetrics().isEmpty());
+    }
+
+    @Test(groups = "fast")
+    public void testShutdownNowReleasesPendingTasks() throws Exception {
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final PaymentExecutors executors = createPaymentExecutors(PluginExecutorMode.BOUNDED, metricRegistry);
+        executors.initialize();
+        try {
+            final PluginExecutorService pluginExecutorService = executors.getPluginExecutorService();
+
+            final CountDownLatch started = new CountDownLatch(1);
+            final Callable<Void> blockingTask = new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    started.countDown();
+                    // Interrupted by shutdownNow
+                    new CountDownLatch(1).await();
+                    return null;
+                }
+            };
+
+            // One running, one queued
+            pluginExecutorService.submit(blockingTask);
+            Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+            pluginExecutorService.submit(blockingTask);
+            Assert.assertEquals(pluginExecutorService.getPendingTasks(), 2);
+
+            // The queued task is dropped, the running one is interrupted
+            Assert.assertEquals(pluginExecutorService.shutdownNow().size(), 1);
+            Assert.assertTrue(pluginExecutorService.awaitTermination(5, TimeUnit.SECONDS));
+            Assert.assertEquals(pluginExecutorService.getPendingTasks(), 0);
+        } finally {
+            executors.stop();
+        }
+    }
+
+    private void testDispatchWithRequestData(final PluginExecutorMode mode) throws Exception {
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final PaymentExecutors executors = createPaymentExecutors(mode, metricRegistry);
+        executors.initialize();
+        try {
+            Assert.assertNotNull(metricRegistry.getMetrics().get("payment.plugin.executor.pending"));
+            Assert.assertNotNull(metricRegistry.getMetrics().get("payment.plugin.executor.queued"));
+
+            final String requestId = "request-" + mode;
+            Request.setPerThreadRequestData(new RequestData(requestId));
+
+            final PluginDispatcher<String> pluginDispatcher = new PluginDispatcher<String>(5, executors);
+            final String actualRequestId = pluginDispatcher.dispatchWithTimeout(new Callable<PluginDispatcherReturnType<String>>() {
+                @Override
+                public PluginDispatcherReturnType<String> call() throws Exception {
+                    return PluginDispatcher.<String>createPluginDispatcherReturnType(Request.getPerThreadRequestData().getRequestId());
+                }
+            });
+            Assert.assertEquals(actualRequestId, requestId);
+            Assert.assertEquals(executors.getPluginExecutorService().getRejectedTasks(), 0);
+        } finally {
+            Request.resetPerThreadRequestData();
+            executors.stop();
+        }
+    }
+
+    private PaymentExecutors createPaymentExecutors(final PluginExecutorMode mode, final MetricRegistry metricRegistry) {
+        final Properties properties = new Properties();
+        properties.setProperty("org.killbill.payment.plugin.executor.mode", mode.toString());
+        properties.setProperty("org.killbill.payment.plugin.threads.nb", "1");
+        properties.setProperty("org.killbill.payment.plugin.executor.queue.size", "1");
+        final PaymentConfig config = new ConfigurationObjectFactory(properties).build(PaymentConfig.class);
+        return new PaymentExecutors(config, metricRegistry, clock);
+    }
+}
@@ -17,13 +17,28 @@
 
 package org.killbill.billing.payment.core.janitor;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
 import org.joda.time.DateTime;
+import org.killbill.billing.catalog.api.Currency;
 import org.killbill.billing.payment.PaymentTestSuiteNoDB;
 import org.killbill.billing.payment.api.TransactionStatus;
+import org.killbill.billing.payment.api.TransactionType;
+import org.killbill.billing.payment.core.sm.PaymentControlStateMachineHelper;
+import org.killbill.billing.payment.dao.PaymentAttemptModelDao;
+import org.killbill.billing.util.config.definition.PaymentConfig;
+import org.mockito.Mockito;
+import org.skife.config.TimeSpan;
 import org.testng.annotations.Test;
 
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableList;
 import com.google.inject.Inject;
 
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
@@ -32,6 +47,10 @@ public class TestIncompletePaymentAttemptTask extends PaymentTestSuiteNoDB {
 
     @Inject
     protected IncompletePaymentAttemptTask incompletePaymentAttemptTask;
+    @Inject
+    protected PaymentControlStateMachineHelper paymentControlStateMachineHelper;
+    @Inject
+    protected IncompletePaymentTransactionTask incompletePaymentTransactionTask;
 
     @Test(groups = "fast")
     public void testGetNextNotificationTime() {
@@ -58,4 +77,98 @@ public class TestIncompletePaymentAttemptTask extends PaymentTestSuiteNoDB {
         }
         assertNull(incompletePaymentAttemptTask.getNextNotificationTime(TransactionStatus.UNKNOWN, 8, internalCallContext));
     }
+
+    @Test(groups = "fast")
+    public void testShardTasks() {
+        // Node 1 out of 3, with 2 workers: 6 shards overall, this node owns shards 2 and 3
+        final List<Integer> processedShards = new ArrayList<Integer>();
+        final IncompletePaymentAttemptTask task = new IncompletePaymentAttemptTask(internalCallContextFactory,
+                                                                                   createShardedPaymentConfig(3, 1, 2),
+                                                                                   paymentDao,
+                                                                                   clock,
+                                                                                   paymentControlStateMachineHelper,
+                                                                                   accountInternalApi,
+                                                                                   retryablePaymentAutomatonRunner,
+                                                                                   incompletePaymentTransactionTask,
+                                                                                   new MetricRegistry()) {
+            @Override
+            Iterable<PaymentAttemptModelDao> getItemsForIteration(final int shard) {
+                processedShards.add(shard);
+                return ImmutableList.<PaymentAttemptModelDao>of();
+            }
+        };
+
+        final List<Runnable> shardTasks = task.getShardTasks();
+        assertEquals(shardTasks.size(), 2);
+        for (final Runnable shardTask : shardTasks) {
+            shardTask.run();
+        }
+        assertEquals(processedShards, ImmutableList.<Integer>of(2, 3));
+
+        // Sequential run over all the shards of this node
+        processedShards.clear();
+        task.run();
+        assertEquals(processedShards, ImmutableList.<Integer>of(2, 3));
+    }
+
+    @Test(groups = "fast")
+    public void testGetItemsForIterationAcrossPages() {
+        // Single node with 2 workers: 2 shards
+        final IncompletePaymentAttemptTask task = new IncompletePaymentAttemptTask(internalCallContextFactory,
+                                                                                   createShardedPaymentConfig(1, 0, 2),
+                                                                                   paymentDao,
+                                                                                   clock,
+                                                                                   paymentControlStateMachineHelper,
+                                                                                   accountInternalApi,
+                                                                                   retryablePaymentAutomatonRunner,
+                                                                                   incompletePaymentTransactionTask,
+                                                                                   new MetricRegistry());
+
+        final String initialStateName = paymentControlStateMachineHelper.getInitialState().getName();
+        final DateTime oldCreatedDate = clock.getUTCNow().minusDays(1);
+        // More than two pages for shard 1
+        final int nbAttemptsShard1 = 2 * 1000 + 500;
+        for (int i = 0; i < nbAttemptsShard1; i++) {
+            // Interleave both shards to make sure the pagination skips the other shard's record ids
+            insertAttempt(initialStateName, oldCreatedDate, 2L * i + 1);
+            insertAttempt(initialStateName, oldCreatedDate, 2L * i);
+        }
+        // Neither in the initial state nor old enough
+        insertAttempt("SUCCESS", oldCreatedDate, 1L);
+        insertAttempt(initialStateName, clock.getUTCNow(), 1L);
+
+        int nbAttempts = 0;
+        Long lastRecordId = 0L;
+        for (final PaymentAttemptModelDao attempt : task.getItemsForIteration(1)) {
+            assertEquals(attempt.getAccountRecordId() % 2, 1L);
+            assertEquals(attempt.getStateName(), initialStateName);
+            assertTrue(attempt.getRecordId() > lastRecordId);
+            lastRecordId = attempt.getRecordId();
+            nbAttempts++;
+        }
+        assertEquals(nbAttempts, nbAttemptsShard1);
+
+        int nbAttemptsAllShards = 0;
+        for (final PaymentAttemptModelDao ignored : task.getItemsForIteration()) {
+            nbAttemptsAllShards++;
+        }
+        assertEquals(nbAttemptsAllShards, 2 * nbAttemptsShard1);
+    }
+
+    private PaymentConfig createShardedPaymentConfig(final int nbNodes, final int nodeIndex, final int nbThreads) {
+        final PaymentConfig shardedPaymentConfig = Mockito.mock(PaymentConfig.class);
+        Mockito.when(shardedPaymentConfig.getJanitorNodeNb()).thenReturn(nbNodes);
+        Mockito.when(shardedPaymentConfig.getJanitorNodeIndex()).thenReturn(nodeIndex);
+        Mockito.when(shardedPaymentConfig.getJanitorThreadNb()).thenReturn(nbThreads);
+        Mockito.when(shardedPaymentConfig.getIncompleteAttemptsTimeSpanDelay()).thenReturn(new TimeSpan("1h"));
+        return shardedPaymentConfig;
+    }
+
+    private void insertAttempt(final String stateName, final DateTime createdDate, final Long accountRecordId) {
+        final PaymentAttemptModelDao attempt = new PaymentAttemptModelDao(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), createdDate, createdDate,
+                                                                          UUID.randomUUID().toString(), UUID.randomUUID(), UUID.randomUUID().toString(), TransactionType.AUTHORIZE,
+                                                                          stateName, BigDecimal.TEN, Currency.USD, null, null);
+        paymentDao.insertPaymentAttemptWithProperties(attempt, internalCallContext);
+        attempt.setAccountRecordId(accountRecordId);
+    }
 }
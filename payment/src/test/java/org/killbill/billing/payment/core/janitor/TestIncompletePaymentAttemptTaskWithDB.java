@@ -33,6 +33,7 @@ import org.killbill.clock.Clock;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.collect.ImmutableList;
 
 public class TestIncompletePaymentAttemptTaskWithDB extends PaymentTestSuiteWithEmbeddedDB {
@@ -58,7 +59,8 @@ public class TestIncompletePaymentAttemptTaskWithDB extends PaymentTestSuiteWith
                                                                                                                  paymentControlStateMachineHelper,
                                                                                                                  accountApi,
                                                                                                                  pluginControlPaymentAutomatonRunner,
-                                                                                                                 incompletePaymentTransactionTask);
+                                                                                                                 incompletePaymentTransactionTask,
+                                                                                                                 new MetricRegistry());
 
         incompletePaymentAttemptTaskWithException.run();
 
@@ -78,8 +80,9 @@ public class TestIncompletePaymentAttemptTaskWithDB extends PaymentTestSuiteWith
                                                          final PaymentControlStateMachineHelper retrySMHelper,
                                                          final AccountInternalApi accountInternalApi,
                                                          final PluginControlPaymentAutomatonRunner pluginControlledPaymentAutomatonRunner,
-                                                         final IncompletePaymentTransactionTask incompletePaymentTransactionTask) {
-            super(internalCallContextFactory, paymentConfig, paymentDao, clock, retrySMHelper, accountInternalApi, pluginControlledPaymentAutomatonRunner, incompletePaymentTransactionTask);
+                                                         final IncompletePaymentTransactionTask incompletePaymentTransactionTask,
+                                                         final MetricRegistry metricRegistry) {
+            super(internalCallContextFactory, paymentConfig, paymentDao, clock, retrySMHelper, accountInternalApi, pluginControlledPaymentAutomatonRunner, incompletePaymentTransactionTask, metricRegistry);
             this.itemsForIteration = itemsForIteration;
         }
 
@@ -20,6 +20,8 @@ package org.killbill.billing.payment.dao;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -92,6 +94,9 @@ public class MockPaymentDao extends MockEntityDaoBase<PaymentModelDao, Payment,
     public PaymentAttemptModelDao insertPaymentAttemptWithProperties(final PaymentAttemptModelDao attempt, final InternalCallContext context) {
         attempt.setTenantRecordId(context.getTenantRecordId());
         attempt.setAccountRecordId(context.getAccountRecordId());
+        if (attempt.getRecordId() == null) {
+            attempt.setRecordId(autoIncrement.incrementAndGet());
+        }
 
         synchronized (this) {
             attempts.put(attempt.getId(), attempt);
@@ -132,6 +137,28 @@ public class MockPaymentDao extends MockEntityDaoBase<PaymentModelDao, Payment,
         return null;
     }
 
+    @Override
+    public List<PaymentAttemptModelDao> getPaymentAttemptsByStateAcrossTenantsForShard(final String stateName, final DateTime createdBeforeDate, final Long fromRecordId, final int nbShards, final int shard, final Long limit) {
+        synchronized (this) {
+            final List<PaymentAttemptModelDao> result = new ArrayList<PaymentAttemptModelDao>();
+            for (final PaymentAttemptModelDao cur : attempts.values()) {
+                if (cur.getStateName().equals(stateName) &&
+                    cur.getCreatedDate() != null && cur.getCreatedDate().compareTo(createdBeforeDate) < 0 &&
+                    cur.getRecordId() > fromRecordId &&
+                    cur.getAccountRecordId() != null && cur.getAccountRecordId() % nbShards == shard) {
+                    result.add(cur);
+                }
+            }
+            Collections.sort(result, new Comparator<PaymentAttemptModelDao>() {
+                @Override
+                public int compare(final PaymentAttemptModelDao o1, final PaymentAttemptModelDao o2) {
+                    return o1.getRecordId().compareTo(o2.getRecordId());
+                }
+            });
+            return result.size() > limit ? new ArrayList<PaymentAttemptModelDao>(result.subList(0, limit.intValue())) : result;
+        }
+    }
+
     @Override
     public List<PaymentAttemptModelDao> getPaymentAttempts(final String paymentExternalKey, final InternalTenantContext context) {
         synchronized (this) {
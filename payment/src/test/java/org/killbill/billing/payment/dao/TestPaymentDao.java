@@ -542,6 +542,24 @@ public class TestPaymentDao extends PaymentTestSuiteWithEmbeddedDB {
 
         final Pagination<PaymentAttemptModelDao> result = paymentDao.getPaymentAttemptsByStateAcrossTenants(stateName, createdBeforeDate, 0L, 2L);
         Assert.assertEquals(result.getTotalNbRecords().longValue(), 2L);
+
+        // Keyset pagination, single shard
+        final List<PaymentAttemptModelDao> firstPage = paymentDao.getPaymentAttemptsByStateAcrossTenantsForShard(stateName, createdBeforeDate, 0L, 1, 0, 1L);
+        Assert.assertEquals(firstPage.size(), 1);
+        final List<PaymentAttemptModelDao> secondPage = paymentDao.getPaymentAttemptsByStateAcrossTenantsForShard(stateName, createdBeforeDate, firstPage.get(0).getRecordId(), 1, 0, 1L);
+        Assert.assertEquals(secondPage.size(), 1);
+        Assert.assertTrue(secondPage.get(0).getRecordId() > firstPage.get(0).getRecordId());
+        Assert.assertEquals(paymentDao.getPaymentAttemptsByStateAcrossTenantsForShard(stateName, createdBeforeDate, secondPage.get(0).getRecordId(), 1, 0, 1L).size(), 0);
+
+        // Each attempt belongs to exactly one shard
+        int nbAttempts = 0;
+        for (int shard = 0; shard < 2; shard++) {
+            for (final PaymentAttemptModelDao attempt : paymentDao.getPaymentAttemptsByStateAcrossTenantsForShard(stateName, createdBeforeDate, 0L, 2, shard, 10L)) {
+                Assert.assertEquals(attempt.getAccountRecordId() % 2, shard);
+                nbAttempts++;
+            }
+        }
+        Assert.assertEquals(nbAttempts, 2);
     }
 
     @Test(groups = "slow")
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.payment.dispatcher;
+
+import org.killbill.billing.payment.PaymentTestSuiteNoDB;
+import org.killbill.billing.payment.dispatcher.PluginCircuitBreaker.State;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestPluginBulkhead extends PaymentTestSuiteNoDB {
+
+    private static final long WAIT_DURATION_MILLIS = 30000L;
+
+    @Test(groups = "fast")
+    public void testCircuitBreakerOpensOnFailureRate() {
+        final PluginCircuitBreaker circuitBreaker = new PluginCircuitBreaker(50, 4, WAIT_DURATION_MILLIS, clock);
+
+        // The window isn't full yet
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(circuitBreaker.tryAcquirePermission());
+            circuitBreaker.onFailure();
+        }
+        Assert.assertEquals(circuitBreaker.getState(), State.CLOSED);
+
+        // 3 failures out of 4
+        Assert.assertTrue(circuitBreaker.tryAcquirePermission());
+        circuitBreaker.onSuccess();
+        Assert.assertEquals(circuitBreaker.getState(), State.OPEN);
+        Assert.assertFalse(circuitBreaker.tryAcquirePermission());
+    }
+
+    @Test(groups = "fast")
+    public void testCircuitBreakerSlidingWindow() {
+        final PluginCircuitBreaker circuitBreaker = new PluginCircuitBreaker(50, 4, WAIT_DURATION_MILLIS, clock);
+
+        // F S S S S F: the oldest failure slides out of the window (1 failure out of 4 after each call)
+        circuitBreaker.onFailure();
+        for (int i = 0; i < 4; i++) {
+            circuitBreaker.onSuccess();
+        }
+        circuitBreaker.onFailure();
+        Assert.assertEquals(circuitBreaker.getState(), State.CLOSED);
+
+        // S S F F
+        circuitBreaker.onFailure();
+        Assert.assertEquals(circuitBreaker.getState(), State.OPEN);
+    }
+
+    @Test(groups = "fast")
+    public void testCircuitBreakerHalfOpen() {
+        final PluginCircuitBreaker circuitBreaker = new PluginCircuitBreaker(50, 2, WAIT_DURATION_MILLIS, clock);
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+        Assert.assertEquals(circuitBreaker.getState(), State.OPEN);
+
+        // Single probe once the wait duration has elapsed
+        clock.addDeltaFromReality(WAIT_DURATION_MILLIS);
+        Assert.assertTrue(circuitBreaker.tryAcquirePermission());
+        Assert.assertEquals(circuitBreaker.getState(), State.HALF_OPEN);
+        Assert.assertFalse(circuitBreaker.tryAcquirePermission());
+
+        // Failed probe
+        circuitBreaker.onFailure();
+        Assert.assertEquals(circuitBreaker.getState(), State.OPEN);
+        Assert.assertFalse(circuitBreaker.tryAcquirePermission());
+
+        // Inconclusive probe (e.g. rejected by the bulkhead), then successful one
+        clock.addDeltaFromReality(WAIT_DURATION_MILLIS);
+        Assert.assertTrue(circuitBreaker.tryAcquirePermission());
+        circuitBreaker.onIgnored();
+        Assert.assertTrue(circuitBreaker.tryAcquirePermission());
+        circuitBreaker.onSuccess();
+        Assert.assertEquals(circuitBreaker.getState(), State.CLOSED);
+
+        // The window was reset
+        circuitBreaker.onFailure();
+        Assert.assertEquals(circuitBreaker.getState(), State.CLOSED);
+    }
+
+    @Test(groups = "fast")
+    public void testCircuitBreakerDisabled() {
+        final PluginCircuitBreaker circuitBreaker = new PluginCircuitBreaker(0, 2, WAIT_DURATION_MILLIS, clock);
+        for (int i = 0; i < 10; i++) {
+            Assert.assertTrue(circuitBreaker.tryAcquirePermission());
+            circuitBreaker.onFailure();
+        }
+        Assert.assertEquals(circuitBreaker.getState(), State.CLOSED);
+    }
+
+    @Test(groups = "fast")
+    public void testMaxConcurrentCalls() {
+        final PluginBulkhead bulkhead = new PluginBulkhead("foo", 2, new PluginCircuitBreaker(50, 10, WAIT_DURATION_MILLIS, clock));
+
+        bulkhead.acquire();
+        bulkhead.acquire();
+        Assert.assertEquals(bulkhead.getInFlightCalls(), 2);
+        try {
+            bulkhead.acquire();
+            Assert.fail("Should have been rejected");
+        } catch (final PluginUnavailableException e) {
+            Assert.assertEquals(bulkhead.getRejectedCalls().getCount(), 1);
+        }
+
+        bulkhead.release();
+        Assert.assertEquals(bulkhead.getInFlightCalls(), 1);
+        bulkhead.acquire();
+        Assert.assertEquals(bulkhead.getInFlightCalls(), 2);
+    }
+}
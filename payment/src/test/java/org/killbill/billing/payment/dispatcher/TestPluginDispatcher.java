@@ -18,6 +18,8 @@
 
 package org.killbill.billing.payment.dispatcher;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
@@ -27,6 +29,7 @@ import org.killbill.billing.ErrorCode;
 import org.killbill.billing.payment.PaymentTestSuiteNoDB;
 import org.killbill.billing.payment.api.PaymentApiException;
 import org.killbill.billing.payment.dispatcher.PluginDispatcher.PluginDispatcherReturnType;
+import org.killbill.billing.platform.api.KillbillConfigSource;
 import org.killbill.billing.util.UUIDs;
 import org.killbill.commons.request.Request;
 import org.killbill.commons.request.RequestData;
@@ -41,6 +44,15 @@ public class TestPluginDispatcher extends PaymentTestSuiteNoDB {
 
     private PluginDispatcher<String> stringPluginDispatcher;
 
+    @Override
+    protected KillbillConfigSource getConfigSource(final Map<String, String> extraProperties) {
+        // The bulkhead and the circuit breaker are disabled by default
+        final Map<String, String> allExtraProperties = new HashMap<String, String>(extraProperties);
+        allExtraProperties.put("org.killbill.payment.plugin.maxConcurrentCalls", "50");
+        allExtraProperties.put("org.killbill.payment.plugin.circuitBreaker.failureRateThreshold", "50");
+        return super.getConfigSource(allExtraProperties);
+    }
+
     @BeforeMethod(groups = "fast")
     public void beforeMethod() throws Exception {
         if (hasFailed()) {
@@ -151,4 +163,61 @@ public class TestPluginDispatcher extends PaymentTestSuiteNoDB {
         Assert.assertEquals(actualRequestId, requestId);
     }
 
+    @Test(groups = "fast")
+    public void testDispatchWithCircuitBreaker() throws PaymentApiException {
+        final String pluginName = "circuit-breaker-plugin";
+        final Callable<PluginDispatcherReturnType<Void>> failingCall = new Callable<PluginDispatcherReturnType<Void>>() {
+            @Override
+            public PluginDispatcherReturnType<Void> call() throws Exception {
+                throw new RuntimeException("gateway down");
+            }
+        };
+        final Callable<PluginDispatcherReturnType<Void>> invalidCall = new Callable<PluginDispatcherReturnType<Void>>() {
+            @Override
+            public PluginDispatcherReturnType<Void> call() throws Exception {
+                throw new PaymentApiException(ErrorCode.PAYMENT_ADD_PAYMENT_METHOD, "foo", "foo");
+            }
+        };
+
+        // Errors which aren't the plugin's fault don't count
+        for (int i = 0; i < paymentConfig.getPaymentPluginCircuitBreakerSlidingWindowSize(); i++) {
+            try {
+                PaymentPluginDispatcher.dispatchWithExceptionHandling(null, pluginName, invalidCall, voidPluginDispatcher);
+                Assert.fail();
+            } catch (final PaymentApiException e) {
+                Assert.assertEquals(e.getCode(), ErrorCode.PAYMENT_ADD_PAYMENT_METHOD.getCode());
+            }
+        }
+
+        for (int i = 0; i < paymentConfig.getPaymentPluginCircuitBreakerSlidingWindowSize(); i++) {
+            try {
+                PaymentPluginDispatcher.dispatchWithExceptionHandling(null, pluginName, failingCall, voidPluginDispatcher);
+                Assert.fail();
+            } catch (final PaymentApiException e) {
+                Assert.assertEquals(e.getCode(), ErrorCode.PAYMENT_INTERNAL_ERROR.getCode());
+            }
+        }
+
+        // The plugin isn't called anymore
+        try {
+            PaymentPluginDispatcher.dispatchWithExceptionHandling(null, pluginName, failingCall, voidPluginDispatcher);
+            Assert.fail();
+        } catch (final PaymentApiException e) {
+            Assert.assertEquals(e.getCode(), ErrorCode.PAYMENT_PLUGIN_EXCEPTION.getCode());
+            Assert.assertTrue(e.getCause() instanceof PluginUnavailableException);
+        }
+        final PluginBulkhead bulkhead = paymentExecutors.getPluginBulkheads().getBulkhead(pluginName);
+        Assert.assertEquals(bulkhead.getCircuitBreaker().getState(), PluginCircuitBreaker.State.OPEN);
+        Assert.assertEquals(bulkhead.getRejectedCalls().getCount(), 1);
+        Assert.assertEquals(bulkhead.getInFlightCalls(), 0);
+
+        // Other plugins aren't impacted
+        final String result = PaymentPluginDispatcher.dispatchWithExceptionHandling(null, "other-plugin", new Callable<PluginDispatcherReturnType<String>>() {
+            @Override
+            public PluginDispatcherReturnType<String> call() throws Exception {
+                return PluginDispatcher.<String>createPluginDispatcherReturnType("ok");
+            }
+        }, stringPluginDispatcher);
+        Assert.assertEquals(result, "ok");
+    }
 }
@@ -25,6 +25,9 @@ import javax.servlet.ServletContext;
 
 import org.killbill.billing.jaxrs.resources.JaxRsResourceBase;
 import org.killbill.billing.jaxrs.util.KillbillEventHandler;
+import org.killbill.billing.osgi.api.Healthcheck;
+import org.killbill.billing.osgi.api.OSGIServiceDescriptor;
+import org.killbill.billing.osgi.api.OSGIServiceRegistration;
 import org.killbill.billing.platform.api.KillbillConfigSource;
 import org.killbill.billing.platform.config.DefaultKillbillConfigSource;
 import org.killbill.billing.server.filters.KillbillMDCInsertingServletFilter;
@@ -34,6 +37,7 @@ import org.killbill.billing.server.filters.ResponseCorsFilter;
 import org.killbill.billing.server.modules.KillbillServerModule;
 import org.killbill.billing.server.notifications.PushNotificationListener;
 import org.killbill.billing.server.security.TenantFilter;
+import org.killbill.billing.util.cache.CacheWarmUpHealthcheck;
 import org.killbill.billing.util.nodes.KillbillVersions;
 import org.killbill.bus.api.PersistentBus;
 import org.killbill.commons.skeleton.modules.BaseServerModuleBuilder;
@@ -42,7 +46,9 @@ import org.slf4j.LoggerFactory;
 
 import ch.qos.logback.classic.helpers.MDCInsertingServletFilter;
 import com.google.common.collect.ImmutableMap;
+import com.google.inject.Key;
 import com.google.inject.Module;
+import com.google.inject.TypeLiteral;
 import com.google.inject.servlet.ServletModule;
 import com.sun.jersey.api.container.filter.GZIPContentEncodingFilter;
 import io.swagger.jaxrs.config.BeanConfig;
@@ -126,6 +132,25 @@ public class KillbillGuiceListener extends KillbillPlatformGuiceListener {
             logger.error("Failed to register for event notifications, this is bad exiting!", e);
             System.exit(1);
         }
+
+        // Report the cache warm-up progress through the healthcheck
+        final OSGIServiceRegistration<Healthcheck> healthcheckRegistry = injector.getInstance(Key.get(new TypeLiteral<OSGIServiceRegistration<Healthcheck>>() {}));
+        healthcheckRegistry.registerService(new OSGIServiceDescriptor() {
+            @Override
+            public String getPluginSymbolicName() {
+                return null;
+            }
+
+            @Override
+            public String getPluginName() {
+                return CacheWarmUpHealthcheck.CACHE_WARM_UP_HEALTHCHECK_NAME;
+            }
+
+            @Override
+            public String getRegistrationName() {
+                return CacheWarmUpHealthcheck.CACHE_WARM_UP_HEALTHCHECK_NAME;
+            }
+        }, injector.getInstance(CacheWarmUpHealthcheck.class));
     }
 
     @Override
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.subscription.engine.dao;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.killbill.billing.subscription.api.user.DefaultSubscriptionBase;
+import org.killbill.billing.subscription.engine.dao.model.SubscriptionBundleModelDao;
+import org.killbill.billing.subscription.engine.dao.model.SubscriptionModelDao;
+import org.killbill.billing.subscription.events.SubscriptionBaseEvent;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+
+//
+// Single pass helpers to rebuild all the subscriptions of an account: bundles and events are indexed once,
+// instead of being scanned for each subscription (accounts can have tens of thousands of subscriptions).
+//
+public abstract class SubscriptionDaoUtils {
+
+    public static Map<UUID, List<DefaultSubscriptionBase>> groupSubscriptionsByBundleId(final Iterable<SubscriptionModelDao> subscriptionModels,
+                                                                                        final Iterable<SubscriptionBundleModelDao> bundleModels) {
+        final Map<UUID, SubscriptionBundleModelDao> bundleModelsById = new HashMap<UUID, SubscriptionBundleModelDao>();
+        for (final SubscriptionBundleModelDao bundleModel : bundleModels) {
+            bundleModelsById.put(bundleModel.getId(), bundleModel);
+        }
+
+        final Map<UUID, List<DefaultSubscriptionBase>> result = new HashMap<UUID, List<DefaultSubscriptionBase>>(bundleModelsById.size());
+        for (final SubscriptionModelDao subscriptionModel : subscriptionModels) {
+            final SubscriptionBundleModelDao bundleModel = bundleModelsById.get(subscriptionModel.getBundleId());
+            Preconditions.checkState(bundleModel != null, "Unable to find bundle %s for subscription %s", subscriptionModel.getBundleId(), subscriptionModel.getId());
+
+            List<DefaultSubscriptionBase> subscriptionsForBundle = result.get(bundleModel.getId());
+            if (subscriptionsForBundle == null) {
+                subscriptionsForBundle = new ArrayList<DefaultSubscriptionBase>();
+                result.put(bundleModel.getId(), subscriptionsForBundle);
+            }
+            subscriptionsForBundle.add(SubscriptionModelDao.toSubscription(subscriptionModel, bundleModel.getExternalKey()));
+        }
+        return result;
+    }
+
+    // The ordering of the events is preserved for each subscription
+    public static ListMultimap<UUID, SubscriptionBaseEvent> indexEventsBySubscriptionId(final Iterable<SubscriptionBaseEvent> events) {
+        final ListMultimap<UUID, SubscriptionBaseEvent> result = ArrayListMultimap.<UUID, SubscriptionBaseEvent>create();
+        for (final SubscriptionBaseEvent event : events) {
+            result.put(event.getSubscriptionId(), event);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.subscription.engine.dao;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.joda.time.DateTime;
+import org.killbill.billing.catalog.api.ProductCategory;
+import org.killbill.billing.subscription.SubscriptionTestSuiteNoDB;
+import org.killbill.billing.subscription.api.user.DefaultSubscriptionBase;
+import org.killbill.billing.subscription.engine.dao.model.SubscriptionBundleModelDao;
+import org.killbill.billing.subscription.engine.dao.model.SubscriptionModelDao;
+import org.killbill.billing.subscription.events.SubscriptionBaseEvent;
+import org.killbill.billing.subscription.events.phase.PhaseEventBuilder;
+import org.killbill.billing.subscription.events.phase.PhaseEventData;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ListMultimap;
+
+public class TestSubscriptionDaoUtils extends SubscriptionTestSuiteNoDB {
+
+    @Test(groups = "fast")
+    public void testGroupSubscriptionsByBundleId() throws Exception {
+        final DateTime now = clock.getUTCNow();
+        final SubscriptionBundleModelDao bundle1 = new SubscriptionBundleModelDao(UUID.randomUUID(), "bundle1", UUID.randomUUID(), now, now, now, now);
+        final SubscriptionBundleModelDao bundle2 = new SubscriptionBundleModelDao(UUID.randomUUID(), "bundle2", bundle1.getAccountId(), now, now, now, now);
+
+        final SubscriptionModelDao base1 = new SubscriptionModelDao(UUID.randomUUID(), bundle1.getId(), ProductCategory.BASE, now, now, null, false, now, now);
+        final SubscriptionModelDao base2 = new SubscriptionModelDao(UUID.randomUUID(), bundle2.getId(), ProductCategory.BASE, now, now, null, false, now, now);
+        final SubscriptionModelDao addOn1 = new SubscriptionModelDao(UUID.randomUUID(), bundle1.getId(), ProductCategory.ADD_ON, now, now, null, false, now, now);
+
+        final Map<UUID, List<DefaultSubscriptionBase>> result = SubscriptionDaoUtils.groupSubscriptionsByBundleId(ImmutableList.<SubscriptionModelDao>of(base1, base2, addOn1),
+                                                                                                                 ImmutableList.<SubscriptionBundleModelDao>of(bundle1, bundle2));
+        Assert.assertEquals(result.size(), 2);
+
+        final List<DefaultSubscriptionBase> subscriptionsForBundle1 = result.get(bundle1.getId());
+        Assert.assertEquals(subscriptionsForBundle1.size(), 2);
+        Assert.assertEquals(subscriptionsForBundle1.get(0).getId(), base1.getId());
+        Assert.assertEquals(subscriptionsForBundle1.get(0).getBundleExternalKey(), "bundle1");
+        Assert.assertEquals(subscriptionsForBundle1.get(1).getId(), addOn1.getId());
+
+        final List<DefaultSubscriptionBase> subscriptionsForBundle2 = result.get(bundle2.getId());
+        Assert.assertEquals(subscriptionsForBundle2.size(), 1);
+        Assert.assertEquals(subscriptionsForBundle2.get(0).getId(), base2.getId());
+        Assert.assertEquals(subscriptionsForBundle2.get(0).getBundleExternalKey(), "bundle2");
+    }
+
+    @Test(groups = "fast", expectedExceptions = IllegalStateException.class)
+    public void testGroupSubscriptionsWithMissingBundle() throws Exception {
+        final DateTime now = clock.getUTCNow();
+        final SubscriptionModelDao base = new SubscriptionModelDao(UUID.randomUUID(), UUID.randomUUID(), ProductCategory.BASE, now, now, null, false, now, now);
+        SubscriptionDaoUtils.groupSubscriptionsByBundleId(ImmutableList.<SubscriptionModelDao>of(base), ImmutableList.<SubscriptionBundleModelDao>of());
+    }
+
+    @Test(groups = "fast")
+    public void testIndexEventsBySubscriptionId() throws Exception {
+        final UUID subscriptionId1 = UUID.randomUUID();
+        final UUID subscriptionId2 = UUID.randomUUID();
+
+        final SubscriptionBaseEvent event1 = createPhaseEvent(subscriptionId1, 1);
+        final SubscriptionBaseEvent event2 = createPhaseEvent(subscriptionId2, 2);
+        final SubscriptionBaseEvent event3 = createPhaseEvent(subscriptionId1, 3);
+        final SubscriptionBaseEvent event4 = createPhaseEvent(subscriptionId1, 4);
+
+        final ListMultimap<UUID, SubscriptionBaseEvent> result = SubscriptionDaoUtils.indexEventsBySubscriptionId(ImmutableList.<SubscriptionBaseEvent>of(event1, event2, event3, event4));
+        Assert.assertEquals(result.get(subscriptionId1), ImmutableList.<SubscriptionBaseEvent>of(event1, event3, event4));
+        Assert.assertEquals(result.get(subscriptionId2), ImmutableList.<SubscriptionBaseEvent>of(event2));
+        Assert.assertTrue(result.get(UUID.randomUUID()).isEmpty());
+    }
+
+    private SubscriptionBaseEvent createPhaseEvent(final UUID subscriptionId, final long totalOrdering) {
+        final DateTime now = clock.getUTCNow();
+        return new PhaseEventData(new PhaseEventBuilder().setPhaseName("phase")
+                                                         .setSubscriptionId(subscriptionId)
+                                                         .setTotalOrdering(totalOrdering)
+                                                         .setEffectiveDate(now)
+                                                         .setCreatedDate(now)
+                                                         .setUpdatedDate(now));
+    }
+}
@@ -19,8 +19,10 @@ package org.killbill.billing.tenant.api;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
 import javax.inject.Inject;
@@ -34,6 +36,7 @@ import org.killbill.billing.tenant.api.user.DefaultTenantConfigChangeInternalEve
 import org.killbill.billing.tenant.api.user.DefaultTenantConfigDeletionInternalEvent;
 import org.killbill.billing.tenant.dao.TenantBroadcastDao;
 import org.killbill.billing.tenant.dao.TenantBroadcastModelDao;
+import org.killbill.billing.tenant.dao.TenantBroadcastTransport;
 import org.killbill.billing.tenant.dao.TenantDao;
 import org.killbill.billing.tenant.dao.TenantKVModelDao;
 import org.killbill.billing.tenant.glue.DefaultTenantModule;
@@ -59,6 +62,8 @@ import com.google.common.collect.Multimap;
  * <p/>
  * When this class initializes, it reads the current entry in the tenant_broadcasts table and from then on, keeps polling for new entries; when new
  * entries are found, it invokes the callback to invalidate the current caching and force the TenantCacheLoader to be invoked again.
+ * <p/>
+ * On top of the polling, the TenantBroadcastTransport can notify us as soon as new entries are inserted (the polling then being a safety net).
  */
 public class TenantCacheInvalidation {
 
@@ -71,6 +76,8 @@ public class TenantCacheInvalidation {
     private final TenantConfig tenantConfig;
     private final PersistentBus eventBus;
     private final TenantDao tenantDao;
+    private final TenantBroadcastTransport tenantBroadcastTransport;
+    private final AtomicBoolean isNotificationPending;
     private AtomicLong latestRecordIdProcessed;
     private volatile boolean isStopped;
 
@@ -80,12 +87,15 @@ public class TenantCacheInvalidation {
     public TenantCacheInvalidation(@Named(DefaultTenantModule.NO_CACHING_TENANT) final TenantBroadcastDao broadcastDao,
                                    @Named(DefaultTenantModule.NO_CACHING_TENANT) final TenantDao tenantDao,
                                    final PersistentBus eventBus,
-                                   final TenantConfig tenantConfig) {
+                                   final TenantConfig tenantConfig,
+                                   final TenantBroadcastTransport tenantBroadcastTransport) {
         this.cache = HashMultimap.<TenantKey, CacheInvalidationCallback>create();
         this.broadcastDao = broadcastDao;
         this.tenantConfig = tenantConfig;
         this.tenantDao = tenantDao;
         this.eventBus = eventBus;
+        this.tenantBroadcastTransport = tenantBroadcastTransport;
+        this.isNotificationPending = new AtomicBoolean(false);
         this.isStopped = false;
     }
 
@@ -99,8 +109,14 @@ public class TenantCacheInvalidation {
     public void start() {
         final TimeUnit pendingRateUnit = tenantConfig.getTenantBroadcastServiceRunningRate().getUnit();
         final long pendingPeriod = tenantConfig.getTenantBroadcastServiceRunningRate().getPeriod();
-        tenantExecutor.scheduleAtFixedRate(new TenantCacheInvalidationRunnable(this, broadcastDao, tenantDao), pendingPeriod, pendingPeriod, pendingRateUnit);
-
+        final TenantCacheInvalidationRunnable tenantCacheInvalidationRunnable = new TenantCacheInvalidationRunnable(this, broadcastDao, tenantDao);
+        tenantExecutor.scheduleAtFixedRate(tenantCacheInvalidationRunnable, pendingPeriod, pendingPeriod, pendingRateUnit);
+        tenantBroadcastTransport.start(new Runnable() {
+            @Override
+            public void run() {
+                onNotification(tenantCacheInvalidationRunnable);
+            }
+        });
     }
 
     public void stop() {
@@ -109,6 +125,7 @@ public class TenantCacheInvalidation {
             return;
         }
         try {
+            tenantBroadcastTransport.stop();
             tenantExecutor.shutdown();
             boolean success = tenantExecutor.awaitTermination(TERMINATION_TIMEOUT_SEC, TimeUnit.SECONDS);
             if (!success) {
@@ -122,6 +139,30 @@ public class TenantCacheInvalidation {
         }
     }
 
+    // Entries are processed by the TenantExecutor, so that notified and polled entries are never processed concurrently
+    private void onNotification(final TenantCacheInvalidationRunnable tenantCacheInvalidationRunnable) {
+        // Coalesce the notifications received until the entries are processed
+        if (isStopped || !isNotificationPending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            tenantExecutor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    isNotificationPending.set(false);
+                    try {
+                        tenantCacheInvalidationRunnable.run();
+                    } catch (final RuntimeException e) {
+                        logger.warn("Failed to process tenant broadcast entries", e);
+                    }
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            // Stopping
+            isNotificationPending.set(false);
+        }
+    }
+
     public void registerCallback(final TenantKey key, final CacheInvalidationCallback value) {
         cache.put(key, value);
 
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.tenant.dao;
+
+import org.skife.jdbi.v2.Handle;
+
+//
+// No notification: new entries are only discovered by polling the tenant_broadcasts table (see org.killbill.tenant.broadcast.rate)
+//
+public class PollingTenantBroadcastTransport implements TenantBroadcastTransport {
+
+    @Override
+    public void notifyFromTransaction(final Handle handle) {
+    }
+
+    @Override
+    public void start(final Runnable listener) {
+    }
+
+    @Override
+    public void stop() {
+    }
+}
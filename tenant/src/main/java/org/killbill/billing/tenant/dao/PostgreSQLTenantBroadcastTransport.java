@@ -0,0 +1,153 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.tenant.dao;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+
+import org.killbill.commons.concurrent.Executors;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.IDBI;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+
+//
+// Relies on PostgreSQL LISTEN/NOTIFY: the notification is sent from the transaction inserting the tenant_broadcasts entry
+// (and is only delivered once it commits), while each node keeps a dedicated connection listening on the channel.
+//
+// The driver API is looked up at runtime, so that the PostgreSQL driver isn't required when this transport isn't used.
+// If listening fails, nodes fall back to polling until the connection can be re-established.
+//
+// Note that the listening connection is taken from the main pool and held for as long as the transport is started
+// (it is only returned on stop or when re-connecting): the pool needs to be sized with one extra connection per node.
+//
+public class PostgreSQLTenantBroadcastTransport implements TenantBroadcastTransport {
+
+    private static final Logger logger = LoggerFactory.getLogger(PostgreSQLTenantBroadcastTransport.class);
+
+    static final String CHANNEL = "killbill_tenant_broadcasts";
+
+    private static final String PG_CONNECTION_CLASS_NAME = "org.postgresql.PGConnection";
+    // Maximum amount of time blocked waiting for notifications, before checking whether the transport was stopped
+    private static final int LISTEN_TIMEOUT_MILLIS = 1000;
+    private static final long DEFAULT_RECONNECT_DELAY_MILLIS = 5000;
+    private static final int TERMINATION_TIMEOUT_SEC = 5;
+
+    private final IDBI dbi;
+    private final long reconnectDelayMillis;
+
+    private ExecutorService listenerExecutor;
+    private volatile boolean isStopped;
+
+    @Inject
+    public PostgreSQLTenantBroadcastTransport(final IDBI dbi) {
+        this(dbi, DEFAULT_RECONNECT_DELAY_MILLIS);
+    }
+
+    @VisibleForTesting
+    PostgreSQLTenantBroadcastTransport(final IDBI dbi, final long reconnectDelayMillis) {
+        this.dbi = dbi;
+        this.reconnectDelayMillis = reconnectDelayMillis;
+        this.isStopped = true;
+    }
+
+    @Override
+    public void notifyFromTransaction(final Handle handle) {
+        handle.execute("notify " + CHANNEL);
+    }
+
+    @Override
+    public void start(final Runnable listener) {
+        isStopped = false;
+        listenerExecutor = Executors.newSingleThreadExecutor("TenantBroadcastListener");
+        listenerExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                while (!isStopped) {
+                    try {
+                        listen(listener);
+                    } catch (final Exception e) {
+                        if (isStopped) {
+                            return;
+                        }
+                        logger.warn("Failed to listen for tenant broadcast notifications, retrying in {} ms", reconnectDelayMillis, e);
+                        try {
+                            Thread.sleep(reconnectDelayMillis);
+                        } catch (final InterruptedException ie) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    @Override
+    public void stop() {
+        if (isStopped) {
+            return;
+        }
+        isStopped = true;
+        try {
+            listenerExecutor.shutdown();
+            final boolean success = listenerExecutor.awaitTermination(TERMINATION_TIMEOUT_SEC, TimeUnit.SECONDS);
+            if (!success) {
+                logger.warn("TenantBroadcastListener failed to complete termination within {} sec", TERMINATION_TIMEOUT_SEC);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("TenantBroadcastListener stop sequence got interrupted");
+        }
+    }
+
+    private void listen(final Runnable listener) throws Exception {
+        final Handle handle = dbi.open();
+        try {
+            handle.execute("listen " + CHANNEL);
+
+            final Class<?> pgConnectionClass = Class.forName(PG_CONNECTION_CLASS_NAME);
+            final Object pgConnection = handle.getConnection().unwrap(pgConnectionClass);
+            final Method getNotifications = pgConnectionClass.getMethod("getNotifications", int.class);
+
+            // Entries could have been inserted while we weren't listening
+            listener.run();
+
+            while (!isStopped) {
+                final Object[] notifications = (Object[]) getNotifications.invoke(pgConnection, LISTEN_TIMEOUT_MILLIS);
+                if (notifications != null && notifications.length > 0) {
+                    listener.run();
+                }
+            }
+        } finally {
+            try {
+                // The connection goes back to the pool
+                handle.execute("unlisten " + CHANNEL);
+            } catch (final RuntimeException e) {
+                logger.debug("Failed to unlisten", e);
+            } finally {
+                handle.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.tenant.dao;
+
+import org.skife.jdbi.v2.Handle;
+
+//
+// Notifies the nodes that new tenant_broadcasts entries are available, so that they don't have to wait for the next poll
+//
+public interface TenantBroadcastTransport {
+
+    // Invoked from the transaction inserting the tenant_broadcasts entry
+    public void notifyFromTransaction(Handle handle);
+
+    // The listener is invoked (from any thread) whenever new entries may be available, including entries written by this node
+    public void start(Runnable listener);
+
+    public void stop();
+}
@@ -32,7 +32,10 @@ import org.killbill.billing.tenant.dao.DefaultTenantBroadcastDao;
 import org.killbill.billing.tenant.dao.DefaultTenantDao;
 import org.killbill.billing.tenant.dao.NoCachingTenantBroadcastDao;
 import org.killbill.billing.tenant.dao.NoCachingTenantDao;
+import org.killbill.billing.tenant.dao.PollingTenantBroadcastTransport;
+import org.killbill.billing.tenant.dao.PostgreSQLTenantBroadcastTransport;
 import org.killbill.billing.tenant.dao.TenantBroadcastDao;
+import org.killbill.billing.tenant.dao.TenantBroadcastTransport;
 import org.killbill.billing.tenant.dao.TenantDao;
 import org.killbill.billing.util.callcontext.InternalCallContextFactory;
 import org.killbill.billing.util.config.definition.TenantConfig;
@@ -46,13 +49,17 @@ public class DefaultTenantModule extends KillBillModule implements TenantModule
 
     public static final String NO_CACHING_TENANT = "NoCachingTenant";
 
+    private static final String POSTGRESQL_BROADCAST_TRANSPORT = "POSTGRESQL";
+
+    private TenantConfig tenantConfig;
+
     public DefaultTenantModule(final KillbillConfigSource configSource) {
         super(configSource);
     }
 
     private void installConfig() {
         final ConfigurationObjectFactory factory = new ConfigurationObjectFactory(skifeConfigSource);
-        final TenantConfig tenantConfig = factory.build(TenantConfig.class);
+        tenantConfig = factory.build(TenantConfig.class);
         bind(TenantConfig.class).toInstance(tenantConfig);
     }
 
@@ -75,6 +82,11 @@ public class DefaultTenantModule extends KillBillModule implements TenantModule
     }
 
     public void installTenantCacheInvalidation() {
+        if (POSTGRESQL_BROADCAST_TRANSPORT.equalsIgnoreCase(tenantConfig.getTenantBroadcastTransport())) {
+            bind(TenantBroadcastTransport.class).to(PostgreSQLTenantBroadcastTransport.class).asEagerSingleton();
+        } else {
+            bind(TenantBroadcastTransport.class).to(PollingTenantBroadcastTransport.class).asEagerSingleton();
+        }
         bind(TenantCacheInvalidation.class).asEagerSingleton();
     }
 
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.tenant.api;
+
+import java.util.UUID;
+
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.events.BusInternalEvent;
+import org.killbill.billing.tenant.TenantTestSuiteNoDB;
+import org.killbill.billing.tenant.api.TenantInternalApi.CacheInvalidationCallback;
+import org.killbill.billing.tenant.api.TenantKV.TenantKey;
+import org.killbill.billing.tenant.dao.TenantBroadcastDao;
+import org.killbill.billing.tenant.dao.TenantBroadcastModelDao;
+import org.killbill.billing.tenant.dao.TenantBroadcastTransport;
+import org.killbill.billing.tenant.dao.TenantDao;
+import org.killbill.billing.util.config.definition.TenantConfig;
+import org.killbill.bus.api.PersistentBus;
+import org.mockito.Mockito;
+import org.skife.config.TimeSpan;
+import org.skife.jdbi.v2.Handle;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class TestTenantCacheInvalidation extends TenantTestSuiteNoDB {
+
+    @Test(groups = "fast")
+    public void testInvalidationOnNotification() throws Exception {
+        final TenantBroadcastModelDao entry = new TenantBroadcastModelDao(null, TenantKey.OVERDUE_CONFIG.toString(), UUID.randomUUID());
+        entry.setRecordId(1L);
+        entry.setTenantRecordId(12L);
+
+        final TenantBroadcastDao broadcastDao = Mockito.mock(TenantBroadcastDao.class);
+        Mockito.when(broadcastDao.getLatestEntriesFrom(0L)).thenReturn(ImmutableList.<TenantBroadcastModelDao>of(entry));
+        Mockito.when(broadcastDao.getLatestEntriesFrom(1L)).thenReturn(ImmutableList.<TenantBroadcastModelDao>of());
+
+        // Polling won't kick in during the test
+        final TenantConfig tenantConfig = Mockito.mock(TenantConfig.class);
+        Mockito.when(tenantConfig.getTenantBroadcastServiceRunningRate()).thenReturn(new TimeSpan("1h"));
+
+        final PersistentBus eventBus = Mockito.mock(PersistentBus.class);
+        final TestTenantBroadcastTransport tenantBroadcastTransport = new TestTenantBroadcastTransport();
+        final TenantCacheInvalidation tenantCacheInvalidation = new TenantCacheInvalidation(broadcastDao, Mockito.mock(TenantDao.class), eventBus, tenantConfig, tenantBroadcastTransport);
+
+        final CacheInvalidationCallback callback = Mockito.mock(CacheInvalidationCallback.class);
+        tenantCacheInvalidation.registerCallback(TenantKey.OVERDUE_CONFIG, callback);
+
+        tenantCacheInvalidation.initialize();
+        tenantCacheInvalidation.start();
+        Assert.assertNotNull(tenantBroadcastTransport.listener);
+
+        tenantBroadcastTransport.listener.run();
+        // Waits for the pending tasks to complete
+        tenantCacheInvalidation.stop();
+        Assert.assertTrue(tenantBroadcastTransport.isStopped);
+
+        Mockito.verify(callback).invalidateCache(Mockito.eq(TenantKey.OVERDUE_CONFIG), Mockito.isNull(), Mockito.any(InternalTenantContext.class));
+        Mockito.verify(eventBus).post(Mockito.any(BusInternalEvent.class));
+        Assert.assertEquals(tenantCacheInvalidation.getLatestRecordIdProcessed().get(), 1L);
+    }
+
+    private static final class TestTenantBroadcastTransport implements TenantBroadcastTransport {
+
+        private volatile Runnable listener;
+        private volatile boolean isStopped;
+
+        @Override
+        public void notifyFromTransaction(final Handle handle) {
+        }
+
+        @Override
+        public void start(final Runnable listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void stop() {
+            isStopped = true;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.tenant.dao;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.killbill.billing.tenant.TenantTestSuiteWithEmbeddedDb;
+import org.killbill.commons.embeddeddb.EmbeddedDB;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.TransactionCallback;
+import org.skife.jdbi.v2.TransactionStatus;
+import org.skife.jdbi.v2.tweak.HandleCallback;
+import org.testng.Assert;
+import org.testng.SkipException;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.awaitility.Awaitility.await;
+
+public class TestPostgreSQLTenantBroadcastTransport extends TenantTestSuiteWithEmbeddedDb {
+
+    private static final long RECONNECT_DELAY_MILLIS = 100;
+
+    @Override
+    @BeforeMethod(groups = "slow")
+    public void beforeMethod() throws Exception {
+        if (hasFailed()) {
+            return;
+        }
+
+        if (!EmbeddedDB.DBEngine.POSTGRESQL.equals(helper.getDBEngine())) {
+            throw new SkipException("LISTEN/NOTIFY requires PostgreSQL");
+        }
+
+        super.beforeMethod();
+    }
+
+    @Test(groups = "slow")
+    public void testNotifyFromTransaction() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        final PostgreSQLTenantBroadcastTransport transport = new PostgreSQLTenantBroadcastTransport(dbi, RECONNECT_DELAY_MILLIS);
+        transport.start(new CountingListener(runs));
+        try {
+            // Catch-up run, once listening (i.e. the PGConnection could be unwrapped and getNotifications looked up)
+            awaitRuns(runs, 1);
+
+            dbi.inTransaction(new TransactionCallback<Void>() {
+                @Override
+                public Void inTransaction(final Handle handle, final TransactionStatus status) throws Exception {
+                    transport.notifyFromTransaction(handle);
+                    // Not delivered until the transaction commits
+                    Thread.sleep(2000);
+                    Assert.assertEquals(runs.get(), 1);
+                    return null;
+                }
+            });
+            awaitRuns(runs, 2);
+
+            try {
+                dbi.inTransaction(new TransactionCallback<Void>() {
+                    @Override
+                    public Void inTransaction(final Handle handle, final TransactionStatus status) throws Exception {
+                        transport.notifyFromTransaction(handle);
+                        throw new IllegalStateException("Rollback");
+                    }
+                });
+                Assert.fail();
+            } catch (final RuntimeException e) {
+                // Expected
+            }
+            // Never delivered
+            Thread.sleep(2000);
+            Assert.assertEquals(runs.get(), 2);
+        } finally {
+            transport.stop();
+        }
+    }
+
+    @Test(groups = "slow")
+    public void testReconnect() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        final PostgreSQLTenantBroadcastTransport transport = new PostgreSQLTenantBroadcastTransport(dbi, RECONNECT_DELAY_MILLIS);
+        transport.start(new CountingListener(runs));
+        try {
+            awaitRuns(runs, 1);
+
+            // Kill the listening connection
+            final Integer terminated = dbi.withHandle(new HandleCallback<Integer>() {
+                @Override
+                public Integer withHandle(final Handle handle) throws Exception {
+                    return handle.createQuery("select count(pg_terminate_backend(pid)) from pg_stat_activity where query = 'listen " + PostgreSQLTenantBroadcastTransport.CHANNEL + "' and pid <> pg_backend_pid()")
+                                 .mapTo(Integer.class)
+                                 .first();
+                }
+            });
+            Assert.assertEquals(terminated, (Integer) 1);
+
+            // Catch-up run, once listening again
+            awaitRuns(runs, 2);
+
+            dbi.withHandle(new HandleCallback<Void>() {
+                @Override
+                public Void withHandle(final Handle handle) throws Exception {
+                    transport.notifyFromTransaction(handle);
+                    return null;
+                }
+            });
+            awaitRuns(runs, 3);
+        } finally {
+            transport.stop();
+        }
+    }
+
+    private void awaitRuns(final AtomicInteger runs, final int expectedRuns) {
+        await().atMost(10, TimeUnit.SECONDS).until(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return runs.get() == expectedRuns;
+            }
+        });
+    }
+
+    private static final class CountingListener implements Runnable {
+
+        private final AtomicInteger runs;
+
+        private CountingListener(final AtomicInteger runs) {
+            this.runs = runs;
+        }
+
+        @Override
+        public void run() {
+            runs.incrementAndGet();
+        }
+    }
+}
@@ -17,21 +17,36 @@
 
 package org.killbill.billing.usage.api.svcs;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 
 import org.joda.time.LocalDate;
 import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.usage.DailyUsage;
 import org.killbill.billing.usage.InternalUserApi;
 import org.killbill.billing.usage.RawUsage;
+import org.killbill.billing.usage.api.RolledUpUsage;
+import org.killbill.billing.usage.api.user.RolledUpUsageUtils;
+import org.killbill.billing.usage.dao.RolledUpUsageDailyModelDao;
+import org.killbill.billing.usage.dao.RolledUpUsageDailyTrackingIdModelDao;
 import org.killbill.billing.usage.dao.RolledUpUsageDao;
 import org.killbill.billing.usage.dao.RolledUpUsageModelDao;
 
 import com.google.common.base.Function;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.SetMultimap;
 
 public class DefaultInternalUserApi implements InternalUserApi {
 
@@ -53,4 +68,45 @@ public class DefaultInternalUserApi implements InternalUserApi {
             }
         }));
     }
+
+    @Override
+    public List<DailyUsage> getDailyUsageForAccount(final LocalDate stateDate, final LocalDate endDate, final InternalTenantContext internalTenantContext) {
+        final List<RolledUpUsageDailyModelDao> dailyUsages = rolledUpUsageDao.getDailyUsageForAccount(stateDate, endDate, internalTenantContext);
+        if (dailyUsages.isEmpty()) {
+            return ImmutableList.<DailyUsage>of();
+        }
+
+        // The tracking ids are needed for the invoice audit trail (invoice_tracking_ids): like the amounts, they are maintained per day at ingestion time
+        final SetMultimap<List<Object>, String> trackingIdsByDay = HashMultimap.<List<Object>, String>create();
+        for (final RolledUpUsageDailyTrackingIdModelDao trackingId : rolledUpUsageDao.getTrackingIdsForAccount(stateDate, endDate, internalTenantContext)) {
+            trackingIdsByDay.put(ImmutableList.<Object>of(trackingId.getSubscriptionId(), trackingId.getUnitType(), trackingId.getRecordDate()), trackingId.getTrackingId());
+        }
+
+        final List<DailyUsage> result = new ArrayList<DailyUsage>(dailyUsages.size());
+        for (final RolledUpUsageDailyModelDao dailyUsage : dailyUsages) {
+            final Set<String> trackingIds = trackingIdsByDay.get(ImmutableList.<Object>of(dailyUsage.getSubscriptionId(), dailyUsage.getUnitType(), dailyUsage.getRecordDate()));
+            result.add(new DefaultDailyUsage(dailyUsage.getSubscriptionId(), dailyUsage.getRecordDate(), dailyUsage.getUnitType(), dailyUsage.getAmount(), dailyUsage.getMaxAmount(), trackingIds));
+        }
+        return result;
+    }
+
+    @Override
+    public Map<UUID, List<RolledUpUsage>> getAllUsageForSubscriptions(final Collection<UUID> subscriptionIds, final List<LocalDate> transitionTimes, final InternalTenantContext internalTenantContext) {
+        final ListMultimap<UUID, RolledUpUsageDailyModelDao> dailyUsageBySubscriptionId = ArrayListMultimap.<UUID, RolledUpUsageDailyModelDao>create();
+        if (transitionTimes.size() >= 2 && !subscriptionIds.isEmpty()) {
+            final List<RolledUpUsageDailyModelDao> dailyUsages = rolledUpUsageDao.getDailyUsageForSubscriptions(subscriptionIds,
+                                                                                                             transitionTimes.get(0),
+                                                                                                             transitionTimes.get(transitionTimes.size() - 1),
+                                                                                                             internalTenantContext);
+            for (final RolledUpUsageDailyModelDao dailyUsage : dailyUsages) {
+                dailyUsageBySubscriptionId.put(dailyUsage.getSubscriptionId(), dailyUsage);
+            }
+        }
+
+        final Map<UUID, List<RolledUpUsage>> result = new HashMap<UUID, List<RolledUpUsage>>();
+        for (final UUID subscriptionId : subscriptionIds) {
+            result.put(subscriptionId, RolledUpUsageUtils.getRolledUpUsage(subscriptionId, transitionTimes, dailyUsageBySubscriptionId.get(subscriptionId)));
+        }
+        return result;
+    }
 }
@@ -18,6 +18,7 @@ package org.killbill.billing.usage.api.user;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -34,8 +35,10 @@ import org.killbill.billing.usage.api.RolledUpUsage;
 import org.killbill.billing.usage.api.SubscriptionUsageRecord;
 import org.killbill.billing.usage.api.UnitUsageRecord;
 import org.killbill.billing.usage.api.UsageApiException;
+import org.killbill.billing.usage.api.UsageBulkUserApi;
 import org.killbill.billing.usage.api.UsageRecord;
 import org.killbill.billing.usage.api.UsageUserApi;
+import org.killbill.billing.usage.dao.RolledUpUsageDailyModelDao;
 import org.killbill.billing.usage.dao.RolledUpUsageDao;
 import org.killbill.billing.usage.dao.RolledUpUsageModelDao;
 import org.killbill.billing.util.callcontext.CallContext;
@@ -43,8 +46,13 @@ import org.killbill.billing.util.callcontext.InternalCallContextFactory;
 import org.killbill.billing.util.callcontext.TenantContext;
 
 import com.google.common.base.Strings;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.SetMultimap;
 
-public class DefaultUsageUserApi implements UsageUserApi {
+public class DefaultUsageUserApi implements UsageUserApi, UsageBulkUserApi {
 
     private final RolledUpUsageDao rolledUpUsageDao;
     private final InternalCallContextFactory internalCallContextFactory;
@@ -74,41 +82,73 @@ public class DefaultUsageUserApi implements UsageUserApi {
         rolledUpUsageDao.record(usages, internalCallContext);
     }
 
+    @Override
+    public void recordRolledUpUsage(final Iterable<SubscriptionUsageRecord> records, final CallContext context) throws UsageApiException {
+        // Resolve the context once per subscription, and share a single context per account (rows are batched per context)
+        final Map<UUID, InternalCallContext> contextBySubscriptionId = new HashMap<UUID, InternalCallContext>();
+        final Map<Long, InternalCallContext> contextByAccountRecordId = new HashMap<Long, InternalCallContext>();
+        // Tracking ids of the batch, by subscription id
+        final SetMultimap<UUID, String> trackingIdsBySubscriptionId = HashMultimap.<UUID, String>create();
+        for (final SubscriptionUsageRecord record : records) {
+            if (!contextBySubscriptionId.containsKey(record.getSubscriptionId())) {
+                final InternalCallContext subscriptionContext = internalCallContextFactory.createInternalCallContext(record.getSubscriptionId(), ObjectType.SUBSCRIPTION, context);
+                InternalCallContext accountContext = contextByAccountRecordId.get(subscriptionContext.getAccountRecordId());
+                if (accountContext == null) {
+                    accountContext = subscriptionContext;
+                    contextByAccountRecordId.put(subscriptionContext.getAccountRecordId(), accountContext);
+                }
+                contextBySubscriptionId.put(record.getSubscriptionId(), accountContext);
+            }
+
+            if (!Strings.isNullOrEmpty(record.getTrackingId()) && !trackingIdsBySubscriptionId.put(record.getSubscriptionId(), record.getTrackingId())) {
+                // Same tracking id used twice for the subscription within the batch
+                throw new UsageApiException(ErrorCode.USAGE_RECORD_TRACKING_ID_ALREADY_EXISTS, record.getTrackingId());
+            }
+        }
+
+        // Single lookup for all tracking ids of the batch
+        if (!trackingIdsBySubscriptionId.isEmpty()) {
+            final InternalTenantContext tenantContext = internalCallContextFactory.createInternalTenantContextWithoutAccountRecordId(context);
+            final SetMultimap<UUID, String> existingTrackingIdsBySubscriptionId = rolledUpUsageDao.getTrackingIdsBySubscriptionId(new HashSet<String>(trackingIdsBySubscriptionId.values()), tenantContext);
+            for (final Map.Entry<UUID, String> existingTrackingId : existingTrackingIdsBySubscriptionId.entries()) {
+                if (trackingIdsBySubscriptionId.containsEntry(existingTrackingId.getKey(), existingTrackingId.getValue())) {
+                    throw new UsageApiException(ErrorCode.USAGE_RECORD_TRACKING_ID_ALREADY_EXISTS, existingTrackingId.getValue());
+                }
+            }
+        }
+
+        final ListMultimap<InternalCallContext, RolledUpUsageModelDao> usagesByContext = ArrayListMultimap.<InternalCallContext, RolledUpUsageModelDao>create();
+        for (final SubscriptionUsageRecord record : records) {
+            final InternalCallContext accountContext = contextBySubscriptionId.get(record.getSubscriptionId());
+            for (final UnitUsageRecord unitUsageRecord : record.getUnitUsageRecord()) {
+                for (final UsageRecord usageRecord : unitUsageRecord.getDailyAmount()) {
+                    usagesByContext.put(accountContext, new RolledUpUsageModelDao(record.getSubscriptionId(), unitUsageRecord.getUnitType(), usageRecord.getDate(), usageRecord.getAmount(), record.getTrackingId()));
+                }
+            }
+        }
+        rolledUpUsageDao.record(usagesByContext);
+    }
+
     @Override
     public RolledUpUsage getUsageForSubscription(final UUID subscriptionId, final String unitType, final LocalDate startDate, final LocalDate endDate, final TenantContext tenantContext) {
-        final List<RolledUpUsageModelDao> usageForSubscription = rolledUpUsageDao.getUsageForSubscription(subscriptionId, startDate, endDate, unitType, internalCallContextFactory.createInternalTenantContext(subscriptionId, ObjectType.SUBSCRIPTION, tenantContext));
-        final List<RolledUpUnit> rolledUpAmount = getRolledUpUnits(usageForSubscription);
+        final List<RolledUpUsageDailyModelDao> usageForSubscription = rolledUpUsageDao.getDailyUsageForSubscription(subscriptionId, startDate, endDate, internalCallContextFactory.createInternalTenantContext(subscriptionId, ObjectType.SUBSCRIPTION, tenantContext));
+        final List<RolledUpUnit> rolledUpAmount = RolledUpUsageUtils.getRolledUpUnits(usageForSubscription, unitType);
         return new DefaultRolledUpUsage(subscriptionId, startDate, endDate, rolledUpAmount);
     }
 
     @Override
     public List<RolledUpUsage> getAllUsageForSubscription(final UUID subscriptionId, final List<LocalDate> transitionTimes, final TenantContext tenantContext) {
-        final InternalTenantContext internalCallContext = internalCallContextFactory.createInternalTenantContext(subscriptionId, ObjectType.SUBSCRIPTION, tenantContext);
-        List<RolledUpUsage> result = new ArrayList<RolledUpUsage>();
-        LocalDate prevDate = null;
-        for (LocalDate curDate : transitionTimes) {
-            if (prevDate != null) {
-                final List<RolledUpUsageModelDao> usageForSubscription = rolledUpUsageDao.getAllUsageForSubscription(subscriptionId, prevDate, curDate, internalCallContext);
-                final List<RolledUpUnit> rolledUpAmount = getRolledUpUnits(usageForSubscription);
-                result.add(new DefaultRolledUpUsage(subscriptionId, prevDate, curDate, rolledUpAmount));
-            }
-            prevDate = curDate;
+        if (transitionTimes.size() < 2) {
+            return ImmutableList.<RolledUpUsage>of();
         }
-        return result;
-    }
 
-    private List<RolledUpUnit> getRolledUpUnits(final List<RolledUpUsageModelDao> usageForSubscription) {
-        final Map<String, Long> tmp = new HashMap<String, Long>();
-        for (RolledUpUsageModelDao cur : usageForSubscription) {
-            Long currentAmount = tmp.get(cur.getUnitType());
-            Long updatedAmount = (currentAmount != null) ? currentAmount + cur.getAmount() : cur.getAmount();
-            tmp.put(cur.getUnitType(), updatedAmount);
-        }
-        final List<RolledUpUnit> result = new ArrayList<RolledUpUnit>(tmp.size());
-        for (final String unitType : tmp.keySet()) {
-            result.add(new DefaultRolledUpUnit(unitType, tmp.get(unitType)));
-        }
-        return result;
+        final InternalTenantContext internalCallContext = internalCallContextFactory.createInternalTenantContext(subscriptionId, ObjectType.SUBSCRIPTION, tenantContext);
+        // Single query over [first, last), split into the transition intervals in one pass
+        final List<RolledUpUsageDailyModelDao> usageForSubscription = rolledUpUsageDao.getDailyUsageForSubscription(subscriptionId,
+                                                                                                                  transitionTimes.get(0),
+                                                                                                                  transitionTimes.get(transitionTimes.size() - 1),
+                                                                                                                  internalCallContext);
+        return RolledUpUsageUtils.getRolledUpUsage(subscriptionId, transitionTimes, usageForSubscription);
     }
 
     private boolean recordsWithTrackingIdExist(SubscriptionUsageRecord record, InternalCallContext context){
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.usage.api.user;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+import org.joda.time.LocalDate;
+import org.killbill.billing.usage.api.RolledUpUnit;
+import org.killbill.billing.usage.api.RolledUpUsage;
+import org.killbill.billing.usage.dao.RolledUpUsageDailyModelDao;
+
+import com.google.common.collect.Iterators;
+import com.google.common.collect.PeekingIterator;
+
+public class RolledUpUsageUtils {
+
+    //
+    // Split the usage of a subscription into one RolledUpUsage per [transitionTimes[i], transitionTimes[i+1]) interval, in a single pass:
+    // the transition times are expected in ascending order, and the daily usage sorted by record date (as returned by the range query over
+    // [first transition time, last transition time)).
+    //
+    public static List<RolledUpUsage> getRolledUpUsage(final UUID subscriptionId, final List<LocalDate> transitionTimes, final Iterable<RolledUpUsageDailyModelDao> sortedDailyUsage) {
+        final List<RolledUpUsage> result = new ArrayList<RolledUpUsage>(Math.max(transitionTimes.size() - 1, 0));
+        final PeekingIterator<RolledUpUsageDailyModelDao> dailyUsageIterator = Iterators.peekingIterator(sortedDailyUsage.iterator());
+
+        LocalDate prevDate = null;
+        for (final LocalDate curDate : transitionTimes) {
+            if (prevDate != null) {
+                // Only possible if two transition times are out of order
+                while (dailyUsageIterator.hasNext() && dailyUsageIterator.peek().getRecordDate().compareTo(prevDate) < 0) {
+                    dailyUsageIterator.next();
+                }
+
+                final Map<String, Long> amountsPerUnitType = new HashMap<String, Long>();
+                while (dailyUsageIterator.hasNext() && dailyUsageIterator.peek().getRecordDate().compareTo(curDate) < 0) {
+                    addAmount(amountsPerUnitType, dailyUsageIterator.next());
+                }
+                result.add(new DefaultRolledUpUsage(subscriptionId, prevDate, curDate, toRolledUpUnits(amountsPerUnitType)));
+            }
+            prevDate = curDate;
+        }
+        return result;
+    }
+
+    public static List<RolledUpUnit> getRolledUpUnits(final Iterable<RolledUpUsageDailyModelDao> dailyUsage, @Nullable final String unitTypeFilter) {
+        final Map<String, Long> amountsPerUnitType = new HashMap<String, Long>();
+        for (final RolledUpUsageDailyModelDao cur : dailyUsage) {
+            if (unitTypeFilter == null || unitTypeFilter.equals(cur.getUnitType())) {
+                addAmount(amountsPerUnitType, cur);
+            }
+        }
+        return toRolledUpUnits(amountsPerUnitType);
+    }
+
+    private static void addAmount(final Map<String, Long> amountsPerUnitType, final RolledUpUsageDailyModelDao dailyUsage) {
+        final Long currentAmount = amountsPerUnitType.get(dailyUsage.getUnitType());
+        final Long updatedAmount = (currentAmount != null) ? currentAmount + dailyUsage.getAmount() : dailyUsage.getAmount();
+        amountsPerUnitType.put(dailyUsage.getUnitType(), updatedAmount);
+    }
+
+    private static List<RolledUpUnit> toRolledUpUnits(final Map<String, Long> amountsPerUnitType) {
+        final List<RolledUpUnit> result = new ArrayList<RolledUpUnit>(amountsPerUnitType.size());
+        for (final Map.Entry<String, Long> entry : amountsPerUnitType.entrySet()) {
+            result.add(new DefaultRolledUpUnit(entry.getKey(), entry.getValue()));
+        }
+        return result;
+    }
+}
@@ -18,7 +18,15 @@
 
 package org.killbill.billing.usage.dao;
 
+import java.sql.SQLException;
+import java.sql.SQLTransactionRollbackException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import javax.inject.Inject;
@@ -27,23 +35,157 @@ import javax.inject.Named;
 import org.joda.time.LocalDate;
 import org.killbill.billing.callcontext.InternalCallContext;
 import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.util.dao.SQLExceptionUtils;
 import org.killbill.billing.util.entity.dao.DBRouter;
+import org.killbill.commons.jdbi.mapper.LowerToCamelBeanMapperFactory;
+import org.skife.jdbi.v2.DBI;
+import org.skife.jdbi.v2.Handle;
 import org.skife.jdbi.v2.IDBI;
+import org.skife.jdbi.v2.TransactionCallback;
+import org.skife.jdbi.v2.TransactionStatus;
+
+import com.google.common.base.Functions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.SetMultimap;
 
 import static org.killbill.billing.util.glue.IDBISetup.MAIN_RO_IDBI_NAMED;
 
 public class DefaultRolledUpUsageDao implements RolledUpUsageDao {
 
+    // Keep the IN clauses of the lookups reasonable
+    private static final int TRACKING_IDS_PAGE_SIZE = 1000;
+    private static final int SUBSCRIPTION_IDS_PAGE_SIZE = 1000;
+    // Concurrent ingestions can race to create the same daily aggregate row, in which case the whole transaction is retried
+    private static final int MAX_RECORD_ATTEMPTS = 5;
+
+    private final IDBI dbi;
     private final DBRouter<RolledUpUsageSqlDao> dbRouter;
+    private final DBRouter<RolledUpUsageDailySqlDao> dailyDbRouter;
 
     @Inject
     public DefaultRolledUpUsageDao(final IDBI dbi, @Named(MAIN_RO_IDBI_NAMED) final IDBI roDbi) {
+        this.dbi = dbi;
         this.dbRouter = new DBRouter<RolledUpUsageSqlDao>(dbi, roDbi, RolledUpUsageSqlDao.class);
+        this.dailyDbRouter = new DBRouter<RolledUpUsageDailySqlDao>(dbi, roDbi, RolledUpUsageDailySqlDao.class);
+        // RolledUpUsageDailySqlDao is NOT an EntitySqlDao, see DefaultCatalogOverrideDao
+        ((DBI) dbi).registerMapper(new LowerToCamelBeanMapperFactory(RolledUpUsageDailyModelDao.class));
+        ((DBI) dbi).registerMapper(new LowerToCamelBeanMapperFactory(RolledUpUsageDailyTrackingIdModelDao.class));
+        if (roDbi != dbi) {
+            ((DBI) roDbi).registerMapper(new LowerToCamelBeanMapperFactory(RolledUpUsageDailyModelDao.class));
+            ((DBI) roDbi).registerMapper(new LowerToCamelBeanMapperFactory(RolledUpUsageDailyTrackingIdModelDao.class));
+        }
     }
 
     @Override
     public void record(final Iterable<RolledUpUsageModelDao> usages, final InternalCallContext context) {
-        dbRouter.onDemand(false).create(usages, context);
+        final ListMultimap<InternalCallContext, RolledUpUsageModelDao> usagesByContext = ArrayListMultimap.<InternalCallContext, RolledUpUsageModelDao>create();
+        usagesByContext.putAll(context, usages);
+        record(usagesByContext);
+    }
+
+    @Override
+    public void record(final ListMultimap<InternalCallContext, RolledUpUsageModelDao> usagesByContext) {
+        int attempt = 1;
+        while (true) {
+            try {
+                doRecord(usagesByContext);
+                return;
+            } catch (final RuntimeException e) {
+                // The transaction has been rolled back at this point (including the raw rows), so it is safe to replay it:
+                // the concurrently created daily rows will be incremented this time
+                if (attempt >= MAX_RECORD_ATTEMPTS || !isConcurrentInsertFailure(e)) {
+                    throw e;
+                }
+                attempt++;
+            }
+        }
+    }
+
+    private void doRecord(final ListMultimap<InternalCallContext, RolledUpUsageModelDao> usagesByContext) {
+        dbi.inTransaction(new TransactionCallback<Void>() {
+            @Override
+            public Void inTransaction(final Handle handle, final TransactionStatus status) throws Exception {
+                final RolledUpUsageSqlDao rolledUpUsageSqlDao = handle.attach(RolledUpUsageSqlDao.class);
+                final RolledUpUsageDailySqlDao rolledUpUsageDailySqlDao = handle.attach(RolledUpUsageDailySqlDao.class);
+                for (final InternalCallContext context : usagesByContext.keySet()) {
+                    final List<RolledUpUsageModelDao> usages = usagesByContext.get(context);
+                    rolledUpUsageSqlDao.create(usages, context);
+                    recordDailyUsage(rolledUpUsageDailySqlDao, usages, context);
+                }
+                return null;
+            }
+        });
+    }
+
+    // Unique constraint violation (the daily row was inserted by a concurrent transaction after our update didn't find it),
+    // or deadlock / serialization failure (e.g. gap locks taken by the updates of both transactions in MySQL).
+    // Other integrity constraint violations (e.g. not null) aren't transient and are not retried.
+    private boolean isConcurrentInsertFailure(final Throwable throwable) {
+        if (SQLExceptionUtils.isUniqueConstraintViolation(throwable)) {
+            return true;
+        }
+        for (final Throwable cause : Throwables.getCausalChain(throwable)) {
+            if (cause instanceof SQLTransactionRollbackException) {
+                return true;
+            }
+            if (cause instanceof SQLException) {
+                final String sqlState = ((SQLException) cause).getSQLState();
+                if (sqlState != null && sqlState.startsWith("40")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void recordDailyUsage(final RolledUpUsageDailySqlDao rolledUpUsageDailySqlDao, final Iterable<RolledUpUsageModelDao> usages, final InternalCallContext context) {
+        // Aggregate the batch first, so that there is a single row to increment per subscription, unit type and day
+        final Map<List<Object>, RolledUpUsageDailyModelDao> dailyUsagesByKey = new LinkedHashMap<List<Object>, RolledUpUsageDailyModelDao>();
+        // Distinct tracking ids of the batch per subscription, unit type and day (tracking ids are unique per subscription across batches, see UsageUserApi)
+        final Set<List<Object>> trackingIdKeys = new LinkedHashSet<List<Object>>();
+        final List<RolledUpUsageDailyTrackingIdModelDao> trackingIds = new ArrayList<RolledUpUsageDailyTrackingIdModelDao>();
+        for (final RolledUpUsageModelDao usage : usages) {
+            final List<Object> key = ImmutableList.<Object>of(usage.getSubscriptionId(), usage.getUnitType(), usage.getRecordDate());
+            final RolledUpUsageDailyModelDao dailyUsage = dailyUsagesByKey.get(key);
+            if (dailyUsage == null) {
+                dailyUsagesByKey.put(key, new RolledUpUsageDailyModelDao(usage.getSubscriptionId(), usage.getUnitType(), usage.getRecordDate(), usage.getAmount(), usage.getAmount()));
+            } else {
+                dailyUsage.add(usage.getAmount());
+            }
+
+            if (trackingIdKeys.add(ImmutableList.<Object>of(usage.getSubscriptionId(), usage.getUnitType(), usage.getRecordDate(), usage.getTrackingId()))) {
+                trackingIds.add(new RolledUpUsageDailyTrackingIdModelDao(usage.getSubscriptionId(), usage.getUnitType(), usage.getRecordDate(), usage.getTrackingId()));
+            }
+        }
+        rolledUpUsageDailySqlDao.createTrackingIds(trackingIds, context);
+
+        final List<RolledUpUsageDailyModelDao> dailyUsages = ImmutableList.<RolledUpUsageDailyModelDao>copyOf(dailyUsagesByKey.values());
+        final int[] nbUpdated = rolledUpUsageDailySqlDao.increment(dailyUsages, context);
+        final List<RolledUpUsageDailyModelDao> newDailyUsages = new ArrayList<RolledUpUsageDailyModelDao>();
+        for (int i = 0; i < nbUpdated.length; i++) {
+            if (nbUpdated[i] == 0) {
+                newDailyUsages.add(dailyUsages.get(i));
+            }
+        }
+        if (!newDailyUsages.isEmpty()) {
+            rolledUpUsageDailySqlDao.create(newDailyUsages, context);
+        }
+    }
+
+    @Override
+    public SetMultimap<UUID, String> getTrackingIdsBySubscriptionId(final Collection<String> trackingIds, final InternalTenantContext context) {
+        final SetMultimap<UUID, String> result = HashMultimap.<UUID, String>create();
+        for (final List<String> trackingIdsPage : Iterables.partition(trackingIds, TRACKING_IDS_PAGE_SIZE)) {
+            for (final RolledUpUsageModelDao usage : dbRouter.onDemand(false).getSubscriptionTrackingIds(trackingIdsPage, context)) {
+                result.put(usage.getSubscriptionId(), usage.getTrackingId());
+            }
+        }
+        return result;
     }
 
     @Override
@@ -65,4 +207,29 @@ public class DefaultRolledUpUsageDao implements RolledUpUsageDao {
     public List<RolledUpUsageModelDao> getRawUsageForAccount(final LocalDate startDate, final LocalDate endDate, final InternalTenantContext context) {
         return dbRouter.onDemand(true).getRawUsageForAccount(startDate.toDate(), endDate.toDate(), context);
     }
+
+    @Override
+    public List<RolledUpUsageDailyModelDao> getDailyUsageForSubscription(final UUID subscriptionId, final LocalDate startDate, final LocalDate endDate, final InternalTenantContext context) {
+        return dailyDbRouter.onDemand(true).getDailyUsageForSubscription(subscriptionId, startDate.toDate(), endDate.toDate(), context);
+    }
+
+    @Override
+    public List<RolledUpUsageDailyModelDao> getDailyUsageForSubscriptions(final Collection<UUID> subscriptionIds, final LocalDate startDate, final LocalDate endDate, final InternalTenantContext context) {
+        final List<RolledUpUsageDailyModelDao> result = new ArrayList<RolledUpUsageDailyModelDao>();
+        final Iterable<String> subscriptionIdsAsStrings = Iterables.transform(subscriptionIds, Functions.toStringFunction());
+        for (final List<String> subscriptionIdsPage : Iterables.partition(subscriptionIdsAsStrings, SUBSCRIPTION_IDS_PAGE_SIZE)) {
+            result.addAll(dailyDbRouter.onDemand(true).getDailyUsageForSubscriptions(subscriptionIdsPage, startDate.toDate(), endDate.toDate(), context));
+        }
+        return result;
+    }
+
+    @Override
+    public List<RolledUpUsageDailyModelDao> getDailyUsageForAccount(final LocalDate startDate, final LocalDate endDate, final InternalTenantContext context) {
+        return dailyDbRouter.onDemand(true).getDailyUsageForAccount(startDate.toDate(), endDate.toDate(), context);
+    }
+
+    @Override
+    public List<RolledUpUsageDailyTrackingIdModelDao> getTrackingIdsForAccount(final LocalDate startDate, final LocalDate endDate, final InternalTenantContext context) {
+        return dailyDbRouter.onDemand(true).getTrackingIdsForAccount(startDate.toDate(), endDate.toDate(), context);
+    }
 }
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.usage.dao;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.commons.jdbi.binder.SmartBindBean;
+import org.killbill.commons.jdbi.template.KillBillSqlDaoStringTemplate;
+import org.skife.jdbi.v2.sqlobject.Bind;
+import org.skife.jdbi.v2.sqlobject.SqlBatch;
+import org.skife.jdbi.v2.sqlobject.SqlQuery;
+import org.skife.jdbi.v2.sqlobject.customizers.BatchChunkSize;
+import org.skife.jdbi.v2.sqlobject.mixins.CloseMe;
+import org.skife.jdbi.v2.sqlobject.mixins.Transactional;
+import org.skife.jdbi.v2.unstable.BindIn;
+
+// Not an EntitySqlDao: the daily aggregates are derived from rolled_up_usage (no id, no history, no audit)
+@KillBillSqlDaoStringTemplate
+public interface RolledUpUsageDailySqlDao extends Transactional<RolledUpUsageDailySqlDao>, CloseMe {
+
+    // Returns, for each aggregate, the number of rows updated (0 if there is no row yet for that subscription, unit type and day)
+    @SqlBatch
+    @BatchChunkSize(1000)
+    int[] increment(@SmartBindBean Iterable<RolledUpUsageDailyModelDao> dailyUsages,
+                    @SmartBindBean final InternalCallContext context);
+
+    @SqlBatch
+    @BatchChunkSize(1000)
+    void create(@SmartBindBean Iterable<RolledUpUsageDailyModelDao> dailyUsages,
+                @SmartBindBean final InternalCallContext context);
+
+    @SqlBatch
+    @BatchChunkSize(1000)
+    void createTrackingIds(@SmartBindBean Iterable<RolledUpUsageDailyTrackingIdModelDao> trackingIds,
+                           @SmartBindBean final InternalCallContext context);
+
+    @SqlQuery
+    List<RolledUpUsageDailyModelDao> getDailyUsageForSubscription(@Bind("subscriptionId") final UUID subscriptionId,
+                                                                  @Bind("startDate") final Date startDate,
+                                                                  @Bind("endDate") final Date endDate,
+                                                                  @SmartBindBean final InternalTenantContext context);
+
+    @SqlQuery
+    List<RolledUpUsageDailyModelDao> getDailyUsageForSubscriptions(@BindIn("subscriptionIds") final Collection<String> subscriptionIds,
+                                                                   @Bind("startDate") final Date startDate,
+                                                                   @Bind("endDate") final Date endDate,
+                                                                   @SmartBindBean final InternalTenantContext context);
+
+    @SqlQuery
+    List<RolledUpUsageDailyModelDao> getDailyUsageForAccount(@Bind("startDate") final Date startDate,
+                                                             @Bind("endDate") final Date endDate,
+                                                             @SmartBindBean final InternalTenantContext context);
+
+    @SqlQuery
+    List<RolledUpUsageDailyTrackingIdModelDao> getTrackingIdsForAccount(@Bind("startDate") final Date startDate,
+                                                                        @Bind("endDate") final Date endDate,
+                                                                        @SmartBindBean final InternalTenantContext context);
+}
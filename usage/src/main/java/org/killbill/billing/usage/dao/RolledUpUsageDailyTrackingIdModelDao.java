@@ -0,0 +1,83 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.usage.dao;
+
+import java.util.UUID;
+
+import org.joda.time.LocalDate;
+
+// Tracking ids recorded for a subscription, unit type and day (the invoice audit trail), maintained alongside RolledUpUsageDailyModelDao
+public class RolledUpUsageDailyTrackingIdModelDao {
+
+    private UUID subscriptionId;
+    private String unitType;
+    private LocalDate recordDate;
+    private String trackingId;
+
+    public RolledUpUsageDailyTrackingIdModelDao() { /* For the DAO mapper */ }
+
+    public RolledUpUsageDailyTrackingIdModelDao(final UUID subscriptionId, final String unitType, final LocalDate recordDate, final String trackingId) {
+        this.subscriptionId = subscriptionId;
+        this.unitType = unitType;
+        this.recordDate = recordDate;
+        this.trackingId = trackingId;
+    }
+
+    public UUID getSubscriptionId() {
+        return subscriptionId;
+    }
+
+    public void setSubscriptionId(final UUID subscriptionId) {
+        this.subscriptionId = subscriptionId;
+    }
+
+    public String getUnitType() {
+        return unitType;
+    }
+
+    public void setUnitType(final String unitType) {
+        this.unitType = unitType;
+    }
+
+    public LocalDate getRecordDate() {
+        return recordDate;
+    }
+
+    public void setRecordDate(final LocalDate recordDate) {
+        this.recordDate = recordDate;
+    }
+
+    public String getTrackingId() {
+        return trackingId;
+    }
+
+    public void setTrackingId(final String trackingId) {
+        this.trackingId = trackingId;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("RolledUpUsageDailyTrackingIdModelDao{");
+        sb.append("subscriptionId=").append(subscriptionId);
+        sb.append(", unitType='").append(unitType).append('\'');
+        sb.append(", recordDate=").append(recordDate);
+        sb.append(", trackingId='").append(trackingId).append('\'');
+        sb.append('}');
+        return sb.toString();
+    }
+}
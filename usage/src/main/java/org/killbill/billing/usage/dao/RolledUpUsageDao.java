@@ -16,6 +16,7 @@
 
 package org.killbill.billing.usage.dao;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -23,15 +24,35 @@ import org.joda.time.LocalDate;
 import org.killbill.billing.callcontext.InternalCallContext;
 import org.killbill.billing.callcontext.InternalTenantContext;
 
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.SetMultimap;
+
 public interface RolledUpUsageDao {
 
     void record(Iterable<RolledUpUsageModelDao> usages, InternalCallContext context);
 
+    // Single transaction, one batch per (account) context. The daily aggregates are updated within the same transaction.
+    void record(ListMultimap<InternalCallContext, RolledUpUsageModelDao> usagesByContext);
+
     Boolean recordsWithTrackingIdExist(UUID subscriptionId, String trackingId, InternalTenantContext context);
 
+    // Tracking ids already recorded (amongst the specified ones), by subscription id
+    SetMultimap<UUID, String> getTrackingIdsBySubscriptionId(Collection<String> trackingIds, InternalTenantContext context);
+
     List<RolledUpUsageModelDao> getUsageForSubscription(UUID subscriptionId, LocalDate startDate, LocalDate endDate, String unitType, InternalTenantContext context);
 
     List<RolledUpUsageModelDao> getAllUsageForSubscription(UUID subscriptionId, LocalDate startDate, LocalDate endDate, InternalTenantContext context);
 
     List<RolledUpUsageModelDao> getRawUsageForAccount(LocalDate startDate, LocalDate endDate, InternalTenantContext context);
+
+    // Amounts aggregated per subscription, unit type and day (maintained by record)
+    List<RolledUpUsageDailyModelDao> getDailyUsageForSubscription(UUID subscriptionId, LocalDate startDate, LocalDate endDate, InternalTenantContext context);
+
+    // Sorted by record date for a given subscription
+    List<RolledUpUsageDailyModelDao> getDailyUsageForSubscriptions(Collection<UUID> subscriptionIds, LocalDate startDate, LocalDate endDate, InternalTenantContext context);
+
+    List<RolledUpUsageDailyModelDao> getDailyUsageForAccount(LocalDate startDate, LocalDate endDate, InternalTenantContext context);
+
+    // Tracking ids per subscription, unit type and day, maintained at ingestion time (see rolled_up_usage_daily_tracking_ids)
+    List<RolledUpUsageDailyTrackingIdModelDao> getTrackingIdsForAccount(LocalDate startDate, LocalDate endDate, InternalTenantContext context);
 }
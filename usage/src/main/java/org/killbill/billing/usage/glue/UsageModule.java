@@ -20,6 +20,7 @@ package org.killbill.billing.usage.glue;
 
 import org.killbill.billing.platform.api.KillbillConfigSource;
 import org.killbill.billing.usage.InternalUserApi;
+import org.killbill.billing.usage.api.UsageBulkUserApi;
 import org.killbill.billing.usage.api.UsageUserApi;
 import org.killbill.billing.usage.api.svcs.DefaultInternalUserApi;
 import org.killbill.billing.usage.api.user.DefaultUsageUserApi;
@@ -38,7 +39,10 @@ public class UsageModule extends KillBillModule {
     }
 
     protected void installUsageUserApi() {
-        bind(UsageUserApi.class).to(DefaultUsageUserApi.class).asEagerSingleton();
+        // Single instance for all interfaces
+        bind(DefaultUsageUserApi.class).asEagerSingleton();
+        bind(UsageUserApi.class).to(DefaultUsageUserApi.class);
+        bind(UsageBulkUserApi.class).to(DefaultUsageUserApi.class);
     }
 
     protected void installInternalUserApi() {
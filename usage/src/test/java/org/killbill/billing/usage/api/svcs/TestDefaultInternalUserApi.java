@@ -0,0 +1,84 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.usage.api.svcs;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.joda.time.LocalDate;
+import org.killbill.billing.usage.UsageTestSuiteWithEmbeddedDB;
+import org.killbill.billing.usage.api.RolledUpUsage;
+import org.killbill.billing.usage.dao.RolledUpUsageModelDao;
+import org.killbill.billing.util.UUIDs;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestDefaultInternalUserApi extends UsageTestSuiteWithEmbeddedDB {
+
+    @Test(groups = "slow")
+    public void testGetAllUsageForSubscriptions() {
+        final UUID subscriptionId1 = UUIDs.randomUUID();
+        final UUID subscriptionId2 = UUIDs.randomUUID();
+        final UUID subscriptionIdWithoutUsage = UUIDs.randomUUID();
+        final LocalDate t0 = new LocalDate(2013, 1, 1);
+        final LocalDate t1 = new LocalDate(2013, 1, 8);
+        final LocalDate t2 = new LocalDate(2013, 1, 15);
+
+        rolledUpUsageDao.record(ImmutableList.<RolledUpUsageModelDao>of(new RolledUpUsageModelDao(subscriptionId1, "foo", t0.minusDays(1), 1000L, null),
+                                                                         new RolledUpUsageModelDao(subscriptionId1, "foo", t0, 10L, null),
+                                                                         new RolledUpUsageModelDao(subscriptionId1, "foo", t1.minusDays(1), 5L, null),
+                                                                         new RolledUpUsageModelDao(subscriptionId1, "bar", t1, 3L, null),
+                                                                         new RolledUpUsageModelDao(subscriptionId1, "foo", t2, 1000L, null),
+                                                                         new RolledUpUsageModelDao(subscriptionId2, "foo", t1.plusDays(2), 7L, null)),
+                                internalCallContext);
+
+        final Map<UUID, List<RolledUpUsage>> result = internalUserApi.getAllUsageForSubscriptions(ImmutableList.<UUID>of(subscriptionId1, subscriptionId2, subscriptionIdWithoutUsage),
+                                                                                                  ImmutableList.<LocalDate>of(t0, t1, t2),
+                                                                                                  internalCallContext);
+        assertEquals(result.size(), 3);
+
+        // Usage before the first and after the last transition date is ignored
+        final List<RolledUpUsage> usage1 = result.get(subscriptionId1);
+        assertEquals(usage1.size(), 2);
+        assertEquals(usage1.get(0).getStart(), t0);
+        assertEquals(usage1.get(0).getEnd(), t1);
+        assertEquals(usage1.get(0).getRolledUpUnits().size(), 1);
+        assertEquals(usage1.get(0).getRolledUpUnits().get(0).getUnitType(), "foo");
+        assertEquals(usage1.get(0).getRolledUpUnits().get(0).getAmount(), (Long) 15L);
+        assertEquals(usage1.get(1).getStart(), t1);
+        assertEquals(usage1.get(1).getEnd(), t2);
+        assertEquals(usage1.get(1).getRolledUpUnits().size(), 1);
+        assertEquals(usage1.get(1).getRolledUpUnits().get(0).getUnitType(), "bar");
+        assertEquals(usage1.get(1).getRolledUpUnits().get(0).getAmount(), (Long) 3L);
+
+        final List<RolledUpUsage> usage2 = result.get(subscriptionId2);
+        assertEquals(usage2.size(), 2);
+        assertTrue(usage2.get(0).getRolledUpUnits().isEmpty());
+        assertEquals(usage2.get(1).getRolledUpUnits().get(0).getAmount(), (Long) 7L);
+
+        final List<RolledUpUsage> usage3 = result.get(subscriptionIdWithoutUsage);
+        assertEquals(usage3.size(), 2);
+        assertTrue(usage3.get(0).getRolledUpUnits().isEmpty());
+        assertTrue(usage3.get(1).getRolledUpUnits().isEmpty());
+    }
+}
@@ -20,14 +20,29 @@ package org.killbill.billing.usage.dao;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.joda.time.LocalDate;
+import org.killbill.billing.callcontext.InternalCallContext;
 import org.killbill.billing.usage.UsageTestSuiteWithEmbeddedDB;
 import org.killbill.billing.util.UUIDs;
 import org.skife.jdbi.v2.exceptions.UnableToExecuteStatementException;
 import org.testng.annotations.Test;
 
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.SetMultimap;
+
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
 public class TestDefaultRolledUpUsageDao extends UsageTestSuiteWithEmbeddedDB {
@@ -170,4 +185,122 @@ public class TestDefaultRolledUpUsageDao extends UsageTestSuiteWithEmbeddedDB {
         assertEquals(rolledUpUsageDao.recordsWithTrackingIdExist(subscriptionId, trackingId, internalCallContext),
                      Boolean.TRUE);
     }
-}
\ No newline at end of file
+
+    @Test(groups = "slow")
+    public void testBulkRecord() {
+        final UUID subscriptionId1 = UUIDs.randomUUID();
+        final UUID subscriptionId2 = UUIDs.randomUUID();
+        final String unitType = "foo";
+        final LocalDate startDate = new LocalDate(2013, 1, 1);
+        final LocalDate endDate = new LocalDate(2013, 2, 1);
+
+        final String trackingId1 = UUIDs.randomUUID().toString();
+        final String trackingId2 = UUIDs.randomUUID().toString();
+
+        final ListMultimap<InternalCallContext, RolledUpUsageModelDao> usagesByContext = ArrayListMultimap.create();
+        usagesByContext.put(internalCallContext, new RolledUpUsageModelDao(subscriptionId1, unitType, startDate, 10L, trackingId1));
+        usagesByContext.put(internalCallContext, new RolledUpUsageModelDao(subscriptionId1, unitType, startDate.plusDays(1), 5L, trackingId1));
+        usagesByContext.put(internalCallContext, new RolledUpUsageModelDao(subscriptionId2, unitType, startDate, 13L, trackingId2));
+        rolledUpUsageDao.record(usagesByContext);
+
+        assertEquals(rolledUpUsageDao.getAllUsageForSubscription(subscriptionId1, startDate, endDate, internalCallContext).size(), 2);
+        assertEquals(rolledUpUsageDao.getAllUsageForSubscription(subscriptionId2, startDate, endDate, internalCallContext).size(), 1);
+
+        final SetMultimap<UUID, String> trackingIdsBySubscriptionId = rolledUpUsageDao.getTrackingIdsBySubscriptionId(ImmutableList.<String>of(trackingId1, trackingId2, UUIDs.randomUUID().toString()),
+                                                                                                                       internalCallContext);
+        assertEquals(trackingIdsBySubscriptionId.size(), 2);
+        assertTrue(trackingIdsBySubscriptionId.containsEntry(subscriptionId1, trackingId1));
+        assertTrue(trackingIdsBySubscriptionId.containsEntry(subscriptionId2, trackingId2));
+    }
+
+    @Test(groups = "slow")
+    public void testDailyUsage() {
+        final UUID subscriptionId = UUIDs.randomUUID();
+        final String unitType1 = "foo";
+        final String unitType2 = "bar";
+        final LocalDate startDate = new LocalDate(2013, 1, 1);
+        final LocalDate endDate = new LocalDate(2013, 2, 1);
+
+        final String trackingId1 = UUIDs.randomUUID().toString();
+        final List<RolledUpUsageModelDao> usages1 = new ArrayList<RolledUpUsageModelDao>();
+        usages1.add(new RolledUpUsageModelDao(subscriptionId, unitType1, startDate, 10L, trackingId1));
+        usages1.add(new RolledUpUsageModelDao(subscriptionId, unitType2, startDate, 7L, trackingId1));
+        rolledUpUsageDao.record(usages1, internalCallContext);
+
+        // Same day (twice within the same batch) and a new day
+        final String trackingId2 = UUIDs.randomUUID().toString();
+        final List<RolledUpUsageModelDao> usages2 = new ArrayList<RolledUpUsageModelDao>();
+        usages2.add(new RolledUpUsageModelDao(subscriptionId, unitType1, startDate, 5L, trackingId2));
+        usages2.add(new RolledUpUsageModelDao(subscriptionId, unitType1, startDate, 13L, trackingId2));
+        usages2.add(new RolledUpUsageModelDao(subscriptionId, unitType1, startDate.plusDays(1), 3L, trackingId2));
+        rolledUpUsageDao.record(usages2, internalCallContext);
+
+        final List<RolledUpUsageDailyModelDao> dailyUsages = rolledUpUsageDao.getDailyUsageForSubscription(subscriptionId, startDate, endDate, internalCallContext);
+        assertEquals(dailyUsages.size(), 3);
+        // Ordered by record date, then unit type
+        assertEquals(dailyUsages.get(0).getUnitType(), unitType2);
+        assertEquals(dailyUsages.get(0).getAmount(), (Long) 7L);
+        assertEquals(dailyUsages.get(0).getMaxAmount(), (Long) 7L);
+        assertEquals(dailyUsages.get(1).getUnitType(), unitType1);
+        assertEquals(dailyUsages.get(1).getRecordDate().compareTo(startDate), 0);
+        assertEquals(dailyUsages.get(1).getAmount(), (Long) 28L);
+        assertEquals(dailyUsages.get(1).getMaxAmount(), (Long) 13L);
+        assertEquals(dailyUsages.get(2).getUnitType(), unitType1);
+        assertEquals(dailyUsages.get(2).getRecordDate().compareTo(startDate.plusDays(1)), 0);
+        assertEquals(dailyUsages.get(2).getAmount(), (Long) 3L);
+
+        assertEquals(rolledUpUsageDao.getDailyUsageForAccount(startDate, endDate, internalCallContext).size(), 3);
+        // One entry per distinct (subscription, unit type, day, tracking id)
+        final List<RolledUpUsageDailyTrackingIdModelDao> trackingIds = rolledUpUsageDao.getTrackingIdsForAccount(startDate, endDate, internalCallContext);
+        assertEquals(trackingIds.size(), 4);
+        final SetMultimap<List<Object>, String> trackingIdsByDay = HashMultimap.<List<Object>, String>create();
+        for (final RolledUpUsageDailyTrackingIdModelDao trackingId : trackingIds) {
+            trackingIdsByDay.put(ImmutableList.<Object>of(trackingId.getUnitType(), trackingId.getRecordDate()), trackingId.getTrackingId());
+        }
+        assertEquals(trackingIdsByDay.get(ImmutableList.<Object>of(unitType1, startDate)), ImmutableSet.<String>of(trackingId1, trackingId2));
+        assertEquals(trackingIdsByDay.get(ImmutableList.<Object>of(unitType2, startDate)), ImmutableSet.<String>of(trackingId1));
+        assertEquals(trackingIdsByDay.get(ImmutableList.<Object>of(unitType1, startDate.plusDays(1))), ImmutableSet.<String>of(trackingId2));
+    }
+
+    @Test(groups = "slow")
+    public void testConcurrentDailyUsage() throws Exception {
+        final UUID subscriptionId = UUIDs.randomUUID();
+        final String unitType = "foo";
+        final LocalDate startDate = new LocalDate(2013, 1, 1);
+        final int nbThreads = 8;
+        final int nbDays = 10;
+
+        // All threads record usage for the same days, so that they race to create each daily row
+        final CyclicBarrier barrier = new CyclicBarrier(nbThreads);
+        final ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+        try {
+            final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (int i = 0; i < nbThreads; i++) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        for (int day = 0; day < nbDays; day++) {
+                            barrier.await();
+                            final RolledUpUsageModelDao usage = new RolledUpUsageModelDao(subscriptionId, unitType, startDate.plusDays(day), 1L, UUIDs.randomUUID().toString());
+                            rolledUpUsageDao.record(ImmutableList.<RolledUpUsageModelDao>of(usage), internalCallContext);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (final Future<Void> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        final List<RolledUpUsageDailyModelDao> dailyUsages = rolledUpUsageDao.getDailyUsageForSubscription(subscriptionId, startDate, startDate.plusDays(nbDays), internalCallContext);
+        assertEquals(dailyUsages.size(), nbDays);
+        for (final RolledUpUsageDailyModelDao dailyUsage : dailyUsages) {
+            assertEquals(dailyUsage.getAmount(), (Long) (long) nbThreads);
+        }
+        // No raw usage was lost or recorded twice by the retries
+        assertEquals(rolledUpUsageDao.getUsageForSubscription(subscriptionId, startDate, startDate.plusDays(nbDays), unitType, internalCallContext).size(), nbThreads * nbDays);
+    }
+}
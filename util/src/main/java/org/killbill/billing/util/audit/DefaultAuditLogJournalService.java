@@ -0,0 +1,104 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.audit;
+
+import java.io.IOException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+
+import org.killbill.billing.platform.api.LifecycleHandlerType;
+import org.killbill.billing.platform.api.LifecycleHandlerType.LifecycleLevel;
+import org.killbill.billing.util.audit.dao.AuditLogJournal;
+import org.killbill.billing.util.config.definition.AuditConfig;
+import org.killbill.commons.concurrent.Executors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class DefaultAuditLogJournalService implements AuditLogJournalService {
+
+    public static final String AUDIT_LOG_JOURNAL_SERVICE_NAME = "audit-log-journal-service";
+
+    private static final int TERMINATION_TIMEOUT_SEC = 5;
+
+    private static final Logger logger = LoggerFactory.getLogger(DefaultAuditLogJournalService.class);
+
+    private final AuditLogJournal auditLogJournal;
+    private final AuditConfig auditConfig;
+
+    private ScheduledExecutorService auditLogJournalExecutor;
+
+    @Inject
+    public DefaultAuditLogJournalService(final AuditLogJournal auditLogJournal, final AuditConfig auditConfig) {
+        this.auditLogJournal = auditLogJournal;
+        this.auditConfig = auditConfig;
+    }
+
+    @Override
+    public String getName() {
+        return AUDIT_LOG_JOURNAL_SERVICE_NAME;
+    }
+
+    @Override
+    public int getRegistrationOrdering() {
+        // Same level as the other util services
+        return KILLBILL_SERVICES.BROADCAST_SERVICE.getRegistrationOrdering();
+    }
+
+    // Replay needs to happen before any service starts writing
+    @LifecycleHandlerType(LifecycleLevel.INIT_SERVICE)
+    public void initialize() throws IOException {
+        auditLogJournal.initialize();
+        this.auditLogJournalExecutor = Executors.newSingleThreadScheduledExecutor("AuditLogJournalExecutor");
+    }
+
+    @LifecycleHandlerType(LifecycleLevel.START_SERVICE)
+    public void start() {
+        final TimeUnit flushRateUnit = auditConfig.getAuditLogJournalFlushRate().getUnit();
+        final long flushPeriod = auditConfig.getAuditLogJournalFlushRate().getPeriod();
+        auditLogJournalExecutor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    auditLogJournal.flush();
+                } catch (final RuntimeException e) {
+                    logger.warn("Failed to flush the audit log journal", e);
+                }
+            }
+        }, flushPeriod, flushPeriod, flushRateUnit);
+    }
+
+    @LifecycleHandlerType(LifecycleLevel.STOP_SERVICE)
+    public void stop() {
+        try {
+            auditLogJournalExecutor.shutdown();
+            final boolean success = auditLogJournalExecutor.awaitTermination(TERMINATION_TIMEOUT_SEC, TimeUnit.SECONDS);
+            if (!success) {
+                logger.warn("AuditLogJournalExecutor failed to complete termination within {} sec", TERMINATION_TIMEOUT_SEC);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("AuditLogJournalExecutor stop sequence got interrupted");
+        } finally {
+            // Whatever isn't flushed here will be replayed on the next startup
+            auditLogJournal.flush();
+            auditLogJournal.close();
+        }
+    }
+}
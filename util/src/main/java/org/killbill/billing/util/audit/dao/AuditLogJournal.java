@@ -0,0 +1,713 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.audit.dao;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+
+import org.joda.time.DateTime;
+import org.killbill.billing.ObjectType;
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.util.UUIDs;
+import org.killbill.billing.util.audit.ChangeType;
+import org.killbill.billing.util.cache.Cachable.CacheType;
+import org.killbill.billing.util.cache.CacheController;
+import org.killbill.billing.util.cache.CacheControllerDispatcher;
+import org.killbill.billing.util.config.definition.AuditConfig;
+import org.killbill.billing.util.dao.NonEntityDao;
+import org.killbill.billing.util.dao.RecordIdIdMappings;
+import org.killbill.billing.util.dao.TableName;
+import org.killbill.billing.util.entity.dao.EntitySqlDao;
+import org.killbill.billing.util.entity.dao.EntitySqlDaoWrapperInvocationHandler;
+import org.killbill.billing.util.jackson.ObjectMapper;
+import org.killbill.clock.Clock;
+import org.skife.jdbi.v2.IDBI;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Predicate;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+
+/**
+ * Local append-only journal for the audit logs of the tenants listed in org.killbill.audit.journal.tenants.
+ * <p>
+ * During a transaction, audit logs are buffered in a {@link Transaction} and written (and synced) to the journal right
+ * before the database commit. A COMMIT or ABORT marker is appended once the outcome of the database transaction is known.
+ * Committed entries are flushed asynchronously to the audit_log table, in batches, and are served to {@link DefaultAuditDao}
+ * from memory until then.
+ * <p>
+ * On startup, committed entries which didn't make it to audit_log are replayed. Entries of transactions without any marker
+ * (crash right after the database commit) are replayed only if the audited rows exist, which proves the commit for inserts
+ * and history rows only: other in-doubt entries (e.g. updates on tables without history) are dropped. The journal directory
+ * (org.killbill.audit.journal.dir) must be set explicitly, to a durable location private to the node: the journal isn't
+ * enabled otherwise.
+ * <p>
+ * Note that until they are flushed, audit logs are only visible from the node which wrote them: other nodes of the cluster
+ * only see them once they have made it to the audit_log table (i.e. after at most org.killbill.audit.journal.flush.rate,
+ * or after the next startup of the writing node if it crashed).
+ */
+public class AuditLogJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditLogJournal.class);
+
+    private static final String SEGMENT_PREFIX = "audit-log-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+    // Tenants which don't exist (yet) are looked up again at most every TENANT_RESOLUTION_RETRY_MINUTES
+    private static final int TENANT_RESOLUTION_RETRY_MINUTES = 5;
+
+    private final AuditConfig auditConfig;
+    private final IDBI dbi;
+    private final Clock clock;
+    private final NonEntityDao nonEntityDao;
+    private final CacheControllerDispatcher cacheControllerDispatcher;
+    private final ObjectMapper objectMapper;
+
+    private final Object lock = new Object();
+    // Committed entries which aren't in audit_log yet, in commit order (guarded by lock)
+    private final Map<UUID, PendingEntry> pendingEntries = new LinkedHashMap<UUID, PendingEntry>();
+    // Segments by number (guarded by lock)
+    private final Map<Long, Segment> segments = new TreeMap<Long, Segment>();
+    private Segment currentSegment;
+    private File directory;
+
+    private final Set<String> unresolvedTenantIds = new HashSet<String>();
+    // Next lookup of the unresolved tenant ids (guarded by lock)
+    private DateTime nextTenantResolutionDate;
+    private volatile Set<Long> tenantRecordIds = ImmutableSet.<Long>of();
+    private volatile int nbPendingEntries = 0;
+    private volatile boolean isStarted = false;
+
+    @Inject
+    public AuditLogJournal(final AuditConfig auditConfig, final IDBI dbi, final Clock clock, final NonEntityDao nonEntityDao, final CacheControllerDispatcher cacheControllerDispatcher) {
+        this.auditConfig = auditConfig;
+        this.dbi = dbi;
+        this.clock = clock;
+        this.nonEntityDao = nonEntityDao;
+        this.cacheControllerDispatcher = cacheControllerDispatcher;
+        this.objectMapper = new ObjectMapper();
+    }
+
+    public void initialize() throws IOException {
+        final List<String> tenantIds = auditConfig.getAuditLogJournalTenants();
+        if (tenantIds == null || tenantIds.isEmpty()) {
+            return;
+        }
+
+        synchronized (lock) {
+            // The journal is the only copy of the unflushed audit logs: never default to a shared or volatile location (e.g. java.io.tmpdir)
+            final String configuredDirectory = auditConfig.getAuditLogJournalDirectory();
+            if (Strings.isNullOrEmpty(configuredDirectory)) {
+                logger.warn("Audit log journal NOT enabled for tenants {}: org.killbill.audit.journal.dir needs to be set", tenantIds);
+                return;
+            }
+
+            unresolvedTenantIds.addAll(tenantIds);
+            resolveTenantRecordIds();
+
+            directory = new File(configuredDirectory);
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Unable to create audit log journal directory " + directory);
+            }
+
+            replay();
+            isStarted = true;
+        }
+    }
+
+    public void close() {
+        synchronized (lock) {
+            isStarted = false;
+            for (final Segment segment : segments.values()) {
+                segment.close();
+            }
+            segments.clear();
+            currentSegment = null;
+            pendingEntries.clear();
+            nbPendingEntries = 0;
+        }
+    }
+
+    public boolean isEnabled(final InternalTenantContext context) {
+        return isStarted && context.getTenantRecordId() != null && tenantRecordIds.contains(context.getTenantRecordId());
+    }
+
+    /**
+     * @return a new journal transaction, or null if the journal isn't enabled
+     */
+    @Nullable
+    public Transaction newTransaction() {
+        return isStarted ? new Transaction() : null;
+    }
+
+    //
+    // Reads (not-yet-flushed entries only)
+    //
+
+    public List<AuditLogModelDao> getAuditLogsForAccountRecordId(@Nullable final TableName tableName, final InternalTenantContext context) {
+        return getAuditLogs(new Predicate<AuditLogJournalEntry>() {
+            @Override
+            public boolean apply(final AuditLogJournalEntry entry) {
+                return context.getTenantRecordId().equals(entry.getTenantRecordId()) &&
+                       context.getAccountRecordId() != null &&
+                       context.getAccountRecordId().equals(entry.getAccountRecordId()) &&
+                       (tableName == null || tableName.equals(entry.getTableName()));
+            }
+        });
+    }
+
+    public List<AuditLogModelDao> getAuditLogsForTargetRecordId(final TableName tableName, final Long targetRecordId, final InternalTenantContext context) {
+        return getAuditLogs(new Predicate<AuditLogJournalEntry>() {
+            @Override
+            public boolean apply(final AuditLogJournalEntry entry) {
+                return context.getTenantRecordId().equals(entry.getTenantRecordId()) &&
+                       tableName.equals(entry.getTableName()) &&
+                       targetRecordId.equals(entry.getTargetRecordId());
+            }
+        });
+    }
+
+    public List<AuditLogModelDao> getAuditLogsViaHistoryForTargetRecordId(final TableName historyTableName, final Long targetRecordId, final InternalTenantContext context) {
+        return getAuditLogs(new Predicate<AuditLogJournalEntry>() {
+            @Override
+            public boolean apply(final AuditLogJournalEntry entry) {
+                return context.getTenantRecordId().equals(entry.getTenantRecordId()) &&
+                       historyTableName.equals(entry.getTableName()) &&
+                       targetRecordId.equals(entry.getEntityRecordId());
+            }
+        });
+    }
+
+    private List<AuditLogModelDao> getAuditLogs(final Predicate<AuditLogJournalEntry> predicate) {
+        if (nbPendingEntries == 0) {
+            return ImmutableList.<AuditLogModelDao>of();
+        }
+
+        final List<AuditLogModelDao> auditLogs = new LinkedList<AuditLogModelDao>();
+        synchronized (lock) {
+            for (final PendingEntry pendingEntry : pendingEntries.values()) {
+                if (predicate.apply(pendingEntry.entry)) {
+                    auditLogs.add(pendingEntry.entry.toAuditLogModelDao());
+                }
+            }
+        }
+        return auditLogs;
+    }
+
+    //
+    // Asynchronous flush
+    //
+
+    public void flush() {
+        final List<PendingEntry> entriesToFlush;
+        synchronized (lock) {
+            if (!isStarted) {
+                return;
+            }
+
+            resolveTenantRecordIds();
+            if (pendingEntries.isEmpty()) {
+                return;
+            }
+
+            // New transactions go to a new segment, so that the current one can be deleted once flushed
+            if (currentSegment.size > 0) {
+                rollSegment();
+            }
+            entriesToFlush = new ArrayList<PendingEntry>(pendingEntries.values());
+        }
+
+        final AuditLogJournalSqlDao auditLogJournalSqlDao = dbi.onDemand(AuditLogJournalSqlDao.class);
+        for (final List<PendingEntry> batch : Lists.partition(entriesToFlush, auditConfig.getAuditLogJournalFlushBatchSize())) {
+            final List<AuditLogJournalEntry> entries = new ArrayList<AuditLogJournalEntry>(batch.size());
+            for (final PendingEntry pendingEntry : batch) {
+                entries.add(pendingEntry.entry);
+            }
+
+            try {
+                auditLogJournalSqlDao.insertAuditLogs(entries);
+            } catch (final RuntimeException e) {
+                logger.warn("Failed to flush {} audit logs from the journal, will retry", entries.size(), e);
+                return;
+            }
+
+            synchronized (lock) {
+                for (final PendingEntry pendingEntry : batch) {
+                    if (pendingEntries.remove(pendingEntry.entry.getId()) != null) {
+                        pendingEntry.segment.nbUnresolvedEntries--;
+                    }
+                }
+                nbPendingEntries = pendingEntries.size();
+                deleteResolvedSegments();
+            }
+
+            // The audit logs are now in audit_log: the cached (database) results are stale
+            for (final AuditLogJournalEntry entry : entries) {
+                EntitySqlDaoWrapperInvocationHandler.invalidateAuditCaches(cacheControllerDispatcher, getEntityTableName(entry.getTableName()), entry.getEntityRecordId());
+            }
+        }
+    }
+
+    public int getNbPendingEntries() {
+        return nbPendingEntries;
+    }
+
+    //
+    // Replay
+    //
+
+    private void replay() throws IOException {
+        final Map<Long, File> existingSegmentFiles = new TreeMap<Long, File>();
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                final Long segmentNumber = getSegmentNumber(file);
+                if (segmentNumber != null) {
+                    existingSegmentFiles.put(segmentNumber, file);
+                }
+            }
+        }
+
+        final Map<UUID, List<AuditLogJournalEntry>> preparedEntries = new LinkedHashMap<UUID, List<AuditLogJournalEntry>>();
+        final Set<UUID> committedTransactions = new HashSet<UUID>();
+        final Set<UUID> abortedTransactions = new HashSet<UUID>();
+        for (final File file : existingSegmentFiles.values()) {
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isEmpty()) {
+                        continue;
+                    }
+
+                    final JournalRecord record;
+                    try {
+                        record = objectMapper.readValue(line, JournalRecord.class);
+                    } catch (final IOException e) {
+                        // Torn write: the database transaction couldn't have been committed
+                        logger.warn("Skipping corrupted audit log journal record in {}", file, e);
+                        continue;
+                    }
+
+                    switch (record.getType()) {
+                        case PREPARE:
+                            preparedEntries.put(record.getTransactionId(), record.getEntries());
+                            break;
+                        case COMMIT:
+                            committedTransactions.add(record.getTransactionId());
+                            break;
+                        case ABORT:
+                            abortedTransactions.add(record.getTransactionId());
+                            break;
+                        default:
+                            throw new IllegalStateException("Unexpected record type " + record.getType());
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        }
+
+        final List<AuditLogJournalEntry> entriesToReplay = new LinkedList<AuditLogJournalEntry>();
+        final List<AuditLogJournalEntry> inDoubtEntries = new LinkedList<AuditLogJournalEntry>();
+        for (final Map.Entry<UUID, List<AuditLogJournalEntry>> entry : preparedEntries.entrySet()) {
+            if (committedTransactions.contains(entry.getKey())) {
+                entriesToReplay.addAll(entry.getValue());
+            } else if (!abortedTransactions.contains(entry.getKey())) {
+                inDoubtEntries.addAll(entry.getValue());
+            }
+        }
+        entriesToReplay.addAll(filterEntriesWithExistingTarget(filterVerifiableEntries(inDoubtEntries)));
+        final List<AuditLogJournalEntry> entriesNotFlushed = filterEntriesNotFlushed(entriesToReplay);
+
+        final long lastSegmentNumber = existingSegmentFiles.isEmpty() ? 0 : Iterables.getLast(existingSegmentFiles.keySet());
+        currentSegment = openSegment(lastSegmentNumber + 1);
+        if (!entriesNotFlushed.isEmpty()) {
+            // Re-journal the entries to replay in the new segment before getting rid of the old ones
+            final UUID transactionId = UUIDs.randomUUID();
+            currentSegment.write(serialize(new JournalRecord(RecordType.PREPARE, transactionId, entriesNotFlushed)));
+            currentSegment.write(serialize(new JournalRecord(RecordType.COMMIT, transactionId, null)));
+            currentSegment.sync();
+            addPendingEntries(entriesNotFlushed, currentSegment);
+            logger.info("Replaying {} audit logs from the journal", entriesNotFlushed.size());
+        }
+
+        for (final File file : existingSegmentFiles.values()) {
+            if (!file.delete()) {
+                logger.warn("Unable to delete audit log journal segment {}", file);
+            }
+        }
+    }
+
+    // The audited row is only created by the transaction for inserts and history rows: e.g. the row targeted by an update on a
+    // table without history existed beforehand, so whether the transaction was committed or not cannot be verified
+    private List<AuditLogJournalEntry> filterVerifiableEntries(final Collection<AuditLogJournalEntry> entries) {
+        final List<AuditLogJournalEntry> verifiableEntries = new LinkedList<AuditLogJournalEntry>();
+        for (final AuditLogJournalEntry entry : entries) {
+            if (entry.getChangeType() == ChangeType.INSERT || !entry.getTableName().equals(getEntityTableName(entry.getTableName()))) {
+                verifiableEntries.add(entry);
+            }
+        }
+
+        if (verifiableEntries.size() < entries.size()) {
+            logger.warn("Dropping {} in-doubt audit logs from the journal: the outcome of their transaction cannot be verified", entries.size() - verifiableEntries.size());
+        }
+        return verifiableEntries;
+    }
+
+    private List<AuditLogJournalEntry> filterEntriesWithExistingTarget(final Collection<AuditLogJournalEntry> entries) {
+        final Map<TableName, List<AuditLogJournalEntry>> entriesByTableName = new HashMap<TableName, List<AuditLogJournalEntry>>();
+        for (final AuditLogJournalEntry entry : entries) {
+            if (entriesByTableName.get(entry.getTableName()) == null) {
+                entriesByTableName.put(entry.getTableName(), new LinkedList<AuditLogJournalEntry>());
+            }
+            entriesByTableName.get(entry.getTableName()).add(entry);
+        }
+
+        final AuditLogJournalSqlDao auditLogJournalSqlDao = dbi.onDemand(AuditLogJournalSqlDao.class);
+        final List<AuditLogJournalEntry> entriesWithExistingTarget = new LinkedList<AuditLogJournalEntry>();
+        for (final Map.Entry<TableName, List<AuditLogJournalEntry>> entry : entriesByTableName.entrySet()) {
+            for (final List<AuditLogJournalEntry> chunk : Lists.partition(entry.getValue(), EntitySqlDao.MAX_IDS_PER_QUERY)) {
+                final Set<Long> targetRecordIds = new HashSet<Long>();
+                for (final AuditLogJournalEntry auditLogJournalEntry : chunk) {
+                    targetRecordIds.add(auditLogJournalEntry.getTargetRecordId());
+                }
+
+                final Set<Long> existingTargetRecordIds = new HashSet<Long>();
+                for (final RecordIdIdMappings mapping : auditLogJournalSqlDao.getRecordIdIdMappingsForRecordIds(entry.getKey().getTableName(), targetRecordIds)) {
+                    existingTargetRecordIds.add(mapping.getRecordId());
+                }
+
+                for (final AuditLogJournalEntry auditLogJournalEntry : chunk) {
+                    if (existingTargetRecordIds.contains(auditLogJournalEntry.getTargetRecordId())) {
+                        entriesWithExistingTarget.add(auditLogJournalEntry);
+                    }
+                }
+            }
+        }
+        return entriesWithExistingTarget;
+    }
+
+    // A crash may have happened between the insertion in audit_log and the deletion of the segment
+    private List<AuditLogJournalEntry> filterEntriesNotFlushed(final List<AuditLogJournalEntry> entries) {
+        final AuditLogJournalSqlDao auditLogJournalSqlDao = dbi.onDemand(AuditLogJournalSqlDao.class);
+        final List<AuditLogJournalEntry> entriesNotFlushed = new LinkedList<AuditLogJournalEntry>();
+        for (final List<AuditLogJournalEntry> chunk : Lists.partition(entries, EntitySqlDao.MAX_IDS_PER_QUERY)) {
+            final List<String> ids = new ArrayList<String>(chunk.size());
+            for (final AuditLogJournalEntry entry : chunk) {
+                ids.add(entry.getId().toString());
+            }
+
+            final Set<UUID> flushedIds = new HashSet<UUID>();
+            for (final RecordIdIdMappings mapping : auditLogJournalSqlDao.getAuditLogRecordIdIdMappingsForIds(ids)) {
+                flushedIds.add(mapping.getId());
+            }
+
+            for (final AuditLogJournalEntry entry : chunk) {
+                if (!flushedIds.contains(entry.getId())) {
+                    entriesNotFlushed.add(entry);
+                }
+            }
+        }
+        return entriesNotFlushed;
+    }
+
+    //
+    // Segments management (lock needs to be held)
+    //
+
+    private void resolveTenantRecordIds() {
+        final DateTime now = clock.getUTCNow();
+        if (unresolvedTenantIds.isEmpty() || (nextTenantResolutionDate != null && now.isBefore(nextTenantResolutionDate))) {
+            return;
+        }
+        nextTenantResolutionDate = now.plusMinutes(TENANT_RESOLUTION_RETRY_MINUTES);
+
+        final CacheController<String, Long> recordIdCacheController = cacheControllerDispatcher.getCacheController(CacheType.RECORD_ID);
+        final Set<Long> resolvedTenantRecordIds = new HashSet<Long>(tenantRecordIds);
+        final Iterator<String> iterator = unresolvedTenantIds.iterator();
+        while (iterator.hasNext()) {
+            final Long tenantRecordId = nonEntityDao.retrieveRecordIdFromObject(UUID.fromString(iterator.next()), ObjectType.TENANT, recordIdCacheController);
+            if (tenantRecordId != null) {
+                resolvedTenantRecordIds.add(tenantRecordId);
+                iterator.remove();
+            }
+        }
+        tenantRecordIds = ImmutableSet.<Long>copyOf(resolvedTenantRecordIds);
+    }
+
+    private void addPendingEntries(final Iterable<AuditLogJournalEntry> entries, final Segment segment) {
+        for (final AuditLogJournalEntry entry : entries) {
+            pendingEntries.put(entry.getId(), new PendingEntry(entry, segment));
+            segment.nbUnresolvedEntries++;
+        }
+        nbPendingEntries = pendingEntries.size();
+    }
+
+    private Segment openSegment(final long segmentNumber) throws IOException {
+        final Segment segment = new Segment(segmentNumber, new File(directory, SEGMENT_PREFIX + segmentNumber + SEGMENT_SUFFIX));
+        segments.put(segmentNumber, segment);
+        return segment;
+    }
+
+    private void rollSegment() {
+        try {
+            currentSegment = openSegment(currentSegment.number + 1);
+        } catch (final IOException e) {
+            logger.warn("Unable to roll audit log journal segment {}", currentSegment.file, e);
+        }
+        deleteResolvedSegments();
+    }
+
+    private void deleteResolvedSegments() {
+        final Iterator<Segment> iterator = segments.values().iterator();
+        while (iterator.hasNext()) {
+            final Segment segment = iterator.next();
+            if (segment != currentSegment && segment.nbUnresolvedEntries == 0) {
+                segment.close();
+                if (!segment.file.delete()) {
+                    logger.warn("Unable to delete audit log journal segment {}", segment.file);
+                }
+                iterator.remove();
+            }
+        }
+    }
+
+    private byte[] serialize(final JournalRecord record) throws IOException {
+        final byte[] json = objectMapper.writeValueAsBytes(record);
+        final byte[] line = new byte[json.length + 1];
+        System.arraycopy(json, 0, line, 0, json.length);
+        line[json.length] = '\n';
+        return line;
+    }
+
+    private static TableName getEntityTableName(final TableName tableName) {
+        for (final TableName entityTableName : TableName.values()) {
+            if (tableName.equals(entityTableName.getHistoryTableName())) {
+                return entityTableName;
+            }
+        }
+        return tableName;
+    }
+
+    private static Long getSegmentNumber(final File file) {
+        final String name = file.getName();
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+            return null;
+        }
+        try {
+            return Long.valueOf(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (final NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Audit logs of a single database transaction. Not thread safe.
+     */
+    public class Transaction {
+
+        private final UUID transactionId = UUIDs.randomUUID();
+        private final List<AuditLogJournalEntry> entries = new LinkedList<AuditLogJournalEntry>();
+        private Segment segment;
+
+        private Transaction() {}
+
+        public boolean isEnabled(final InternalTenantContext context) {
+            return AuditLogJournal.this.isEnabled(context);
+        }
+
+        public void append(final AuditLogJournalEntry entry) {
+            entries.add(entry);
+        }
+
+        // Invoked right before the database commit: if this fails, the database transaction is rolled back
+        public void prepare() throws IOException {
+            if (entries.isEmpty()) {
+                return;
+            }
+
+            final byte[] record = serialize(new JournalRecord(RecordType.PREPARE, transactionId, entries));
+            final Segment preparedSegment;
+            synchronized (lock) {
+                if (!isStarted) {
+                    throw new IOException("Audit log journal isn't started");
+                }
+                preparedSegment = currentSegment;
+                try {
+                    preparedSegment.write(record);
+                } catch (final IOException e) {
+                    // Don't append anything after a potentially partial record
+                    rollSegment();
+                    throw e;
+                }
+                preparedSegment.nbUnresolvedEntries += entries.size();
+                segment = preparedSegment;
+            }
+            // Outside of the lock, to let concurrent transactions share the sync
+            preparedSegment.sync();
+        }
+
+        public void commit() {
+            if (segment == null) {
+                return;
+            }
+
+            synchronized (lock) {
+                if (!isStarted) {
+                    return;
+                }
+                writeMarker(RecordType.COMMIT);
+                // The entries are accounted for in the segment already
+                for (final AuditLogJournalEntry entry : entries) {
+                    pendingEntries.put(entry.getId(), new PendingEntry(entry, segment));
+                }
+                nbPendingEntries = pendingEntries.size();
+            }
+        }
+
+        public void rollback() {
+            if (segment == null) {
+                return;
+            }
+
+            synchronized (lock) {
+                if (!isStarted) {
+                    return;
+                }
+                writeMarker(RecordType.ABORT);
+                segment.nbUnresolvedEntries -= entries.size();
+                deleteResolvedSegments();
+            }
+        }
+
+        private void writeMarker(final RecordType recordType) {
+            try {
+                // Not synced: a missing marker is resolved on replay
+                segment.write(serialize(new JournalRecord(recordType, transactionId, null)));
+            } catch (final IOException e) {
+                logger.warn("Unable to write {} marker for audit log journal transaction {}", recordType, transactionId, e);
+            }
+        }
+    }
+
+    private static final class PendingEntry {
+
+        private final AuditLogJournalEntry entry;
+        private final Segment segment;
+
+        private PendingEntry(final AuditLogJournalEntry entry, final Segment segment) {
+            this.entry = entry;
+            this.segment = segment;
+        }
+    }
+
+    private static final class Segment {
+
+        private final long number;
+        private final File file;
+        private final FileOutputStream outputStream;
+        private long size;
+        // Entries of prepared transactions which are neither aborted nor flushed
+        private int nbUnresolvedEntries;
+
+        private Segment(final long number, final File file) throws IOException {
+            this.number = number;
+            this.file = file;
+            this.outputStream = new FileOutputStream(file, true);
+            this.size = 0;
+            this.nbUnresolvedEntries = 0;
+        }
+
+        private void write(final byte[] record) throws IOException {
+            outputStream.write(record);
+            size += record.length;
+        }
+
+        private void sync() throws IOException {
+            outputStream.getChannel().force(false);
+        }
+
+        private void close() {
+            try {
+                outputStream.close();
+            } catch (final IOException e) {
+                logger.warn("Unable to close audit log journal segment {}", file, e);
+            }
+        }
+    }
+
+    enum RecordType {
+        PREPARE,
+        COMMIT,
+        ABORT
+    }
+
+    static final class JournalRecord {
+
+        private final RecordType type;
+        private final UUID transactionId;
+        private final List<AuditLogJournalEntry> entries;
+
+        @JsonCreator
+        JournalRecord(@JsonProperty("type") final RecordType type,
+                      @JsonProperty("transactionId") final UUID transactionId,
+                      @JsonProperty("entries") @Nullable final List<AuditLogJournalEntry> entries) {
+            this.type = type;
+            this.transactionId = transactionId;
+            this.entries = entries;
+        }
+
+        public RecordType getType() {
+            return type;
+        }
+
+        public UUID getTransactionId() {
+            return transactionId;
+        }
+
+        public List<AuditLogJournalEntry> getEntries() {
+            return entries;
+        }
+    }
+}
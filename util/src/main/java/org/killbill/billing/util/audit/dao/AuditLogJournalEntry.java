@@ -0,0 +1,161 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.audit.dao;
+
+import java.util.UUID;
+
+import org.joda.time.DateTime;
+import org.killbill.billing.callcontext.DefaultCallContext;
+import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.util.audit.ChangeType;
+import org.killbill.billing.util.dao.EntityAudit;
+import org.killbill.billing.util.dao.TableName;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Audit log row waiting in the journal to be flushed to the audit_log table
+ */
+public class AuditLogJournalEntry {
+
+    private final UUID id;
+    private final TableName tableName;
+    private final Long targetRecordId;
+    // Record id of the audited entity (targetRecordId is the history record id for tables with history)
+    private final Long entityRecordId;
+    private final ChangeType changeType;
+    private final String createdBy;
+    private final String reasonCode;
+    private final String comments;
+    private final UUID userToken;
+    private final DateTime createdDate;
+    private final Long accountRecordId;
+    private final Long tenantRecordId;
+
+    @JsonCreator
+    public AuditLogJournalEntry(@JsonProperty("id") final UUID id,
+                                @JsonProperty("tableName") final TableName tableName,
+                                @JsonProperty("targetRecordId") final Long targetRecordId,
+                                @JsonProperty("entityRecordId") final Long entityRecordId,
+                                @JsonProperty("changeType") final ChangeType changeType,
+                                @JsonProperty("createdBy") final String createdBy,
+                                @JsonProperty("reasonCode") final String reasonCode,
+                                @JsonProperty("comments") final String comments,
+                                @JsonProperty("userToken") final UUID userToken,
+                                @JsonProperty("createdDate") final DateTime createdDate,
+                                @JsonProperty("accountRecordId") final Long accountRecordId,
+                                @JsonProperty("tenantRecordId") final Long tenantRecordId) {
+        this.id = id;
+        this.tableName = tableName;
+        this.targetRecordId = targetRecordId;
+        this.entityRecordId = entityRecordId;
+        this.changeType = changeType;
+        this.createdBy = createdBy;
+        this.reasonCode = reasonCode;
+        this.comments = comments;
+        this.userToken = userToken;
+        this.createdDate = createdDate;
+        this.accountRecordId = accountRecordId;
+        this.tenantRecordId = tenantRecordId;
+    }
+
+    public AuditLogJournalEntry(final EntityAudit entityAudit, final Long entityRecordId, final InternalCallContext context) {
+        this(entityAudit.getId(),
+             entityAudit.getTableName(),
+             entityAudit.getTargetRecordId(),
+             entityRecordId,
+             entityAudit.getChangeType(),
+             context.getCreatedBy(),
+             context.getReasonCode(),
+             context.getComments(),
+             context.getUserToken(),
+             entityAudit.getCreatedDate(),
+             context.getAccountRecordId(),
+             context.getTenantRecordId());
+    }
+
+    public AuditLogModelDao toAuditLogModelDao() {
+        final EntityAudit entityAudit = new EntityAudit(id, tableName, targetRecordId, changeType, createdDate);
+        // Same as AuditLogModelDaoMapper
+        final DefaultCallContext callContext = new DefaultCallContext(null, null, createdBy, createdDate, reasonCode, comments, userToken);
+        return new AuditLogModelDao(entityAudit, callContext);
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public TableName getTableName() {
+        return tableName;
+    }
+
+    public Long getTargetRecordId() {
+        return targetRecordId;
+    }
+
+    public Long getEntityRecordId() {
+        return entityRecordId;
+    }
+
+    public ChangeType getChangeType() {
+        return changeType;
+    }
+
+    public String getCreatedBy() {
+        return createdBy;
+    }
+
+    public String getReasonCode() {
+        return reasonCode;
+    }
+
+    public String getComments() {
+        return comments;
+    }
+
+    public UUID getUserToken() {
+        return userToken;
+    }
+
+    public DateTime getCreatedDate() {
+        return createdDate;
+    }
+
+    public Long getAccountRecordId() {
+        return accountRecordId;
+    }
+
+    public Long getTenantRecordId() {
+        return tenantRecordId;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("AuditLogJournalEntry{");
+        sb.append("id=").append(id);
+        sb.append(", tableName=").append(tableName);
+        sb.append(", targetRecordId=").append(targetRecordId);
+        sb.append(", entityRecordId=").append(entityRecordId);
+        sb.append(", changeType=").append(changeType);
+        sb.append(", accountRecordId=").append(accountRecordId);
+        sb.append(", tenantRecordId=").append(tenantRecordId);
+        sb.append('}');
+        return sb.toString();
+    }
+}
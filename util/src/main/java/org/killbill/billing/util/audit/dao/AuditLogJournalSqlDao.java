@@ -0,0 +1,43 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.audit.dao;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.killbill.billing.util.dao.RecordIdIdMappings;
+import org.killbill.commons.jdbi.binder.SmartBindBean;
+import org.killbill.commons.jdbi.template.KillBillSqlDaoStringTemplate;
+import org.skife.jdbi.v2.sqlobject.SqlBatch;
+import org.skife.jdbi.v2.sqlobject.SqlQuery;
+import org.skife.jdbi.v2.sqlobject.customizers.Define;
+import org.skife.jdbi.v2.unstable.BindIn;
+
+@KillBillSqlDaoStringTemplate
+public interface AuditLogJournalSqlDao {
+
+    @SqlBatch
+    public void insertAuditLogs(@SmartBindBean final Iterable<AuditLogJournalEntry> entries);
+
+    @SqlQuery
+    public List<RecordIdIdMappings> getAuditLogRecordIdIdMappingsForIds(@BindIn("ids") final Collection<String> ids);
+
+    @SqlQuery
+    public List<RecordIdIdMappings> getRecordIdIdMappingsForRecordIds(@Define("tableName") final String tableName,
+                                                                      @BindIn("recordIds") final Collection<Long> recordIds);
+}
@@ -19,9 +19,11 @@
 package org.killbill.billing.util.audit.dao;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import javax.inject.Inject;
@@ -54,8 +56,11 @@ import org.killbill.clock.Clock;
 import org.skife.jdbi.v2.IDBI;
 
 import com.google.common.base.Function;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Predicate;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 
@@ -65,9 +70,12 @@ public class DefaultAuditDao implements AuditDao {
 
     private final DBRouter<NonEntitySqlDao> dbRouter;
     private final EntitySqlDaoTransactionalJdbiWrapper transactionalSqlDao;
+    private final AuditLogJournal auditLogJournal;
 
     @Inject
-    public DefaultAuditDao(final IDBI dbi, @Named(MAIN_RO_IDBI_NAMED) final IDBI roDbi, final Clock clock, final CacheControllerDispatcher cacheControllerDispatcher, final NonEntityDao nonEntityDao, final InternalCallContextFactory internalCallContextFactory) {
+    public DefaultAuditDao(final IDBI dbi, @Named(MAIN_RO_IDBI_NAMED) final IDBI roDbi, final Clock clock, final CacheControllerDispatcher cacheControllerDispatcher, final NonEntityDao nonEntityDao, final InternalCallContextFactory internalCallContextFactory,
+                           final AuditLogJournal auditLogJournal) {
+        this.auditLogJournal = auditLogJournal;
         this.dbRouter = new DBRouter<NonEntitySqlDao>(dbi, roDbi, NonEntitySqlDao.class);
         this.transactionalSqlDao = new EntitySqlDaoTransactionalJdbiWrapper(dbi, roDbi, clock, cacheControllerDispatcher, nonEntityDao, internalCallContextFactory);
     }
@@ -79,8 +87,9 @@ public class DefaultAuditDao implements AuditDao {
         // Lazy evaluate records to minimize the memory footprint (these can yield a lot of results)
         // We usually always want to wrap our queries in an EntitySqlDaoTransactionWrapper... except here.
         // Since we want to stream the results out, we don't want to auto-commit when this method returns.
+        final List<AuditLogModelDao> journaledAuditLogs = auditLogJournal.getAuditLogsForAccountRecordId(null, context);
         final EntitySqlDao auditSqlDao = transactionalSqlDao.onDemandForStreamingResults(EntitySqlDao.class);
-        final Iterator<AuditLogModelDao> auditLogsForAccountRecordId = auditSqlDao.getAuditLogsForAccountRecordId(context);
+        final Iterator<AuditLogModelDao> auditLogsForAccountRecordId = withJournaledAuditLogs(auditSqlDao.getAuditLogsForAccountRecordId(context), journaledAuditLogs);
         final Iterator<AuditLog> allAuditLogs = buildAuditLogsFromModelDao(auditLogsForAccountRecordId, context);
 
         return new DefaultAccountAuditLogs(accountId, auditLevel, allAuditLogs);
@@ -98,8 +107,9 @@ public class DefaultAuditDao implements AuditDao {
         // Lazy evaluate records to minimize the memory footprint (these can yield a lot of results)
         // We usually always want to wrap our queries in an EntitySqlDaoTransactionWrapper... except here.
         // Since we want to stream the results out, we don't want to auto-commit when this method returns.
+        final List<AuditLogModelDao> journaledAuditLogs = auditLogJournal.getAuditLogsForAccountRecordId(MoreObjects.firstNonNull(tableName.getHistoryTableName(), tableName), context);
         final EntitySqlDao auditSqlDao = transactionalSqlDao.onDemandForStreamingResults(EntitySqlDao.class);
-        final Iterator<AuditLogModelDao> auditLogsForTableNameAndAccountRecordId = auditSqlDao.getAuditLogsForTableNameAndAccountRecordId(actualTableName, context);
+        final Iterator<AuditLogModelDao> auditLogsForTableNameAndAccountRecordId = withJournaledAuditLogs(auditSqlDao.getAuditLogsForTableNameAndAccountRecordId(actualTableName, context), journaledAuditLogs);
         final Iterator<AuditLog> allAuditLogs = buildAuditLogsFromModelDao(auditLogsForTableNameAndAccountRecordId, context);
 
         return new DefaultAccountAuditLogsForObjectType(auditLevel, allAuditLogs);
@@ -193,10 +203,12 @@ public class DefaultAuditDao implements AuditDao {
                 final Long targetRecordId = dbRouter.onDemand(true).getRecordIdFromObject(objectId.toString(), tableName.getTableName());
                 final List<EntityHistoryModelDao> objectHistory = transactional.getHistoryForTargetRecordId(true, targetRecordId, context);
 
-                return ImmutableList.<AuditLogWithHistory>copyOf(Collections2.transform(entitySqlDaoWrapperFactory.become(EntitySqlDao.class).getAuditLogsViaHistoryForTargetRecordId(historyTableName.name(),
-                                                                                                                                                                                      historyTableName.getTableName().toLowerCase(),
-                                                                                                                                                                                      targetRecordId,
-                                                                                                                                                                                      context),
+                final List<AuditLogModelDao> journaledAuditLogs = auditLogJournal.getAuditLogsViaHistoryForTargetRecordId(historyTableName, targetRecordId, context);
+                return ImmutableList.<AuditLogWithHistory>copyOf(Collections2.transform(withJournaledAuditLogs(entitySqlDaoWrapperFactory.become(EntitySqlDao.class).getAuditLogsViaHistoryForTargetRecordId(historyTableName.name(),
+                                                                                                                                                                                                             historyTableName.getTableName().toLowerCase(),
+                                                                                                                                                                                                             targetRecordId,
+                                                                                                                                                                                                             context),
+                                                                                                               journaledAuditLogs),
                                                                                         new Function<AuditLogModelDao, AuditLogWithHistory>() {
                                                                                             @Override
                                                                                             public AuditLogWithHistory apply(final AuditLogModelDao inputAuditLog) {
@@ -236,10 +248,12 @@ public class DefaultAuditDao implements AuditDao {
         final List<AuditLog> allAuditLogs = transactionalSqlDao.execute(true, new EntitySqlDaoTransactionWrapper<List<AuditLog>>() {
             @Override
             public List<AuditLog> inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
-                final List<AuditLogModelDao> auditLogsViaHistoryForTargetRecordId = entitySqlDaoWrapperFactory.become(EntitySqlDao.class).getAuditLogsViaHistoryForTargetRecordId(historyTableName.name(),
-                                                                                                                                                                                  historyTableName.getTableName().toLowerCase(),
-                                                                                                                                                                                  targetRecordId,
-                                                                                                                                                                                  context);
+                final List<AuditLogModelDao> journaledAuditLogs = auditLogJournal.getAuditLogsViaHistoryForTargetRecordId(historyTableName, targetRecordId, context);
+                final List<AuditLogModelDao> auditLogsViaHistoryForTargetRecordId = withJournaledAuditLogs(entitySqlDaoWrapperFactory.become(EntitySqlDao.class).getAuditLogsViaHistoryForTargetRecordId(historyTableName.name(),
+                                                                                                                                                                                                         historyTableName.getTableName().toLowerCase(),
+                                                                                                                                                                                                         targetRecordId,
+                                                                                                                                                                                                         context),
+                                                                                                           journaledAuditLogs);
                 return buildAuditLogsFromModelDao(auditLogsViaHistoryForTargetRecordId, tableName.getObjectType(), objectId);
             }
         });
@@ -250,9 +264,11 @@ public class DefaultAuditDao implements AuditDao {
         final List<AuditLog> allAuditLogs = transactionalSqlDao.execute(true, new EntitySqlDaoTransactionWrapper<List<AuditLog>>() {
             @Override
             public List<AuditLog> inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
-                final List<AuditLogModelDao> auditLogsForTargetRecordId = entitySqlDaoWrapperFactory.become(EntitySqlDao.class).getAuditLogsForTargetRecordId(tableName.name(),
-                                                                                                                                                              targetRecordId,
-                                                                                                                                                              context);
+                final List<AuditLogModelDao> journaledAuditLogs = auditLogJournal.getAuditLogsForTargetRecordId(tableName, targetRecordId, context);
+                final List<AuditLogModelDao> auditLogsForTargetRecordId = withJournaledAuditLogs(entitySqlDaoWrapperFactory.become(EntitySqlDao.class).getAuditLogsForTargetRecordId(tableName.name(),
+                                                                                                                                                                                     targetRecordId,
+                                                                                                                                                                                     context),
+                                                                                                 journaledAuditLogs);
                 return buildAuditLogsFromModelDao(auditLogsForTargetRecordId, tableName.getObjectType(), auditedEntityId);
             }
         });
@@ -269,6 +285,55 @@ public class DefaultAuditDao implements AuditDao {
                                                            });
     }
 
+    // Audit logs not flushed yet from the journal go last. The journal is read first: entries flushed in the meantime
+    // would then be returned by the database as well, hence the de-duplication.
+    private List<AuditLogModelDao> withJournaledAuditLogs(final List<AuditLogModelDao> auditLogs, final List<AuditLogModelDao> journaledAuditLogs) {
+        if (journaledAuditLogs.isEmpty()) {
+            return auditLogs;
+        }
+
+        final Set<UUID> auditLogIds = new HashSet<UUID>();
+        for (final AuditLogModelDao auditLog : auditLogs) {
+            auditLogIds.add(auditLog.getId());
+        }
+        return ImmutableList.<AuditLogModelDao>copyOf(Iterables.<AuditLogModelDao>concat(auditLogs, Iterables.<AuditLogModelDao>filter(journaledAuditLogs, new Predicate<AuditLogModelDao>() {
+            @Override
+            public boolean apply(final AuditLogModelDao input) {
+                return !auditLogIds.contains(input.getId());
+            }
+        })));
+    }
+
+    private Iterator<AuditLogModelDao> withJournaledAuditLogs(final Iterator<AuditLogModelDao> auditLogs, final List<AuditLogModelDao> journaledAuditLogs) {
+        if (journaledAuditLogs.isEmpty()) {
+            return auditLogs;
+        }
+
+        // Results are streamed: only keep track of the ids we care about
+        final Set<UUID> journaledAuditLogIds = new HashSet<UUID>();
+        for (final AuditLogModelDao journaledAuditLog : journaledAuditLogs) {
+            journaledAuditLogIds.add(journaledAuditLog.getId());
+        }
+        final Set<UUID> flushedAuditLogIds = new HashSet<UUID>();
+        final Iterator<AuditLogModelDao> trackedAuditLogs = Iterators.<AuditLogModelDao, AuditLogModelDao>transform(auditLogs, new Function<AuditLogModelDao, AuditLogModelDao>() {
+            @Override
+            public AuditLogModelDao apply(final AuditLogModelDao input) {
+                if (journaledAuditLogIds.contains(input.getId())) {
+                    flushedAuditLogIds.add(input.getId());
+                }
+                return input;
+            }
+        });
+        // Lazily filtered, once the database results have been consumed
+        final Iterator<AuditLogModelDao> notFlushedAuditLogs = Iterators.<AuditLogModelDao>filter(journaledAuditLogs.iterator(), new Predicate<AuditLogModelDao>() {
+            @Override
+            public boolean apply(final AuditLogModelDao input) {
+                return !flushedAuditLogIds.contains(input.getId());
+            }
+        });
+        return Iterators.<AuditLogModelDao>concat(trackedAuditLogs, notFlushedAuditLogs);
+    }
+
     private List<AuditLog> filterAuditLogs(final AuditLevel auditLevel, final List<AuditLog> auditLogs) {
         // TODO Do the filtering in the query
         if (AuditLevel.FULL.equals(auditLevel)) {
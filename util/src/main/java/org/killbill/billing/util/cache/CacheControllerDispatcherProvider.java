@@ -28,6 +28,7 @@ import javax.inject.Inject;
 import javax.inject.Provider;
 
 import org.killbill.billing.util.cache.Cachable.CacheType;
+import org.killbill.billing.util.config.definition.CacheConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -40,12 +41,15 @@ public class CacheControllerDispatcherProvider implements Provider<CacheControll
 
     private final CacheManager cacheManager;
     private final Set<BaseCacheLoader> cacheLoaders;
+    private final CacheConfig cacheConfig;
 
     @Inject
     public CacheControllerDispatcherProvider(final CacheManager cacheManager,
-                                             final Set<BaseCacheLoader> cacheLoaders) {
+                                             final Set<BaseCacheLoader> cacheLoaders,
+                                             final CacheConfig cacheConfig) {
         this.cacheManager = cacheManager;
         this.cacheLoaders = cacheLoaders;
+        this.cacheConfig = cacheConfig;
     }
 
     @Override
@@ -62,9 +66,28 @@ public class CacheControllerDispatcherProvider implements Provider<CacheControll
             Preconditions.checkState(!cache.isClosed(), "Cache '%s' should not be closed", cacheType.getCacheName());
 
             final CacheController<Object, Object> killBillCacheController = new KillBillCacheController<Object, Object>(cache, cacheLoader);
-            cacheControllers.put(cacheType, killBillCacheController);
+            cacheControllers.put(cacheType, withLocalTier(cacheType, killBillCacheController));
         }
 
         return new CacheControllerDispatcher(cacheControllers);
     }
+
+    // Record id mappings are looked up for pretty much every API call: serve them from an allocation-free in-process tier first
+    @SuppressWarnings("unchecked")
+    private CacheController<Object, Object> withLocalTier(final CacheType cacheType, final CacheController<Object, Object> cacheController) {
+        if (cacheConfig.getRecordIdsLocalCacheMaxEntries() <= 0) {
+            return cacheController;
+        }
+
+        switch (cacheType) {
+            case RECORD_ID:
+            case ACCOUNT_RECORD_ID:
+            case TENANT_RECORD_ID:
+            case OBJECT_ID:
+                final CacheController rawCacheController = cacheController;
+                return (CacheController) new PrimitiveKeyedCacheController<Object>(rawCacheController, cacheConfig.getRecordIdsLocalCacheMaxEntries());
+            default:
+                return cacheController;
+        }
+    }
 }
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.cache;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Inject;
+
+import org.killbill.billing.ObjectType;
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.util.cache.Cachable.CacheType;
+import org.killbill.billing.util.config.definition.CacheConfig;
+import org.killbill.billing.util.dao.NonEntityDao;
+import org.killbill.billing.util.dao.NonEntitySqlDao;
+import org.killbill.billing.util.dao.RecordIdIdMappings;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.IDBI;
+import org.skife.jdbi.v2.tweak.HandleCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Preloads the caches on startup, so the first requests after a deploy don't all go to the database (and don't all parse the tenant catalogs):
+ * <ul>
+ * <li>per-tenant caches (catalog, overdue config, payment state machines) for all tenants, through the registered {@link TenantCacheWarmer}s</li>
+ * <li>record id mappings of the accounts which were active before the last shutdown (see {@link #writeSnapshot()})</li>
+ * </ul>
+ * Tasks run in parallel and failures are only logged: a cold entry will simply be loaded on demand.
+ */
+public class CacheWarmUp {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheWarmUp.class);
+
+    private final CacheConfig cacheConfig;
+    private final IDBI dbi;
+    private final NonEntityDao nonEntityDao;
+    private final CacheControllerDispatcher cacheControllerDispatcher;
+    private final Set<TenantCacheWarmer> tenantCacheWarmers;
+
+    private final AtomicInteger nbTasks = new AtomicInteger();
+    private final AtomicInteger nbCompletedTasks = new AtomicInteger();
+    private final AtomicInteger nbFailedTasks = new AtomicInteger();
+
+    private volatile boolean started = false;
+    // The warm-up couldn't be (entirely) scheduled: it is considered finished, the remaining entries will be loaded on demand
+    private volatile boolean failed = false;
+
+    @Inject
+    public CacheWarmUp(final CacheConfig cacheConfig,
+                       final IDBI dbi,
+                       final NonEntityDao nonEntityDao,
+                       final CacheControllerDispatcher cacheControllerDispatcher,
+                       final Set<TenantCacheWarmer> tenantCacheWarmers) {
+        this.cacheConfig = cacheConfig;
+        this.dbi = dbi;
+        this.nonEntityDao = nonEntityDao;
+        this.cacheControllerDispatcher = cacheControllerDispatcher;
+        this.tenantCacheWarmers = tenantCacheWarmers;
+    }
+
+    public boolean isEnabled() {
+        return cacheConfig.isCacheWarmUpEnabled();
+    }
+
+    // Submit all warm-up tasks to the executor
+    public void warmUp(final ExecutorService executor) {
+        boolean success = false;
+        try {
+            submitTasks(executor);
+            success = true;
+        } finally {
+            failed = !success;
+            started = true;
+        }
+    }
+
+    private void submitTasks(final ExecutorService executor) {
+        final List<RecordIdIdMappings> tenants = getTenants();
+        final List<Long> accountRecordIds = readSnapshot();
+
+        nbTasks.set(tenants.size() * tenantCacheWarmers.size() + accountRecordIds.size());
+        logger.info("Starting cache warm-up: nbTenants='{}', nbTenantCacheWarmers='{}', nbAccounts='{}'", tenants.size(), tenantCacheWarmers.size(), accountRecordIds.size());
+
+        for (final RecordIdIdMappings tenant : tenants) {
+            final InternalTenantContext tenantContext = new InternalTenantContext(tenant.getRecordId());
+            for (final TenantCacheWarmer tenantCacheWarmer : tenantCacheWarmers) {
+                executor.submit(new WarmUpTask(tenantCacheWarmer.getName() + " for tenantId=" + tenant.getId()) {
+                    @Override
+                    void doWarmUp() throws Exception {
+                        tenantCacheWarmer.warmUp(tenantContext);
+                    }
+                });
+            }
+        }
+
+        for (final Long accountRecordId : accountRecordIds) {
+            executor.submit(new WarmUpTask("record ids for accountRecordId=" + accountRecordId) {
+                @Override
+                void doWarmUp() {
+                    warmUpAccountRecordIds(accountRecordId);
+                }
+            });
+        }
+    }
+
+    public boolean isComplete() {
+        return !isEnabled() || (started && (failed || nbCompletedTasks.get() + nbFailedTasks.get() >= nbTasks.get()));
+    }
+
+    public Map<String, Object> getProgress() {
+        final Map<String, Object> progress = new LinkedHashMap<String, Object>();
+        progress.put("enabled", isEnabled());
+        progress.put("complete", isComplete());
+        progress.put("failed", failed);
+        progress.put("nbTasks", nbTasks.get());
+        progress.put("nbCompletedTasks", nbCompletedTasks.get());
+        progress.put("nbFailedTasks", nbFailedTasks.get());
+        return progress;
+    }
+
+    // Accounts which have been looked up recently are the ones in the immutable account cache
+    public void writeSnapshot() throws IOException {
+        final File snapshotFile = getSnapshotFile();
+        if (snapshotFile == null) {
+            return;
+        }
+
+        final CacheController<Long, Object> accountImmutableCache = cacheControllerDispatcher.getCacheController(CacheType.ACCOUNT_IMMUTABLE);
+        if (accountImmutableCache == null) {
+            return;
+        }
+
+        final Set<Long> accountRecordIds = new LinkedHashSet<Long>();
+        for (final Long accountRecordId : accountImmutableCache.getKeys()) {
+            if (accountRecordIds.size() >= cacheConfig.getCacheWarmUpSnapshotMaxAccounts()) {
+                break;
+            }
+            accountRecordIds.add(accountRecordId);
+        }
+
+        final File tmpFile = new File(snapshotFile.getPath() + ".tmp");
+        final BufferedWriter writer = Files.newBufferedWriter(tmpFile.toPath(), StandardCharsets.UTF_8);
+        try {
+            for (final Long accountRecordId : accountRecordIds) {
+                writer.write(String.valueOf(accountRecordId));
+                writer.newLine();
+            }
+        } finally {
+            writer.close();
+        }
+        Files.move(tmpFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logger.info("Wrote cache warm-up snapshot file='{}', nbAccounts='{}'", snapshotFile, accountRecordIds.size());
+    }
+
+    private void warmUpAccountRecordIds(final Long accountRecordId) {
+        final CacheController<String, UUID> objectIdCache = cacheControllerDispatcher.getCacheController(CacheType.OBJECT_ID);
+        final UUID accountId = nonEntityDao.retrieveIdFromObject(accountRecordId, ObjectType.ACCOUNT, objectIdCache);
+        if (accountId == null) {
+            // Account deleted since the snapshot was taken
+            return;
+        }
+
+        final CacheController<String, Long> recordIdCache = cacheControllerDispatcher.getCacheController(CacheType.RECORD_ID);
+        if (recordIdCache != null) {
+            nonEntityDao.retrieveRecordIdFromObject(accountId, ObjectType.ACCOUNT, recordIdCache);
+        }
+        final CacheController<String, Long> accountRecordIdCache = cacheControllerDispatcher.getCacheController(CacheType.ACCOUNT_RECORD_ID);
+        if (accountRecordIdCache != null) {
+            nonEntityDao.retrieveAccountRecordIdFromObject(accountId, ObjectType.ACCOUNT, accountRecordIdCache);
+        }
+        final CacheController<String, Long> tenantRecordIdCache = cacheControllerDispatcher.getCacheController(CacheType.TENANT_RECORD_ID);
+        if (tenantRecordIdCache != null) {
+            nonEntityDao.retrieveTenantRecordIdFromObject(accountId, ObjectType.ACCOUNT, tenantRecordIdCache);
+        }
+    }
+
+    private List<RecordIdIdMappings> getTenants() {
+        return dbi.withHandle(new HandleCallback<List<RecordIdIdMappings>>() {
+            @Override
+            public List<RecordIdIdMappings> withHandle(final Handle handle) {
+                return ImmutableList.<RecordIdIdMappings>copyOf(handle.attach(NonEntitySqlDao.class).getTenantRecordIdIdMappings());
+            }
+        });
+    }
+
+    private List<Long> readSnapshot() {
+        final List<Long> accountRecordIds = new LinkedList<Long>();
+
+        final File snapshotFile = getSnapshotFile();
+        if (snapshotFile == null || !snapshotFile.exists()) {
+            return accountRecordIds;
+        }
+
+        try {
+            final BufferedReader reader = Files.newBufferedReader(snapshotFile.toPath(), StandardCharsets.UTF_8);
+            try {
+                String line;
+                while ((line = reader.readLine()) != null && accountRecordIds.size() < cacheConfig.getCacheWarmUpSnapshotMaxAccounts()) {
+                    try {
+                        accountRecordIds.add(Long.valueOf(line.trim()));
+                    } catch (final NumberFormatException e) {
+                        logger.warn("Ignoring invalid line='{}' in cache warm-up snapshot file='{}'", line, snapshotFile);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (final IOException e) {
+            logger.warn("Unable to read cache warm-up snapshot file='{}'", snapshotFile, e);
+        }
+        return accountRecordIds;
+    }
+
+    private File getSnapshotFile() {
+        final String snapshotFile = cacheConfig.getCacheWarmUpSnapshotFile();
+        return Strings.isNullOrEmpty(snapshotFile) ? null : new File(snapshotFile);
+    }
+
+    private abstract class WarmUpTask implements Runnable {
+
+        private final String description;
+
+        private WarmUpTask(final String description) {
+            this.description = description;
+        }
+
+        abstract void doWarmUp() throws Exception;
+
+        @Override
+        public void run() {
+            try {
+                doWarmUp();
+                nbCompletedTasks.incrementAndGet();
+            } catch (final Exception e) {
+                nbFailedTasks.incrementAndGet();
+                logger.warn("Cache warm-up failed: {}", description, e);
+            }
+        }
+    }
+}
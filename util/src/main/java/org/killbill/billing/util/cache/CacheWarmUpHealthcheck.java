@@ -0,0 +1,45 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.cache;
+
+import java.util.Map;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+
+import org.killbill.billing.osgi.api.Healthcheck;
+import org.killbill.billing.tenant.api.Tenant;
+
+// Keep the node out of rotation until the caches are warm
+public class CacheWarmUpHealthcheck implements Healthcheck {
+
+    public static final String CACHE_WARM_UP_HEALTHCHECK_NAME = "killbill-cache-warm-up";
+
+    private final CacheWarmUp cacheWarmUp;
+
+    @Inject
+    public CacheWarmUpHealthcheck(final CacheWarmUp cacheWarmUp) {
+        this.cacheWarmUp = cacheWarmUp;
+    }
+
+    @Override
+    public HealthStatus getHealthStatus(@Nullable final Tenant tenant, @Nullable final Map properties) {
+        final Map<String, Object> progress = cacheWarmUp.getProgress();
+        return cacheWarmUp.isComplete() ? HealthStatus.healthy(progress) : HealthStatus.unHealthy(progress);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.cache;
+
+import java.io.IOException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+
+import org.killbill.billing.platform.api.LifecycleHandlerType;
+import org.killbill.billing.platform.api.LifecycleHandlerType.LifecycleLevel;
+import org.killbill.billing.util.config.definition.CacheConfig;
+import org.killbill.commons.concurrent.Executors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class DefaultCacheWarmUpService implements CacheWarmUpService {
+
+    public static final String CACHE_WARM_UP_SERVICE_NAME = "cache-warm-up-service";
+
+    private static final int TERMINATION_TIMEOUT_SEC = 5;
+
+    private static final Logger logger = LoggerFactory.getLogger(DefaultCacheWarmUpService.class);
+
+    private final CacheWarmUp cacheWarmUp;
+    private final CacheConfig cacheConfig;
+
+    private ScheduledExecutorService cacheWarmUpExecutor;
+
+    @Inject
+    public DefaultCacheWarmUpService(final CacheWarmUp cacheWarmUp, final CacheConfig cacheConfig) {
+        this.cacheWarmUp = cacheWarmUp;
+        this.cacheConfig = cacheConfig;
+    }
+
+    @Override
+    public String getName() {
+        return CACHE_WARM_UP_SERVICE_NAME;
+    }
+
+    @Override
+    public int getRegistrationOrdering() {
+        // Same level as the other util services
+        return KILLBILL_SERVICES.BROADCAST_SERVICE.getRegistrationOrdering();
+    }
+
+    // Default catalogs, overdue and payment state machine configs have been loaded at this point
+    @LifecycleHandlerType(LifecycleLevel.START_SERVICE)
+    public void start() {
+        if (!cacheWarmUp.isEnabled()) {
+            return;
+        }
+
+        cacheWarmUpExecutor = Executors.newScheduledThreadPool(Math.max(1, cacheConfig.getCacheWarmUpNbThreads()), "CacheWarmUp");
+        // Don't delay the startup sequence, progress is reported by the healthcheck
+        cacheWarmUpExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    cacheWarmUp.warmUp(cacheWarmUpExecutor);
+                } catch (final RuntimeException e) {
+                    logger.warn("Failed to start the cache warm-up", e);
+                }
+            }
+        });
+    }
+
+    @LifecycleHandlerType(LifecycleLevel.STOP_SERVICE)
+    public void stop() {
+        if (cacheWarmUpExecutor != null) {
+            try {
+                cacheWarmUpExecutor.shutdownNow();
+                final boolean success = cacheWarmUpExecutor.awaitTermination(TERMINATION_TIMEOUT_SEC, TimeUnit.SECONDS);
+                if (!success) {
+                    logger.warn("CacheWarmUp failed to complete termination within {} sec", TERMINATION_TIMEOUT_SEC);
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.warn("CacheWarmUp stop sequence got interrupted");
+            }
+        }
+
+        try {
+            cacheWarmUp.writeSnapshot();
+        } catch (final IOException e) {
+            logger.warn("Unable to write the cache warm-up snapshot", e);
+        } catch (final RuntimeException e) {
+            logger.warn("Unable to write the cache warm-up snapshot", e);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.nio.ByteBuffer;
+
+import org.ehcache.spi.serialization.Serializer;
+import org.ehcache.spi.serialization.SerializerException;
+
+/**
+ * Ehcache serializer for the values stored outside of the heap (off-heap and disk tiers).
+ * <p>
+ * Cached values (ImmutableAccountData, catalogs, plans, audit logs, tenants, ...) are Externalizable
+ * (see {@link Cachable.CacheType}), so this simply goes through Java serialization,
+ * resolving classes against the Kill Bill class loader.
+ *
+ * @param <T> value type, as declared by the cache
+ */
+public class KillBillCacheValueSerializer<T> implements Serializer<T> {
+
+    private final ClassLoader classLoader;
+
+    public KillBillCacheValueSerializer(final ClassLoader classLoader) {
+        this.classLoader = classLoader;
+    }
+
+    @Override
+    public ByteBuffer serialize(final T object) throws SerializerException {
+        final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        try {
+            final ObjectOutputStream oout = new ObjectOutputStream(bout);
+            try {
+                oout.writeObject(object);
+            } finally {
+                oout.close();
+            }
+        } catch (final IOException e) {
+            throw new SerializerException(e);
+        }
+        return ByteBuffer.wrap(bout.toByteArray());
+    }
+
+    @Override
+    public T read(final ByteBuffer binary) throws ClassNotFoundException, SerializerException {
+        try {
+            final ObjectInputStream oin = new ClassLoaderAwareObjectInputStream(new ByteBufferInputStream(binary), classLoader);
+            try {
+                @SuppressWarnings("unchecked")
+                final T object = (T) oin.readObject();
+                return object;
+            } finally {
+                oin.close();
+            }
+        } catch (final IOException e) {
+            throw new SerializerException(e);
+        }
+    }
+
+    @Override
+    public boolean equals(final T object, final ByteBuffer binary) throws ClassNotFoundException, SerializerException {
+        return object.equals(read(binary));
+    }
+
+    private static final class ClassLoaderAwareObjectInputStream extends ObjectInputStream {
+
+        private final ClassLoader classLoader;
+
+        private ClassLoaderAwareObjectInputStream(final InputStream in, final ClassLoader classLoader) throws IOException {
+            super(in);
+            this.classLoader = classLoader;
+        }
+
+        @Override
+        protected Class<?> resolveClass(final ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            try {
+                return Class.forName(desc.getName(), false, classLoader);
+            } catch (final ClassNotFoundException e) {
+                return super.resolveClass(desc);
+            }
+        }
+    }
+
+    // Doesn't consume the original buffer (Ehcache may read it again)
+    private static final class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(final ByteBuffer binary) {
+            this.buffer = binary.duplicate();
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(final byte[] bytes, final int offset, final int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            final int nbBytes = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, nbBytes);
+            return nbBytes;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
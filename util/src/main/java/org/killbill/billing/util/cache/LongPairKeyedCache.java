@@ -0,0 +1,186 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.cache;
+
+/**
+ * Bounded in-process cache keyed by a pair of longs (e.g. UUID most/least significant bits, or table ordinal/record id).
+ * <p>
+ * Keys are stored in primitive arrays (open addressing, set-associative buckets) so lookups don't allocate.
+ * When a bucket is full, one of its entries is evicted (round-robin). The cache is split in segments, each guarded by its own lock.
+ *
+ * @param <V> value type
+ */
+public class LongPairKeyedCache<V> {
+
+    private static final int NB_SEGMENTS = 16;
+    // Number of slots per bucket
+    private static final int WAYS = 8;
+
+    private final Segment[] segments;
+
+    public LongPairKeyedCache(final int maxEntries) {
+        final int segmentCapacity = Math.max(WAYS, nextPowerOfTwo((maxEntries + NB_SEGMENTS - 1) / NB_SEGMENTS));
+        this.segments = new Segment[NB_SEGMENTS];
+        for (int i = 0; i < NB_SEGMENTS; i++) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+    }
+
+    public V get(final long key1, final long key2) {
+        final long hash = hash(key1, key2);
+        return cast(segmentFor(hash).get(key1, key2, hash));
+    }
+
+    public void put(final long key1, final long key2, final V value) {
+        if (value == null) {
+            return;
+        }
+        final long hash = hash(key1, key2);
+        segmentFor(hash).put(key1, key2, hash, value);
+    }
+
+    public void remove(final long key1, final long key2) {
+        final long hash = hash(key1, key2);
+        segmentFor(hash).remove(key1, key2, hash);
+    }
+
+    public void clear() {
+        for (final Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (final Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public int capacity() {
+        return segments.length * segments[0].values.length;
+    }
+
+    private Segment segmentFor(final long hash) {
+        // High bits for the segment, low bits for the bucket
+        return segments[(int) (hash >>> 60) & (NB_SEGMENTS - 1)];
+    }
+
+    private static long hash(final long key1, final long key2) {
+        // Murmur3 finalizer
+        long h = key1 * 0x9E3779B97F4A7C15L ^ key2;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static int nextPowerOfTwo(final int value) {
+        return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V cast(final Object value) {
+        return (V) value;
+    }
+
+    private static final class Segment {
+
+        private final long[] keys1;
+        private final long[] keys2;
+        // A null value marks an empty slot
+        private final Object[] values;
+        private final int bucketMask;
+
+        private int size;
+        private int nextVictim;
+
+        private Segment(final int capacity) {
+            this.keys1 = new long[capacity];
+            this.keys2 = new long[capacity];
+            this.values = new Object[capacity];
+            this.bucketMask = capacity / WAYS - 1;
+        }
+
+        private synchronized Object get(final long key1, final long key2, final long hash) {
+            final int start = bucketStart(hash);
+            for (int i = start; i < start + WAYS; i++) {
+                if (values[i] != null && keys1[i] == key1 && keys2[i] == key2) {
+                    return values[i];
+                }
+            }
+            return null;
+        }
+
+        private synchronized void put(final long key1, final long key2, final long hash, final Object value) {
+            final int start = bucketStart(hash);
+            int emptySlot = -1;
+            for (int i = start; i < start + WAYS; i++) {
+                if (values[i] == null) {
+                    if (emptySlot == -1) {
+                        emptySlot = i;
+                    }
+                } else if (keys1[i] == key1 && keys2[i] == key2) {
+                    values[i] = value;
+                    return;
+                }
+            }
+
+            final int slot;
+            if (emptySlot != -1) {
+                slot = emptySlot;
+                size++;
+            } else {
+                // Bucket full: evict
+                slot = start + (nextVictim++ & (WAYS - 1));
+            }
+            keys1[slot] = key1;
+            keys2[slot] = key2;
+            values[slot] = value;
+        }
+
+        private synchronized void remove(final long key1, final long key2, final long hash) {
+            final int start = bucketStart(hash);
+            for (int i = start; i < start + WAYS; i++) {
+                if (values[i] != null && keys1[i] == key1 && keys2[i] == key2) {
+                    values[i] = null;
+                    size--;
+                    return;
+                }
+            }
+        }
+
+        private synchronized void clear() {
+            for (int i = 0; i < values.length; i++) {
+                values[i] = null;
+            }
+            size = 0;
+        }
+
+        private synchronized int size() {
+            return size;
+        }
+
+        private int bucketStart(final long hash) {
+            return ((int) hash & bucketMask) * WAYS;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.cache;
+
+import java.util.List;
+import java.util.UUID;
+
+import org.killbill.billing.ObjectType;
+import org.killbill.billing.util.cache.Cachable.CacheType;
+import org.killbill.billing.util.dao.TableName;
+
+import com.google.common.base.Function;
+
+/**
+ * In-process tier in front of the record id caches (RECORD_ID, ACCOUNT_RECORD_ID, TENANT_RECORD_ID and OBJECT_ID).
+ * <p>
+ * Entries are keyed by the UUID bits (or the table ordinal and record id for OBJECT_ID) in a {@link LongPairKeyedCache}:
+ * the typed methods don't build the String key nor the {@link CacheLoaderArgument} unless the lookup misses.
+ * The mappings never change once the row exists, so both tiers don't need to be kept in sync beyond explicit removals.
+ *
+ * @param <V> value type (Long or UUID)
+ */
+public class PrimitiveKeyedCacheController<V> implements CacheController<String, V> {
+
+    private final CacheController<String, V> delegate;
+    private final LongPairKeyedCache<V> localCache;
+    private final boolean keyPrefixedWithTableName;
+
+    public PrimitiveKeyedCacheController(final CacheController<String, V> delegate, final int maxEntries) {
+        this.delegate = delegate;
+        this.localCache = new LongPairKeyedCache<V>(maxEntries);
+        this.keyPrefixedWithTableName = delegate.getCacheType().isKeyPrefixedWithTableName();
+    }
+
+    // RECORD_ID, ACCOUNT_RECORD_ID and TENANT_RECORD_ID lookups
+    public V get(final UUID objectId, final ObjectType objectType) {
+        final V value = localCache.get(objectId.getMostSignificantBits(), objectId.getLeastSignificantBits());
+        if (value != null) {
+            return value;
+        }
+
+        final V computedValue = delegate.get(objectId.toString(), new CacheLoaderArgument(objectType));
+        localCache.put(objectId.getMostSignificantBits(), objectId.getLeastSignificantBits(), computedValue);
+        return computedValue;
+    }
+
+    // OBJECT_ID lookups
+    public V get(final TableName tableName, final long recordId, final ObjectType objectType) {
+        final V value = localCache.get(tableName.ordinal(), recordId);
+        if (value != null) {
+            return value;
+        }
+
+        final V computedValue = delegate.get(tableName + CacheControllerDispatcher.CACHE_KEY_SEPARATOR + recordId, new CacheLoaderArgument(objectType));
+        localCache.put(tableName.ordinal(), recordId, computedValue);
+        return computedValue;
+    }
+
+    public void putIfAbsent(final UUID objectId, final V value) {
+        delegate.putIfAbsent(objectId.toString(), value);
+        localCache.put(objectId.getMostSignificantBits(), objectId.getLeastSignificantBits(), value);
+    }
+
+    public void putIfAbsent(final TableName tableName, final long recordId, final V value) {
+        delegate.putIfAbsent(tableName + CacheControllerDispatcher.CACHE_KEY_SEPARATOR + recordId, value);
+        localCache.put(tableName.ordinal(), recordId, value);
+    }
+
+    @Override
+    public List<String> getKeys() {
+        return delegate.getKeys();
+    }
+
+    @Override
+    public boolean isKeyInCache(final String key) {
+        final long[] localKey = parseKey(key);
+        return (localKey != null && localCache.get(localKey[0], localKey[1]) != null) || delegate.isKeyInCache(key);
+    }
+
+    @Override
+    public V get(final String key, final CacheLoaderArgument cacheLoaderArgument) {
+        if (key == null) {
+            return null;
+        }
+
+        final long[] localKey = parseKey(key);
+        if (localKey == null) {
+            return delegate.get(key, cacheLoaderArgument);
+        }
+
+        final V value = localCache.get(localKey[0], localKey[1]);
+        if (value != null) {
+            return value;
+        }
+
+        final V computedValue = delegate.get(key, cacheLoaderArgument);
+        localCache.put(localKey[0], localKey[1], computedValue);
+        return computedValue;
+    }
+
+    @Override
+    public boolean remove(final String key) {
+        final long[] localKey = parseKey(key);
+        if (localKey != null) {
+            localCache.remove(localKey[0], localKey[1]);
+        }
+        return delegate.remove(key);
+    }
+
+    @Override
+    public void remove(final Function<String, Boolean> keyMatcher) {
+        // Local keys can't be matched against the String representation
+        localCache.clear();
+        delegate.remove(keyMatcher);
+    }
+
+    @Override
+    public void putIfAbsent(final String key, final V value) {
+        delegate.putIfAbsent(key, value);
+        final long[] localKey = parseKey(key);
+        if (localKey != null) {
+            localCache.put(localKey[0], localKey[1], value);
+        }
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public void removeAll() {
+        localCache.clear();
+        delegate.removeAll();
+    }
+
+    @Override
+    public CacheType getCacheType() {
+        return delegate.getCacheType();
+    }
+
+    public int getLocalSize() {
+        return localCache.size();
+    }
+
+    // Only used by the String based API (e.g. @Cachable lookups): null if the key doesn't have the expected format
+    private long[] parseKey(final String key) {
+        try {
+            if (keyPrefixedWithTableName) {
+                final int separatorIndex = key.indexOf(CacheControllerDispatcher.CACHE_KEY_SEPARATOR);
+                if (separatorIndex == -1) {
+                    return null;
+                }
+                final TableName tableName = TableName.valueOf(key.substring(0, separatorIndex));
+                final long recordId = Long.parseLong(key.substring(separatorIndex + CacheControllerDispatcher.CACHE_KEY_SEPARATOR.length()));
+                return new long[]{tableName.ordinal(), recordId};
+            } else {
+                final UUID objectId = UUID.fromString(key);
+                return new long[]{objectId.getMostSignificantBits(), objectId.getLeastSignificantBits()};
+            }
+        } catch (final IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
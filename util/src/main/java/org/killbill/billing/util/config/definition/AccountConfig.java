@@ -0,0 +1,36 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.config.definition;
+
+import org.skife.config.Config;
+import org.skife.config.Default;
+import org.skife.config.Description;
+import org.skife.config.TimeSpan;
+
+public interface AccountConfig extends KillbillConfig {
+
+    @Config("org.killbill.account.search.legacy")
+    @Default("false")
+    @Description("Whether account searches should scan the accounts table (substring matches) instead of using the search index")
+    boolean isLegacySearchEnabled();
+
+    @Config("org.killbill.account.search.backfill.retry.delay")
+    @Default("1m")
+    @Description("Delay before retrying a failed indexing of the accounts missing from the search index (e.g. created before the index existed)")
+    TimeSpan getSearchIndexBackfillRetryDelay();
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.config.definition;
+
+import java.util.List;
+
+import org.skife.config.Config;
+import org.skife.config.Default;
+import org.skife.config.Description;
+import org.skife.config.TimeSpan;
+
+public interface AuditConfig extends KillbillConfig {
+
+    @Config("org.killbill.audit.journal.tenants")
+    @Default("")
+    @Description("Ids of the tenants for which audit logs are written to the local journal and flushed asynchronously to the audit_log table " +
+                 "(until flushed, these audit logs are only visible from the node which wrote them)")
+    List<String> getAuditLogJournalTenants();
+
+    @Config("org.killbill.audit.journal.dir")
+    @Default("")
+    @Description("Directory for the audit log journal segments: required to enable the journal, it must be durable and specific to the node")
+    String getAuditLogJournalDirectory();
+
+    @Config("org.killbill.audit.journal.flush.rate")
+    @Default("1s")
+    @Description("Rate at which the audit log journal is flushed to the audit_log table")
+    TimeSpan getAuditLogJournalFlushRate();
+
+    @Config("org.killbill.audit.journal.flush.batchSize")
+    @Default("1000")
+    @Description("Number of audit logs inserted per batch when flushing the audit log journal")
+    int getAuditLogJournalFlushBatchSize();
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.config.definition;
+
+import org.skife.config.Config;
+import org.skife.config.Default;
+import org.skife.config.Description;
+
+public interface BeatrixConfig extends KillbillConfig {
+
+    @Config("org.killbill.beatrix.extBus.batching.enabled")
+    @Default("false")
+    @Description("Whether the external bus events of the same originating call, still in the internal bus queue, are posted within a single transaction")
+    boolean isExtBusBatchingEnabled();
+
+    @Config("org.killbill.beatrix.extBus.batching.maxSize")
+    @Default("100")
+    @Description("Maximum number of external bus events posted per batch")
+    int getExtBusBatchingMaxSize();
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.config.definition;
+
+import org.skife.config.Config;
+import org.skife.config.Default;
+import org.skife.config.Description;
+
+public interface CacheConfig extends KillbillConfig {
+
+    @Config("org.killbill.cache.recordIds.local.maxEntries")
+    @Default("100000")
+    @Description("Max number of entries in the in-process tier of each record id cache (record-id, account-record-id, tenant-record-id and object-id), 0 to disable it")
+    public int getRecordIdsLocalCacheMaxEntries();
+
+    @Config("org.killbill.cache.warmup.enabled")
+    @Default("false")
+    @Description("Whether to preload the caches on startup (tenant catalogs, overdue and payment state machine configs, record ids of the snapshot accounts)")
+    public boolean isCacheWarmUpEnabled();
+
+    @Config("org.killbill.cache.warmup.nbThreads")
+    @Default("4")
+    @Description("Number of threads used to preload the caches")
+    public int getCacheWarmUpNbThreads();
+
+    @Config("org.killbill.cache.warmup.snapshot.file")
+    @Default("")
+    @Description("File where the recently active accounts are written on shutdown, and read on startup (empty to disable)")
+    public String getCacheWarmUpSnapshotFile();
+
+    @Config("org.killbill.cache.warmup.snapshot.maxAccounts")
+    @Default("10000")
+    @Description("Max number of accounts in the cache warm-up snapshot")
+    public int getCacheWarmUpSnapshotMaxAccounts();
+}
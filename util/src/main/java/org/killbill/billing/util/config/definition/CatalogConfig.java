@@ -27,4 +27,14 @@ public interface CatalogConfig extends KillbillConfig {
     @Default("SpyCarBasic.xml")
     @Description("Default Catalog location, either in the classpath or in the filesystem. For multi-tenancy, one should use APIs to load per-tenant catalog")
     String getCatalogURI();
+
+    @Config("org.killbill.catalog.snapshot.enabled")
+    @Default("false")
+    @Description("Whether to store a binary snapshot of the per-tenant catalog at upload time and use it (instead of parsing the XML) when loading the catalog")
+    boolean isCatalogSnapshotEnabled();
+
+    @Config("org.killbill.catalog.snapshot.secret")
+    @Default("")
+    @Description("Server side secret used to sign (HMAC-SHA256) the catalog snapshots, snapshots are neither written nor read when not set")
+    String getCatalogSnapshotSecret();
 }
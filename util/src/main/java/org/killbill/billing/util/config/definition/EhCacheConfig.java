@@ -28,4 +28,24 @@ public interface EhCacheConfig extends KillbillConfig {
     @Description("Path to Ehcache XML configuration")
     public String getCacheConfigLocation();
 
+    @Config("org.killbill.cache.offheap.sizeMB")
+    @Default("0")
+    @Description("Size (in MB) of the off-heap tier of each Kill Bill cache, 0 to keep the caches heap-only")
+    public int getOffHeapSizeMB();
+
+    @Config("org.killbill.cache.disk.sizeMB")
+    @Default("0")
+    @Description("Size (in MB) of the disk tier of each Kill Bill cache (must be larger than the off-heap tier), 0 to disable it")
+    public int getDiskSizeMB();
+
+    @Config("org.killbill.cache.disk.location")
+    @Default("")
+    @Description("Directory for the disk tier, which must not be shared with other nodes (defaults to a new directory in java.io.tmpdir for each startup). " +
+                 "The disk tier doesn't survive restarts: the caches are re-created empty at startup")
+    public String getDiskLocation();
+
+    @Config("org.killbill.cache.tiered.heap.entries")
+    @Default("10000")
+    @Description("Number of entries kept on heap for each Kill Bill cache when an off-heap or disk tier is configured")
+    public int getTieredHeapEntries();
 }
@@ -142,4 +142,14 @@ public interface InvoiceConfig extends KillbillConfig {
     @Default("false")
     @Description("Whether to park accounts when usage data is recorded but not defined in the catalog")
     boolean shouldParkAccountsWithUnknownUsage(@Param("dummy") final InternalTenantContext tenantContext);
+
+    @Config("org.killbill.invoice.incrementalGeneration")
+    @Default("false")
+    @Description("Whether subscription transitions only reload the invoice items and billing events of the affected subscriptions (falls back to a full run when account level state changed)")
+    boolean isIncrementalInvoiceGenerationEnabled();
+
+    @Config("org.killbill.invoice.incrementalGeneration")
+    @Default("false")
+    @Description("Whether subscription transitions only reload the invoice items and billing events of the affected subscriptions (falls back to a full run when account level state changed)")
+    boolean isIncrementalInvoiceGenerationEnabled(@Param("dummy") final InternalTenantContext tenantContext);
 }
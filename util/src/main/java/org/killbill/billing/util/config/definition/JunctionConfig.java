@@ -0,0 +1,35 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.config.definition;
+
+import org.skife.config.Config;
+import org.skife.config.Default;
+import org.skife.config.Description;
+
+public interface JunctionConfig extends KillbillConfig {
+
+    @Config("org.killbill.junction.billingEvents.parallelism")
+    @Default("0")
+    @Description("Number of threads computing the billing events of the bundles of an account in parallel (0 for the number of available processors, 1 to disable)")
+    int getBillingEventsParallelism();
+
+    @Config("org.killbill.junction.billingEvents.parallelism.minBundles")
+    @Default("8")
+    @Description("Minimum number of bundles for the billing events of an account to be computed in parallel")
+    int getBillingEventsParallelismMinBundles();
+}
@@ -28,6 +28,12 @@ import org.skife.config.TimeSpan;
 
 public interface PaymentConfig extends KillbillConfig {
 
+    public enum PluginExecutorMode {
+        POOL,
+        VIRTUAL_THREADS,
+        BOUNDED
+    }
+
     @Config("org.killbill.payment.retry.days")
     @Default("8,8,8")
     @Description("Specify the number of payment retries along with the interval in days between payment retries when payment failures occur")
@@ -109,6 +115,21 @@ public interface PaymentConfig extends KillbillConfig {
     @Description("Delay before which unresolved attempt should be retried")
     TimeSpan getIncompleteAttemptsTimeSpanDelay();
 
+    @Config("org.killbill.payment.janitor.threads.nb")
+    @Default("1")
+    @Description("Number of Janitor workers completing incomplete payment attempts in parallel on this node (each one processes its own shard)")
+    int getJanitorThreadNb();
+
+    @Config("org.killbill.payment.janitor.nodes.nb")
+    @Default("1")
+    @Description("Number of nodes sharing the incomplete payment attempts, each one processing its own shards (see org.killbill.payment.janitor.node.index)")
+    int getJanitorNodeNb();
+
+    @Config("org.killbill.payment.janitor.node.index")
+    @Default("0")
+    @Description("Index of this node (between 0 and org.killbill.payment.janitor.nodes.nb - 1) for the incomplete payment attempts sharding")
+    int getJanitorNodeIndex();
+
     @Config("org.killbill.payment.provider.default")
     // See ExternalPaymentProviderPlugin.PLUGIN_NAME
     @Default("__external_payment__")
@@ -125,6 +146,36 @@ public interface PaymentConfig extends KillbillConfig {
     @Description("Number of threads for plugin executor dispatcher")
     int getPaymentPluginThreadNb();
 
+    @Config("org.killbill.payment.plugin.executor.mode")
+    @Default("POOL")
+    @Description("How plugin calls are dispatched: POOL (thread pool, unbounded queue), VIRTUAL_THREADS (one virtual thread per call, JDK 21+) or BOUNDED (thread pool, bounded queue, calls rejected when full)")
+    PluginExecutorMode getPaymentPluginExecutorMode();
+
+    @Config("org.killbill.payment.plugin.executor.queue.size")
+    @Default("1000")
+    @Description("Maximum number of plugin calls waiting for a thread in BOUNDED mode")
+    int getPaymentPluginQueueSize();
+
+    @Config("org.killbill.payment.plugin.maxConcurrentCalls")
+    @Default("0")
+    @Description("Maximum number of concurrent calls per plugin, additional calls fail fast (0 to disable)")
+    int getPaymentPluginMaxConcurrentCalls();
+
+    @Config("org.killbill.payment.plugin.circuitBreaker.failureRateThreshold")
+    @Default("0")
+    @Description("Failure rate (percentage) over the sliding window above which calls to a plugin fail fast (0 to disable)")
+    int getPaymentPluginCircuitBreakerFailureRateThreshold();
+
+    @Config("org.killbill.payment.plugin.circuitBreaker.slidingWindowSize")
+    @Default("20")
+    @Description("Number of most recent calls per plugin used to compute the failure rate")
+    int getPaymentPluginCircuitBreakerSlidingWindowSize();
+
+    @Config("org.killbill.payment.plugin.circuitBreaker.waitDurationInOpenState")
+    @Default("30s")
+    @Description("How long calls to a plugin fail fast once its circuit breaker opens, before a probe call is let through")
+    TimeSpan getPaymentPluginCircuitBreakerWaitDurationInOpenState();
+
     @Config("org.killbill.payment.globalLock.retries")
     @Default("50")
     @Description("Maximum number of times the system will retry to grab global lock (with a 100ms wait each time)")
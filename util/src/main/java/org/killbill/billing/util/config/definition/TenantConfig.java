@@ -29,4 +29,9 @@ public interface TenantConfig extends KillbillConfig {
     @Description("Rate at which tenant broadcast task is scheduled")
     public TimeSpan getTenantBroadcastServiceRunningRate();
 
+    @Config("org.killbill.tenant.broadcast.transport")
+    @Default("POLLING")
+    @Description("How nodes are notified of tenant broadcasts: POLLING (at org.killbill.tenant.broadcast.rate) or POSTGRESQL (LISTEN/NOTIFY, with polling as a fallback, permanently holding one connection of the main pool per node)")
+    public String getTenantBroadcastTransport();
+
 }
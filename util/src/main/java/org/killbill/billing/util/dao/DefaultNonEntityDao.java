@@ -28,6 +28,7 @@ import org.killbill.billing.ObjectType;
 import org.killbill.billing.util.cache.CacheController;
 import org.killbill.billing.util.cache.CacheControllerDispatcher;
 import org.killbill.billing.util.cache.CacheLoaderArgument;
+import org.killbill.billing.util.cache.PrimitiveKeyedCacheController;
 import org.killbill.billing.util.callcontext.InternalCallContextFactory;
 import org.killbill.billing.util.entity.dao.DBRouter;
 import org.killbill.commons.profiling.Profiling;
@@ -67,6 +68,10 @@ public class DefaultNonEntityDao implements NonEntityDao {
         final TableName tableName = TableName.fromObjectType(objectType);
         Preconditions.checkNotNull(tableName, "%s is not a valid ObjectType", objectType);
 
+        if (cache instanceof PrimitiveKeyedCacheController) {
+            return ((PrimitiveKeyedCacheController<Long>) cache).get(objectId, objectType);
+        }
+
         return withCachingObjectId.withCaching(new OperationRetrieval<Long>() {
             @Override
             public Long doRetrieve(final ObjectType objectType) {
@@ -86,6 +91,10 @@ public class DefaultNonEntityDao implements NonEntityDao {
         final TableName tableName = TableName.fromObjectType(objectType);
         Preconditions.checkNotNull(tableName, "%s is not a valid ObjectType", objectType);
 
+        if (objectId != null && cache instanceof PrimitiveKeyedCacheController) {
+            return ((PrimitiveKeyedCacheController<Long>) cache).get(objectId, objectType);
+        }
+
         final String objectIdOrNull = objectId != null ? objectId.toString() : null;
         return withCachingObjectId.withCaching(new OperationRetrieval<Long>() {
             @Override
@@ -118,6 +127,10 @@ public class DefaultNonEntityDao implements NonEntityDao {
         final TableName tableName = TableName.fromObjectType(objectType);
         Preconditions.checkNotNull(tableName, "%s is not a valid ObjectType", objectType);
 
+        if (objectId != null && cache instanceof PrimitiveKeyedCacheController) {
+            return ((PrimitiveKeyedCacheController<Long>) cache).get(objectId, objectType);
+        }
+
         final String objectIdOrNull = objectId != null ? objectId.toString() : null;
         return withCachingObjectId.withCaching(new OperationRetrieval<Long>() {
             @Override
@@ -151,6 +164,10 @@ public class DefaultNonEntityDao implements NonEntityDao {
         final TableName tableName = TableName.fromObjectType(objectType);
         Preconditions.checkNotNull(tableName, "%s is not a valid ObjectType", objectType);
 
+        if (recordId != null && cache instanceof PrimitiveKeyedCacheController) {
+            return ((PrimitiveKeyedCacheController<UUID>) cache).get(tableName, recordId, objectType);
+        }
+
         return withCachingRecordId.withCaching(new OperationRetrieval<UUID>() {
             @Override
             public UUID doRetrieve(final ObjectType objectType) {
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.dao;
+
+import java.sql.SQLException;
+
+import com.google.common.base.Throwables;
+
+public class SQLExceptionUtils {
+
+    // SQLState of unique constraint violations in PostgreSQL and H2
+    private static final String UNIQUE_VIOLATION_SQL_STATE = "23505";
+    // MySQL reports all integrity constraint violations with SQLState 23000: duplicate keys are told apart by their error code
+    private static final String MYSQL_INTEGRITY_CONSTRAINT_VIOLATION_SQL_STATE = "23000";
+    private static final int MYSQL_ER_DUP_ENTRY = 1062;
+    private static final int MYSQL_ER_DUP_ENTRY_WITH_KEY_NAME = 1586;
+
+    private SQLExceptionUtils() {
+    }
+
+    // Whether the failure (or one of its causes) is a duplicate key, as opposed to other constraint violations (not null, foreign key, etc.)
+    public static boolean isUniqueConstraintViolation(final Throwable throwable) {
+        for (final Throwable cause : Throwables.getCausalChain(throwable)) {
+            if (!(cause instanceof SQLException)) {
+                continue;
+            }
+
+            final SQLException sqlException = (SQLException) cause;
+            if (UNIQUE_VIOLATION_SQL_STATE.equals(sqlException.getSQLState())) {
+                return true;
+            }
+            if (MYSQL_INTEGRITY_CONSTRAINT_VIOLATION_SQL_STATE.equals(sqlException.getSQLState()) &&
+                (sqlException.getErrorCode() == MYSQL_ER_DUP_ENTRY || sqlException.getErrorCode() == MYSQL_ER_DUP_ENTRY_WITH_KEY_NAME)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -35,6 +35,8 @@ public class DefaultPagination<T> implements Pagination<T>, Closeable {
     private final Long limit;
     private final Long totalNbRecords;
     private final Long maxNbRecords;
+    // Opaque token to retrieve the next page with keyset pagination (null otherwise, or when there are no more results)
+    private final String nextPageToken;
     private final Iterator<T> delegateIterator;
 
     // Builders when the streaming API can't be used (should only be used for tests)
@@ -59,7 +61,12 @@ public class DefaultPagination<T> implements Pagination<T>, Closeable {
 
     // Constructor for DAO -> API bridge
     public DefaultPagination(final Pagination original, final Long limit, final Iterator<T> delegate) {
-        this(original.getCurrentOffset(), limit, original.getTotalNbRecords(), original.getMaxNbRecords(), delegate);
+        this(original.getCurrentOffset(),
+             limit,
+             original.getTotalNbRecords(),
+             original.getMaxNbRecords(),
+             original instanceof DefaultPagination ? ((DefaultPagination) original).getNextPageToken() : null,
+             delegate);
     }
 
     // Constructor for DAO getAll calls
@@ -70,11 +77,20 @@ public class DefaultPagination<T> implements Pagination<T>, Closeable {
     public DefaultPagination(final Long currentOffset, final Long limit,
                              @Nullable final Long totalNbRecords, @Nullable final Long maxNbRecords,
                              final Iterator<T> delegateIterator) {
+        this(currentOffset, limit, totalNbRecords, maxNbRecords, null, delegateIterator);
+    }
+
+    // Note: currentOffset is null for keyset pagination (offsets aren't known)
+    public DefaultPagination(@Nullable final Long currentOffset, final Long limit,
+                             @Nullable final Long totalNbRecords, @Nullable final Long maxNbRecords,
+                             @Nullable final String nextPageToken,
+                             final Iterator<T> delegateIterator) {
         this.currentOffset = currentOffset;
         // See DefaultPaginationSqlDaoHelper
         this.limit = Math.abs(limit);
         this.totalNbRecords = totalNbRecords;
         this.maxNbRecords = maxNbRecords;
+        this.nextPageToken = nextPageToken;
         this.delegateIterator = delegateIterator;
     }
 
@@ -102,6 +118,11 @@ public class DefaultPagination<T> implements Pagination<T>, Closeable {
 
     @Override
     public Long getNextOffset() {
+        if (currentOffset == null) {
+            // Keyset pagination: see getNextPageToken
+            return null;
+        }
+
         final long candidate = currentOffset + limit;
         if (totalNbRecords != null && candidate >= totalNbRecords) {
             // No more results
@@ -115,6 +136,10 @@ public class DefaultPagination<T> implements Pagination<T>, Closeable {
         }
     }
 
+    public String getNextPageToken() {
+        return nextPageToken;
+    }
+
     @Override
     public Long getMaxNbRecords() {
         return maxNbRecords;
@@ -130,6 +155,7 @@ public class DefaultPagination<T> implements Pagination<T>, Closeable {
         final StringBuilder sb = new StringBuilder("DefaultPagination{");
         sb.append("currentOffset=").append(currentOffset);
         sb.append(", nextOffset=").append(getNextOffset());
+        sb.append(", nextPageToken='").append(nextPageToken).append('\'');
         sb.append(", totalNbRecords=").append(totalNbRecords);
         sb.append(", maxNbRecords=").append(maxNbRecords);
         sb.append('}');
@@ -157,6 +183,9 @@ public class DefaultPagination<T> implements Pagination<T>, Closeable {
         if (currentOffset != null ? !currentOffset.equals(that.currentOffset) : that.currentOffset != null) {
             return false;
         }
+        if (nextPageToken != null ? !nextPageToken.equals(that.nextPageToken) : that.nextPageToken != null) {
+            return false;
+        }
         if (delegateIterator != null ? !ImmutableList.<T>copyOf(delegateIterator).equals(ImmutableList.<T>copyOf(that.delegateIterator)) : that.delegateIterator != null) {
             return false;
         }
@@ -169,6 +198,7 @@ public class DefaultPagination<T> implements Pagination<T>, Closeable {
         int result = currentOffset != null ? currentOffset.hashCode() : 0;
         result = 31 * result + (totalNbRecords != null ? totalNbRecords.hashCode() : 0);
         result = 31 * result + (maxNbRecords != null ? maxNbRecords.hashCode() : 0);
+        result = 31 * result + (nextPageToken != null ? nextPageToken.hashCode() : 0);
         result = 31 * result + (delegateIterator != null ? delegateIterator.hashCode() : 0);
         return result;
     }
@@ -20,7 +20,9 @@ package org.killbill.billing.util.entity.dao;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Iterator;
+import java.util.List;
 
 import javax.annotation.Nullable;
 
@@ -31,6 +33,9 @@ import org.killbill.billing.util.entity.Pagination;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Preconditions;
+import com.google.common.io.BaseEncoding;
+
 public class DefaultPaginationSqlDaoHelper {
 
     private static final Logger logger = LoggerFactory.getLogger(DefaultPaginationSqlDaoHelper.class);
@@ -109,6 +114,55 @@ public class DefaultPaginationSqlDaoHelper {
         return new DefaultPagination<M>(offset, limit, totalNbRecords, maxNbRecords, results);
     }
 
+    // Keyset pagination: the page is retrieved using the record_id of the last record of the previous page (encoded in the page token)
+    // instead of an offset, so deep pages are as fast as the first one. Pages are always in ascending record_id order.
+    // The count is optional, as it requires a scan of the tenant records.
+    public <E extends Entity, M extends EntityModelDao<E>, S extends EntitySqlDao<M, E>> Pagination<M> getPaginationWithPageToken(final Class<? extends EntitySqlDao<M, E>> sqlDaoClazz,
+                                                                                                                                  final PageTokenPaginationBuilder<M, E, S> pageTokenPaginationBuilder,
+                                                                                                                                  @Nullable final String pageToken,
+                                                                                                                                  final Long limit,
+                                                                                                                                  final boolean withCount,
+                                                                                                                                  final InternalTenantContext context) {
+        Preconditions.checkArgument(limit > 0, "limit should be positive with a page token");
+        final Long lastRecordId = pageToken == null || pageToken.isEmpty() ? 0L : decodePageToken(pageToken);
+
+        return transactionalSqlDao.execute(true, new EntitySqlDaoTransactionWrapper<Pagination<M>>() {
+            @Override
+            public Pagination<M> inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                final S sqlDao = (S) entitySqlDaoWrapperFactory.become(sqlDaoClazz);
+
+                final Long totalNbRecords = withCount ? pageTokenPaginationBuilder.getCount(sqlDao, context) : null;
+
+                // Retrieve one more record to know whether there is a next page
+                final List<M> records = pageTokenPaginationBuilder.build(sqlDao, lastRecordId, limit + 1, context);
+                final List<M> results;
+                final String nextPageToken;
+                if (records.size() > limit) {
+                    results = records.subList(0, limit.intValue());
+                    nextPageToken = encodePageToken(results.get(results.size() - 1).getRecordId());
+                } else {
+                    results = records;
+                    nextPageToken = null;
+                }
+
+                return new DefaultPagination<M>(null, limit, totalNbRecords, totalNbRecords, nextPageToken, results.iterator());
+            }
+        });
+    }
+
+    public static String encodePageToken(final Long lastRecordId) {
+        return BaseEncoding.base64Url().omitPadding().encode(String.valueOf(lastRecordId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static Long decodePageToken(final String pageToken) {
+        try {
+            return Long.valueOf(new String(BaseEncoding.base64Url().omitPadding().decode(pageToken), StandardCharsets.UTF_8));
+        } catch (final IllegalArgumentException e) {
+            // Also covers NumberFormatException
+            throw new IllegalArgumentException(String.format("Invalid page token '%s'", pageToken), e);
+        }
+    }
+
     public abstract static class PaginationIteratorBuilder<M extends EntityModelDao<E>, E extends Entity, S extends EntitySqlDao<M, E>> {
 
         // Determine the totalNbRecords:
@@ -119,6 +173,15 @@ public class DefaultPaginationSqlDaoHelper {
         public abstract Iterator<M> build(final S sqlDao, final Long offset, final Long limit, final Ordering ordering, final InternalTenantContext context);
     }
 
+    public abstract static class PageTokenPaginationBuilder<M extends EntityModelDao<E>, E extends Entity, S extends EntitySqlDao<M, E>> {
+
+        // Total number of records (only called when the count is requested)
+        public abstract Long getCount(final S sqlDao, final InternalTenantContext context);
+
+        // Records with a record_id strictly greater than lastRecordId, in ascending record_id order
+        public abstract List<M> build(final S sqlDao, final Long lastRecordId, final Long limit, final InternalTenantContext context);
+    }
+
     public enum Ordering {
         ASC,
         DESC
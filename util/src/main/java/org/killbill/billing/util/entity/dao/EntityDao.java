@@ -38,6 +38,9 @@ public interface EntityDao<M extends EntityModelDao<E>, E extends Entity, U exte
 
     public Pagination<M> get(Long offset, Long limit, InternalTenantContext context);
 
+    // Keyset pagination (see DefaultPaginationSqlDaoHelper#getPaginationWithPageToken): pageToken is null for the first page
+    public Pagination<M> getByPageToken(String pageToken, Long limit, boolean withCount, InternalTenantContext context);
+
     public Long getCount(InternalTenantContext context);
 
     public void test(InternalTenantContext context);
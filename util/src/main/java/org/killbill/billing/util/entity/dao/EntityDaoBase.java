@@ -25,6 +25,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
 
+import javax.annotation.Nullable;
+
 import org.killbill.billing.BillingExceptionBase;
 import org.killbill.billing.callcontext.InternalCallContext;
 import org.killbill.billing.callcontext.InternalTenantContext;
@@ -34,6 +36,7 @@ import org.killbill.billing.util.entity.DefaultPagination;
 import org.killbill.billing.util.entity.Entity;
 import org.killbill.billing.util.entity.Pagination;
 import org.killbill.billing.util.entity.dao.DefaultPaginationSqlDaoHelper.Ordering;
+import org.killbill.billing.util.entity.dao.DefaultPaginationSqlDaoHelper.PageTokenPaginationBuilder;
 import org.killbill.billing.util.entity.dao.DefaultPaginationSqlDaoHelper.PaginationIteratorBuilder;
 
 import com.google.common.collect.ImmutableList;
@@ -91,9 +94,20 @@ public abstract class EntityDaoBase<M extends EntityModelDao<E>, E extends Entit
                     if (checkEntityAlreadyExists(transactional, entity, context)) {
                         throw generateAlreadyExistsException(entity, context);
                     }
-                    final M refreshedEntity = createAndRefresh(transactional, entity, context);
-                    result.add(refreshedEntity);
-                    postBusEventFromTransaction(entity, refreshedEntity, ChangeType.INSERT, entitySqlDaoWrapperFactory, context);
+                }
+
+                final List<M> entitiesToCreate = ImmutableList.<M>copyOf(entities);
+                if (entitiesToCreate.size() > 1) {
+                    // PERF: single batch (entities, history and audit rows)
+                    result.addAll(createAndRefresh(transactional, entitiesToCreate, context));
+                } else {
+                    for (M entity : entitiesToCreate) {
+                        result.add(createAndRefresh(transactional, entity, context));
+                    }
+                }
+
+                for (int i = 0; i < entitiesToCreate.size(); i++) {
+                    postBusEventFromTransaction(entitiesToCreate.get(i), result.get(i), ChangeType.INSERT, entitySqlDaoWrapperFactory, context);
                 }
                 return result;
             }
@@ -117,6 +131,12 @@ public abstract class EntityDaoBase<M extends EntityModelDao<E>, E extends Entit
         return (F) transactional.create(entity, context);
     }
 
+    // The re-hydrated entities are returned in the same order
+    protected <F extends EntityModelDao> List<F> createAndRefresh(final EntitySqlDao transactional, final Iterable<F> entities, final InternalCallContext context) throws EntityPersistenceException {
+        // We have overridden the jDBI return type in EntitySqlDaoWrapperInvocationHandler
+        return (List<F>) transactional.createBatch(entities, context);
+    }
+
     protected boolean checkEntityAlreadyExists(final EntitySqlDao<M, E> transactional, final M entity, final InternalCallContext context) {
         return transactional.getRecordId(entity.getId().toString(), context) != null;
     }
@@ -203,6 +223,26 @@ public abstract class EntityDaoBase<M extends EntityModelDao<E>, E extends Entit
                                               context);
     }
 
+    @Override
+    public Pagination<M> getByPageToken(@Nullable final String pageToken, final Long limit, final boolean withCount, final InternalTenantContext context) {
+        return paginationHelper.getPaginationWithPageToken(realSqlDao,
+                                                           new PageTokenPaginationBuilder<M, E, EntitySqlDao<M, E>>() {
+                                                               @Override
+                                                               public Long getCount(final EntitySqlDao<M, E> sqlDao, final InternalTenantContext context) {
+                                                                   return sqlDao.getCount(context);
+                                                               }
+
+                                                               @Override
+                                                               public List<M> build(final EntitySqlDao<M, E> sqlDao, final Long lastRecordId, final Long limit, final InternalTenantContext context) {
+                                                                   return sqlDao.getAfterRecordId(lastRecordId, limit, context);
+                                                               }
+                                                           },
+                                                           pageToken,
+                                                           limit,
+                                                           withCount,
+                                                           context);
+    }
+
     @Override
     public Long getCount(final InternalTenantContext context) {
         return transactionalSqlDao.execute(true, new EntitySqlDaoTransactionWrapper<Long>() {
@@ -18,9 +18,11 @@
 
 package org.killbill.billing.util.entity.dao;
 
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 
+import org.killbill.billing.ObjectType;
 import org.killbill.billing.callcontext.InternalCallContext;
 import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.entity.EntityPersistenceException;
@@ -35,24 +37,44 @@ import org.killbill.commons.jdbi.statement.SmartFetchSize;
 import org.killbill.commons.jdbi.template.KillBillSqlDaoStringTemplate;
 import org.skife.jdbi.v2.sqlobject.Bind;
 import org.killbill.commons.jdbi.binder.SmartBindBean;
+import org.skife.jdbi.v2.sqlobject.GetGeneratedKeys;
+import org.skife.jdbi.v2.sqlobject.SqlBatch;
 import org.skife.jdbi.v2.sqlobject.SqlQuery;
 import org.skife.jdbi.v2.sqlobject.SqlUpdate;
+import org.skife.jdbi.v2.sqlobject.customizers.BatchChunkSize;
 import org.skife.jdbi.v2.sqlobject.customizers.Define;
 import org.skife.jdbi.v2.sqlobject.mixins.CloseMe;
 import org.skife.jdbi.v2.sqlobject.mixins.Transactional;
+import org.skife.jdbi.v2.unstable.BindIn;
 
 @KillBillSqlDaoStringTemplate
 public interface EntitySqlDao<M extends EntityModelDao<E>, E extends Entity> extends AuditSqlDao, HistorySqlDao<M, E>, Transactional<EntitySqlDao<M, E>>, CloseMe {
 
+    // Maximum number of ids in an IN clause (see getByIds), callers should partition larger collections
+    public static final int MAX_IDS_PER_QUERY = 1000;
+
     @SqlUpdate
     @Audited(ChangeType.INSERT)
     public Object create(@SmartBindBean final M entity,
                          @SmartBindBean final InternalCallContext context) throws EntityPersistenceException;
 
+    // @GetGeneratedKeys is only needed for the List return type: the result is overridden with the re-hydrated entities
+    // in EntitySqlDaoWrapperInvocationHandler (the history and audit rows are batched as well)
+    @SqlBatch
+    @BatchChunkSize(1000)
+    @GetGeneratedKeys
+    @Audited(ChangeType.INSERT)
+    public List<M> createBatch(@SmartBindBean final Iterable<M> entities,
+                               @SmartBindBean final InternalCallContext context) throws EntityPersistenceException;
+
     @SqlQuery
     public M getById(@Bind("id") final String id,
                      @SmartBindBean final InternalTenantContext context);
 
+    @SqlQuery
+    public List<M> getByIds(@BindIn("ids") final Collection<String> ids,
+                            @SmartBindBean final InternalTenantContext context);
+
     @SqlQuery
     public M getByRecordId(@Bind("recordId") final Long recordId,
                            @SmartBindBean final InternalTenantContext context);
@@ -82,6 +104,22 @@ public interface EntitySqlDao<M extends EntityModelDao<E>, E extends Entity> ext
                                @Bind("likeSearchKey") final String likeSearchKey,
                                @SmartBindBean final InternalTenantContext context);
 
+    @SqlQuery
+    @SmartFetchSize(shouldStream = true)
+    public Iterator<M> indexedSearch(@Bind("objectType") final ObjectType objectType,
+                                     @Bind("searchKey") final String searchKey,
+                                     @Bind("prefixSearchKey") final String prefixSearchKey,
+                                     @Bind("offset") final Long offset,
+                                     @Bind("rowCount") final Long rowCount,
+                                     @Define("ordering") final String ordering,
+                                     @SmartBindBean final InternalTenantContext context);
+
+    @SqlQuery
+    public Long getIndexedSearchCount(@Bind("objectType") final ObjectType objectType,
+                                      @Bind("searchKey") final String searchKey,
+                                      @Bind("prefixSearchKey") final String prefixSearchKey,
+                                      @SmartBindBean final InternalTenantContext context);
+
     @SqlQuery
     @SmartFetchSize(shouldStream = true)
     public Iterator<M> getAll(@SmartBindBean final InternalTenantContext context);
@@ -94,6 +132,11 @@ public interface EntitySqlDao<M extends EntityModelDao<E>, E extends Entity> ext
                            @Define("ordering") final String ordering,
                            @SmartBindBean final InternalTenantContext context);
 
+    @SqlQuery
+    public List<M> getAfterRecordId(@Bind("lastRecordId") final Long lastRecordId,
+                                    @Bind("rowCount") final Long rowCount,
+                                    @SmartBindBean final InternalTenantContext context);
+
     @SqlQuery
     public Long getCount(@SmartBindBean final InternalTenantContext context);
 
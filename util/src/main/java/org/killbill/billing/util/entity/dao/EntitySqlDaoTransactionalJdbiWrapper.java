@@ -20,6 +20,7 @@ package org.killbill.billing.util.entity.dao;
 
 import javax.annotation.Nullable;
 
+import org.killbill.billing.util.audit.dao.AuditLogJournal;
 import org.killbill.billing.util.cache.CacheControllerDispatcher;
 import org.killbill.billing.util.callcontext.InternalCallContextFactory;
 import org.killbill.billing.util.dao.NonEntityDao;
@@ -44,9 +45,18 @@ public class EntitySqlDaoTransactionalJdbiWrapper {
     private final CacheControllerDispatcher cacheControllerDispatcher;
     private final NonEntityDao nonEntityDao;
     private final InternalCallContextFactory internalCallContextFactory;
+    private final AuditLogJournal auditLogJournal;
 
     public EntitySqlDaoTransactionalJdbiWrapper(final IDBI dbi, final IDBI roDbi, final Clock clock, final CacheControllerDispatcher cacheControllerDispatcher,
                                                 final NonEntityDao nonEntityDao, final InternalCallContextFactory internalCallContextFactory) {
+        this(dbi, roDbi, clock, cacheControllerDispatcher, nonEntityDao, internalCallContextFactory, null);
+    }
+
+    // The audit log journal, if specified, is used for the tenants which opted-in (see AuditConfig)
+    public EntitySqlDaoTransactionalJdbiWrapper(final IDBI dbi, final IDBI roDbi, final Clock clock, final CacheControllerDispatcher cacheControllerDispatcher,
+                                                final NonEntityDao nonEntityDao, final InternalCallContextFactory internalCallContextFactory,
+                                                @Nullable final AuditLogJournal auditLogJournal) {
+        this.auditLogJournal = auditLogJournal;
         this.clock = clock;
         this.cacheControllerDispatcher = cacheControllerDispatcher;
         this.nonEntityDao = nonEntityDao;
@@ -61,17 +71,24 @@ public class EntitySqlDaoTransactionalJdbiWrapper {
     class JdbiTransaction<ReturnType, M extends EntityModelDao<E>, E extends Entity> implements Transaction<ReturnType, EntitySqlDao<M, E>> {
 
         private final Handle h;
+        private final AuditLogJournal.Transaction auditLogJournalTransaction;
         private final EntitySqlDaoTransactionWrapper<ReturnType> entitySqlDaoTransactionWrapper;
 
-        JdbiTransaction(final Handle h, final EntitySqlDaoTransactionWrapper<ReturnType> entitySqlDaoTransactionWrapper) {
+        JdbiTransaction(final Handle h, @Nullable final AuditLogJournal.Transaction auditLogJournalTransaction, final EntitySqlDaoTransactionWrapper<ReturnType> entitySqlDaoTransactionWrapper) {
             this.h = h;
+            this.auditLogJournalTransaction = auditLogJournalTransaction;
             this.entitySqlDaoTransactionWrapper = entitySqlDaoTransactionWrapper;
         }
 
         @Override
         public ReturnType inTransaction(final EntitySqlDao<M, E> transactionalSqlDao, final TransactionStatus status) throws Exception {
-            final EntitySqlDaoWrapperFactory factoryEntitySqlDao = new EntitySqlDaoWrapperFactory(h, clock, cacheControllerDispatcher, internalCallContextFactory);
-            return entitySqlDaoTransactionWrapper.inTransaction(factoryEntitySqlDao);
+            final EntitySqlDaoWrapperFactory factoryEntitySqlDao = new EntitySqlDaoWrapperFactory(h, clock, cacheControllerDispatcher, internalCallContextFactory, auditLogJournalTransaction);
+            final ReturnType returnType = entitySqlDaoTransactionWrapper.inTransaction(factoryEntitySqlDao);
+            if (auditLogJournalTransaction != null) {
+                // The journaled audit logs need to be durable before the database commit
+                auditLogJournalTransaction.prepare();
+            }
+            return returnType;
         }
     }
 
@@ -89,16 +106,26 @@ public class EntitySqlDaoTransactionalJdbiWrapper {
 
         final Handle handle = dbRouter.getHandle(requestedRO);
         logger.debug("DBI handle created, transaction: {}", debugInfo);
+        final AuditLogJournal.Transaction auditLogJournalTransaction = auditLogJournal != null ? auditLogJournal.newTransaction() : null;
+        boolean committed = false;
         try {
             final EntitySqlDao<EntityModelDao<Entity>, Entity> entitySqlDao = handle.attach(InitialEntitySqlDao.class);
             // The transaction isolation level is now set at the pool level: this avoids 3 roundtrips for each transaction
             // Note that if the pool isn't used (tests or PostgreSQL), the transaction level will depend on the DB configuration
             //return entitySqlDao.inTransaction(TransactionIsolationLevel.READ_COMMITTED, new JdbiTransaction<ReturnType, EntityModelDao<Entity>, Entity>(handle, entitySqlDaoTransactionWrapper));
             logger.debug("Starting transaction {}", debugInfo);
-            final ReturnType returnType = entitySqlDao.inTransaction(new JdbiTransaction<ReturnType, EntityModelDao<Entity>, Entity>(handle, entitySqlDaoTransactionWrapper));
+            final ReturnType returnType = entitySqlDao.inTransaction(new JdbiTransaction<ReturnType, EntityModelDao<Entity>, Entity>(handle, auditLogJournalTransaction, entitySqlDaoTransactionWrapper));
+            committed = true;
             logger.debug("Exiting  transaction {}, returning {}", debugInfo, returnType);
             return returnType;
         } finally {
+            if (auditLogJournalTransaction != null) {
+                if (committed) {
+                    auditLogJournalTransaction.commit();
+                } else {
+                    auditLogJournalTransaction.rollback();
+                }
+            }
             handle.close();
             logger.debug("DBI handle closed,  transaction: {}", debugInfo);
         }
@@ -27,6 +27,7 @@ import java.lang.reflect.Type;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.SQLWarning;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -42,15 +43,19 @@ import org.killbill.billing.ObjectType;
 import org.killbill.billing.callcontext.InternalCallContext;
 import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.util.audit.ChangeType;
+import org.killbill.billing.util.audit.dao.AuditLogJournal;
+import org.killbill.billing.util.audit.dao.AuditLogJournalEntry;
 import org.killbill.billing.util.cache.Cachable;
 import org.killbill.billing.util.cache.Cachable.CacheType;
 import org.killbill.billing.util.cache.CachableKey;
 import org.killbill.billing.util.cache.CacheController;
 import org.killbill.billing.util.cache.CacheControllerDispatcher;
 import org.killbill.billing.util.cache.CacheLoaderArgument;
+import org.killbill.billing.util.cache.PrimitiveKeyedCacheController;
 import org.killbill.billing.util.callcontext.InternalCallContextFactory;
 import org.killbill.billing.util.dao.EntityAudit;
 import org.killbill.billing.util.dao.EntityHistoryModelDao;
+import org.killbill.billing.util.dao.RecordIdIdMappings;
 import org.killbill.billing.util.dao.TableName;
 import org.killbill.billing.util.entity.Entity;
 import org.killbill.clock.Clock;
@@ -95,6 +100,7 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
     private final CacheControllerDispatcher cacheControllerDispatcher;
     private final Clock clock;
     private final InternalCallContextFactory internalCallContextFactory;
+    private final AuditLogJournal.Transaction auditLogJournalTransaction;
     private final Profiling<Object, Throwable> prof;
 
     public EntitySqlDaoWrapperInvocationHandler(final Class<S> sqlDaoClass,
@@ -103,13 +109,16 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
                                                 final Clock clock,
                                                 // Special DAO that don't require caching can invoke EntitySqlDaoWrapperInvocationHandler with no caching (e.g NoCachingTenantDao)
                                                 @Nullable final CacheControllerDispatcher cacheControllerDispatcher,
-                                                final InternalCallContextFactory internalCallContextFactory) {
+                                                final InternalCallContextFactory internalCallContextFactory,
+                                                // Only set if the audit log journal is enabled
+                                                @Nullable final AuditLogJournal.Transaction auditLogJournalTransaction) {
         this.sqlDaoClass = sqlDaoClass;
         this.sqlDao = sqlDao;
         this.handle = handle;
         this.clock = clock;
         this.cacheControllerDispatcher = cacheControllerDispatcher;
         this.internalCallContextFactory = internalCallContextFactory;
+        this.auditLogJournalTransaction = auditLogJournalTransaction;
         this.prof = new Profiling<Object, Throwable>();
     }
 
@@ -317,6 +326,10 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
 
         final ChangeType changeType = auditedAnnotation.value();
 
+        if (entityIds.size() > 1 && !TableName.ACCOUNT.equals(getTableName(args))) {
+            return invokeWithBatchAuditAndHistory(changeType, method, args, entityIds, context);
+        }
+
         // Get the current state before deletion for the history tables
         final Map<String, M> deletedEntities = new HashMap<String, M>();
         // Unfortunately, we cannot just look at DELETE as "markAsInactive" operations are often treated as UPDATE
@@ -336,13 +349,18 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
         });
 
         M m = null;
+        final List<M> reHydratedEntities = new ArrayList<M>(entityIds.size());
         for (final String entityId : entityIds) {
             m = updateHistoryAndAudit(entityId, deletedEntities.get(entityId), changeType, context);
+            reHydratedEntities.add(m);
         }
 
         // PERF: override the return value with the reHydrated entity to avoid an extra 'get' in the transaction,
         // (see EntityDaoBase#createAndRefresh for an example, but it works for updates as well).
-        if (entityIds.size() == 1) {
+        if (List.class.equals(method.getReturnType())) {
+            // Batch creates always return the list of re-hydrated entities, even for a single entity (see EntitySqlDao#createBatch)
+            return reHydratedEntities;
+        } else if (entityIds.size() == 1) {
             return m;
         } else {
             // jDBI will return the number of rows modified otherwise
@@ -350,6 +368,90 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
         }
     }
 
+    // Same as above, but the pre-images and re-hydrated entities are fetched with one query per chunk of ids, and the history and audit rows are batched
+    private Object invokeWithBatchAuditAndHistory(final ChangeType changeType, final Method method, final Object[] args, final List<String> entityIds, final InternalCallContext context) throws Throwable {
+        // See note above regarding "markAsInactive" operations
+        final Map<String, M> deletedEntities;
+        if (changeType == ChangeType.UPDATE || changeType == ChangeType.DELETE) {
+            deletedEntities = getByIds(entityIds, context);
+        } else {
+            deletedEntities = ImmutableMap.<String, M>of();
+        }
+
+        // Real jdbc call
+        final Object obj = prof.executeWithProfiling(ProfilingFeatureType.DAO_DETAILS, getProfilingId("raw", method), new WithProfilingCallback<Object, Throwable>() {
+            @Override
+            public Object execute() throws Throwable {
+                return executeJDBCCall(method, args);
+            }
+        });
+
+        final Object reHydratedEntities = prof.executeWithProfiling(ProfilingFeatureType.DAO_DETAILS, getProfilingId("history/audit", null), new WithProfilingCallback<Object, Throwable>() {
+            @Override
+            public List<M> execute() throws Throwable {
+                final Map<String, M> reHydratedEntitiesById = changeType == ChangeType.DELETE ? deletedEntities : getByIds(entityIds, context);
+
+                final List<M> reHydratedEntities = new ArrayList<M>(entityIds.size());
+                for (final String entityId : entityIds) {
+                    final M reHydratedEntity = MoreObjects.firstNonNull(reHydratedEntitiesById.get(entityId), deletedEntities.get(entityId));
+                    Preconditions.checkNotNull(reHydratedEntity, "reHydratedEntity cannot be null");
+                    reHydratedEntities.add(reHydratedEntity);
+                }
+
+                final TableName tableName = reHydratedEntities.get(0).getTableName();
+
+                // Note: audit entries point to the history record id
+                final List<Long> historyRecordIds;
+                if (tableName.getHistoryTableName() != null) {
+                    historyRecordIds = insertHistories(reHydratedEntities, changeType, context);
+                } else {
+                    historyRecordIds = new ArrayList<Long>(reHydratedEntities.size());
+                    for (final M reHydratedEntity : reHydratedEntities) {
+                        historyRecordIds.add(reHydratedEntity.getRecordId());
+                    }
+                }
+
+                insertAudits(tableName, reHydratedEntities, historyRecordIds, changeType, context);
+                return reHydratedEntities;
+            }
+        });
+
+        // PERF: see above - batch creates return the list of re-hydrated entities (see EntitySqlDao#createBatch)
+        if (List.class.equals(method.getReturnType())) {
+            return reHydratedEntities;
+        } else {
+            return obj;
+        }
+    }
+
+    private Map<String, M> getByIds(final List<String> entityIds, final InternalTenantContext context) {
+        final Map<String, M> result = new HashMap<String, M>(entityIds.size());
+        for (final List<String> chunk : Iterables.partition(entityIds, EntitySqlDao.MAX_IDS_PER_QUERY)) {
+            for (final M entity : sqlDao.getByIds(chunk, context)) {
+                result.put(entity.getId().toString(), entity);
+            }
+            printSQLWarnings();
+        }
+        return result;
+    }
+
+    private TableName getTableName(final Object[] args) {
+        for (final Object arg : args) {
+            if (arg instanceof EntityModelDao) {
+                return ((EntityModelDao) arg).getTableName();
+            } else if (arg instanceof Iterable) {
+                final Iterator iterator = ((Iterable) arg).iterator();
+                if (iterator.hasNext()) {
+                    final Object first = iterator.next();
+                    if (first instanceof EntityModelDao) {
+                        return ((EntityModelDao) first).getTableName();
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
     private Object executeJDBCCall(final Method method, final Object[] args) throws IllegalAccessException, InvocationTargetException {
         final Object invoke = method.invoke(sqlDao, args);
         printSQLWarnings();
@@ -377,19 +479,31 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
 
     public static void populateCaches(final CacheControllerDispatcher cacheControllerDispatcher, final EntityModelDao model) {
         final CacheController<String, Long> cacheRecordId = cacheControllerDispatcher.getCacheController(CacheType.RECORD_ID);
-        cacheRecordId.putIfAbsent(getKey(model.getId().toString(), CacheType.RECORD_ID, model.getTableName()), model.getRecordId());
+        putIfAbsent(cacheRecordId, model.getId(), model.getTableName(), model.getRecordId());
 
         final CacheController<String, UUID> cacheObjectId = cacheControllerDispatcher.getCacheController(CacheType.OBJECT_ID);
-        cacheObjectId.putIfAbsent(getKey(model.getRecordId().toString(), CacheType.OBJECT_ID, model.getTableName()), model.getId());
+        if (cacheObjectId instanceof PrimitiveKeyedCacheController) {
+            ((PrimitiveKeyedCacheController<UUID>) cacheObjectId).putIfAbsent(model.getTableName(), model.getRecordId(), model.getId());
+        } else {
+            cacheObjectId.putIfAbsent(getKey(model.getRecordId().toString(), CacheType.OBJECT_ID, model.getTableName()), model.getId());
+        }
 
         if (model.getTenantRecordId() != null) {
             final CacheController<String, Long> cacheTenantRecordId = cacheControllerDispatcher.getCacheController(CacheType.TENANT_RECORD_ID);
-            cacheTenantRecordId.putIfAbsent(getKey(model.getId().toString(), CacheType.TENANT_RECORD_ID, model.getTableName()), model.getTenantRecordId());
+            putIfAbsent(cacheTenantRecordId, model.getId(), model.getTableName(), model.getTenantRecordId());
         }
 
         if (model.getAccountRecordId() != null) {
             final CacheController<String, Long> cacheAccountRecordId = cacheControllerDispatcher.getCacheController(CacheType.ACCOUNT_RECORD_ID);
-            cacheAccountRecordId.putIfAbsent(getKey(model.getId().toString(), CacheType.ACCOUNT_RECORD_ID, model.getTableName()), model.getAccountRecordId());
+            putIfAbsent(cacheAccountRecordId, model.getId(), model.getTableName(), model.getAccountRecordId());
+        }
+    }
+
+    private static void putIfAbsent(final CacheController<String, Long> cache, final UUID objectId, final TableName tableName, final Long value) {
+        if (cache instanceof PrimitiveKeyedCacheController) {
+            ((PrimitiveKeyedCacheController<Long>) cache).putIfAbsent(objectId, value);
+        } else {
+            cache.putIfAbsent(getKey(objectId.toString(), cache.getCacheType(), tableName), value);
         }
     }
 
@@ -510,6 +624,58 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
         return recordId;
     }
 
+    private List<Long> insertHistories(final List<M> entityModelDaos, final ChangeType changeType, final InternalCallContext context) {
+        final List<EntityHistoryModelDao<M, E>> histories = new ArrayList<EntityHistoryModelDao<M, E>>(entityModelDaos.size());
+        for (final M entityModelDao : entityModelDaos) {
+            histories.add(new EntityHistoryModelDao<M, E>(entityModelDao, entityModelDao.getRecordId(), changeType, null, context.getCreatedDate()));
+        }
+
+        final List<Long> generatedRecordIds = sqlDao.addHistoriesFromTransaction(histories, context);
+        printSQLWarnings();
+        if (generatedRecordIds != null && generatedRecordIds.size() == histories.size()) {
+            return generatedRecordIds;
+        }
+
+        // The driver didn't return all the generated keys (e.g. only the last one): look them up
+        final List<String> historyIds = new ArrayList<String>(histories.size());
+        for (final EntityHistoryModelDao<M, E> history : histories) {
+            historyIds.add(history.getId().toString());
+        }
+        final Map<UUID, Long> historyRecordIdsById = new HashMap<UUID, Long>(histories.size());
+        for (final List<String> chunk : Iterables.partition(historyIds, EntitySqlDao.MAX_IDS_PER_QUERY)) {
+            for (final RecordIdIdMappings mapping : sqlDao.getHistoryRecordIdIdMappingsForIds(chunk, context)) {
+                historyRecordIdsById.put(mapping.getId(), mapping.getRecordId());
+            }
+        }
+
+        final List<Long> historyRecordIds = new ArrayList<Long>(histories.size());
+        for (final EntityHistoryModelDao<M, E> history : histories) {
+            historyRecordIds.add(Preconditions.checkNotNull(historyRecordIdsById.get(history.getId()), "historyRecordId cannot be null"));
+        }
+        return historyRecordIds;
+    }
+
+    // Batches on the accounts table aren't supported, as the account record id needs to be populated in the context on creation (see below)
+    private void insertAudits(final TableName tableName, final List<M> entityModelDaos, final List<Long> historyRecordIds, final ChangeType changeType, final InternalCallContext context) {
+        final TableName destinationTableName = MoreObjects.firstNonNull(tableName.getHistoryTableName(), tableName);
+        final List<EntityAudit> audits = new ArrayList<EntityAudit>(historyRecordIds.size());
+        for (final Long historyRecordId : historyRecordIds) {
+            audits.add(new EntityAudit(destinationTableName, historyRecordId, changeType, context.getCreatedDate()));
+        }
+        if (auditLogJournalTransaction != null && auditLogJournalTransaction.isEnabled(context)) {
+            for (int i = 0; i < audits.size(); i++) {
+                auditLogJournalTransaction.append(new AuditLogJournalEntry(audits.get(i), entityModelDaos.get(i).getRecordId(), context));
+            }
+        } else {
+            sqlDao.insertAuditsFromTransaction(audits, context);
+            printSQLWarnings();
+        }
+
+        for (final M entityModelDao : entityModelDaos) {
+            invalidateAuditCaches(cacheControllerDispatcher, tableName, entityModelDao.getRecordId());
+        }
+    }
+
     private void insertAudits(final TableName tableName, final M entityModelDao, final Long entityRecordId, final Long historyRecordId, final ChangeType changeType, final InternalCallContext contextMaybeWithoutAccountRecordId) {
         final TableName destinationTableName = MoreObjects.firstNonNull(tableName.getHistoryTableName(), tableName);
         final EntityAudit audit = new EntityAudit(destinationTableName, historyRecordId, changeType, contextMaybeWithoutAccountRecordId.getCreatedDate());
@@ -523,9 +689,17 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
         } else {
             context = contextMaybeWithoutAccountRecordId;
         }
-        sqlDao.insertAuditFromTransaction(audit, context);
-        printSQLWarnings();
+        if (auditLogJournalTransaction != null && auditLogJournalTransaction.isEnabled(context)) {
+            auditLogJournalTransaction.append(new AuditLogJournalEntry(audit, entityRecordId, context));
+        } else {
+            sqlDao.insertAuditFromTransaction(audit, context);
+            printSQLWarnings();
+        }
+
+        invalidateAuditCaches(cacheControllerDispatcher, tableName, entityRecordId);
+    }
 
+    public static void invalidateAuditCaches(final CacheControllerDispatcher cacheControllerDispatcher, final TableName tableName, final Long entityRecordId) {
         // We need to invalidate the caches. There is a small window of doom here where caches will be stale.
         // TODO Knowledge on how the key is constructed is also in AuditSqlDao
         if (tableName.getHistoryTableName() != null) {
@@ -543,7 +717,7 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
         }
     }
 
-    private String buildCacheKey(final Map<Integer, Object> keyPieces) {
+    private static String buildCacheKey(final Map<Integer, Object> keyPieces) {
         final StringBuilder cacheKey = new StringBuilder();
         for (int i = 0; i < keyPieces.size(); i++) {
             // To normalize the arguments and avoid casing issues, we make all pieces of the key uppercase.
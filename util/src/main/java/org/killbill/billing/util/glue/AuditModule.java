@@ -20,9 +20,14 @@ package org.killbill.billing.util.glue;
 
 import org.killbill.billing.platform.api.KillbillConfigSource;
 import org.killbill.billing.util.api.AuditUserApi;
+import org.killbill.billing.util.audit.AuditLogJournalService;
+import org.killbill.billing.util.audit.DefaultAuditLogJournalService;
 import org.killbill.billing.util.audit.api.DefaultAuditUserApi;
 import org.killbill.billing.util.audit.dao.AuditDao;
+import org.killbill.billing.util.audit.dao.AuditLogJournal;
 import org.killbill.billing.util.audit.dao.DefaultAuditDao;
+import org.killbill.billing.util.config.definition.AuditConfig;
+import org.skife.config.ConfigurationObjectFactory;
 
 public class AuditModule extends KillBillModule {
 
@@ -31,16 +36,26 @@ public class AuditModule extends KillBillModule {
     }
 
     protected void installDaos() {
+        bind(AuditLogJournal.class).asEagerSingleton();
         bind(AuditDao.class).to(DefaultAuditDao.class).asEagerSingleton();
     }
 
+    protected void installAuditLogJournalService() {
+        bind(AuditLogJournalService.class).to(DefaultAuditLogJournalService.class).asEagerSingleton();
+    }
+
     protected void installUserApi() {
         bind(AuditUserApi.class).to(DefaultAuditUserApi.class).asEagerSingleton();
     }
 
     @Override
     protected void configure() {
+        final ConfigurationObjectFactory factory = new ConfigurationObjectFactory(skifeConfigSource);
+        final AuditConfig auditConfig = factory.build(AuditConfig.class);
+        bind(AuditConfig.class).toInstance(auditConfig);
+
         installDaos();
+        installAuditLogJournalService();
         installUserApi();
     }
 }
@@ -30,17 +30,22 @@ import org.killbill.billing.util.cache.BaseCacheLoader;
 import org.killbill.billing.util.cache.BundleIdFromSubscriptionIdCacheLoader;
 import org.killbill.billing.util.cache.CacheControllerDispatcher;
 import org.killbill.billing.util.cache.CacheControllerDispatcherProvider;
+import org.killbill.billing.util.cache.CacheWarmUp;
+import org.killbill.billing.util.cache.CacheWarmUpService;
+import org.killbill.billing.util.cache.DefaultCacheWarmUpService;
 import org.killbill.billing.util.cache.ImmutableAccountCacheLoader;
 import org.killbill.billing.util.cache.ObjectIdCacheLoader;
 import org.killbill.billing.util.cache.OverriddenPlanCacheLoader;
 import org.killbill.billing.util.cache.RecordIdCacheLoader;
 import org.killbill.billing.util.cache.TenantCacheLoader;
+import org.killbill.billing.util.cache.TenantCacheWarmer;
 import org.killbill.billing.util.cache.TenantCatalogCacheLoader;
 import org.killbill.billing.util.cache.TenantConfigCacheLoader;
 import org.killbill.billing.util.cache.TenantKVCacheLoader;
 import org.killbill.billing.util.cache.TenantOverdueConfigCacheLoader;
 import org.killbill.billing.util.cache.TenantRecordIdCacheLoader;
 import org.killbill.billing.util.cache.TenantStateMachineConfigCacheLoader;
+import org.killbill.billing.util.config.definition.CacheConfig;
 import org.killbill.billing.util.config.definition.EhCacheConfig;
 import org.killbill.billing.util.config.definition.RedisCacheConfig;
 import org.redisson.api.RedissonClient;
@@ -60,6 +65,9 @@ public class CacheModule extends KillBillModule {
 
     @Override
     protected void configure() {
+        final CacheConfig cacheConfig = new ConfigurationObjectFactory(skifeConfigSource).build(CacheConfig.class);
+        bind(CacheConfig.class).toInstance(cacheConfig);
+
         final EhCacheConfig ehCacheConfig = new ConfigurationObjectFactory(skifeConfigSource).build(EhCacheConfig.class);
         bind(EhCacheConfig.class).toInstance(ehCacheConfig);
 
@@ -95,5 +103,10 @@ public class CacheModule extends KillBillModule {
         resultSetMapperSetBinder.addBinding().to(TenantStateMachineConfigCacheLoader.class).asEagerSingleton();
         resultSetMapperSetBinder.addBinding().to(AccountIdFromBundleIdCacheLoader.class).asEagerSingleton();
         resultSetMapperSetBinder.addBinding().to(BundleIdFromSubscriptionIdCacheLoader.class).asEagerSingleton();
+
+        // Per-tenant caches are registered by their respective modules
+        Multibinder.newSetBinder(binder(), TenantCacheWarmer.class);
+        bind(CacheWarmUp.class).asEagerSingleton();
+        bind(CacheWarmUpService.class).to(DefaultCacheWarmUpService.class).asEagerSingleton();
     }
 }
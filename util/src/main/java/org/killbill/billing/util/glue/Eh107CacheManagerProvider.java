@@ -18,22 +18,51 @@
 
 package org.killbill.billing.util.glue;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import javax.annotation.Nullable;
+
 import javax.cache.CacheManager;
 import javax.cache.Caching;
 import javax.cache.spi.CachingProvider;
 import javax.inject.Inject;
 import javax.inject.Provider;
 
+import org.ehcache.config.CacheConfiguration;
+import org.ehcache.config.Configuration;
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.config.units.EntryUnit;
+import org.ehcache.config.units.MemoryUnit;
+import org.ehcache.core.config.DefaultConfiguration;
 import org.ehcache.core.spi.store.InternalCacheManager;
+import org.ehcache.impl.config.persistence.CacheManagerPersistenceConfiguration;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.ehcache.jsr107.config.Jsr107Configuration;
+import org.ehcache.spi.service.ServiceCreationConfiguration;
+import org.ehcache.xml.XmlConfiguration;
 import org.killbill.billing.util.cache.BaseCacheLoader;
+import org.killbill.billing.util.cache.KillBillCacheValueSerializer;
 import org.killbill.billing.util.config.definition.EhCacheConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Predicates;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
 
 // EhCache specific provider
 public class Eh107CacheManagerProvider extends EhCacheProviderBase implements Provider<CacheManager> {
@@ -56,15 +85,25 @@ public class Eh107CacheManagerProvider extends EhCacheProviderBase implements Pr
         // JSR-107 registration, required for JMX integration
         final CachingProvider cachingProvider = Caching.getCachingProvider("org.ehcache.jsr107.EhcacheCachingProvider");
 
+        final boolean isTiered = cacheConfig.getOffHeapSizeMB() > 0 || cacheConfig.getDiskSizeMB() > 0;
+
         CacheManager cacheManager;
+        XmlConfiguration xmlConfiguration = null;
         try {
-            cacheManager = cachingProvider.getCacheManager(xmlConfigurationURL.toURI(), getClass().getClassLoader());
+            if (isTiered) {
+                xmlConfiguration = new XmlConfiguration(xmlConfigurationURL, getClass().getClassLoader());
+                cacheManager = ((EhcacheCachingProvider) cachingProvider).getCacheManager(xmlConfigurationURL.toURI(), withPersistence(xmlConfiguration.getCacheConfigurations(), xmlConfiguration.getServiceCreationConfigurations()));
+            } else {
+                cacheManager = cachingProvider.getCacheManager(xmlConfigurationURL.toURI(), getClass().getClassLoader());
+            }
         } catch (final RuntimeException e) {
             logger.error("Unable to read ehcache.xml, using default configuration", e);
-            cacheManager = cachingProvider.getCacheManager();
+            cacheManager = getDefaultCacheManager(cachingProvider, isTiered);
+            xmlConfiguration = null;
         } catch (final URISyntaxException e) {
             logger.error("Unable to read ehcache.xml, using default configuration", e);
-            cacheManager = cachingProvider.getCacheManager();
+            cacheManager = getDefaultCacheManager(cachingProvider, isTiered);
+            xmlConfiguration = null;
         }
 
         // Make sure we start from a clean state - this is mainly useful for tests
@@ -72,12 +111,99 @@ public class Eh107CacheManagerProvider extends EhCacheProviderBase implements Pr
         cacheManager.unwrap(InternalCacheManager.class).registerListener(ehcacheLoggingListener);
 
         for (final BaseCacheLoader<?, ?> cacheLoader : cacheLoaders) {
-            createCache(cacheManager,
-                        cacheLoader.getCacheType().getCacheName(),
-                        cacheLoader.getCacheType().getKeyType(),
-                        cacheLoader.getCacheType().getValueType());
+            if (isTiered) {
+                createTieredCache(cacheManager,
+                                  xmlConfiguration,
+                                  cacheLoader.getCacheType().getCacheName(),
+                                  cacheLoader.getCacheType().getKeyType(),
+                                  cacheLoader.getCacheType().getValueType());
+            } else {
+                createCache(cacheManager,
+                            cacheLoader.getCacheType().getCacheName(),
+                            cacheLoader.getCacheType().getKeyType(),
+                            cacheLoader.getCacheType().getValueType());
+            }
         }
 
         return cacheManager;
     }
+
+    private CacheManager getDefaultCacheManager(final CachingProvider cachingProvider, final boolean isTiered) {
+        if (isTiered) {
+            return ((EhcacheCachingProvider) cachingProvider).getCacheManager(cachingProvider.getDefaultURI(),
+                                                                               withPersistence(ImmutableMap.<String, CacheConfiguration<?, ?>>of(), ImmutableList.<ServiceCreationConfiguration<?>>of()));
+        } else {
+            return cachingProvider.getCacheManager();
+        }
+    }
+
+    // The disk tier requires a persistence directory at the cache manager level
+    private Configuration withPersistence(final Map<String, CacheConfiguration<?, ?>> cacheConfigurations, final Collection<ServiceCreationConfiguration<?>> serviceCreationConfigurations) {
+        final List<ServiceCreationConfiguration> services = new LinkedList<ServiceCreationConfiguration>(serviceCreationConfigurations);
+        if (cacheConfig.getDiskSizeMB() > 0 && !Iterables.any(services, Predicates.instanceOf(CacheManagerPersistenceConfiguration.class))) {
+            final File diskLocation = Strings.isNullOrEmpty(cacheConfig.getDiskLocation()) ? createDefaultDiskLocation() : new File(cacheConfig.getDiskLocation());
+            services.add(new CacheManagerPersistenceConfiguration(diskLocation));
+        }
+        return new DefaultConfiguration(cacheConfigurations, getClass().getClassLoader(), services.toArray(new ServiceCreationConfiguration[services.size()]));
+    }
+
+    // Ehcache locks the persistence directory, so it cannot be shared by several nodes (e.g. on the same host)
+    private File createDefaultDiskLocation() {
+        try {
+            final File diskLocation = Files.createTempDirectory("killbill-cache-").toFile();
+            diskLocation.deleteOnExit();
+            return diskLocation;
+        } catch (final IOException e) {
+            throw new RuntimeException("Unable to create the cache disk tier directory", e);
+        }
+    }
+
+    // Keep the expiry configured for that cache in ehcache.xml (jsr107 template), but override the resources
+    private <K, V> void createTieredCache(final CacheManager cacheManager,
+                                          @Nullable final XmlConfiguration xmlConfiguration,
+                                          final String cacheName,
+                                          final Class<K> keyType,
+                                          final Class<V> valueType) {
+        ResourcePoolsBuilder resourcePoolsBuilder = ResourcePoolsBuilder.newResourcePoolsBuilder().heap(cacheConfig.getTieredHeapEntries(), EntryUnit.ENTRIES);
+        if (cacheConfig.getOffHeapSizeMB() > 0) {
+            resourcePoolsBuilder = resourcePoolsBuilder.offheap(cacheConfig.getOffHeapSizeMB(), MemoryUnit.MB);
+        }
+        if (cacheConfig.getDiskSizeMB() > 0) {
+            Preconditions.checkState(cacheConfig.getDiskSizeMB() > cacheConfig.getOffHeapSizeMB(), "The disk tier (%sMB) should be larger than the off-heap tier (%sMB)", cacheConfig.getDiskSizeMB(), cacheConfig.getOffHeapSizeMB());
+            // Never persistent: the caches are destroyed at startup anyway (see CacheProviderBase), and invalidations could have been missed while the node was down
+            resourcePoolsBuilder = resourcePoolsBuilder.disk(cacheConfig.getDiskSizeMB(), MemoryUnit.MB, false);
+        }
+
+        CacheConfigurationBuilder<K, V> cacheConfigurationBuilder = null;
+        final String templateName = xmlConfiguration == null ? null : getTemplateName(xmlConfiguration, cacheName);
+        if (templateName != null) {
+            try {
+                cacheConfigurationBuilder = xmlConfiguration.newCacheConfigurationBuilderFromTemplate(templateName, keyType, valueType);
+            } catch (final Exception e) {
+                logger.warn("Unable to read template='{}' for cacheName='{}', using default configuration", templateName, cacheName, e);
+            }
+        }
+        if (cacheConfigurationBuilder == null) {
+            cacheConfigurationBuilder = CacheConfigurationBuilder.newCacheConfigurationBuilder(keyType, valueType, resourcePoolsBuilder);
+        }
+        cacheConfigurationBuilder = cacheConfigurationBuilder.withResourcePools(resourcePoolsBuilder);
+
+        // Ehcache has serializers for the Serializable types (String, Long, UUID, ...), but not for our interfaces (Catalog, Plan, List, ...)
+        if (!Serializable.class.isAssignableFrom(valueType)) {
+            cacheConfigurationBuilder = cacheConfigurationBuilder.withValueSerializer(new KillBillCacheValueSerializer<V>(getClass().getClassLoader()));
+        }
+
+        createNativeCache(cacheManager, cacheName, cacheConfigurationBuilder.build());
+    }
+
+    private String getTemplateName(final XmlConfiguration xmlConfiguration, final String cacheName) {
+        for (final ServiceCreationConfiguration<?> serviceCreationConfiguration : xmlConfiguration.getServiceCreationConfigurations()) {
+            if (serviceCreationConfiguration instanceof Jsr107Configuration) {
+                final Jsr107Configuration jsr107Configuration = (Jsr107Configuration) serviceCreationConfiguration;
+                final String templateName = jsr107Configuration.getTemplates().get(cacheName);
+                return templateName != null ? templateName : jsr107Configuration.getDefaultTemplate();
+            }
+        }
+        return null;
+    }
 }
@@ -25,6 +25,8 @@ import javax.cache.CacheManager;
 import javax.cache.configuration.Configuration;
 import javax.cache.configuration.MutableConfiguration;
 
+import org.ehcache.config.CacheConfiguration;
+import org.ehcache.jsr107.Eh107Configuration;
 import org.killbill.billing.util.config.definition.EhCacheConfig;
 import org.killbill.xmlloader.UriAccessor;
 
@@ -33,9 +35,11 @@ import com.codahale.metrics.MetricRegistry;
 abstract class EhCacheProviderBase extends CacheProviderBase {
 
     final URL xmlConfigurationURL;
+    final EhCacheConfig cacheConfig;
 
     EhCacheProviderBase(final MetricRegistry metricRegistry, final EhCacheConfig cacheConfig) {
         super(metricRegistry);
+        this.cacheConfig = cacheConfig;
 
         try {
             xmlConfigurationURL = UriAccessor.toURL(cacheConfig.getCacheConfigLocation());
@@ -52,4 +56,9 @@ abstract class EhCacheProviderBase extends CacheProviderBase {
                                                                             .setStoreByValue(false); // Store by reference to avoid copying large objects (e.g. catalog)
         super.createCache(cacheManager, cacheName, configuration);
     }
+
+    <K, V> void createNativeCache(final CacheManager cacheManager, final String cacheName, final CacheConfiguration<K, V> ehcacheConfiguration) {
+        // Native Ehcache configuration (e.g. off-heap tier): values are stored by reference on heap only
+        super.createCache(cacheManager, cacheName, Eh107Configuration.fromEhcacheCacheConfiguration(ehcacheConfiguration));
+    }
 }
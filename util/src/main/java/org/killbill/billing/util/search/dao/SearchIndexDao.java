@@ -0,0 +1,145 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.search.dao;
+
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import org.killbill.billing.ObjectType;
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.util.entity.dao.EntitySqlDaoWrapperFactory;
+import org.killbill.billing.util.search.dao.SearchIndexModelDao.TokenType;
+
+import com.google.common.annotations.VisibleForTesting;
+
+//
+// Maintains the search_index table: normalized field values, as well as their suffixes starting at a word boundary, per tenant,
+// object type and target record id. Searches (see EntitySqlDao#indexedSearch) are then prefix matches on an index instead of
+// leading wildcard LIKE queries scanning the whole table (e.g. 'acme.com' and 'inc.' match 'john@acme.com' and 'Acme, Inc.', but 'cme' doesn't).
+//
+// Exact matches on a field value rank first, then prefixes of a field value, then words and word prefixes.
+//
+public class SearchIndexDao {
+
+    // Size of the token column
+    @VisibleForTesting
+    static final int MAX_TOKEN_LENGTH = 255;
+
+    // See EntitySqlDao.sql.stg
+    private static final char LIKE_ESCAPE_CHARACTER = '!';
+
+    // Replace the index entries of the object (expected to be called in the same transaction as the create or update). Exact values (e.g. ids) are
+    // only matched as a whole or by prefix, text values by word as well.
+    public void indexFromTransaction(final ObjectType objectType,
+                                     final Long targetRecordId,
+                                     final Long accountRecordId,
+                                     final Iterable<String> exactValues,
+                                     final Iterable<String> textValues,
+                                     final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory,
+                                     final InternalTenantContext context) {
+        final SearchIndexSqlDao sqlDao = entitySqlDaoWrapperFactory.getHandle().attach(SearchIndexSqlDao.class);
+        sqlDao.deleteByTargetRecordId(objectType, targetRecordId, context);
+
+        final List<SearchIndexModelDao> entries = buildEntries(objectType, targetRecordId, accountRecordId, exactValues, textValues, context.getTenantRecordId());
+        if (!entries.isEmpty()) {
+            sqlDao.create(entries);
+        }
+    }
+
+    // Search key for the :searchKey binding of EntitySqlDao#indexedSearch
+    public static String getSearchKey(@Nullable final String searchKey) {
+        final String normalizedSearchKey = normalize(searchKey);
+        return normalizedSearchKey == null ? "" : normalizedSearchKey;
+    }
+
+    // Search key for the :prefixSearchKey binding of EntitySqlDao#indexedSearch
+    public static String getPrefixSearchKey(@Nullable final String searchKey) {
+        final String normalizedSearchKey = getSearchKey(searchKey);
+
+        final StringBuilder prefixSearchKey = new StringBuilder(normalizedSearchKey.length() + 1);
+        for (int i = 0; i < normalizedSearchKey.length(); i++) {
+            final char c = normalizedSearchKey.charAt(i);
+            if (c == LIKE_ESCAPE_CHARACTER || c == '%' || c == '_') {
+                prefixSearchKey.append(LIKE_ESCAPE_CHARACTER);
+            }
+            prefixSearchKey.append(c);
+        }
+        return prefixSearchKey.append('%').toString();
+    }
+
+    @VisibleForTesting
+    static List<SearchIndexModelDao> buildEntries(final ObjectType objectType,
+                                                  final Long targetRecordId,
+                                                  final Long accountRecordId,
+                                                  final Iterable<String> exactValues,
+                                                  final Iterable<String> textValues,
+                                                  final Long tenantRecordId) {
+        final Set<String> valueTokens = new LinkedHashSet<String>();
+        for (final String exactValue : exactValues) {
+            final String normalizedValue = normalize(exactValue);
+            if (normalizedValue != null) {
+                valueTokens.add(normalizedValue);
+            }
+        }
+
+        final Set<String> wordTokens = new LinkedHashSet<String>();
+        for (final String textValue : textValues) {
+            final String normalizedValue = normalize(textValue);
+            if (normalizedValue == null) {
+                continue;
+            }
+
+            valueTokens.add(normalizedValue);
+            for (int i = 1; i < normalizedValue.length(); i++) {
+                if (Character.isLetterOrDigit(normalizedValue.charAt(i)) && !Character.isLetterOrDigit(normalizedValue.charAt(i - 1))) {
+                    wordTokens.add(normalizedValue.substring(i));
+                }
+            }
+        }
+        // Already matched (with a higher rank) by the value
+        wordTokens.removeAll(valueTokens);
+
+        final List<SearchIndexModelDao> entries = new LinkedList<SearchIndexModelDao>();
+        for (final String valueToken : valueTokens) {
+            entries.add(new SearchIndexModelDao(objectType, targetRecordId, TokenType.VALUE, valueToken, accountRecordId, tenantRecordId));
+        }
+        for (final String wordToken : wordTokens) {
+            entries.add(new SearchIndexModelDao(objectType, targetRecordId, TokenType.WORD, wordToken, accountRecordId, tenantRecordId));
+        }
+        return entries;
+    }
+
+    // Case insensitive, whitespaces are collapsed
+    @VisibleForTesting
+    static String normalize(@Nullable final String value) {
+        if (value == null) {
+            return null;
+        }
+
+        final String normalizedValue = value.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+        if (normalizedValue.isEmpty()) {
+            return null;
+        }
+        return normalizedValue.length() > MAX_TOKEN_LENGTH ? normalizedValue.substring(0, MAX_TOKEN_LENGTH) : normalizedValue;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.search.dao;
+
+import org.killbill.billing.ObjectType;
+
+public class SearchIndexModelDao {
+
+    public enum TokenType {
+        // Whole (normalized) value of a field
+        VALUE,
+        // Suffix of a field value, starting at a word boundary
+        WORD
+    }
+
+    private final ObjectType objectType;
+    private final Long targetRecordId;
+    private final TokenType tokenType;
+    private final String token;
+    private final Long accountRecordId;
+    private final Long tenantRecordId;
+
+    public SearchIndexModelDao(final ObjectType objectType, final Long targetRecordId, final TokenType tokenType, final String token, final Long accountRecordId, final Long tenantRecordId) {
+        this.objectType = objectType;
+        this.targetRecordId = targetRecordId;
+        this.tokenType = tokenType;
+        this.token = token;
+        this.accountRecordId = accountRecordId;
+        this.tenantRecordId = tenantRecordId;
+    }
+
+    public ObjectType getObjectType() {
+        return objectType;
+    }
+
+    public Long getTargetRecordId() {
+        return targetRecordId;
+    }
+
+    public TokenType getTokenType() {
+        return tokenType;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public Long getAccountRecordId() {
+        return accountRecordId;
+    }
+
+    public Long getTenantRecordId() {
+        return tenantRecordId;
+    }
+
+    @Override
+    public String toString() {
+        return "SearchIndexModelDao{" +
+               "objectType=" + objectType +
+               ", targetRecordId=" + targetRecordId +
+               ", tokenType=" + tokenType +
+               ", token='" + token + '\'' +
+               ", accountRecordId=" + accountRecordId +
+               ", tenantRecordId=" + tenantRecordId +
+               '}';
+    }
+}
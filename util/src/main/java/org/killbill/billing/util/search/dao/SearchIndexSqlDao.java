@@ -0,0 +1,43 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.search.dao;
+
+import org.killbill.billing.ObjectType;
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.commons.jdbi.binder.SmartBindBean;
+import org.killbill.commons.jdbi.template.KillBillSqlDaoStringTemplate;
+import org.skife.jdbi.v2.sqlobject.Bind;
+import org.skife.jdbi.v2.sqlobject.SqlBatch;
+import org.skife.jdbi.v2.sqlobject.SqlUpdate;
+import org.skife.jdbi.v2.sqlobject.customizers.BatchChunkSize;
+import org.skife.jdbi.v2.sqlobject.mixins.CloseMe;
+import org.skife.jdbi.v2.sqlobject.mixins.Transactional;
+
+// Not an EntitySqlDao: the index is derived data (no id, no history, no audit). Lookups are done through EntitySqlDao#indexedSearch.
+@KillBillSqlDaoStringTemplate
+public interface SearchIndexSqlDao extends Transactional<SearchIndexSqlDao>, CloseMe {
+
+    @SqlBatch
+    @BatchChunkSize(1000)
+    void create(@SmartBindBean Iterable<SearchIndexModelDao> entries);
+
+    @SqlUpdate
+    void deleteByTargetRecordId(@Bind("objectType") final ObjectType objectType,
+                                @Bind("targetRecordId") final Long targetRecordId,
+                                @SmartBindBean final InternalTenantContext context);
+}
@@ -18,5 +18,9 @@
 
 package org.killbill.billing.util.userrequest;
 
+import java.util.UUID;
+
 public interface CompletionUserRequest extends CompletionUserRequestNotifier, CompletionUserRequestWaiter {
+
+    public UUID getUserToken();
 }
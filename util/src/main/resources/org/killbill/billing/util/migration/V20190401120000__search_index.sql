@@ -0,0 +1,14 @@
+DROP TABLE IF EXISTS search_index;
+CREATE TABLE search_index (
+    record_id serial unique,
+    object_type varchar(30) NOT NULL,
+    target_record_id bigint /*! unsigned */ not null,
+    token_type varchar(5) NOT NULL,
+    token varchar(255) NOT NULL,
+    account_record_id bigint /*! unsigned */ not null,
+    tenant_record_id bigint /*! unsigned */ not null default 0,
+    PRIMARY KEY(record_id)
+) /*! CHARACTER SET utf8 COLLATE utf8_bin */;
+CREATE INDEX search_index_token ON search_index(tenant_record_id, object_type, token);
+CREATE INDEX search_index_target_record_id ON search_index(tenant_record_id, object_type, target_record_id);
+CREATE INDEX search_index_tenant_account_record_id ON search_index(tenant_record_id, account_record_id);
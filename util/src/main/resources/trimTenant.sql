@@ -65,6 +65,7 @@ BEGIN
     DELETE FROM bus_ext_events_history WHERE search_key2 = v_tenant_record_id;
     DELETE FROM custom_field_history WHERE tenant_record_id = v_tenant_record_id;
     DELETE FROM custom_fields WHERE tenant_record_id = v_tenant_record_id;
+    DELETE FROM invoice_account_balances WHERE tenant_record_id = v_tenant_record_id;
     DELETE FROM invoice_items WHERE tenant_record_id = v_tenant_record_id;
     DELETE FROM invoice_parent_children WHERE tenant_record_id = v_tenant_record_id;
     DELETE FROM invoice_payments WHERE tenant_record_id = v_tenant_record_id;
@@ -80,6 +81,9 @@ BEGIN
     DELETE FROM payment_transactions WHERE tenant_record_id = v_tenant_record_id;
     DELETE FROM payments WHERE tenant_record_id = v_tenant_record_id;
     DELETE FROM rolled_up_usage WHERE tenant_record_id = v_tenant_record_id;
+    DELETE FROM rolled_up_usage_daily WHERE tenant_record_id = v_tenant_record_id;
+    DELETE FROM rolled_up_usage_daily_tracking_ids WHERE tenant_record_id = v_tenant_record_id;
+    DELETE FROM search_index WHERE tenant_record_id = v_tenant_record_id;
     DELETE FROM subscription_events WHERE tenant_record_id = v_tenant_record_id;
     DELETE FROM subscriptions WHERE tenant_record_id = v_tenant_record_id;
     DELETE FROM tag_definition_history WHERE tenant_record_id = v_tenant_record_id;
@@ -0,0 +1,407 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.audit.dao;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+import org.killbill.billing.ObjectType;
+import org.killbill.billing.api.TestApiListener.NextEvent;
+import org.killbill.billing.util.UtilTestSuiteWithEmbeddedDB;
+import org.killbill.billing.util.api.AuditLevel;
+import org.killbill.billing.util.audit.AuditLog;
+import org.killbill.billing.util.audit.ChangeType;
+import org.killbill.billing.util.cache.CacheController;
+import org.killbill.billing.util.config.definition.AuditConfig;
+import org.killbill.billing.util.customfield.dao.CustomFieldModelDao;
+import org.killbill.billing.util.customfield.dao.CustomFieldSqlDao;
+import org.killbill.billing.util.dao.EntityAudit;
+import org.killbill.billing.util.dao.NonEntityDao;
+import org.killbill.billing.util.dao.RecordIdIdMappings;
+import org.killbill.billing.util.dao.TableName;
+import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionWrapper;
+import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionalJdbiWrapper;
+import org.killbill.billing.util.entity.dao.EntitySqlDaoWrapperFactory;
+import org.mockito.Mockito;
+import org.skife.config.TimeSpan;
+import org.skife.jdbi.v2.Handle;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+
+public class TestAuditLogJournal extends UtilTestSuiteWithEmbeddedDB {
+
+    // Doesn't exist
+    private static final Long UNKNOWN_TARGET_RECORD_ID = 987654321L;
+
+    private File journalDirectory;
+    private AuditLogJournal auditLogJournal;
+
+    @BeforeMethod(groups = "slow")
+    public void setUpJournal() throws Exception {
+        if (hasFailed()) {
+            return;
+        }
+
+        journalDirectory = Files.createTempDir();
+        auditLogJournal = createAuditLogJournal();
+    }
+
+    @AfterMethod(groups = "slow")
+    public void tearDownJournal() throws Exception {
+        if (hasFailed()) {
+            return;
+        }
+
+        auditLogJournal.close();
+        final File[] files = journalDirectory.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                Assert.assertTrue(file.delete());
+            }
+        }
+        Assert.assertTrue(journalDirectory.delete());
+    }
+
+    @Test(groups = "slow")
+    public void testCommitAndFlush() throws Exception {
+        final AuditLogJournalEntry entry1 = createEntry(1L, ChangeType.INSERT);
+        final AuditLogJournalEntry entry2 = createEntry(1L, ChangeType.UPDATE);
+
+        final AuditLogJournal.Transaction transaction = auditLogJournal.newTransaction();
+        transaction.append(entry1);
+        transaction.append(entry2);
+        transaction.prepare();
+        // Not visible until committed
+        Assert.assertEquals(auditLogJournal.getAuditLogsForTargetRecordId(TableName.CUSTOM_FIELD_HISTORY, 1L, internalCallContext).size(), 0);
+
+        transaction.commit();
+        Assert.assertEquals(auditLogJournal.getNbPendingEntries(), 2);
+        final List<AuditLogModelDao> auditLogs = auditLogJournal.getAuditLogsForTargetRecordId(TableName.CUSTOM_FIELD_HISTORY, 1L, internalCallContext);
+        Assert.assertEquals(auditLogs.size(), 2);
+        Assert.assertEquals(auditLogs.get(0).getId(), entry1.getId());
+        Assert.assertEquals(auditLogs.get(1).getId(), entry2.getId());
+        Assert.assertEquals(auditLogJournal.getAuditLogsViaHistoryForTargetRecordId(TableName.CUSTOM_FIELD_HISTORY, 10L, internalCallContext).size(), 2);
+        Assert.assertEquals(auditLogJournal.getAuditLogsForAccountRecordId(null, internalCallContext).size(), 2);
+
+        // Aborted transactions are ignored
+        final AuditLogJournal.Transaction abortedTransaction = auditLogJournal.newTransaction();
+        abortedTransaction.append(createEntry(2L, ChangeType.INSERT));
+        abortedTransaction.prepare();
+        abortedTransaction.rollback();
+        Assert.assertEquals(auditLogJournal.getNbPendingEntries(), 2);
+
+        auditLogJournal.flush();
+        Assert.assertEquals(auditLogJournal.getNbPendingEntries(), 0);
+        Assert.assertEquals(auditLogJournal.getAuditLogsForTargetRecordId(TableName.CUSTOM_FIELD_HISTORY, 1L, internalCallContext).size(), 0);
+        Assert.assertEquals(getFlushedIds(entry1, entry2).size(), 2);
+
+        // Only the current segment is left
+        Assert.assertEquals(journalDirectory.listFiles().length, 1);
+    }
+
+    @Test(groups = "slow")
+    public void testReplay() throws Exception {
+        final Long existingTargetRecordId = createCustomFieldAndGetHistoryRecordId();
+
+        final AuditLogJournalEntry committedEntry = createEntry(UNKNOWN_TARGET_RECORD_ID, ChangeType.UPDATE);
+        final AuditLogJournal.Transaction committedTransaction = auditLogJournal.newTransaction();
+        committedTransaction.append(committedEntry);
+        committedTransaction.prepare();
+        committedTransaction.commit();
+
+        final AuditLogJournalEntry abortedEntry = createEntry(existingTargetRecordId, ChangeType.UPDATE);
+        final AuditLogJournal.Transaction abortedTransaction = auditLogJournal.newTransaction();
+        abortedTransaction.append(abortedEntry);
+        abortedTransaction.prepare();
+        abortedTransaction.rollback();
+
+        // In-doubt transactions (no marker): only replayed if the audited rows exist
+        final AuditLogJournalEntry inDoubtEntry = createEntry(existingTargetRecordId, ChangeType.UPDATE);
+        final AuditLogJournal.Transaction inDoubtTransaction = auditLogJournal.newTransaction();
+        inDoubtTransaction.append(inDoubtEntry);
+        inDoubtTransaction.prepare();
+        final AuditLogJournalEntry inDoubtEntryWithoutTarget = createEntry(UNKNOWN_TARGET_RECORD_ID, ChangeType.DELETE);
+        final AuditLogJournal.Transaction inDoubtTransactionWithoutTarget = auditLogJournal.newTransaction();
+        inDoubtTransactionWithoutTarget.append(inDoubtEntryWithoutTarget);
+        inDoubtTransactionWithoutTarget.prepare();
+
+        // Simulate a crash
+        auditLogJournal.close();
+
+        auditLogJournal = createAuditLogJournal();
+        Assert.assertEquals(auditLogJournal.getNbPendingEntries(), 2);
+
+        auditLogJournal.flush();
+        Assert.assertEquals(auditLogJournal.getNbPendingEntries(), 0);
+        Assert.assertEquals(getFlushedIds(committedEntry, abortedEntry, inDoubtEntry, inDoubtEntryWithoutTarget), ImmutableList.<UUID>of(committedEntry.getId(), inDoubtEntry.getId()));
+
+        // Already flushed entries aren't replayed twice
+        auditLogJournal.close();
+        auditLogJournal = createAuditLogJournal();
+        Assert.assertEquals(auditLogJournal.getNbPendingEntries(), 0);
+    }
+
+    @Test(groups = "slow")
+    public void testReplayInDoubtWithoutHistory() throws Exception {
+        final Long customFieldRecordId = getCustomFieldRecordId(createCustomFieldAndGetHistoryRecordId());
+
+        // The audited row exists in both cases, but it proves the commit for the insert only
+        final AuditLogJournalEntry inDoubtInsertEntry = new AuditLogJournalEntry(new EntityAudit(TableName.CUSTOM_FIELD, customFieldRecordId, ChangeType.INSERT, clock.getUTCNow()),
+                                                                                 customFieldRecordId,
+                                                                                 internalCallContext);
+        final AuditLogJournal.Transaction inDoubtInsertTransaction = auditLogJournal.newTransaction();
+        inDoubtInsertTransaction.append(inDoubtInsertEntry);
+        inDoubtInsertTransaction.prepare();
+        final AuditLogJournalEntry inDoubtUpdateEntry = new AuditLogJournalEntry(new EntityAudit(TableName.CUSTOM_FIELD, customFieldRecordId, ChangeType.UPDATE, clock.getUTCNow()),
+                                                                                 customFieldRecordId,
+                                                                                 internalCallContext);
+        final AuditLogJournal.Transaction inDoubtUpdateTransaction = auditLogJournal.newTransaction();
+        inDoubtUpdateTransaction.append(inDoubtUpdateEntry);
+        inDoubtUpdateTransaction.prepare();
+
+        // Simulate a crash
+        auditLogJournal.close();
+
+        auditLogJournal = createAuditLogJournal();
+        Assert.assertEquals(auditLogJournal.getNbPendingEntries(), 1);
+
+        auditLogJournal.flush();
+        Assert.assertEquals(auditLogJournal.getNbPendingEntries(), 0);
+        Assert.assertEquals(getFlushedIds(inDoubtInsertEntry, inDoubtUpdateEntry), ImmutableList.<UUID>of(inDoubtInsertEntry.getId()));
+    }
+
+    @Test(groups = "slow")
+    public void testFlushAndReplayFromDao() throws Exception {
+        final UUID tenantId = UUID.randomUUID();
+        final NonEntityDao tenantNonEntityDao = createNonEntityDao(tenantId, internalCallContext.getTenantRecordId());
+        auditLogJournal.close();
+        auditLogJournal = createAuditLogJournal(tenantId, tenantNonEntityDao);
+        Assert.assertTrue(auditLogJournal.isEnabled(internalCallContext));
+
+        final EntitySqlDaoTransactionalJdbiWrapper transactionalSqlDao = new EntitySqlDaoTransactionalJdbiWrapper(dbi, roDbi, clock, controlCacheDispatcher, nonEntityDao, internalCallContextFactory, auditLogJournal);
+        transactionalSqlDao.execute(false, new EntitySqlDaoTransactionWrapper<Void>() {
+            @Override
+            public Void inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                entitySqlDaoWrapperFactory.become(CustomFieldSqlDao.class).create(new CustomFieldModelDao(internalCallContext.getCreatedDate(), "name", "value", UUID.randomUUID(), ObjectType.ACCOUNT), internalCallContext);
+                return null;
+            }
+        });
+        final Long historyRecordId = getLastCustomFieldHistoryRecordId();
+
+        // The audit log is journaled instead of being inserted in the business transaction
+        Assert.assertEquals(auditLogJournal.getNbPendingEntries(), 1);
+        final List<AuditLogModelDao> auditLogs = auditLogJournal.getAuditLogsForTargetRecordId(TableName.CUSTOM_FIELD_HISTORY, historyRecordId, internalCallContext);
+        Assert.assertEquals(auditLogs.size(), 1);
+        Assert.assertEquals(auditLogs.get(0).getChangeType(), ChangeType.INSERT);
+        final UUID auditLogId = auditLogs.get(0).getId();
+        Assert.assertFalse(isFlushed(auditLogId));
+
+        // Simulate a crash: the committed entry is replayed on startup
+        auditLogJournal.close();
+        auditLogJournal = createAuditLogJournal(tenantId, tenantNonEntityDao);
+        Assert.assertEquals(auditLogJournal.getNbPendingEntries(), 1);
+        Assert.assertEquals(auditLogJournal.getAuditLogsForTargetRecordId(TableName.CUSTOM_FIELD_HISTORY, historyRecordId, internalCallContext).get(0).getId(), auditLogId);
+
+        auditLogJournal.flush();
+        Assert.assertEquals(auditLogJournal.getNbPendingEntries(), 0);
+        Assert.assertTrue(isFlushed(auditLogId));
+
+        // Not replayed twice
+        auditLogJournal.close();
+        auditLogJournal = createAuditLogJournal(tenantId, tenantNonEntityDao);
+        Assert.assertEquals(auditLogJournal.getNbPendingEntries(), 0);
+    }
+
+    @Test(groups = "slow")
+    public void testTenantRecordIdsResolution() throws Exception {
+        final UUID tenantId = UUID.randomUUID();
+        // The tenant is created after the startup
+        final NonEntityDao tenantNonEntityDao = createNonEntityDao(tenantId, null, internalCallContext.getTenantRecordId());
+        auditLogJournal.close();
+        auditLogJournal = createAuditLogJournal(tenantId, tenantNonEntityDao);
+        Assert.assertFalse(auditLogJournal.isEnabled(internalCallContext));
+
+        // Not looked up again on each flush
+        auditLogJournal.flush();
+        auditLogJournal.flush();
+        Mockito.verify(tenantNonEntityDao, Mockito.times(1)).retrieveRecordIdFromObject(Mockito.eq(tenantId), Mockito.eq(ObjectType.TENANT), Mockito.<CacheController<String, Long>>any());
+        Assert.assertFalse(auditLogJournal.isEnabled(internalCallContext));
+
+        clock.addDays(1);
+        auditLogJournal.flush();
+        Mockito.verify(tenantNonEntityDao, Mockito.times(2)).retrieveRecordIdFromObject(Mockito.eq(tenantId), Mockito.eq(ObjectType.TENANT), Mockito.<CacheController<String, Long>>any());
+        Assert.assertTrue(auditLogJournal.isEnabled(internalCallContext));
+
+        // Resolved tenants are never looked up again
+        clock.addDays(1);
+        auditLogJournal.flush();
+        Mockito.verify(tenantNonEntityDao, Mockito.times(2)).retrieveRecordIdFromObject(Mockito.eq(tenantId), Mockito.eq(ObjectType.TENANT), Mockito.<CacheController<String, Long>>any());
+    }
+
+    @Test(groups = "slow")
+    public void testReadsFromAuditDao() throws Exception {
+        final AuditDao auditDaoWithJournal = new DefaultAuditDao(dbi, roDbi, clock, controlCacheDispatcher, nonEntityDao, internalCallContextFactory, auditLogJournal);
+
+        final Long historyRecordId = createCustomFieldAndGetHistoryRecordId();
+        final Handle handle = dbi.open();
+        final String customFieldId = (String) handle.select("select id from custom_fields where record_id = (select target_record_id from custom_field_history where record_id = ?)", historyRecordId).get(0).get("id");
+        handle.close();
+        Assert.assertEquals(auditDaoWithJournal.getAuditLogsForId(TableName.CUSTOM_FIELD, UUID.fromString(customFieldId), AuditLevel.FULL, internalCallContext).size(), 1);
+
+        final AuditLogJournal.Transaction transaction = auditLogJournal.newTransaction();
+        transaction.append(new AuditLogJournalEntry(new EntityAudit(TableName.CUSTOM_FIELD_HISTORY, historyRecordId, ChangeType.UPDATE, clock.getUTCNow()),
+                                                    getCustomFieldRecordId(historyRecordId),
+                                                    internalCallContext));
+        transaction.prepare();
+        transaction.commit();
+
+        final List<AuditLog> auditLogs = auditDaoWithJournal.getAuditLogsForId(TableName.CUSTOM_FIELD, UUID.fromString(customFieldId), AuditLevel.FULL, internalCallContext);
+        Assert.assertEquals(auditLogs.size(), 2);
+        Assert.assertEquals(auditLogs.get(0).getChangeType(), ChangeType.INSERT);
+        Assert.assertEquals(auditLogs.get(1).getChangeType(), ChangeType.UPDATE);
+
+        // Same results once flushed
+        auditLogJournal.flush();
+        Assert.assertEquals(auditDaoWithJournal.getAuditLogsForId(TableName.CUSTOM_FIELD, UUID.fromString(customFieldId), AuditLevel.FULL, internalCallContext).size(), 2);
+    }
+
+    @Test(groups = "slow")
+    public void testNotEnabledWithoutDirectory() throws Exception {
+        final AuditLogJournal journalWithoutDirectory = createAuditLogJournal(null);
+        try {
+            Assert.assertNull(journalWithoutDirectory.newTransaction());
+            Assert.assertFalse(journalWithoutDirectory.isEnabled(internalCallContext));
+        } finally {
+            journalWithoutDirectory.close();
+        }
+    }
+
+    private AuditLogJournal createAuditLogJournal() throws Exception {
+        return createAuditLogJournal(journalDirectory.getAbsolutePath());
+    }
+
+    private AuditLogJournal createAuditLogJournal(@Nullable final String directory) throws Exception {
+        // Tenant opt-in is checked by the invocation handler only
+        return createAuditLogJournal(directory, UUID.randomUUID(), nonEntityDao);
+    }
+
+    private AuditLogJournal createAuditLogJournal(final UUID tenantId, final NonEntityDao tenantNonEntityDao) throws Exception {
+        return createAuditLogJournal(journalDirectory.getAbsolutePath(), tenantId, tenantNonEntityDao);
+    }
+
+    private AuditLogJournal createAuditLogJournal(@Nullable final String directory, final UUID tenantId, final NonEntityDao tenantNonEntityDao) throws Exception {
+        final AuditConfig auditConfig = new AuditConfig() {
+            @Override
+            public List<String> getAuditLogJournalTenants() {
+                return ImmutableList.<String>of(tenantId.toString());
+            }
+
+            @Override
+            public String getAuditLogJournalDirectory() {
+                return directory;
+            }
+
+            @Override
+            public TimeSpan getAuditLogJournalFlushRate() {
+                return new TimeSpan("1s");
+            }
+
+            @Override
+            public int getAuditLogJournalFlushBatchSize() {
+                return 1;
+            }
+        };
+        final AuditLogJournal journal = new AuditLogJournal(auditConfig, dbi, clock, tenantNonEntityDao, controlCacheDispatcher);
+        journal.initialize();
+        return journal;
+    }
+
+    // Resolves the tenant to the specified record ids, in order
+    private NonEntityDao createNonEntityDao(final UUID tenantId, @Nullable final Long tenantRecordId, final Long... nextTenantRecordIds) {
+        final NonEntityDao tenantNonEntityDao = Mockito.mock(NonEntityDao.class);
+        Mockito.when(tenantNonEntityDao.retrieveRecordIdFromObject(Mockito.eq(tenantId), Mockito.eq(ObjectType.TENANT), Mockito.<CacheController<String, Long>>any()))
+               .thenReturn(tenantRecordId, nextTenantRecordIds);
+        return tenantNonEntityDao;
+    }
+
+    private AuditLogJournalEntry createEntry(final Long targetRecordId, final ChangeType changeType) {
+        return new AuditLogJournalEntry(new EntityAudit(TableName.CUSTOM_FIELD_HISTORY, targetRecordId, changeType, clock.getUTCNow()), 10L, internalCallContext);
+    }
+
+    private Long createCustomFieldAndGetHistoryRecordId() throws Exception {
+        eventsListener.pushExpectedEvent(NextEvent.CUSTOM_FIELD);
+        customFieldDao.create(new CustomFieldModelDao(internalCallContext.getCreatedDate(), "name", "value", UUID.randomUUID(), ObjectType.ACCOUNT), internalCallContext);
+        assertListenerStatus();
+
+        return getLastCustomFieldHistoryRecordId();
+    }
+
+    private Long getLastCustomFieldHistoryRecordId() {
+        final Handle handle = dbi.open();
+        try {
+            return (Long) handle.select("select max(record_id) record_id from custom_field_history").get(0).get("record_id");
+        } finally {
+            handle.close();
+        }
+    }
+
+    private Long getCustomFieldRecordId(final Long historyRecordId) {
+        final Handle handle = dbi.open();
+        try {
+            return (Long) handle.select("select target_record_id from custom_field_history where record_id = ?", historyRecordId).get(0).get("target_record_id");
+        } finally {
+            handle.close();
+        }
+    }
+
+    private boolean isFlushed(final UUID auditLogId) {
+        return !dbi.onDemand(AuditLogJournalSqlDao.class).getAuditLogRecordIdIdMappingsForIds(ImmutableList.<String>of(auditLogId.toString())).isEmpty();
+    }
+
+    // Ids (in the order of the specified entries) found in audit_log
+    private List<UUID> getFlushedIds(final AuditLogJournalEntry... entries) {
+        final List<String> ids = new ArrayList<String>();
+        for (final AuditLogJournalEntry entry : entries) {
+            ids.add(entry.getId().toString());
+        }
+
+        final Set<UUID> flushedIds = new HashSet<UUID>();
+        for (final RecordIdIdMappings mapping : dbi.onDemand(AuditLogJournalSqlDao.class).getAuditLogRecordIdIdMappingsForIds(ids)) {
+            flushedIds.add(mapping.getId());
+        }
+
+        final List<UUID> result = new ArrayList<UUID>();
+        for (final AuditLogJournalEntry entry : entries) {
+            if (flushedIds.contains(entry.getId())) {
+                result.add(entry.getId());
+            }
+        }
+        return result;
+    }
+}
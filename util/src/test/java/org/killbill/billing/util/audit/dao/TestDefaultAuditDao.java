@@ -33,12 +33,16 @@ import org.killbill.billing.util.audit.AccountAuditLogs;
 import org.killbill.billing.util.audit.AccountAuditLogsForObjectType;
 import org.killbill.billing.util.audit.AuditLog;
 import org.killbill.billing.util.audit.ChangeType;
+import org.killbill.billing.util.customfield.dao.CustomFieldModelDao;
+import org.killbill.billing.util.customfield.dao.DefaultCustomFieldDao;
 import org.killbill.billing.util.dao.TableName;
 import org.killbill.billing.util.tag.DescriptiveTag;
 import org.killbill.billing.util.tag.Tag;
 import org.killbill.billing.util.tag.dao.TagDefinitionModelDao;
 import org.killbill.billing.util.tag.dao.TagModelDao;
 
+import com.google.common.collect.ImmutableList;
+
 public class TestDefaultAuditDao extends UtilTestSuiteWithEmbeddedDB {
 
     private TagModelDao tag;
@@ -91,6 +95,26 @@ public class TestDefaultAuditDao extends UtilTestSuiteWithEmbeddedDB {
         Assert.assertEquals(secondAuditLogs.get(1).getChangeType(), ChangeType.DELETE);
     }
 
+    @Test(groups = "slow")
+    public void testBatchCreateAuditsViaHistory() throws Exception {
+        final UUID objectId = UUID.randomUUID();
+        final List<CustomFieldModelDao> customFields = ImmutableList.<CustomFieldModelDao>of(new CustomFieldModelDao(internalCallContext.getCreatedDate(), "name1", "value1", objectId, ObjectType.ACCOUNT),
+                                                                                           new CustomFieldModelDao(internalCallContext.getCreatedDate(), "name2", "value2", objectId, ObjectType.ACCOUNT),
+                                                                                           new CustomFieldModelDao(internalCallContext.getCreatedDate(), "name3", "value3", objectId, ObjectType.ACCOUNT));
+
+        eventsListener.pushExpectedEvents(NextEvent.CUSTOM_FIELD, NextEvent.CUSTOM_FIELD, NextEvent.CUSTOM_FIELD);
+        ((DefaultCustomFieldDao) customFieldDao).create(customFields, internalCallContext);
+        assertListenerStatus();
+
+        Assert.assertEquals(customFieldDao.getCustomFieldsForObject(objectId, ObjectType.ACCOUNT, internalCallContext).size(), 3);
+        for (final CustomFieldModelDao customField : customFields) {
+            final List<AuditLog> auditLogs = auditDao.getAuditLogsForId(TableName.CUSTOM_FIELD, customField.getId(), AuditLevel.FULL, internalCallContext);
+            Assert.assertEquals(auditLogs.size(), 1);
+            Assert.assertEquals(auditLogs.get(0).getChangeType(), ChangeType.INSERT);
+            Assert.assertEquals(auditLogs.get(0).getUserToken(), internalCallContext.getUserToken().toString());
+        }
+    }
+
     private void addTag() throws TagDefinitionApiException, TagApiException {
         // Create a tag definition
         eventsListener.pushExpectedEvent(NextEvent.TAG_DEFINITION);
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.cache;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.util.UtilTestSuiteWithEmbeddedDB;
+import org.killbill.billing.util.cache.Cachable.CacheType;
+import org.killbill.billing.util.config.definition.CacheConfig;
+import org.mockito.Mockito;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.tweak.HandleCallback;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+public class TestCacheWarmUp extends UtilTestSuiteWithEmbeddedDB {
+
+    private final Long tenantRecordId = 456456L;
+    private final UUID tenantId = UUID.randomUUID();
+    private final Long accountRecordId = 789789L;
+    private final UUID accountId = UUID.randomUUID();
+
+    @Test(groups = "slow")
+    public void testWarmUp() throws Exception {
+        insertTenantAndAccount();
+
+        final File snapshotFile = File.createTempFile("cache-warm-up", ".snapshot");
+        snapshotFile.deleteOnExit();
+        // Unknown accounts and invalid lines are ignored
+        Files.write(snapshotFile.toPath(), ImmutableList.<String>of(String.valueOf(accountRecordId), "not-a-record-id", "999999999"), StandardCharsets.UTF_8);
+
+        final List<Long> warmedUpTenantRecordIds = new LinkedList<Long>();
+        final TenantCacheWarmer tenantCacheWarmer = new TenantCacheWarmer() {
+            @Override
+            public String getName() {
+                return "test";
+            }
+
+            @Override
+            public synchronized void warmUp(final InternalTenantContext tenantContext) {
+                warmedUpTenantRecordIds.add(tenantContext.getTenantRecordId());
+            }
+        };
+        final TenantCacheWarmer failingTenantCacheWarmer = new TenantCacheWarmer() {
+            @Override
+            public String getName() {
+                return "failing";
+            }
+
+            @Override
+            public void warmUp(final InternalTenantContext tenantContext) throws Exception {
+                throw new IllegalStateException("Exception for testing");
+            }
+        };
+
+        final CacheWarmUp cacheWarmUp = new CacheWarmUp(newCacheConfig(snapshotFile), dbi, nonEntityDao, controlCacheDispatcher, ImmutableSet.<TenantCacheWarmer>of(tenantCacheWarmer, failingTenantCacheWarmer));
+        Assert.assertFalse(cacheWarmUp.isComplete());
+
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            cacheWarmUp.warmUp(executor);
+        } finally {
+            executor.shutdown();
+            Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+
+        Assert.assertTrue(cacheWarmUp.isComplete());
+        Assert.assertTrue(warmedUpTenantRecordIds.contains(tenantRecordId));
+        final int nbTenants = warmedUpTenantRecordIds.size();
+        Assert.assertEquals(cacheWarmUp.getProgress().get("nbTasks"), 2 * nbTenants + 2);
+        Assert.assertEquals(cacheWarmUp.getProgress().get("nbFailedTasks"), nbTenants);
+
+        final CacheController<String, Long> recordIdCache = controlCacheDispatcher.getCacheController(CacheType.RECORD_ID);
+        Assert.assertTrue(recordIdCache.isKeyInCache(accountId.toString()));
+        final CacheController<String, Long> tenantRecordIdCache = controlCacheDispatcher.getCacheController(CacheType.TENANT_RECORD_ID);
+        Assert.assertTrue(tenantRecordIdCache.isKeyInCache(accountId.toString()));
+    }
+
+    @Test(groups = "slow")
+    public void testWarmUpFailure() throws Exception {
+        final File snapshotFile = File.createTempFile("cache-warm-up", ".snapshot");
+        snapshotFile.deleteOnExit();
+
+        final CacheWarmUp cacheWarmUp = new CacheWarmUp(newCacheConfig(snapshotFile), dbi, nonEntityDao, controlCacheDispatcher, ImmutableSet.<TenantCacheWarmer>of());
+        Assert.assertFalse(cacheWarmUp.isComplete());
+
+        // The tasks cannot be submitted
+        final ExecutorService executor = Executors.newFixedThreadPool(1);
+        executor.shutdown();
+        Files.write(snapshotFile.toPath(), ImmutableList.<String>of(String.valueOf(accountRecordId)), StandardCharsets.UTF_8);
+        try {
+            cacheWarmUp.warmUp(executor);
+            Assert.fail("Warm-up tasks shouldn't have been accepted");
+        } catch (final RejectedExecutionException e) {
+            // Expected
+        }
+
+        // Finished (failed): the healthcheck isn't stuck
+        Assert.assertTrue(cacheWarmUp.isComplete());
+        Assert.assertEquals(cacheWarmUp.getProgress().get("failed"), true);
+    }
+
+    @Test(groups = "slow")
+    public void testWriteSnapshot() throws Exception {
+        final File snapshotFile = File.createTempFile("cache-warm-up", ".snapshot");
+        snapshotFile.deleteOnExit();
+
+        final CacheController<Object, Object> accountImmutableCache = Mockito.mock(CacheController.class);
+        Mockito.when(accountImmutableCache.getKeys()).thenReturn(ImmutableList.<Object>of(1L, 2L, 3L));
+        final CacheControllerDispatcher cacheControllerDispatcher = new CacheControllerDispatcher(ImmutableMap.<CacheType, CacheController<Object, Object>>of(CacheType.ACCOUNT_IMMUTABLE, accountImmutableCache));
+
+        final CacheConfig cacheConfig = newCacheConfig(snapshotFile);
+        Mockito.when(cacheConfig.getCacheWarmUpSnapshotMaxAccounts()).thenReturn(2);
+        final CacheWarmUp cacheWarmUp = new CacheWarmUp(cacheConfig, dbi, nonEntityDao, cacheControllerDispatcher, ImmutableSet.<TenantCacheWarmer>of());
+        cacheWarmUp.writeSnapshot();
+
+        Assert.assertEquals(Files.readAllLines(snapshotFile.toPath(), StandardCharsets.UTF_8), ImmutableList.<String>of("1", "2"));
+    }
+
+    private CacheConfig newCacheConfig(final File snapshotFile) {
+        final CacheConfig cacheConfig = Mockito.mock(CacheConfig.class);
+        Mockito.when(cacheConfig.isCacheWarmUpEnabled()).thenReturn(true);
+        Mockito.when(cacheConfig.getCacheWarmUpSnapshotFile()).thenReturn(snapshotFile.getAbsolutePath());
+        Mockito.when(cacheConfig.getCacheWarmUpSnapshotMaxAccounts()).thenReturn(100);
+        return cacheConfig;
+    }
+
+    private void insertTenantAndAccount() {
+        dbi.withHandle(new HandleCallback<Void>() {
+            @Override
+            public Void withHandle(final Handle handle) throws Exception {
+                handle.execute("insert into tenants (record_id, id, external_key, api_key, api_secret, api_salt, created_date, created_by, updated_date, updated_by) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                               tenantRecordId, tenantId.toString(), "foo", "key", "secret", "salt", new Date(), "i", new Date(), "j");
+                handle.execute("insert into accounts (record_id, id, external_key, email, name, first_name_length, reference_time, time_zone, created_date, created_by, updated_date, updated_by, tenant_record_id) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                               accountRecordId, accountId.toString(), accountId.toString(), "zozo@tt.com", "zozo", 4, new Date(), "UTC", new Date(), "i", new Date(), "j", tenantRecordId);
+                return null;
+            }
+        });
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.cache;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.UUID;
+
+import org.killbill.billing.util.UtilTestSuiteNoDB;
+import org.killbill.billing.util.config.tenant.PerTenantConfig;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class TestKillBillCacheValueSerializer extends UtilTestSuiteNoDB {
+
+    @Test(groups = "fast")
+    public void testExternalizableValue() throws Exception {
+        final KillBillCacheValueSerializer<PerTenantConfig> serializer = new KillBillCacheValueSerializer<PerTenantConfig>(getClass().getClassLoader());
+
+        final PerTenantConfig perTenantConfig = new PerTenantConfig();
+        perTenantConfig.put("org.killbill.invoice.maxNumberOfMonthsInFuture", "36");
+        final ByteBuffer binary = serializer.serialize(perTenantConfig);
+
+        Assert.assertEquals(serializer.read(binary), perTenantConfig);
+        // The buffer can be read again
+        Assert.assertTrue(serializer.equals(perTenantConfig, binary));
+        Assert.assertFalse(serializer.equals(new PerTenantConfig(), binary));
+    }
+
+    @Test(groups = "fast")
+    public void testListValue() throws Exception {
+        final KillBillCacheValueSerializer<List> serializer = new KillBillCacheValueSerializer<List>(getClass().getClassLoader());
+
+        final List<UUID> ids = ImmutableList.<UUID>of(UUID.randomUUID(), UUID.randomUUID());
+        Assert.assertEquals(serializer.read(serializer.serialize(ids)), ids);
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.cache;
+
+import java.util.UUID;
+
+import org.killbill.billing.ObjectType;
+import org.killbill.billing.util.UtilTestSuiteNoDB;
+import org.killbill.billing.util.cache.Cachable.CacheType;
+import org.killbill.billing.util.dao.TableName;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Function;
+
+public class TestPrimitiveKeyedCacheController extends UtilTestSuiteNoDB {
+
+    @Test(groups = "fast")
+    public void testLongPairKeyedCacheEviction() {
+        final LongPairKeyedCache<Long> cache = new LongPairKeyedCache<Long>(1000);
+        Assert.assertTrue(cache.capacity() >= 1000);
+
+        for (long i = 0; i < 10 * cache.capacity(); i++) {
+            cache.put(i, -i, i);
+            Assert.assertEquals(cache.get(i, -i), (Long) i);
+        }
+        Assert.assertTrue(cache.size() <= cache.capacity());
+
+        cache.put(1L, 2L, 3L);
+        cache.put(1L, 2L, 4L);
+        Assert.assertEquals(cache.get(1L, 2L), (Long) 4L);
+        Assert.assertNull(cache.get(2L, 1L));
+
+        cache.remove(1L, 2L);
+        Assert.assertNull(cache.get(1L, 2L));
+
+        cache.clear();
+        Assert.assertEquals(cache.size(), 0);
+    }
+
+    @Test(groups = "fast")
+    public void testRecordIdLookups() {
+        final CacheController<String, Long> delegate = mockDelegate(CacheType.RECORD_ID);
+        final UUID objectId = UUID.randomUUID();
+        Mockito.when(delegate.get(Mockito.eq(objectId.toString()), Mockito.<CacheLoaderArgument>any())).thenReturn(12L);
+
+        final PrimitiveKeyedCacheController<Long> controller = new PrimitiveKeyedCacheController<Long>(delegate, 100);
+        Assert.assertEquals(controller.get(objectId, ObjectType.ACCOUNT), (Long) 12L);
+        Assert.assertEquals(controller.get(objectId, ObjectType.ACCOUNT), (Long) 12L);
+        // The String API (e.g. @Cachable) shares the local entries
+        Assert.assertEquals(controller.get(objectId.toString().toUpperCase(), new CacheLoaderArgument(ObjectType.ACCOUNT)), (Long) 12L);
+        Mockito.verify(delegate, Mockito.times(1)).get(Mockito.anyString(), Mockito.<CacheLoaderArgument>any());
+
+        // Misses aren't cached locally
+        final UUID unknownObjectId = UUID.randomUUID();
+        Assert.assertNull(controller.get(unknownObjectId, ObjectType.ACCOUNT));
+        Assert.assertNull(controller.get(unknownObjectId, ObjectType.ACCOUNT));
+        Mockito.verify(delegate, Mockito.times(3)).get(Mockito.anyString(), Mockito.<CacheLoaderArgument>any());
+
+        // Invalid keys go straight to the delegate
+        Assert.assertNull(controller.get("not-a-uuid", new CacheLoaderArgument(ObjectType.ACCOUNT)));
+        Mockito.verify(delegate, Mockito.times(1)).get(Mockito.eq("not-a-uuid"), Mockito.<CacheLoaderArgument>any());
+
+        controller.remove(objectId.toString());
+        Assert.assertEquals(controller.getLocalSize(), 0);
+        Mockito.verify(delegate, Mockito.times(1)).remove(objectId.toString());
+    }
+
+    @Test(groups = "fast")
+    public void testObjectIdLookups() {
+        final CacheController<String, UUID> delegate = mockDelegate(CacheType.OBJECT_ID);
+        final PrimitiveKeyedCacheController<UUID> controller = new PrimitiveKeyedCacheController<UUID>(delegate, 100);
+
+        final UUID accountId = UUID.randomUUID();
+        final UUID invoiceId = UUID.randomUUID();
+        controller.putIfAbsent(TableName.ACCOUNT, 1L, accountId);
+        controller.putIfAbsent(TableName.INVOICES + CacheControllerDispatcher.CACHE_KEY_SEPARATOR + 1L, invoiceId);
+        Mockito.verify(delegate, Mockito.times(1)).putIfAbsent(TableName.ACCOUNT + CacheControllerDispatcher.CACHE_KEY_SEPARATOR + 1L, accountId);
+
+        Assert.assertEquals(controller.get(TableName.ACCOUNT, 1L, ObjectType.ACCOUNT), accountId);
+        Assert.assertEquals(controller.get(TableName.INVOICES, 1L, ObjectType.INVOICE), invoiceId);
+        Assert.assertTrue(controller.isKeyInCache(TableName.ACCOUNT + CacheControllerDispatcher.CACHE_KEY_SEPARATOR + 1L));
+        Mockito.verify(delegate, Mockito.never()).get(Mockito.anyString(), Mockito.<CacheLoaderArgument>any());
+
+        controller.remove(new Function<String, Boolean>() {
+            @Override
+            public Boolean apply(final String key) {
+                return key.startsWith(TableName.ACCOUNT.toString());
+            }
+        });
+        Assert.assertEquals(controller.getLocalSize(), 0);
+
+        controller.putIfAbsent(TableName.ACCOUNT, 1L, accountId);
+        controller.removeAll();
+        Assert.assertEquals(controller.getLocalSize(), 0);
+        Mockito.verify(delegate, Mockito.times(1)).removeAll();
+    }
+
+    private <V> CacheController<String, V> mockDelegate(final CacheType cacheType) {
+        @SuppressWarnings("unchecked")
+        final CacheController<String, V> delegate = Mockito.mock(CacheController.class);
+        Mockito.when(delegate.getCacheType()).thenReturn(cacheType);
+        return delegate;
+    }
+}
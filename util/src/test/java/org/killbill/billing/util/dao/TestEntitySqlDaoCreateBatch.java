@@ -0,0 +1,74 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.dao;
+
+import java.util.List;
+import java.util.UUID;
+
+import org.killbill.billing.ObjectType;
+import org.killbill.billing.util.UtilTestSuiteWithEmbeddedDB;
+import org.killbill.billing.util.customfield.dao.CustomFieldModelDao;
+import org.killbill.billing.util.customfield.dao.CustomFieldSqlDao;
+import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionWrapper;
+import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionalJdbiWrapper;
+import org.killbill.billing.util.entity.dao.EntitySqlDaoWrapperFactory;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class TestEntitySqlDaoCreateBatch extends UtilTestSuiteWithEmbeddedDB {
+
+    @Test(groups = "slow")
+    public void testCreateBatchWithSingleEntity() throws Exception {
+        final CustomFieldModelDao customField = new CustomFieldModelDao(clock.getUTCNow(), "name", "value", UUID.randomUUID(), ObjectType.ACCOUNT);
+
+        final List<CustomFieldModelDao> created = createBatch(ImmutableList.<CustomFieldModelDao>of(customField));
+        Assert.assertEquals(created.size(), 1);
+        checkReHydrated(created.get(0), customField);
+    }
+
+    @Test(groups = "slow")
+    public void testCreateBatchWithMultipleEntities() throws Exception {
+        final CustomFieldModelDao customField1 = new CustomFieldModelDao(clock.getUTCNow(), "name1", "value1", UUID.randomUUID(), ObjectType.ACCOUNT);
+        final CustomFieldModelDao customField2 = new CustomFieldModelDao(clock.getUTCNow(), "name2", "value2", UUID.randomUUID(), ObjectType.ACCOUNT);
+
+        final List<CustomFieldModelDao> created = createBatch(ImmutableList.<CustomFieldModelDao>of(customField1, customField2));
+        Assert.assertEquals(created.size(), 2);
+        checkReHydrated(created.get(0), customField1);
+        checkReHydrated(created.get(1), customField2);
+    }
+
+    private List<CustomFieldModelDao> createBatch(final Iterable<CustomFieldModelDao> customFields) {
+        final EntitySqlDaoTransactionalJdbiWrapper transactionalSqlDao = new EntitySqlDaoTransactionalJdbiWrapper(dbi, roDbi, clock, null, nonEntityDao, internalCallContextFactory);
+        return transactionalSqlDao.execute(false, new EntitySqlDaoTransactionWrapper<List<CustomFieldModelDao>>() {
+            @Override
+            public List<CustomFieldModelDao> inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                // The jDBI return type is overridden with the re-hydrated entities (see EntitySqlDaoWrapperInvocationHandler)
+                return entitySqlDaoWrapperFactory.become(CustomFieldSqlDao.class).createBatch(customFields, internalCallContext);
+            }
+        });
+    }
+
+    private void checkReHydrated(final CustomFieldModelDao reHydrated, final CustomFieldModelDao customField) {
+        Assert.assertEquals(reHydrated.getId(), customField.getId());
+        Assert.assertEquals(reHydrated.getFieldName(), customField.getFieldName());
+        Assert.assertNotNull(reHydrated.getRecordId());
+        Assert.assertEquals(reHydrated.getTenantRecordId(), internalCallContext.getTenantRecordId());
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.dao;
+
+import java.sql.SQLException;
+
+import org.killbill.billing.util.UtilTestSuiteNoDB;
+import org.skife.jdbi.v2.exceptions.UnableToExecuteStatementException;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestSQLExceptionUtils extends UtilTestSuiteNoDB {
+
+    @Test(groups = "fast")
+    public void testIsUniqueConstraintViolation() throws Exception {
+        // PostgreSQL and H2
+        Assert.assertTrue(SQLExceptionUtils.isUniqueConstraintViolation(new UnableToExecuteStatementException(new SQLException("duplicate key", "23505"))));
+        Assert.assertFalse(SQLExceptionUtils.isUniqueConstraintViolation(new UnableToExecuteStatementException(new SQLException("not null", "23502"))));
+        Assert.assertFalse(SQLExceptionUtils.isUniqueConstraintViolation(new UnableToExecuteStatementException(new SQLException("foreign key", "23503"))));
+
+        // MySQL
+        Assert.assertTrue(SQLExceptionUtils.isUniqueConstraintViolation(new UnableToExecuteStatementException(new SQLException("Duplicate entry", "23000", 1062))));
+        Assert.assertFalse(SQLExceptionUtils.isUniqueConstraintViolation(new UnableToExecuteStatementException(new SQLException("cannot be null", "23000", 1048))));
+
+        Assert.assertFalse(SQLExceptionUtils.isUniqueConstraintViolation(new UnableToExecuteStatementException(new SQLException("deadlock", "40001"))));
+        Assert.assertFalse(SQLExceptionUtils.isUniqueConstraintViolation(new IllegalStateException()));
+    }
+}
@@ -20,6 +20,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -78,6 +80,31 @@ public class MockEntityDaoBase<M extends EntityModelDao<E>, E extends Entity, U
         return DefaultPagination.<M>build(offset, limit, ImmutableList.<M>copyOf(getAll(context)));
     }
 
+    @Override
+    public Pagination<M> getByPageToken(final String pageToken, final Long limit, final boolean withCount, final InternalTenantContext context) {
+        final Long lastRecordId = pageToken == null || pageToken.isEmpty() ? 0L : DefaultPaginationSqlDaoHelper.decodePageToken(pageToken);
+
+        final SortedMap<Long, M> records = new TreeMap<Long, M>();
+        for (final Map<Long, M> cur : entities.values()) {
+            final Long recordId = cur.keySet().iterator().next();
+            if (recordId > lastRecordId) {
+                records.put(recordId, cur.values().iterator().next());
+            }
+        }
+
+        final List<M> results = new ArrayList<M>();
+        String nextPageToken = null;
+        for (final Long recordId : records.keySet()) {
+            if (results.size() == limit) {
+                nextPageToken = DefaultPaginationSqlDaoHelper.encodePageToken(records.headMap(recordId).lastKey());
+                break;
+            }
+            results.add(records.get(recordId));
+        }
+        final Long count = withCount ? getCount(context) : null;
+        return new DefaultPagination<M>(null, limit, count, count, nextPageToken, results.iterator());
+    }
+
     @Override
     public Long getCount(final InternalTenantContext context) {
         return (long) entities.keySet().size();
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.glue;
+
+import java.io.File;
+import java.util.List;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+
+import org.killbill.billing.util.UtilTestSuiteNoDB;
+import org.killbill.billing.util.cache.BaseCacheLoader;
+import org.killbill.billing.util.cache.Cachable.CacheType;
+import org.killbill.billing.util.cache.CacheLoaderArgument;
+import org.killbill.billing.util.config.definition.EhCacheConfig;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Files;
+import com.google.common.io.Resources;
+
+public class TestEh107CacheManagerProvider extends UtilTestSuiteNoDB {
+
+    @Test(groups = "fast")
+    public void testTieredCache() throws Exception {
+        // Use a copy of ehcache.xml, as cache managers are shared per configuration URI (the test suite already created the heap-only one)
+        final File configurationFile = File.createTempFile("ehcache-tiered", ".xml");
+        configurationFile.deleteOnExit();
+        Resources.asByteSource(Resources.getResource("ehcache.xml")).copyTo(Files.asByteSink(configurationFile));
+
+        final EhCacheConfig cacheConfig = new EhCacheConfig() {
+            @Override
+            public String getCacheConfigLocation() {
+                return configurationFile.toURI().toString();
+            }
+
+            @Override
+            public int getOffHeapSizeMB() {
+                return 1;
+            }
+
+            @Override
+            public int getDiskSizeMB() {
+                return 2;
+            }
+
+            @Override
+            public String getDiskLocation() {
+                // Per-node default
+                return "";
+            }
+
+            @Override
+            public int getTieredHeapEntries() {
+                return 10;
+            }
+        };
+
+        // List isn't Serializable: the values go through KillBillCacheValueSerializer in the off-heap and disk tiers
+        final BaseCacheLoader<String, List> cacheLoader = new BaseCacheLoader<String, List>() {
+            @Override
+            public CacheType getCacheType() {
+                return CacheType.AUDIT_LOG;
+            }
+
+            @Override
+            public List compute(final String key, final CacheLoaderArgument cacheLoaderArgument) {
+                throw new UnsupportedOperationException();
+            }
+        };
+
+        final CacheManager cacheManager = new Eh107CacheManagerProvider(new MetricRegistry(), cacheConfig, ImmutableSet.<BaseCacheLoader>of(cacheLoader)).get();
+        try {
+            final Cache<String, List> cache = cacheManager.getCache(CacheType.AUDIT_LOG.getCacheName(), String.class, List.class);
+            Assert.assertNotNull(cache);
+
+            // More entries than the heap tier can hold
+            for (int i = 0; i < 100; i++) {
+                cache.put("key-" + i, ImmutableList.<String>of("value-" + i));
+            }
+            for (int i = 0; i < 100; i++) {
+                Assert.assertEquals(cache.get("key-" + i), ImmutableList.<String>of("value-" + i));
+            }
+        } finally {
+            cacheManager.close();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2014-2019 Groupon, Inc
+ * Copyright 2014-2019 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.search.dao;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.killbill.billing.ObjectType;
+import org.killbill.billing.util.UtilTestSuiteNoDB;
+import org.killbill.billing.util.search.dao.SearchIndexModelDao.TokenType;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+
+public class TestSearchIndexDao extends UtilTestSuiteNoDB {
+
+    @Test(groups = "fast")
+    public void testBuildEntries() {
+        final List<SearchIndexModelDao> entries = SearchIndexDao.buildEntries(ObjectType.ACCOUNT,
+                                                                              12L,
+                                                                              12L,
+                                                                              ImmutableList.<String>of("4C8D0B0E-ID"),
+                                                                              ImmutableList.<String>of("  John   DOE ", "john@acme.com", "john doe"),
+                                                                              1L);
+        checkEntries(entries,
+                     ImmutableList.<String>of("4c8d0b0e-id", "john doe", "john@acme.com"),
+                     ImmutableList.<String>of("doe", "acme.com", "com"));
+        for (final SearchIndexModelDao entry : entries) {
+            Assert.assertEquals(entry.getObjectType(), ObjectType.ACCOUNT);
+            Assert.assertEquals(entry.getTargetRecordId(), (Long) 12L);
+            Assert.assertEquals(entry.getAccountRecordId(), (Long) 12L);
+            Assert.assertEquals(entry.getTenantRecordId(), (Long) 1L);
+        }
+
+        // Null and blank values are skipped, words already indexed as a value aren't duplicated
+        final List<SearchIndexModelDao> entries2 = SearchIndexDao.buildEntries(ObjectType.ACCOUNT,
+                                                                               12L,
+                                                                               12L,
+                                                                               ImmutableList.<String>of(),
+                                                                               Arrays.<String>asList(null, " ", "Acme, Inc.", "inc."),
+                                                                               1L);
+        checkEntries(entries2,
+                     ImmutableList.<String>of("acme, inc.", "inc."),
+                     ImmutableList.<String>of());
+    }
+
+    @Test(groups = "fast")
+    public void testLongValues() {
+        final String longValue = Strings.repeat("a", SearchIndexDao.MAX_TOKEN_LENGTH) + " b";
+        Assert.assertEquals(SearchIndexDao.normalize(longValue).length(), SearchIndexDao.MAX_TOKEN_LENGTH);
+        Assert.assertEquals(SearchIndexDao.getSearchKey(longValue), SearchIndexDao.normalize(longValue));
+    }
+
+    @Test(groups = "fast")
+    public void testSearchKeys() {
+        Assert.assertEquals(SearchIndexDao.getSearchKey(" Acme  Inc "), "acme inc");
+        Assert.assertEquals(SearchIndexDao.getPrefixSearchKey(" Acme  Inc "), "acme inc%");
+        Assert.assertEquals(SearchIndexDao.getSearchKey(null), "");
+        Assert.assertEquals(SearchIndexDao.getPrefixSearchKey(null), "%");
+        // LIKE wildcards and the escape character are escaped
+        Assert.assertEquals(SearchIndexDao.getPrefixSearchKey("50%_off!"), "50!%!_off!!%");
+    }
+
+    private void checkEntries(final List<SearchIndexModelDao> entries, final List<String> expectedValues, final List<String> expectedWords) {
+        Assert.assertEquals(entries.size(), expectedValues.size() + expectedWords.size());
+        for (int i = 0; i < entries.size(); i++) {
+            final boolean isValue = i < expectedValues.size();
+            Assert.assertEquals(entries.get(i).getTokenType(), isValue ? TokenType.VALUE : TokenType.WORD);
+            Assert.assertEquals(entries.get(i).getToken(), isValue ? expectedValues.get(i) : expectedWords.get(i - expectedValues.size()));
+        }
+    }
+}